@@ -0,0 +1,133 @@
+package com.tp222.allergies.loadtest;
+
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Enveloppe la DataSource de l'application pour enregistrer les requêtes préparées exécutées,
+ * avec leurs paramètres liés, sur le thread où une capture est ouverte. Hors capture, les appels
+ * sont simplement délégués.
+ */
+class CaptureJdbc implements BeanPostProcessor {
+
+    /**
+     * Requête telle qu'envoyée par Hibernate et paramètres à lier pour la rejouer
+     */
+    record Requete(String sql, List<Liaison> liaisons) {
+    }
+
+    /**
+     * Appel setXxx(index, valeur, ...) sur le PreparedStatement
+     */
+    record Liaison(Method methode, Object[] arguments) {
+
+        void appliquer(PreparedStatement statement) throws Exception {
+            methode.invoke(statement, arguments);
+        }
+    }
+
+    private static final ThreadLocal<List<Requete>> CAPTURE = new ThreadLocal<>();
+
+    static void ouvrir() {
+        CAPTURE.set(new ArrayList<>());
+    }
+
+    /**
+     * @return les requêtes exécutées depuis ouvrir, dans l'ordre
+     */
+    static List<Requete> fermer() {
+        List<Requete> requetes = CAPTURE.get();
+        CAPTURE.remove();
+        return requetes != null ? requetes : List.of();
+    }
+
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String nom) {
+        if (bean instanceof DataSource source && !(bean instanceof SourceCapturee)) {
+            return new SourceCapturee(source);
+        }
+        return bean;
+    }
+
+    static final class SourceCapturee extends DelegatingDataSource {
+
+        SourceCapturee(DataSource cible) {
+            super(cible);
+        }
+
+        @Override
+        public Connection getConnection() throws SQLException {
+            return envelopper(super.getConnection());
+        }
+
+        @Override
+        public Connection getConnection(String utilisateur, String motDePasse) throws SQLException {
+            return envelopper(super.getConnection(utilisateur, motDePasse));
+        }
+    }
+
+    private static Connection envelopper(Connection connexion) {
+        return (Connection) Proxy.newProxyInstance(CaptureJdbc.class.getClassLoader(), new Class<?>[]{Connection.class},
+                (proxy, methode, arguments) -> {
+                    if (methode.getDeclaringClass() == Object.class) {
+                        return objet(proxy, connexion, methode, arguments);
+                    }
+                    Object resultat = invoquer(connexion, methode, arguments);
+                    if (methode.getName().equals("prepareStatement") && resultat instanceof PreparedStatement statement) {
+                        return envelopper(statement, (String) arguments[0]);
+                    }
+                    return resultat;
+                });
+    }
+
+    private static PreparedStatement envelopper(PreparedStatement statement, String sql) {
+        List<Liaison> liaisons = new ArrayList<>();
+        return (PreparedStatement) Proxy.newProxyInstance(CaptureJdbc.class.getClassLoader(), new Class<?>[]{PreparedStatement.class},
+                (proxy, methode, arguments) -> {
+                    if (methode.getDeclaringClass() == Object.class) {
+                        return objet(proxy, statement, methode, arguments);
+                    }
+                    String nom = methode.getName();
+                    boolean sansArgument = arguments == null || arguments.length == 0;
+                    if (nom.startsWith("set") && arguments != null && arguments.length >= 2 && arguments[0] instanceof Integer) {
+                        liaisons.add(new Liaison(methode, arguments.clone()));
+                    } else if (nom.equals("clearParameters")) {
+                        liaisons.clear();
+                    } else if (sansArgument && (nom.startsWith("execute") || nom.equals("addBatch"))) {
+                        List<Requete> requetes = CAPTURE.get();
+                        if (requetes != null) {
+                            requetes.add(new Requete(sql, List.copyOf(liaisons)));
+                        }
+                    }
+                    return invoquer(statement, methode, arguments);
+                });
+    }
+
+    /**
+     * equals et hashCode par identité du proxy : Hibernate range connexions et statements dans des tables
+     */
+    private static Object objet(Object proxy, Object cible, Method methode, Object[] arguments) {
+        return switch (methode.getName()) {
+            case "equals" -> proxy == arguments[0];
+            case "hashCode" -> System.identityHashCode(proxy);
+            default -> cible.toString();
+        };
+    }
+
+    private static Object invoquer(Object cible, Method methode, Object[] arguments) throws Throwable {
+        try {
+            return methode.invoke(cible, arguments);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+}
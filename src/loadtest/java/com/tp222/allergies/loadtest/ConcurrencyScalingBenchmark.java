@@ -0,0 +1,122 @@
+package com.tp222.allergies.loadtest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compare la montée en concurrence de Tomcat sur threads plateforme et sur threads virtuels.
+ *
+ * Pour chaque mode, l'application est démarrée puis soumise à des paliers de clients
+ * concurrents en modèle fermé (chaque client enchaîne ses requêtes) ; le débit et les
+ * percentiles de latence de chaque palier sont écrits dans un rapport JSON.
+ *
+ * Lancement : mvn -Ploadtest test-compile exec:java@benchmark-threads
+ */
+@Slf4j
+public class ConcurrencyScalingBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        Properties config = LoadTestRunner.chargerConfiguration();
+        int[] niveaux = Arrays.stream(config.getProperty("loadtest.benchmark.niveaux-concurrence").split(","))
+                .map(String::trim)
+                .mapToInt(Integer::parseInt)
+                .toArray();
+        int dureePalier = Integer.parseInt(config.getProperty("loadtest.benchmark.duree-palier-secondes").trim());
+
+        Map<String, Object> rapport = new LinkedHashMap<>();
+        rapport.put("date", LocalDateTime.now().toString());
+        rapport.put("dureePalierSecondes", dureePalier);
+        rapport.put("plateforme", mesurerMode(false, niveaux, dureePalier, config));
+        rapport.put("virtuels", mesurerMode(true, niveaux, dureePalier, config));
+
+        Path fichier = Path.of(config.getProperty("loadtest.benchmark.rapport"));
+        Files.createDirectories(fichier.toAbsolutePath().getParent());
+        new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT).writeValue(fichier.toFile(), rapport);
+        log.info("Rapport de montée en concurrence écrit dans {}", fichier.toAbsolutePath());
+    }
+
+    private static Map<String, Object> mesurerMode(boolean threadsVirtuels, int[] niveaux, int dureePalier,
+                                                   Properties config) throws InterruptedException {
+        ConfigurableApplicationContext context = LoadTestRunner.demarrerApplication(threadsVirtuels);
+        try {
+            LoadTestSeeder.JeuDeDonnees donnees = new LoadTestSeeder(context).peupler(
+                    Integer.parseInt(config.getProperty("loadtest.seed.utilisateurs").trim()),
+                    Integer.parseInt(config.getProperty("loadtest.seed.aliments").trim()),
+                    Integer.parseInt(config.getProperty("loadtest.seed.reactions-par-utilisateur").trim()));
+            int port = ((WebServerApplicationContext) context).getWebServer().getPort();
+            String baseUrl = "http://localhost:" + port + "/api/allergies";
+
+            Map<String, Object> paliers = new LinkedHashMap<>();
+            for (int clients : niveaux) {
+                EndpointStats stats = executerPalier(baseUrl, donnees, clients, dureePalier);
+                log.info("{} - {} clients: {} req/s, p99 {} ms", threadsVirtuels ? "virtuels" : "plateforme",
+                        clients, stats.getNombreRequetes() / dureePalier, stats.percentileMs(99.0));
+                paliers.put(String.valueOf(clients), stats.versRapport(dureePalier));
+            }
+            return paliers;
+        } finally {
+            context.close();
+        }
+    }
+
+    /**
+     * Lance {@code clients} boucles de requêtes concurrentes pendant la durée du palier.
+     * Les clients eux-mêmes tournent sur des threads virtuels pour ne pas être le facteur limitant.
+     */
+    private static EndpointStats executerPalier(String baseUrl, LoadTestSeeder.JeuDeDonnees donnees,
+                                                int clients, int dureeSecondes) throws InterruptedException {
+        EndpointStats stats = new EndpointStats("palier-" + clients);
+        long fin = System.nanoTime() + TimeUnit.SECONDS.toNanos(dureeSecondes);
+
+        try (ExecutorService executeur = Executors.newVirtualThreadPerTaskExecutor()) {
+            HttpClient http = HttpClient.newBuilder()
+                    .executor(executeur)
+                    .connectTimeout(Duration.ofSeconds(5))
+                    .build();
+            for (int c = 0; c < clients; c++) {
+                executeur.submit(() -> {
+                    ThreadLocalRandom random = ThreadLocalRandom.current();
+                    while (System.nanoTime() < fin) {
+                        long utilisateurId = donnees.utilisateurIds()[random.nextInt(donnees.utilisateurIds().length)];
+                        long alimentId = donnees.alimentIds()[random.nextInt(donnees.alimentIds().length)];
+                        HttpRequest requete = HttpRequest.newBuilder()
+                                .uri(URI.create(baseUrl + "/verification-risque?utilisateurId=" + utilisateurId
+                                        + "&alimentId=" + alimentId))
+                                .timeout(Duration.ofSeconds(30))
+                                .GET()
+                                .build();
+                        long debut = System.nanoTime();
+                        boolean succes;
+                        try {
+                            succes = http.send(requete, HttpResponse.BodyHandlers.discarding()).statusCode() < 400;
+                        } catch (Exception e) {
+                            succes = false;
+                        }
+                        stats.enregistrer(System.nanoTime() - debut, succes);
+                    }
+                    return null;
+                });
+            }
+        }
+        return stats;
+    }
+}
@@ -0,0 +1,75 @@
+package com.tp222.allergies.loadtest;
+
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Statistiques de latence et d'erreurs d'un endpoint pendant la phase de mesure
+ */
+class EndpointStats {
+
+    private static final long LATENCE_MAX_NS = TimeUnit.SECONDS.toNanos(60);
+
+    private final String nom;
+    private final Histogram latences = new ConcurrentHistogram(LATENCE_MAX_NS, 3);
+    private final LongAdder erreurs = new LongAdder();
+    private final LongAdder abandons = new LongAdder();
+
+    EndpointStats(String nom) {
+        this.nom = nom;
+    }
+
+    String getNom() {
+        return nom;
+    }
+
+    /**
+     * Enregistre une réponse ; la latence est mesurée depuis l'instant d'arrivée prévu
+     * pour ne pas masquer l'attente en file (omission coordonnée)
+     */
+    void enregistrer(long latenceNs, boolean succes) {
+        latences.recordValue(Math.min(latenceNs, LATENCE_MAX_NS));
+        if (!succes) {
+            erreurs.increment();
+        }
+    }
+
+    /**
+     * Requête non émise car le nombre maximal de requêtes en vol était atteint
+     */
+    void abandonner() {
+        abandons.increment();
+    }
+
+    long getNombreRequetes() {
+        return latences.getTotalCount();
+    }
+
+    double getTauxErreur() {
+        long total = latences.getTotalCount() + abandons.sum();
+        return total == 0 ? 0.0 : (double) (erreurs.sum() + abandons.sum()) / total;
+    }
+
+    double percentileMs(double percentile) {
+        return latences.getValueAtPercentile(percentile) / 1_000_000.0;
+    }
+
+    Map<String, Object> versRapport(double dureeSecondes) {
+        Map<String, Object> rapport = new LinkedHashMap<>();
+        rapport.put("requetes", latences.getTotalCount());
+        rapport.put("erreurs", erreurs.sum());
+        rapport.put("abandons", abandons.sum());
+        rapport.put("tauxErreur", getTauxErreur());
+        rapport.put("debitParSeconde", latences.getTotalCount() / dureeSecondes);
+        rapport.put("p50Ms", percentileMs(50.0));
+        rapport.put("p95Ms", percentileMs(95.0));
+        rapport.put("p99Ms", percentileMs(99.0));
+        rapport.put("p999Ms", percentileMs(99.9));
+        rapport.put("maxMs", latences.getMaxValue() / 1_000_000.0);
+        return rapport;
+    }
+}
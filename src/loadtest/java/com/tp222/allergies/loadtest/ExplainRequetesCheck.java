@@ -0,0 +1,404 @@
+package com.tp222.allergies.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.tp222.allergies.model.entity.Allergie;
+import com.tp222.allergies.model.entity.AllergieUtilisateur;
+import com.tp222.allergies.model.entity.Utilisateur;
+import com.tp222.allergies.repository.AllergieRepository;
+import com.tp222.allergies.repository.AllergieUtilisateurRepository;
+import com.tp222.allergies.repository.UtilisateurRepository;
+import jakarta.persistence.Entity;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.core.env.MapPropertySource;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.repository.core.RepositoryInformation;
+import org.springframework.data.repository.query.Param;
+import org.springframework.data.repository.support.Repositories;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.orm.jpa.SharedEntityManagerCreator;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.ReflectionUtils;
+import javax.sql.DataSource;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.Parameter;
+import java.lang.reflect.ParameterizedType;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.TreeMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Contrôle des plans d'exécution de toutes les requêtes des repositories.
+ *
+ * Démarre l'application, la peuple avec le jeu de charge (plus des allergies d'utilisateurs,
+ * dont une part inactive), appelle chaque méthode déclarée des repositories avec des arguments
+ * d'exemple dans une transaction annulée, capture le SQL et ses paramètres au niveau JDBC puis
+ * rejoue chaque requête sous EXPLAIN. Échoue si un plan parcourt entièrement une table d'au moins
+ * loadtest.explain.seuil-lignes lignes, hors lectures complètes assumées
+ * (loadtest.explain.lectures-completes : agrégats analytiques, recherches par sous-chaîne).
+ *
+ * Sur H2 par défaut ; les index partiels ne se vérifient que sur PostgreSQL (base recréée) :
+ * mvn -Ploadtest test-compile exec:java@explain-requetes -Dloadtest.explain.url=jdbc:postgresql://localhost:5432/tp222_explain
+ */
+@Slf4j
+public class ExplainRequetesCheck {
+
+    // H2 : "/* PUBLIC.UTILISATEURS.tableScan */"
+    private static final Pattern PARCOURS_H2 = Pattern.compile("/\\*\\s*[\\w$]+\\.([\\w$]+)\\.tableScan");
+
+    private final Properties config;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    ExplainRequetesCheck(Properties config) {
+        this.config = config;
+    }
+
+    public static void main(String[] args) throws Exception {
+        Properties config = LoadTestRunner.chargerConfiguration();
+        List<String> violations = new ExplainRequetesCheck(config).executer();
+        if (!violations.isEmpty()) {
+            violations.forEach(v -> log.error("PARCOURS COMPLET - {}", v));
+            throw new IllegalStateException("Parcours complets de grandes tables: " + violations);
+        }
+        log.info("Aucun parcours complet de grande table hors lectures assumées");
+    }
+
+    List<String> executer() throws Exception {
+        ConfigurableApplicationContext context = LoadTestRunner.demarrerApplication(false, ctx -> {
+            ctx.getBeanFactory().addBeanPostProcessor(new CaptureJdbc());
+            Map<String, Object> base = baseCible();
+            if (!base.isEmpty()) {
+                ctx.getEnvironment().getPropertySources().addFirst(new MapPropertySource("explain", base));
+            }
+        });
+        try {
+            LoadTestSeeder.JeuDeDonnees donnees = new LoadTestSeeder(context).peupler(
+                    entier("loadtest.seed.utilisateurs"),
+                    entier("loadtest.seed.aliments"),
+                    entier("loadtest.seed.reactions-par-utilisateur"));
+            Echantillons echantillons = new Echantillons(donnees, associerAllergies(context, donnees.utilisateurIds()));
+
+            DataSource source = context.getBean(DataSource.class);
+            JdbcTemplate jdbc = new JdbcTemplate(source);
+            boolean postgres = jdbc.execute((Connection c) -> c.getMetaData().getDatabaseProductName())
+                    .toLowerCase(Locale.ROOT).contains("postgresql");
+            if (postgres) {
+                jdbc.execute("ANALYZE");
+            }
+
+            Map<String, List<CaptureJdbc.Requete>> captures = capturer(context, echantillons);
+            return verifier(captures, source, jdbc, postgres);
+        } finally {
+            context.close();
+        }
+    }
+
+    /**
+     * Propriétés de la base PostgreSQL visée, vide pour rester sur H2
+     */
+    private Map<String, Object> baseCible() {
+        String url = config.getProperty("loadtest.explain.url", "").trim();
+        if (url.isEmpty()) {
+            return Map.of();
+        }
+        Map<String, Object> base = new LinkedHashMap<>();
+        base.put("spring.datasource.url", url);
+        base.put("spring.datasource.username", config.getProperty("loadtest.explain.username", "").trim());
+        base.put("spring.datasource.password", config.getProperty("loadtest.explain.password", "").trim());
+        base.put("spring.datasource.driver-class-name", "org.postgresql.Driver");
+        base.put("spring.jpa.properties.hibernate.dialect", "org.hibernate.dialect.PostgreSQLDialect");
+        return base;
+    }
+
+    /**
+     * Zéro à deux allergies par utilisateur, une sur cinq inactive
+     * @return l'identifiant d'une allergie du catalogue
+     */
+    private long associerAllergies(ApplicationContext context, long[] utilisateurIds) {
+        TransactionTemplate tx = new TransactionTemplate(context.getBean(PlatformTransactionManager.class));
+        UtilisateurRepository utilisateurRepository = context.getBean(UtilisateurRepository.class);
+        AllergieUtilisateurRepository allergieUtilisateurRepository = context.getBean(AllergieUtilisateurRepository.class);
+        List<Allergie> catalogue = context.getBean(AllergieRepository.class).findAll();
+        if (catalogue.isEmpty()) {
+            throw new IllegalStateException("Catalogue d'allergies vide : DataSeeder n'a pas tourné");
+        }
+        SplittableRandom random = new SplittableRandom(11);
+        String[] severites = {"LEGER", "MODERE", "SEVERE", "CRITIQUE"};
+        int total = 0;
+        for (int lot = 0; lot < utilisateurIds.length; lot += 500) {
+            int debut = lot;
+            int fin = Math.min(lot + 500, utilisateurIds.length);
+            total += tx.execute(status -> {
+                List<AllergieUtilisateur> batch = new ArrayList<>();
+                for (int i = debut; i < fin; i++) {
+                    Utilisateur utilisateur = utilisateurRepository.getReferenceById(utilisateurIds[i]);
+                    int premiere = random.nextInt(catalogue.size());
+                    int nombre = Math.min(random.nextInt(3), catalogue.size());
+                    for (int k = 0; k < nombre; k++) {
+                        Allergie allergie = catalogue.get((premiere + k) % catalogue.size());
+                        batch.add(AllergieUtilisateur.builder()
+                                .id(new AllergieUtilisateur.AllergieUtilisateurId(utilisateurIds[i], allergie.getId()))
+                                .utilisateur(utilisateur)
+                                .allergie(allergie)
+                                .niveauSeverite(severites[random.nextInt(severites.length)])
+                                .actif(random.nextInt(5) != 0)
+                                .build());
+                    }
+                }
+                allergieUtilisateurRepository.saveAll(batch);
+                return batch.size();
+            });
+        }
+        log.info("{} allergies d'utilisateurs créées", total);
+        return catalogue.get(0).getId();
+    }
+
+    /**
+     * Appelle chaque méthode déclarée des repositories dans une transaction annulée
+     * @return requêtes exécutées par méthode (Repository.methode)
+     */
+    private Map<String, List<CaptureJdbc.Requete>> capturer(ApplicationContext context, Echantillons echantillons) {
+        TransactionTemplate tx = new TransactionTemplate(context.getBean(PlatformTransactionManager.class));
+        EntityManager entityManager = SharedEntityManagerCreator.createSharedEntityManager(
+                context.getBean(EntityManagerFactory.class));
+        Repositories repositories = new Repositories(context);
+        Map<String, List<CaptureJdbc.Requete>> captures = new TreeMap<>();
+        for (Class<?> domaine : repositories) {
+            RepositoryInformation information = repositories.getRepositoryInformationFor(domaine).orElseThrow();
+            Object repository = repositories.getRepositoryFor(domaine).orElseThrow();
+            for (Method methode : information.getRepositoryInterface().getDeclaredMethods()) {
+                if (methode.isDefault() || methode.isSynthetic() || Modifier.isStatic(methode.getModifiers())) continue;
+                String nom = information.getRepositoryInterface().getSimpleName() + "." + methode.getName();
+                CaptureJdbc.ouvrir();
+                try {
+                    tx.executeWithoutResult(status -> {
+                        status.setRollbackOnly();
+                        Object resultat = ReflectionUtils.invokeMethod(methode, repository,
+                                echantillons.arguments(methode, entityManager));
+                        if (resultat instanceof Stream<?> flux) {
+                            try (flux) {
+                                flux.forEach(ligne -> { });
+                            }
+                        }
+                    });
+                } catch (RuntimeException e) {
+                    log.warn("{} non vérifiée: {}", nom, e.getMessage());
+                } finally {
+                    captures.computeIfAbsent(nom, n -> new ArrayList<>()).addAll(CaptureJdbc.fermer());
+                }
+            }
+        }
+        return captures;
+    }
+
+    private List<String> verifier(Map<String, List<CaptureJdbc.Requete>> captures, DataSource source,
+                                  JdbcTemplate jdbc, boolean postgres) throws Exception {
+        int seuil = entier("loadtest.explain.seuil-lignes");
+        Set<String> lecturesCompletes = Arrays.stream(config.getProperty("loadtest.explain.lectures-completes", "").split(","))
+                .map(String::trim)
+                .filter(e -> !e.isEmpty())
+                .collect(Collectors.toSet());
+        Map<String, Long> lignesParTable = new HashMap<>();
+        List<String> violations = new ArrayList<>();
+        List<Map<String, Object>> rapport = new ArrayList<>();
+
+        try (Connection connexion = source.getConnection()) {
+            for (Map.Entry<String, List<CaptureJdbc.Requete>> capture : captures.entrySet()) {
+                String methode = capture.getKey();
+                for (CaptureJdbc.Requete requete : dedoublonner(capture.getValue())) {
+                    Set<String> parcourues;
+                    try {
+                        parcourues = tablesParcourues(connexion, requete, postgres);
+                    } catch (Exception e) {
+                        log.warn("{}: EXPLAIN impossible ({})", methode, e.getMessage());
+                        continue;
+                    }
+                    for (String table : parcourues) {
+                        long lignes = lignesParTable.computeIfAbsent(table,
+                                t -> jdbc.queryForObject("SELECT COUNT(*) FROM " + t, Long.class));
+                        boolean assumee = lecturesCompletes.contains(methode);
+                        Map<String, Object> entree = new LinkedHashMap<>();
+                        entree.put("methode", methode);
+                        entree.put("table", table);
+                        entree.put("lignes", lignes);
+                        entree.put("lectureCompleteAssumee", assumee);
+                        entree.put("sql", requete.sql());
+                        rapport.add(entree);
+                        if (lignes >= seuil && !assumee) {
+                            violations.add(String.format("%s: parcours complet de %s (%d lignes) - %s",
+                                    methode, table, lignes, requete.sql()));
+                        }
+                    }
+                }
+            }
+        }
+
+        Path fichier = Path.of(config.getProperty("loadtest.explain.rapport"));
+        Files.createDirectories(fichier.toAbsolutePath().getParent());
+        Map<String, Object> contenu = new LinkedHashMap<>();
+        contenu.put("date", LocalDateTime.now().toString());
+        contenu.put("base", postgres ? "postgresql" : "h2");
+        contenu.put("seuilLignes", seuil);
+        contenu.put("methodesVerifiees", captures.size());
+        contenu.put("parcoursComplets", rapport);
+        objectMapper.copy().enable(SerializationFeature.INDENT_OUTPUT).writeValue(fichier.toFile(), contenu);
+        log.info("Rapport des plans d'exécution écrit dans {}", fichier.toAbsolutePath());
+        return violations;
+    }
+
+    /**
+     * Un même SQL n'est expliqué qu'une fois par méthode ; seules les lectures et les mises à jour
+     * ou suppressions conditionnelles peuvent parcourir une table
+     */
+    private static Collection<CaptureJdbc.Requete> dedoublonner(List<CaptureJdbc.Requete> requetes) {
+        Map<String, CaptureJdbc.Requete> parSql = new LinkedHashMap<>();
+        for (CaptureJdbc.Requete requete : requetes) {
+            String debut = requete.sql().stripLeading().toLowerCase(Locale.ROOT);
+            if (debut.startsWith("select") || debut.startsWith("with") || debut.startsWith("update") || debut.startsWith("delete")) {
+                parSql.putIfAbsent(requete.sql(), requete);
+            }
+        }
+        return parSql.values();
+    }
+
+    /**
+     * Rejoue la requête sous EXPLAIN avec ses paramètres
+     * @return tables parcourues entièrement, en minuscules
+     */
+    private Set<String> tablesParcourues(Connection connexion, CaptureJdbc.Requete requete, boolean postgres) throws Exception {
+        String explain = (postgres ? "EXPLAIN (FORMAT JSON) " : "EXPLAIN ") + requete.sql();
+        StringBuilder plan = new StringBuilder();
+        try (PreparedStatement statement = connexion.prepareStatement(explain)) {
+            for (CaptureJdbc.Liaison liaison : requete.liaisons()) {
+                liaison.appliquer(statement);
+            }
+            try (ResultSet resultat = statement.executeQuery()) {
+                while (resultat.next()) {
+                    plan.append(resultat.getString(1)).append('\n');
+                }
+            }
+        }
+        Set<String> tables = new LinkedHashSet<>();
+        if (postgres) {
+            parcoursPostgres(objectMapper.readTree(plan.toString()), tables);
+        } else {
+            Matcher matcher = PARCOURS_H2.matcher(plan);
+            while (matcher.find()) {
+                tables.add(matcher.group(1).toLowerCase(Locale.ROOT));
+            }
+        }
+        return tables;
+    }
+
+    private static void parcoursPostgres(JsonNode noeud, Set<String> tables) {
+        if (noeud.isArray()) {
+            noeud.forEach(enfant -> parcoursPostgres(enfant, tables));
+            return;
+        }
+        if ("Seq Scan".equals(noeud.path("Node Type").asText())) {
+            tables.add(noeud.path("Relation Name").asText().toLowerCase(Locale.ROOT));
+        }
+        parcoursPostgres(noeud.path("Plan"), tables);
+        noeud.path("Plans").forEach(enfant -> parcoursPostgres(enfant, tables));
+    }
+
+    private int entier(String cle) {
+        return Integer.parseInt(config.getProperty(cle).trim());
+    }
+
+    /**
+     * Arguments d'exemple déduits du type et du nom des paramètres (identifiants existants du jeu
+     * de données, valeurs métier plausibles)
+     */
+    private record Echantillons(LoadTestSeeder.JeuDeDonnees donnees, long allergieId) {
+
+        Object[] arguments(Method methode, EntityManager entityManager) {
+            Parameter[] parametres = methode.getParameters();
+            Object[] arguments = new Object[parametres.length];
+            for (int i = 0; i < parametres.length; i++) {
+                arguments[i] = valeur(parametres[i], entityManager);
+            }
+            return arguments;
+        }
+
+        private Object valeur(Parameter parametre, EntityManager entityManager) {
+            Param param = parametre.getAnnotation(Param.class);
+            String nom = (param != null ? param.value() : parametre.getName()).toLowerCase(Locale.ROOT);
+            Class<?> type = parametre.getType();
+            if (type == Long.class || type == long.class) return identifiant(nom);
+            if (type == Integer.class || type == int.class) return 10;
+            if (type == Double.class || type == double.class) return 1.0;
+            if (type == BigDecimal.class) return BigDecimal.TEN;
+            if (type == Boolean.class || type == boolean.class) return true;
+            if (type == String.class) return texte(nom);
+            if (type == LocalDateTime.class) return LocalDateTime.now().minusDays(30);
+            if (type == LocalDate.class) return nom.endsWith("fin") ? LocalDate.of(2000, 1, 1) : LocalDate.of(1980, 1, 1);
+            if (type == Pageable.class) return PageRequest.of(0, 20);
+            if (type == Sort.class) return Sort.unsorted();
+            if (Collection.class.isAssignableFrom(type)
+                    && parametre.getParameterizedType() instanceof ParameterizedType generique
+                    && generique.getActualTypeArguments()[0] instanceof Class<?> element) {
+                if (element == Long.class) return identifiants(nom);
+                if (element == String.class) return List.of(texte(nom));
+            }
+            if (type.isAnnotationPresent(Entity.class)) {
+                return entityManager.find(type, identifiant(type.getSimpleName().toLowerCase(Locale.ROOT)));
+            }
+            throw new IllegalArgumentException("paramètre " + nom + " de type " + type.getSimpleName() + " non géré");
+        }
+
+        private long identifiant(String nom) {
+            if (nom.contains("utilisateur") || nom.equals("id")) return donnees.utilisateurIds()[0];
+            if (nom.contains("aliment")) return donnees.alimentIds()[0];
+            if (nom.contains("allergie")) return allergieId;
+            if (nom.equals("fin") || nom.equals("jusqua")) return 1_000;
+            if (nom.equals("depuis")) return 0;
+            return 1;
+        }
+
+        private List<Long> identifiants(String nom) {
+            long[] source = nom.contains("aliment") ? donnees.alimentIds() : donnees.utilisateurIds();
+            return Arrays.stream(source).limit(50).boxed().toList();
+        }
+
+        private static String texte(String nom) {
+            if (nom.contains("severite") || nom.contains("niveau")) return "SEVERE";
+            if (nom.contains("type")) return "ALIMENTAIRE";
+            if (nom.contains("statut")) return "EN_COURS";
+            if (nom.contains("email")) return "charge1@loadtest.local";
+            if (nom.contains("username")) return "charge1";
+            return "a";
+        }
+    }
+}
@@ -0,0 +1,291 @@
+package com.tp222.allergies.loadtest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.tp222.allergies.AllergiesApplication;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ApplicationContextInitializer;
+import org.springframework.context.ConfigurableApplicationContext;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Banc de charge de bout en bout : démarre l'application sur H2, génère un jeu de données
+ * à l'échelle puis envoie un mélange de requêtes à débit constant (modèle ouvert) à travers
+ * la vraie pile HTTP. Produit un rapport JSON et échoue si un seuil de régression est franchi.
+ *
+ * Lancement : mvn -Ploadtest verify [-Dloadtest.debit-cible=800 ...]
+ */
+@Slf4j
+public class LoadTestRunner {
+
+    static final String VERIFICATION_RISQUE = "verification-risque";
+    static final String PROFIL = "profil";
+    static final String REACTIONS = "reactions";
+
+    private final Properties config;
+    private final SplittableRandom random = new SplittableRandom(7);
+
+    LoadTestRunner(Properties config) {
+        this.config = config;
+    }
+
+    public static void main(String[] args) throws Exception {
+        Properties config = chargerConfiguration();
+        List<String> violations = new LoadTestRunner(config).executer();
+        if (!violations.isEmpty()) {
+            violations.forEach(v -> log.error("SEUIL FRANCHI - {}", v));
+            throw new IllegalStateException("Régression de performance détectée: " + violations);
+        }
+        log.info("Tous les seuils de performance sont respectés");
+    }
+
+    List<String> executer() throws Exception {
+        ConfigurableApplicationContext context = demarrerApplication(
+                Boolean.parseBoolean(config.getProperty("loadtest.threads-virtuels", "false")));
+        try {
+            LoadTestSeeder.JeuDeDonnees donnees = new LoadTestSeeder(context).peupler(
+                    entier("loadtest.seed.utilisateurs"),
+                    entier("loadtest.seed.aliments"),
+                    entier("loadtest.seed.reactions-par-utilisateur"));
+
+            int port = ((WebServerApplicationContext) context).getWebServer().getPort();
+            String baseUrl = "http://localhost:" + port + "/api/allergies";
+
+            ExecutorService clients = Executors.newFixedThreadPool(entier("loadtest.clients"));
+            HttpClient http = HttpClient.newBuilder()
+                    .executor(clients)
+                    .connectTimeout(Duration.ofSeconds(5))
+                    .build();
+            try {
+                log.info("Phase de chauffe ({} s)", entier("loadtest.duree-chauffe-secondes"));
+                piloter(http, baseUrl, donnees, entier("loadtest.duree-chauffe-secondes"), creerStats());
+
+                int dureeMesure = entier("loadtest.duree-mesure-secondes");
+                log.info("Phase de mesure ({} s) à {} req/s", dureeMesure, entier("loadtest.debit-cible"));
+                Map<String, EndpointStats> stats = creerStats();
+                piloter(http, baseUrl, donnees, dureeMesure, stats);
+
+                ecrireRapport(stats, dureeMesure);
+                return verifierSeuils(stats, dureeMesure);
+            } finally {
+                clients.shutdownNow();
+            }
+        } finally {
+            context.close();
+        }
+    }
+
+    /**
+     * Démarre l'application sur une base H2 en mémoire, sur un port aléatoire
+     * @param threadsVirtuels active le profil virtual-threads (Tomcat sur threads virtuels)
+     */
+    static ConfigurableApplicationContext demarrerApplication(boolean threadsVirtuels) {
+        return demarrerApplication(threadsVirtuels, null);
+    }
+
+    /**
+     * @param initialiseur appliqué au contexte avant son rafraîchissement (propriétés prioritaires,
+     *                     placées avant les arguments de ligne de commande, post-processeurs), peut être null
+     */
+    static ConfigurableApplicationContext demarrerApplication(boolean threadsVirtuels,
+                                                              ApplicationContextInitializer<ConfigurableApplicationContext> initialiseur) {
+        SpringApplication application = new SpringApplication(AllergiesApplication.class);
+        if (threadsVirtuels) {
+            application.setAdditionalProfiles("test", "virtual-threads");
+        } else {
+            application.setAdditionalProfiles("test");
+        }
+        // Passées en arguments de ligne de commande : elles priment sur application.yml et le
+        // profil test (dialecte PostgreSQL, journaux SQL en DEBUG), contrairement aux propriétés
+        // par défaut qui ont la plus faible priorité
+        Map<String, Object> proprietes = new LinkedHashMap<>();
+        proprietes.put("server.port", 0);
+        proprietes.put("spring.datasource.url", "jdbc:h2:mem:loadtest" + System.nanoTime() + ";DB_CLOSE_DELAY=-1");
+        proprietes.put("spring.jpa.properties.hibernate.dialect", "org.hibernate.dialect.H2Dialect");
+        proprietes.put("spring.jpa.show-sql", false);
+        proprietes.put("logging.level.com.tp222.allergies", "WARN");
+        proprietes.put("logging.level.org.hibernate.SQL", "WARN");
+        proprietes.put("logging.level.org.hibernate.type.descriptor.sql.BasicBinder", "WARN");
+        proprietes.put("logging.level.com.tp222.allergies.loadtest", "INFO");
+        if (initialiseur != null) {
+            application.addInitializers(initialiseur);
+        }
+        return application.run(proprietes.entrySet().stream()
+                .map(e -> "--" + e.getKey() + "=" + e.getValue())
+                .toArray(String[]::new));
+    }
+
+    /**
+     * Émet les requêtes aux instants prévus par le débit cible, sans attendre les réponses.
+     * Si le serveur sature, les requêtes s'accumulent en vol et la latence mesurée le reflète.
+     */
+    private void piloter(HttpClient http, String baseUrl, LoadTestSeeder.JeuDeDonnees donnees,
+                         int dureeSecondes, Map<String, EndpointStats> stats) throws InterruptedException {
+        long intervalleNs = TimeUnit.SECONDS.toNanos(1) / entier("loadtest.debit-cible");
+        long totalRequetes = (long) dureeSecondes * entier("loadtest.debit-cible");
+        Semaphore enVol = new Semaphore(entier("loadtest.requetes-en-vol-max"));
+        String[] mix = construireMix();
+        long debut = System.nanoTime();
+
+        for (long i = 0; i < totalRequetes; i++) {
+            long instantPrevu = debut + i * intervalleNs;
+            long attente = instantPrevu - System.nanoTime();
+            if (attente > 0) {
+                LockSupport.parkNanos(attente);
+            }
+
+            String endpoint = mix[random.nextInt(mix.length)];
+            EndpointStats statsEndpoint = stats.get(endpoint);
+            if (!enVol.tryAcquire()) {
+                statsEndpoint.abandonner();
+                continue;
+            }
+
+            http.sendAsync(construireRequete(endpoint, baseUrl, donnees), HttpResponse.BodyHandlers.discarding())
+                    .whenComplete((reponse, erreur) -> {
+                        enVol.release();
+                        boolean succes = erreur == null && reponse.statusCode() < 400;
+                        statsEndpoint.enregistrer(System.nanoTime() - instantPrevu, succes);
+                    });
+        }
+
+        // Attente de la fin des requêtes encore en vol
+        int maxEnVol = entier("loadtest.requetes-en-vol-max");
+        if (!enVol.tryAcquire(maxEnVol, 60, TimeUnit.SECONDS)) {
+            log.warn("Des requêtes étaient encore en vol à la fin de la phase");
+        } else {
+            enVol.release(maxEnVol);
+        }
+    }
+
+    private HttpRequest construireRequete(String endpoint, String baseUrl, LoadTestSeeder.JeuDeDonnees donnees) {
+        long utilisateurId = donnees.utilisateurIds()[random.nextInt(donnees.utilisateurIds().length)];
+        long alimentId = donnees.alimentIds()[random.nextInt(donnees.alimentIds().length)];
+        HttpRequest.Builder builder = HttpRequest.newBuilder().timeout(Duration.ofSeconds(30));
+        // Dates étalées sur 30 jours : deux réactions du même couple à la même minute sont un doublon (409)
+        LocalDateTime dateReaction = LocalDateTime.now().withNano(0).minusMinutes(random.nextInt(43_200));
+
+        return switch (endpoint) {
+            case VERIFICATION_RISQUE -> builder
+                    .uri(URI.create(baseUrl + "/verification-risque?utilisateurId=" + utilisateurId
+                            + "&alimentId=" + alimentId))
+                    .GET()
+                    .build();
+            case PROFIL -> builder
+                    .uri(URI.create(baseUrl + "/profil/" + utilisateurId))
+                    .GET()
+                    .build();
+            default -> builder
+                    .uri(URI.create(baseUrl + "/reactions"))
+                    .header("Content-Type", "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofString("{\"utilisateurId\":" + utilisateurId
+                            + ",\"alimentId\":" + alimentId
+                            + ",\"dateReaction\":\"" + dateReaction + "\""
+                            + ",\"niveauSeverite\":\"LEGER\",\"symptomes\":\"Test de charge\""
+                            + ",\"medecinConsulte\":false,\"hospitalisationRequise\":false}"))
+                    .build();
+        };
+    }
+
+    private String[] construireMix() {
+        List<String> mix = new ArrayList<>();
+        for (String endpoint : List.of(VERIFICATION_RISQUE, PROFIL, REACTIONS)) {
+            for (int i = 0; i < entier("loadtest.mix." + endpoint); i++) {
+                mix.add(endpoint);
+            }
+        }
+        return mix.toArray(String[]::new);
+    }
+
+    private Map<String, EndpointStats> creerStats() {
+        Map<String, EndpointStats> stats = new LinkedHashMap<>();
+        for (String endpoint : List.of(VERIFICATION_RISQUE, PROFIL, REACTIONS)) {
+            stats.put(endpoint, new EndpointStats(endpoint));
+        }
+        return stats;
+    }
+
+    private void ecrireRapport(Map<String, EndpointStats> stats, int dureeSecondes) throws IOException {
+        Map<String, Object> rapport = new LinkedHashMap<>();
+        rapport.put("date", LocalDateTime.now().toString());
+        rapport.put("debitCible", entier("loadtest.debit-cible"));
+        rapport.put("dureeMesureSecondes", dureeSecondes);
+        Map<String, Object> endpoints = new LinkedHashMap<>();
+        stats.forEach((nom, s) -> endpoints.put(nom, s.versRapport(dureeSecondes)));
+        rapport.put("endpoints", endpoints);
+
+        Path fichier = Path.of(config.getProperty("loadtest.rapport"));
+        Files.createDirectories(fichier.toAbsolutePath().getParent());
+        new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT).writeValue(fichier.toFile(), rapport);
+        log.info("Rapport de charge écrit dans {}", fichier.toAbsolutePath());
+    }
+
+    private List<String> verifierSeuils(Map<String, EndpointStats> stats, int dureeSecondes) {
+        List<String> violations = new ArrayList<>();
+        long totalAttendu = 0;
+        long totalServi = 0;
+        int poidsTotal = stats.keySet().stream().mapToInt(e -> entier("loadtest.mix." + e)).sum();
+
+        for (EndpointStats s : stats.values()) {
+            double p99Max = Double.parseDouble(config.getProperty("loadtest.seuil." + s.getNom() + ".p99-ms"));
+            double erreurMax = Double.parseDouble(
+                    config.getProperty("loadtest.seuil." + s.getNom() + ".taux-erreur-max"));
+            if (s.percentileMs(99.0) > p99Max) {
+                violations.add(String.format("%s: p99 %.1f ms > %.1f ms", s.getNom(), s.percentileMs(99.0), p99Max));
+            }
+            if (s.getTauxErreur() > erreurMax) {
+                violations.add(String.format("%s: taux d'erreur %.4f > %.4f", s.getNom(), s.getTauxErreur(), erreurMax));
+            }
+            totalAttendu += (long) dureeSecondes * entier("loadtest.debit-cible")
+                    * entier("loadtest.mix." + s.getNom()) / poidsTotal;
+            totalServi += s.getNombreRequetes();
+        }
+
+        double ratioMin = Double.parseDouble(config.getProperty("loadtest.seuil.debit-min-ratio"));
+        if (totalAttendu > 0 && (double) totalServi / totalAttendu < ratioMin) {
+            violations.add(String.format("débit servi %.1f%% du débit cible < %.1f%%",
+                    100.0 * totalServi / totalAttendu, 100.0 * ratioMin));
+        }
+        return violations;
+    }
+
+    private int entier(String cle) {
+        return Integer.parseInt(config.getProperty(cle).trim());
+    }
+
+    static Properties chargerConfiguration() throws IOException {
+        Properties config = new Properties();
+        try (InputStream in = LoadTestRunner.class.getResourceAsStream("/loadtest.properties")) {
+            if (in != null) {
+                config.load(in);
+            }
+        }
+        // Les propriétés système (-Dloadtest.xxx) ont priorité sur le fichier
+        System.getProperties().stringPropertyNames().stream()
+                .filter(cle -> cle.startsWith("loadtest."))
+                .forEach(cle -> config.setProperty(cle, System.getProperty(cle)));
+        return config;
+    }
+}
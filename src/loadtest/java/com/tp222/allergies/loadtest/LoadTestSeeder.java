@@ -0,0 +1,104 @@
+package com.tp222.allergies.loadtest;
+
+import com.tp222.allergies.model.entity.*;
+import com.tp222.allergies.repository.*;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationContext;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * Génère un jeu de données à l'échelle pour les tests de charge
+ */
+@Slf4j
+@RequiredArgsConstructor
+class LoadTestSeeder {
+
+    private static final String[] SEVERITES = {"LEGER", "MODERE", "SEVERE", "CRITIQUE"};
+    private static final String[] ALLERGENES = {"", "Gluten", "Lactose", "Arachides", "Œufs", "Fruits à coque"};
+    private static final int TAILLE_LOT = 500;
+
+    private final ApplicationContext context;
+    private final SplittableRandom random = new SplittableRandom(42);
+
+    /**
+     * Insère les aliments, utilisateurs et réactions par lots dans des transactions courtes
+     * @return les identifiants générés, utilisés par les scénarios
+     */
+    JeuDeDonnees peupler(int nbUtilisateurs, int nbAliments, int reactionsParUtilisateur) {
+        TransactionTemplate tx = new TransactionTemplate(context.getBean(PlatformTransactionManager.class));
+        AlimentRepository alimentRepository = context.getBean(AlimentRepository.class);
+        UtilisateurRepository utilisateurRepository = context.getBean(UtilisateurRepository.class);
+        ReactionAllergiqueRepository reactionRepository = context.getBean(ReactionAllergiqueRepository.class);
+
+        long debut = System.nanoTime();
+        List<Aliment> aliments = new ArrayList<>(nbAliments);
+        for (int lot = 0; lot < nbAliments; lot += TAILLE_LOT) {
+            List<Aliment> batch = new ArrayList<>();
+            for (int i = lot; i < Math.min(lot + TAILLE_LOT, nbAliments); i++) {
+                batch.add(Aliment.builder()
+                        .nom("Aliment charge " + i)
+                        .calories(BigDecimal.valueOf(random.nextInt(20, 600)))
+                        .allergenesPotentiels(ALLERGENES[random.nextInt(ALLERGENES.length)])
+                        .actif(true)
+                        .build());
+            }
+            aliments.addAll(tx.execute(status -> alimentRepository.saveAll(batch)));
+        }
+
+        List<Utilisateur> utilisateurs = new ArrayList<>(nbUtilisateurs);
+        for (int lot = 0; lot < nbUtilisateurs; lot += TAILLE_LOT) {
+            List<Utilisateur> batch = new ArrayList<>();
+            for (int i = lot; i < Math.min(lot + TAILLE_LOT, nbUtilisateurs); i++) {
+                batch.add(Utilisateur.builder()
+                        .username("charge" + i)
+                        .email("charge" + i + "@loadtest.local")
+                        .motDePasse("password123")
+                        .prenom("Prenom" + i)
+                        .nom("Nom" + i)
+                        .dateNaissance(LocalDate.of(1970 + random.nextInt(40), 1 + random.nextInt(12), 1))
+                        .actif(true)
+                        .build());
+            }
+            utilisateurs.addAll(tx.execute(status -> utilisateurRepository.saveAll(batch)));
+        }
+
+        int totalReactions = nbUtilisateurs * reactionsParUtilisateur;
+        for (int lot = 0; lot < totalReactions; lot += TAILLE_LOT) {
+            List<ReactionAllergique> batch = new ArrayList<>();
+            for (int i = lot; i < Math.min(lot + TAILLE_LOT, totalReactions); i++) {
+                batch.add(ReactionAllergique.builder()
+                        .utilisateur(utilisateurs.get(i / reactionsParUtilisateur))
+                        .aliment(aliments.get(random.nextInt(aliments.size())))
+                        .dateReaction(LocalDateTime.now().minusDays(random.nextInt(180)))
+                        .niveauSeverite(SEVERITES[random.nextInt(SEVERITES.length)])
+                        .dureeReaction(random.nextInt(5, 300))
+                        .medecinConsulte(random.nextInt(4) == 0)
+                        .hospitalisationRequise(random.nextInt(20) == 0)
+                        .probabiliteAllergie(BigDecimal.valueOf(random.nextInt(0, 100), 2))
+                        .build());
+            }
+            tx.executeWithoutResult(status -> reactionRepository.saveAll(batch));
+        }
+
+        log.info("Jeu de données de charge créé en {} ms: {} utilisateurs, {} aliments, {} réactions",
+                (System.nanoTime() - debut) / 1_000_000, nbUtilisateurs, nbAliments, totalReactions);
+
+        return new JeuDeDonnees(
+                utilisateurs.stream().mapToLong(Utilisateur::getId).toArray(),
+                aliments.stream().mapToLong(Aliment::getId).toArray());
+    }
+
+    /**
+     * Identifiants disponibles pour tirer les requêtes
+     */
+    record JeuDeDonnees(long[] utilisateurIds, long[] alimentIds) {
+    }
+}
@@ -3,12 +3,14 @@ package com.tp222.allergies;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.data.jpa.repository.config.EnableJpaAuditing;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 /**
  * Classe principale de l'application Spring Boot pour la gestion des allergies
  */
 @SpringBootApplication
 @EnableJpaAuditing
+@EnableScheduling
 public class AllergiesApplication {
 
     public static void main(String[] args) {
@@ -0,0 +1,39 @@
+package com.tp222.allergies.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Paramètres du contrôle d'admission (allergies.admission)
+ */
+@Data
+@ConfigurationProperties(prefix = "allergies.admission")
+public class AdmissionProperties {
+
+    private boolean actif = true;
+
+    /** Valeur de l'en-tête Retry-After des réponses 503 */
+    private int retryAfterSecondes = 1;
+
+    /** Compartiments, évalués dans l'ordre ; une requête sans compartiment n'est pas limitée */
+    private List<Compartiment> compartiments = new ArrayList<>();
+
+    @Data
+    public static class Compartiment {
+        private String nom;
+        /** Méthode HTTP ; toutes si absente */
+        private String methode;
+        /** Motifs Ant relatifs au context-path */
+        private List<String> chemins = new ArrayList<>();
+        private int limiteInitiale = 10;
+        private int limiteMin = 1;
+        /** Plafond dur du compartiment, même si la latence reste basse */
+        private int limiteMax = 50;
+        /** Part de la limite que seules les requêtes prioritaires peuvent occuper */
+        private double reservePrioritaire = 0;
+        /** Valeurs de niveauSeverite (corps JSON) qui rendent une requête prioritaire */
+        private List<String> severitesPrioritaires = new ArrayList<>();
+    }
+}
@@ -0,0 +1,190 @@
+package com.tp222.allergies.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.tp222.allergies.service.admission.Cloison;
+import com.tp222.allergies.service.admission.LimiteurGradient;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ReadListener;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletInputStream;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletRequestWrapper;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.util.AntPathMatcher;
+import org.springframework.web.filter.OncePerRequestFilter;
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * Contrôle d'admission par compartiment (bulkhead) avec limite de concurrence adaptative.
+ *
+ * Chaque groupe d'endpoints coûteux (profil complet, dépistage, analytique) a son propre plafond,
+ * inférieur au pool de connexions : une rafale sur l'un ne peut pas priver le chemin d'écriture des
+ * réactions. Dans chaque compartiment, la limite suit la latence observée (LimiteurGradient). Au-delà,
+ * la requête est rejetée aussitôt en 503 avec Retry-After, sans attente.
+ *
+ * Une réaction de sévérité critique est prioritaire : le corps (petit) est lu avant l'admission
+ * pour en connaître la sévérité, puis rejoué tel quel vers le contrôleur.
+ */
+@Component
+@ConditionalOnProperty(prefix = "allergies.admission", name = "actif", havingValue = "true", matchIfMissing = true)
+@EnableConfigurationProperties(AdmissionProperties.class)
+@Slf4j
+public class ControleAdmissionFilter extends OncePerRequestFilter {
+
+    private static final int CORPS_INSPECTE_MAX = 64 * 1024;
+
+    private final List<Regle> regles;
+    private final ObjectMapper objectMapper;
+    private final int retryAfterSecondes;
+    private final AntPathMatcher motifs = new AntPathMatcher();
+
+    private record Regle(AdmissionProperties.Compartiment config, Cloison cloison) {
+    }
+
+    public ControleAdmissionFilter(AdmissionProperties properties, ObjectMapper objectMapper, MeterRegistry registry) {
+        this.objectMapper = objectMapper;
+        this.retryAfterSecondes = properties.getRetryAfterSecondes();
+        this.regles = properties.getCompartiments().stream()
+                .map(c -> new Regle(c, new Cloison(c.getNom(),
+                        new LimiteurGradient(c.getLimiteInitiale(), c.getLimiteMin(), c.getLimiteMax()),
+                        c.getReservePrioritaire(), registry)))
+                .toList();
+        regles.forEach(r -> log.info("Compartiment d'admission {}: {} {} (limite {}..{})", r.cloison().getNom(),
+                r.config().getMethode() == null ? "*" : r.config().getMethode(), r.config().getChemins(),
+                r.config().getLimiteMin(), r.config().getLimiteMax()));
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return regle(request) == null;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        Regle regle = regle(request);
+        HttpServletRequest requete = request;
+        boolean prioritaire = false;
+        if (!regle.config().getSeveritesPrioritaires().isEmpty()
+                && request.getContentLength() >= 0 && request.getContentLength() <= CORPS_INSPECTE_MAX) {
+            RequeteRelisible relisible = new RequeteRelisible(request);
+            prioritaire = regle.config().getSeveritesPrioritaires().contains(severite(relisible.corps));
+            requete = relisible;
+        }
+
+        Cloison cloison = regle.cloison();
+        if (!cloison.entrer(prioritaire)) {
+            log.warn("Requête rejetée par le compartiment {} ({} en cours): {} {}",
+                    cloison.getNom(), cloison.getEnVol(), request.getMethod(), request.getRequestURI());
+            response.setHeader("Retry-After", String.valueOf(retryAfterSecondes));
+            response.sendError(HttpStatus.SERVICE_UNAVAILABLE.value(), "Service temporairement saturé");
+            return;
+        }
+
+        // Les réponses en flux (dépistage NDJSON) libèrent l'emplacement à la fin du calcul, avant l'écriture
+        long debut = System.nanoTime();
+        boolean echec = true;
+        try {
+            chain.doFilter(requete, response);
+            echec = response.getStatus() >= 500;
+        } finally {
+            cloison.sortir(System.nanoTime() - debut, echec);
+        }
+    }
+
+    private Regle regle(HttpServletRequest request) {
+        String chemin = request.getRequestURI().substring(request.getContextPath().length());
+        for (Regle regle : regles) {
+            String methode = regle.config().getMethode();
+            if (methode != null && !methode.equalsIgnoreCase(request.getMethod())) continue;
+            for (String motif : regle.config().getChemins()) {
+                if (motifs.match(motif, chemin)) return regle;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Sévérité déclarée dans le corps JSON ; un corps illisible n'est pas prioritaire (le contrôleur le rejettera)
+     */
+    private String severite(byte[] corps) {
+        try {
+            return objectMapper.readTree(corps).path("niveauSeverite").asText(null);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Requête dont le corps, lu une fois pour l'admission, est rejoué depuis la mémoire
+     */
+    private static final class RequeteRelisible extends HttpServletRequestWrapper {
+
+        private final byte[] corps;
+
+        RequeteRelisible(HttpServletRequest request) throws IOException {
+            super(request);
+            this.corps = request.getInputStream().readAllBytes();
+        }
+
+        @Override
+        public ServletInputStream getInputStream() {
+            ByteArrayInputStream flux = new ByteArrayInputStream(corps);
+            return new ServletInputStream() {
+                @Override
+                public boolean isFinished() {
+                    return flux.available() == 0;
+                }
+
+                @Override
+                public boolean isReady() {
+                    return true;
+                }
+
+                /**
+                 * Le corps est déjà en mémoire : tout est disponible tout de suite, puis entièrement lu
+                 */
+                @Override
+                public void setReadListener(ReadListener listener) {
+                    try {
+                        if (!isFinished()) {
+                            listener.onDataAvailable();
+                        }
+                        listener.onAllDataRead();
+                    } catch (IOException e) {
+                        listener.onError(e);
+                    }
+                }
+
+                @Override
+                public int read() {
+                    return flux.read();
+                }
+
+                @Override
+                public int read(byte[] b, int off, int len) {
+                    return flux.read(b, off, len);
+                }
+            };
+        }
+
+        @Override
+        public BufferedReader getReader() {
+            String encodage = getCharacterEncoding();
+            return new BufferedReader(new InputStreamReader(getInputStream(),
+                    encodage == null ? StandardCharsets.UTF_8 : Charset.forName(encodage)));
+        }
+    }
+}
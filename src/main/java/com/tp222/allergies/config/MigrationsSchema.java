@@ -0,0 +1,86 @@
+package com.tp222.allergies.config;
+
+import jakarta.persistence.EntityManagerFactory;
+import lombok.extern.slf4j.Slf4j;
+import org.flywaydb.core.Flyway;
+import org.flywaydb.core.api.output.MigrateResult;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Migrations du schéma versionnées (Flyway) : index partiels et composites que Hibernate ne sait
+ * pas exprimer.
+ *
+ * Hibernate reste maître des tables (ddl-auto) ; les migrations passent juste après lui, avant les
+ * CommandLineRunner. Les scripts sont par base (db/migration/postgresql, db/migration/h2) : H2 n'a
+ * pas d'index partiels. Une base existante sans historique est prise comme version 0.
+ * En mode partitionné, ShardingConfig les applique sur chaque shard.
+ */
+@Configuration
+@Slf4j
+public class MigrationsSchema {
+
+    static final String HISTORIQUE = "flyway_schema_history";
+
+    // Tables recréées à chaque démarrage : l'historique d'une base persistante ne vaut plus rien
+    private static final Set<String> SCHEMA_RECREE = Set.of("create", "create-drop");
+
+    @Bean
+    @ConditionalOnProperty(prefix = "allergies.sharding", name = "actif", havingValue = "false", matchIfMissing = true)
+    public InitializingBean migrationsBasePrincipale(EntityManagerFactory entityManagerFactory,
+                                                     DataSource dataSource,
+                                                     @Value("${allergies.migrations.actif:true}") boolean actif,
+                                                     @Value("${spring.jpa.hibernate.ddl-auto:none}") String ddlAuto) {
+        return () -> {
+            if (actif) migrer(dataSource, "base principale", ddlAuto);
+        };
+    }
+
+    /**
+     * Applique les migrations en attente sur une base
+     * @param nom pour les logs (shard ou base principale)
+     */
+    public static void migrer(DataSource source, String nom, String ddlAuto) throws SQLException {
+        String base = base(source);
+        if (base == null) {
+            log.warn("Migrations ignorées sur {} : base non supportée", nom);
+            return;
+        }
+        if (SCHEMA_RECREE.contains(ddlAuto)) {
+            try (Connection connexion = source.getConnection(); Statement statement = connexion.createStatement()) {
+                statement.execute("DROP TABLE IF EXISTS " + HISTORIQUE);
+            }
+        }
+        MigrateResult resultat = Flyway.configure()
+                .dataSource(source)
+                .locations("classpath:db/migration/" + base)
+                .table(HISTORIQUE)
+                .baselineOnMigrate(true)
+                .baselineVersion("0")
+                .load()
+                .migrate();
+        log.info("Migrations appliquées sur {} ({}) : {}, version {}",
+                nom, base, resultat.migrationsExecuted, resultat.targetSchemaVersion);
+    }
+
+    /**
+     * @return répertoire des scripts de la base, null si elle n'en a pas
+     */
+    private static String base(DataSource source) throws SQLException {
+        try (Connection connexion = source.getConnection()) {
+            String produit = connexion.getMetaData().getDatabaseProductName().toLowerCase(Locale.ROOT);
+            if (produit.contains("postgresql")) return "postgresql";
+            if (produit.contains("h2")) return "h2";
+            return null;
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package com.tp222.allergies.config;
+
+import com.tp222.allergies.model.dto.request.RequeteUtilisateur;
+import com.tp222.allergies.service.sharding.ContexteShard;
+import com.tp222.allergies.service.sharding.RoutageShards;
+import com.tp222.allergies.service.sharding.RoutageUtilisateur;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.MethodParameter;
+import org.springframework.http.HttpInputMessage;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.web.bind.annotation.ControllerAdvice;
+import org.springframework.web.servlet.mvc.method.annotation.RequestBodyAdviceAdapter;
+import java.lang.reflect.Type;
+
+/**
+ * Fixe le shard des méthodes @RoutageUtilisateur dont l'utilisateur est dans le corps de la
+ * requête : le corps est lu avant l'appel du contrôleur, donc avant l'ouverture de la transaction.
+ * Le shard est effacé en fin de requête par l'intercepteur de ShardingConfig.
+ */
+@ControllerAdvice
+@ConditionalOnProperty(prefix = "allergies.sharding", name = "actif", havingValue = "true")
+@RequiredArgsConstructor
+public class RoutageShardBodyAdvice extends RequestBodyAdviceAdapter {
+
+    private final RoutageShards routageShards;
+
+    @Override
+    public boolean supports(MethodParameter parametre, Type typeCible, Class<? extends HttpMessageConverter<?>> convertisseur) {
+        return parametre.hasMethodAnnotation(RoutageUtilisateur.class)
+                && RequeteUtilisateur.class.isAssignableFrom(parametre.getParameterType());
+    }
+
+    @Override
+    public Object afterBodyRead(Object corps, HttpInputMessage message, MethodParameter parametre, Type typeCible,
+                                Class<? extends HttpMessageConverter<?>> convertisseur) {
+        if (corps instanceof RequeteUtilisateur requete && requete.getUtilisateurId() != null) {
+            ContexteShard.definir(routageShards.shardDe(requete.getUtilisateurId()));
+        }
+        return corps;
+    }
+}
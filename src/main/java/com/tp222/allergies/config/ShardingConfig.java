@@ -0,0 +1,169 @@
+package com.tp222.allergies.config;
+
+import com.tp222.allergies.service.sharding.ContexteShard;
+import com.tp222.allergies.service.sharding.PlagesIdentifiants;
+import com.tp222.allergies.service.sharding.ReplicationCatalogue;
+import com.tp222.allergies.service.sharding.RoutageDataSource;
+import com.tp222.allergies.service.sharding.RoutageShards;
+import com.tp222.allergies.service.sharding.RoutageUtilisateur;
+import com.tp222.allergies.service.sharding.SchemaShards;
+import com.zaxxer.hikari.HikariDataSource;
+import jakarta.persistence.EntityManagerFactory;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.jpa.boot.spi.IntegratorProvider;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.HandlerInterceptor;
+import org.springframework.web.servlet.HandlerMapping;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+import javax.sql.DataSource;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Configuration du partitionnement par utilisateur.
+ *
+ * Actif (allergies.sharding.actif=true), un pool HikariCP est créé par shard et JPA voit une
+ * seule DataSource de routage ; spring.datasource n'est alors plus utilisé. Au démarrage, le
+ * schéma est créé et migré sur chaque shard, ses séquences sont placées dans sa plage
+ * d'identifiants et le catalogue y est recopié depuis le principal.
+ */
+@Configuration
+@EnableConfigurationProperties(ShardingProperties.class)
+public class ShardingConfig {
+
+    @Configuration
+    @ConditionalOnProperty(prefix = "allergies.sharding", name = "actif", havingValue = "true")
+    @Slf4j
+    static class ShardingActif {
+
+        private static final Set<String> DDL_AVEC_MISE_A_JOUR = Set.of("update", "create", "create-drop");
+
+        @Bean
+        @Primary
+        public RoutageDataSource dataSource(ShardingProperties properties) {
+            if (properties.getShards().isEmpty()) {
+                throw new IllegalStateException("allergies.sharding.shards est vide");
+            }
+            Map<String, DataSource> pools = new LinkedHashMap<>();
+            for (ShardingProperties.Shard shard : properties.getShards()) {
+                HikariDataSource pool = new HikariDataSource();
+                pool.setPoolName("shard-" + shard.getNom());
+                pool.setJdbcUrl(shard.getUrl());
+                pool.setUsername(shard.getUsername());
+                pool.setPassword(shard.getPassword());
+                if (shard.getDriverClassName() != null) pool.setDriverClassName(shard.getDriverClassName());
+                pool.setMaximumPoolSize(shard.getPoolMax());
+                pools.put(shard.getNom(), pool);
+            }
+            String principal = properties.getPrincipal() != null ? properties.getPrincipal() : properties.getShards().get(0).getNom();
+            return new RoutageDataSource(pools, principal);
+        }
+
+        @Bean
+        public SchemaShards schemaShards() {
+            return new SchemaShards();
+        }
+
+        @Bean
+        public HibernatePropertiesCustomizer integrateurSchemaShards(SchemaShards schemaShards) {
+            return proprietes -> proprietes.put("hibernate.integrator_provider", (IntegratorProvider) () -> List.of(schemaShards));
+        }
+
+        /**
+         * Exécuté une fois l'EntityManagerFactory construite, avant les CommandLineRunner (DataSeeder)
+         */
+        @Bean
+        public InitializingBean initialisationShards(EntityManagerFactory entityManagerFactory,
+                                                     ShardingProperties properties,
+                                                     SchemaShards schemaShards,
+                                                     RoutageShards routageShards,
+                                                     ReplicationCatalogue replicationCatalogue,
+                                                     @Value("${spring.jpa.hibernate.ddl-auto:none}") String ddlAuto,
+                                                     @Value("${allergies.migrations.actif:true}") boolean migrations) {
+            return () -> {
+                if (DDL_AVEC_MISE_A_JOUR.contains(ddlAuto)) {
+                    for (String shard : routageShards.getShards()) {
+                        if (shard.equals(routageShards.getPrincipal())) continue;
+                        schemaShards.mettreAJour(shard);
+                        log.info("Schéma mis à jour sur le shard {}", shard);
+                    }
+                }
+                if (migrations) {
+                    for (String shard : routageShards.getShards()) {
+                        MigrationsSchema.migrer(routageShards.getSource(shard), "shard " + shard, ddlAuto);
+                    }
+                }
+                PlagesIdentifiants.reserver(routageShards, properties.numeros());
+                replicationCatalogue.synchroniser();
+            };
+        }
+    }
+
+    @Configuration
+    @ConditionalOnProperty(prefix = "allergies.sharding", name = "actif", havingValue = "true")
+    static class RoutageWeb implements WebMvcConfigurer {
+
+        private final RoutageShards routageShards;
+
+        RoutageWeb(RoutageShards routageShards) {
+            this.routageShards = routageShards;
+        }
+
+        @Override
+        public void addInterceptors(InterceptorRegistry registry) {
+            registry.addInterceptor(new RoutageShardInterceptor(routageShards));
+        }
+    }
+
+    /**
+     * Fixe le shard des méthodes @RoutageUtilisateur avant l'ouverture de leur transaction
+     */
+    static class RoutageShardInterceptor implements HandlerInterceptor {
+
+        private final RoutageShards routageShards;
+
+        RoutageShardInterceptor(RoutageShards routageShards) {
+            this.routageShards = routageShards;
+        }
+
+        @Override
+        public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+            if (handler instanceof HandlerMethod methode && methode.hasMethodAnnotation(RoutageUtilisateur.class)) {
+                Long utilisateurId = utilisateurId(request);
+                if (utilisateurId != null) ContexteShard.definir(routageShards.shardDe(utilisateurId));
+            }
+            return true;
+        }
+
+        @Override
+        public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) {
+            ContexteShard.effacer();
+        }
+
+        @SuppressWarnings("unchecked")
+        private static Long utilisateurId(HttpServletRequest request) {
+            Map<String, String> variables = (Map<String, String>) request.getAttribute(HandlerMapping.URI_TEMPLATE_VARIABLES_ATTRIBUTE);
+            String valeur = variables != null && variables.containsKey("utilisateurId")
+                    ? variables.get("utilisateurId")
+                    : request.getParameter("utilisateurId");
+            try {
+                return valeur == null ? null : Long.valueOf(valeur);
+            } catch (NumberFormatException e) {
+                return null; // rejeté ensuite par la conversion du contrôleur
+            }
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package com.tp222.allergies.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Paramètres du partitionnement par utilisateur (allergies.sharding)
+ */
+@Data
+@ConfigurationProperties(prefix = "allergies.sharding")
+public class ShardingProperties {
+
+    /** Désactivé : une seule base, celle de spring.datasource */
+    private boolean actif = false;
+
+    /** Shard qui porte les écritures du catalogue et les tables globales ; le premier déclaré par défaut */
+    private String principal;
+
+    private int noeudsVirtuels = 256;
+
+    private long timeoutScatterMs = 10000;
+
+    private List<Shard> shards = new ArrayList<>();
+
+    @Data
+    public static class Shard {
+        private String nom;
+        private String url;
+        private String username;
+        private String password;
+        private String driverClassName;
+        private int poolMax = 10;
+        /**
+         * Fixe la plage d'identifiants du shard (voir PlagesIdentifiants) ; son rang dans la liste par
+         * défaut. À renseigner avant de retirer ou de réordonner des shards déjà en service.
+         */
+        private Integer numero;
+    }
+
+    /**
+     * Numéro de chaque shard, unique
+     */
+    public Map<String, Integer> numeros() {
+        Map<String, Integer> numeros = new LinkedHashMap<>();
+        for (int i = 0; i < shards.size(); i++) {
+            Shard shard = shards.get(i);
+            int numero = shard.getNumero() != null ? shard.getNumero() : i;
+            if (numero < 0 || numeros.containsValue(numero)) {
+                throw new IllegalStateException("Numéro de shard invalide ou en double: " + shard.getNom() + " (" + numero + ")");
+            }
+            numeros.put(shard.getNom(), numero);
+        }
+        return numeros;
+    }
+}
@@ -0,0 +1,71 @@
+package com.tp222.allergies.config;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import java.io.IOException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Borne la concurrence des requêtes API lorsque Tomcat tourne sur des threads virtuels.
+ *
+ * Sans pool de threads, rien ne limite le nombre de requêtes simultanées : elles
+ * attendraient toutes une connexion HikariCP jusqu'au timeout. Le sémaphore (verrou
+ * non bloquant pour le carrier, contrairement à synchronized) aligne la concurrence
+ * sur la taille du pool et rejette en 503 au-delà du délai d'attente.
+ */
+@Component
+@ConditionalOnProperty(name = "spring.threads.virtual.enabled", havingValue = "true")
+@Slf4j
+public class VirtualThreadConcurrencyFilter extends OncePerRequestFilter {
+
+    private final Semaphore permis;
+    private final long attenteMaxMs;
+
+    public VirtualThreadConcurrencyFilter(
+            @Value("${allergies.virtual-threads.requetes-base-max:${spring.datasource.hikari.maximum-pool-size:10}}")
+            int requetesBaseMax,
+            @Value("${allergies.virtual-threads.attente-max-ms:2000}") long attenteMaxMs) {
+        this.permis = new Semaphore(requetesBaseMax, true);
+        this.attenteMaxMs = attenteMaxMs;
+        log.info("Mode threads virtuels actif - concurrence base de données bornée à {} requêtes", requetesBaseMax);
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !request.getRequestURI().startsWith(request.getContextPath() + "/allergies");
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        boolean acquis;
+        try {
+            acquis = permis.tryAcquire(attenteMaxMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            acquis = false;
+        }
+
+        if (!acquis) {
+            log.warn("Requête rejetée: saturation de la base ({})", request.getRequestURI());
+            response.setHeader("Retry-After", "1");
+            response.sendError(HttpStatus.SERVICE_UNAVAILABLE.value(), "Service temporairement saturé");
+            return;
+        }
+
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            permis.release();
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package com.tp222.allergies.controller;
+
+import com.tp222.allergies.model.dto.response.EffacementUtilisateurResponse;
+import com.tp222.allergies.service.EffacementUtilisateurService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import java.util.List;
+
+/**
+ * Contrôleur d'administration des effacements RGPD d'utilisateurs
+ */
+@RestController
+@RequestMapping("/admin/effacements")
+@RequiredArgsConstructor
+@Slf4j
+@Tag(name = "Administration - Effacements RGPD", description = "Suppression ou anonymisation des données d'un utilisateur, avec trace d'audit")
+public class AdminEffacementController {
+    
+    private final EffacementUtilisateurService effacementUtilisateurService;
+    
+    @PostMapping("/utilisateurs/{utilisateurId}")
+    @Operation(
+        summary = "Demander l'effacement d'un utilisateur",
+        description = "Bloque immédiatement toute nouvelle écriture pour l'utilisateur, puis supprime (SUPPRESSION) ou " +
+                     "anonymise (ANONYMISATION) ses réactions et allergies par lots en tâche de fond, reprenable."
+    )
+    @ApiResponse(responseCode = "202", description = "Effacement démarré (ou déjà en cours)")
+    @ApiResponse(responseCode = "400", description = "Mode ou demandeur invalide")
+    @ApiResponse(responseCode = "404", description = "Utilisateur non trouvé")
+    public ResponseEntity<EffacementUtilisateurResponse> demander(
+            @PathVariable Long utilisateurId,
+            @Parameter(description = "SUPPRESSION ou ANONYMISATION") @RequestParam(defaultValue = "SUPPRESSION") String mode,
+            @Parameter(description = "Auteur de la demande (audit)") @RequestParam String demandePar,
+            @Parameter(description = "Référence de la demande RGPD") @RequestParam(required = false) String reference) {
+        
+        log.info("Demande d'effacement de l'utilisateur {} ({}) par {}", utilisateurId, mode, demandePar);
+        try {
+            return ResponseEntity.status(HttpStatus.ACCEPTED)
+                    .body(effacementUtilisateurService.demander(utilisateurId, mode, demandePar, reference));
+        } catch (IllegalArgumentException e) {
+            log.error("Demande d'effacement invalide: {}", e.getMessage());
+            return ResponseEntity.badRequest().build();
+        } catch (RuntimeException e) {
+            log.error("Erreur lors de la demande d'effacement: {}", e.getMessage());
+            return ResponseEntity.notFound().build();
+        }
+    }
+    
+    @GetMapping("/{effacementId}")
+    @Operation(summary = "État d'un effacement", description = "Étape, volumes traités et éventuelle erreur")
+    @ApiResponse(responseCode = "200", description = "Effacement récupéré")
+    @ApiResponse(responseCode = "404", description = "Effacement non trouvé")
+    public ResponseEntity<EffacementUtilisateurResponse> getEffacement(@PathVariable Long effacementId) {
+        try {
+            return ResponseEntity.ok(effacementUtilisateurService.getEffacement(effacementId));
+        } catch (RuntimeException e) {
+            log.error("Erreur lors de la récupération de l'effacement: {}", e.getMessage());
+            return ResponseEntity.notFound().build();
+        }
+    }
+    
+    @PostMapping("/{effacementId}/reprise")
+    @Operation(summary = "Reprendre un effacement", description = "Relance un effacement interrompu ou en échec")
+    @ApiResponse(responseCode = "202", description = "Effacement relancé")
+    @ApiResponse(responseCode = "404", description = "Effacement non trouvé")
+    public ResponseEntity<EffacementUtilisateurResponse> reprendre(@PathVariable Long effacementId) {
+        try {
+            return ResponseEntity.status(HttpStatus.ACCEPTED).body(effacementUtilisateurService.reprendre(effacementId));
+        } catch (RuntimeException e) {
+            log.error("Erreur lors de la reprise de l'effacement: {}", e.getMessage());
+            return ResponseEntity.notFound().build();
+        }
+    }
+    
+    @GetMapping("/utilisateurs/{utilisateurId}")
+    @Operation(summary = "Historique des effacements d'un utilisateur", description = "Trace d'audit, conservée après la suppression")
+    @ApiResponse(responseCode = "200", description = "Historique récupéré")
+    public ResponseEntity<List<EffacementUtilisateurResponse>> getHistorique(@PathVariable Long utilisateurId) {
+        return ResponseEntity.ok(effacementUtilisateurService.getHistorique(utilisateurId));
+    }
+}
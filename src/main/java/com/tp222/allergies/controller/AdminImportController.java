@@ -0,0 +1,87 @@
+package com.tp222.allergies.controller;
+
+import com.tp222.allergies.model.dto.response.ProgressionImportResponse;
+import com.tp222.allergies.service.importation.ImportUtilisateursService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import java.io.InputStream;
+
+/**
+ * Contrôleur d'administration des imports en masse d'utilisateurs
+ */
+@RestController
+@RequestMapping("/admin/imports")
+@RequiredArgsConstructor
+@Slf4j
+@Tag(name = "Administration - Imports", description = "Import en masse d'utilisateurs et de leurs allergies (CSV ou NDJSON)")
+public class AdminImportController {
+
+    private static final String NDJSON = "application/x-ndjson";
+
+    private final ImportUtilisateursService importUtilisateursService;
+
+    @PostMapping(value = "/utilisateurs", consumes = {"text/csv", NDJSON})
+    @Operation(
+        summary = "Importer des utilisateurs",
+        description = "Corps brut en text/csv (en-tête : username, email, motDePasse, prenom, nom, dateNaissance, sexe, " +
+                     "poids, taille, niveauActivite, ..., allergies au format \"nom[:sévérité]|...\") ou en " + NDJSON +
+                     " (un ImportUtilisateurRequest par ligne). Les doublons de username ou d'email sont rejetés, " +
+                     "ce qui permet de relancer un import interrompu avec le même fichier."
+    )
+    @ApiResponse(responseCode = "202", description = "Import démarré")
+    @ApiResponse(responseCode = "400", description = "Type de contenu non supporté")
+    public ResponseEntity<ProgressionImportResponse> importer(
+            @RequestHeader(HttpHeaders.CONTENT_TYPE) String typeContenu, InputStream corps) {
+        try {
+            ImportUtilisateursService.Format format = ImportUtilisateursService.Format.depuisTypeContenu(typeContenu);
+            log.info("Demande d'import d'utilisateurs au format {}", format);
+            return ResponseEntity.status(HttpStatus.ACCEPTED).body(importUtilisateursService.demarrer(corps, format));
+        } catch (IllegalArgumentException e) {
+            log.error("Erreur lors du démarrage de l'import: {}", e.getMessage());
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    @GetMapping("/{importId}")
+    @Operation(summary = "Progression d'un import", description = "Lignes lues, importées et rejetées, débit et ETA")
+    @ApiResponse(responseCode = "200", description = "Progression récupérée")
+    @ApiResponse(responseCode = "404", description = "Import non trouvé")
+    public ResponseEntity<ProgressionImportResponse> getProgression(@PathVariable Long importId) {
+        try {
+            return ResponseEntity.ok(importUtilisateursService.getProgression(importId));
+        } catch (RuntimeException e) {
+            log.error("Erreur lors de la récupération de l'import: {}", e.getMessage());
+            return ResponseEntity.notFound().build();
+        }
+    }
+
+    @GetMapping(value = "/{importId}/rejets", produces = NDJSON)
+    @Operation(
+        summary = "Lignes rejetées d'un import",
+        description = "Une ligne JSON par ligne rejetée : numéro de ligne, contenu d'origine et motifs. " +
+                     "Consultable pendant l'import, complété lot après lot."
+    )
+    @ApiResponse(responseCode = "200", description = "Fichier de rejets")
+    @ApiResponse(responseCode = "404", description = "Import non trouvé")
+    public ResponseEntity<Resource> getRejets(@Parameter(description = "ID de l'import") @PathVariable Long importId) {
+        try {
+            return ResponseEntity.ok()
+                    .contentType(MediaType.parseMediaType(NDJSON))
+                    .body(new FileSystemResource(importUtilisateursService.getFichierRejets(importId)));
+        } catch (RuntimeException e) {
+            log.error("Erreur lors de la récupération des rejets de l'import: {}", e.getMessage());
+            return ResponseEntity.notFound().build();
+        }
+    }
+}
@@ -0,0 +1,166 @@
+package com.tp222.allergies.controller;
+
+import com.tp222.allergies.model.dto.response.ModeleEntraineResponse;
+import com.tp222.allergies.model.dto.response.ModeleRisqueResponse;
+import com.tp222.allergies.model.entity.ModeleRisqueEntraine;
+import com.tp222.allergies.service.scoring.ModeleLogistiqueService;
+import com.tp222.allergies.service.scoring.ParametresModele;
+import com.tp222.allergies.service.scoring.RiskModel;
+import com.tp222.allergies.service.scoring.RiskModelRegistry;
+import com.tp222.allergies.service.scoring.TableRiskModel;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import java.util.List;
+
+/**
+ * Contrôleur d'administration des modèles de risque
+ */
+@RestController
+@RequestMapping("/admin/modeles-risque")
+@RequiredArgsConstructor
+@Slf4j
+@Tag(name = "Administration - Modèles de risque", description = "Échange à chaud et évaluation shadow des modèles de scoring")
+public class AdminModeleRisqueController {
+    
+    private final RiskModelRegistry riskModelRegistry;
+    private final ModeleLogistiqueService modeleLogistiqueService;
+    
+    @GetMapping
+    @Operation(summary = "État des modèles", description = "Versions active et candidate, statistiques de l'évaluation shadow")
+    @ApiResponse(responseCode = "200", description = "État récupéré")
+    public ResponseEntity<ModeleRisqueResponse> getEtat() {
+        return ResponseEntity.ok(etat());
+    }
+    
+    @PutMapping("/actif")
+    @Operation(
+        summary = "Activer un modèle",
+        description = "Remplace le modèle actif sans redémarrage. Les réactions existantes gardent leur version " +
+                     "jusqu'à un re-scoring."
+    )
+    @ApiResponse(responseCode = "200", description = "Modèle activé")
+    @ApiResponse(responseCode = "400", description = "Paramètres invalides")
+    public ResponseEntity<ModeleRisqueResponse> activer(@RequestBody ParametresModele parametres) {
+        try {
+            riskModelRegistry.activer(new TableRiskModel(parametres));
+            return ResponseEntity.ok(etat());
+        } catch (RuntimeException e) {
+            log.error("Erreur lors de l'activation du modèle de risque: {}", e.getMessage());
+            return ResponseEntity.badRequest().build();
+        }
+    }
+    
+    @PutMapping("/candidat")
+    @Operation(
+        summary = "Évaluer un modèle en shadow",
+        description = "Le candidat est évalué en parallèle sur le trafic réel sans influencer les réponses ; " +
+                     "les désaccords avec le modèle actif sont exposés en métriques."
+    )
+    @ApiResponse(responseCode = "200", description = "Candidat enregistré")
+    @ApiResponse(responseCode = "400", description = "Paramètres invalides")
+    public ResponseEntity<ModeleRisqueResponse> definirCandidat(@RequestBody ParametresModele parametres) {
+        try {
+            riskModelRegistry.definirCandidat(new TableRiskModel(parametres));
+            return ResponseEntity.ok(etat());
+        } catch (RuntimeException e) {
+            log.error("Erreur lors de l'enregistrement du modèle candidat: {}", e.getMessage());
+            return ResponseEntity.badRequest().build();
+        }
+    }
+    
+    @PutMapping("/actif/{version}")
+    @Operation(summary = "Activer un modèle entraîné", description = "Remplace le modèle actif par un modèle logistique entraîné")
+    @ApiResponse(responseCode = "200", description = "Modèle activé")
+    @ApiResponse(responseCode = "404", description = "Modèle non trouvé")
+    public ResponseEntity<ModeleRisqueResponse> activerEntraine(@PathVariable String version) {
+        try {
+            riskModelRegistry.activer(modeleLogistiqueService.charger(version));
+            return ResponseEntity.ok(etat());
+        } catch (RuntimeException e) {
+            log.error("Erreur lors de l'activation du modèle {}: {}", version, e.getMessage());
+            return ResponseEntity.notFound().build();
+        }
+    }
+    
+    @PutMapping("/candidat/{version}")
+    @Operation(summary = "Évaluer un modèle entraîné en shadow", description = "Compare un modèle logistique entraîné au modèle actif")
+    @ApiResponse(responseCode = "200", description = "Candidat enregistré")
+    @ApiResponse(responseCode = "404", description = "Modèle non trouvé")
+    public ResponseEntity<ModeleRisqueResponse> definirCandidatEntraine(@PathVariable String version) {
+        try {
+            riskModelRegistry.definirCandidat(modeleLogistiqueService.charger(version));
+            return ResponseEntity.ok(etat());
+        } catch (RuntimeException e) {
+            log.error("Erreur lors de l'enregistrement du candidat {}: {}", version, e.getMessage());
+            return ResponseEntity.notFound().build();
+        }
+    }
+    
+    @DeleteMapping("/candidat")
+    @Operation(summary = "Arrêter l'évaluation shadow", description = "Retire le modèle candidat")
+    @ApiResponse(responseCode = "200", description = "Candidat retiré")
+    public ResponseEntity<ModeleRisqueResponse> retirerCandidat() {
+        riskModelRegistry.definirCandidat(null);
+        return ResponseEntity.ok(etat());
+    }
+    
+    @PostMapping("/entrainements")
+    @Operation(
+        summary = "Entraîner un modèle logistique",
+        description = "Lance en arrière-plan l'apprentissage sur l'historique des réactions ; les réactions " +
+                     "dont l'allergie a été confirmée par un médecin servent d'exemples positifs."
+    )
+    @ApiResponse(responseCode = "202", description = "Entraînement démarré")
+    @ApiResponse(responseCode = "400", description = "Un entraînement est déjà en cours")
+    public ResponseEntity<ModeleEntraineResponse> entrainer() {
+        try {
+            return ResponseEntity.status(HttpStatus.ACCEPTED)
+                    .body(mapModeleEntraine(modeleLogistiqueService.demarrerEntrainement()));
+        } catch (RuntimeException e) {
+            log.error("Erreur lors du démarrage de l'entraînement: {}", e.getMessage());
+            return ResponseEntity.badRequest().build();
+        }
+    }
+    
+    @GetMapping("/entrainements")
+    @Operation(summary = "Modèles entraînés", description = "Liste des modèles avec leurs métriques de validation")
+    @ApiResponse(responseCode = "200", description = "Liste récupérée")
+    public ResponseEntity<List<ModeleEntraineResponse>> listerEntraines() {
+        return ResponseEntity.ok(modeleLogistiqueService.lister().stream()
+                .map(this::mapModeleEntraine)
+                .toList());
+    }
+    
+    private ModeleEntraineResponse mapModeleEntraine(ModeleRisqueEntraine modele) {
+        return ModeleEntraineResponse.builder()
+                .version(modele.getVersion())
+                .typeModele(modele.getTypeModele())
+                .statut(modele.getStatut())
+                .nombreExemples(modele.getNombreExemples())
+                .nombrePositifs(modele.getNombrePositifs())
+                .epoques(modele.getEpoques())
+                .logLossValidation(modele.getLogLossValidation())
+                .aucValidation(modele.getAucValidation())
+                .messageErreur(modele.getMessageErreur())
+                .dateCreation(modele.getDateCreation())
+                .dateFin(modele.getDateFin())
+                .build();
+    }
+    
+    private ModeleRisqueResponse etat() {
+        RiskModel candidat = riskModelRegistry.getCandidat();
+        return ModeleRisqueResponse.builder()
+                .versionActive(riskModelRegistry.getActif().getVersion())
+                .versionCandidate(candidat == null ? null : candidat.getVersion())
+                .evaluationsShadow(riskModelRegistry.getEvaluationsShadow())
+                .evaluationsShadowIgnorees(riskModelRegistry.getShadowIgnorees())
+                .tauxDesaccord(riskModelRegistry.getTauxDesaccord())
+                .build();
+    }
+}
@@ -0,0 +1,96 @@
+package com.tp222.allergies.controller;
+
+import com.tp222.allergies.model.dto.request.ReactiviteCroiseeRequest;
+import com.tp222.allergies.model.dto.response.ReactiviteCroiseeResponse;
+import com.tp222.allergies.service.ReactiviteCroiseeService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.validation.Valid;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import java.util.List;
+
+/**
+ * Contrôleur d'administration du graphe de réactivité croisée entre aliments
+ */
+@RestController
+@RequestMapping("/admin/reactivites-croisees")
+@RequiredArgsConstructor
+@Slf4j
+@Tag(name = "Administration - Réactivités croisées", description = "Graphe pondéré des réactivités croisées entre aliments")
+public class AdminReactiviteCroiseeController {
+    
+    private final ReactiviteCroiseeService reactiviteCroiseeService;
+    
+    @GetMapping
+    @Operation(summary = "Lister les réactivités croisées", description = "Arêtes actives du graphe")
+    @ApiResponse(responseCode = "200", description = "Liste récupérée")
+    public ResponseEntity<List<ReactiviteCroiseeResponse>> lister() {
+        return ResponseEntity.ok(reactiviteCroiseeService.lister());
+    }
+    
+    @PostMapping
+    @Operation(
+        summary = "Déclarer une réactivité croisée",
+        description = "Relie deux aliments avec un coefficient (0-1] ; la fermeture transitive est mise à jour " +
+                     "incrémentalement après validation."
+    )
+    @ApiResponse(responseCode = "201", description = "Réactivité croisée enregistrée")
+    @ApiResponse(responseCode = "400", description = "Données invalides ou aliment non trouvé")
+    public ResponseEntity<ReactiviteCroiseeResponse> creer(@Valid @RequestBody ReactiviteCroiseeRequest request) {
+        try {
+            return ResponseEntity.status(HttpStatus.CREATED).body(reactiviteCroiseeService.creer(request));
+        } catch (RuntimeException e) {
+            log.error("Erreur lors de l'enregistrement de la réactivité croisée: {}", e.getMessage());
+            return ResponseEntity.badRequest().build();
+        }
+    }
+    
+    @PutMapping("/{id}")
+    @Operation(summary = "Modifier une réactivité croisée", description = "Met à jour le coefficient et la description")
+    @ApiResponse(responseCode = "200", description = "Réactivité croisée modifiée")
+    @ApiResponse(responseCode = "404", description = "Réactivité croisée non trouvée")
+    public ResponseEntity<ReactiviteCroiseeResponse> modifier(@PathVariable Long id,
+                                                              @Valid @RequestBody ReactiviteCroiseeRequest request) {
+        try {
+            return ResponseEntity.ok(reactiviteCroiseeService.modifier(id, request));
+        } catch (RuntimeException e) {
+            log.error("Erreur lors de la modification de la réactivité croisée {}: {}", id, e.getMessage());
+            return ResponseEntity.notFound().build();
+        }
+    }
+    
+    @DeleteMapping("/{id}")
+    @Operation(summary = "Supprimer une réactivité croisée", description = "Désactive l'arête et recalcule la fermeture")
+    @ApiResponse(responseCode = "204", description = "Réactivité croisée supprimée")
+    @ApiResponse(responseCode = "404", description = "Réactivité croisée non trouvée")
+    public ResponseEntity<Void> supprimer(@PathVariable Long id) {
+        try {
+            reactiviteCroiseeService.supprimer(id);
+            return ResponseEntity.noContent().build();
+        } catch (RuntimeException e) {
+            log.error("Erreur lors de la suppression de la réactivité croisée {}: {}", id, e.getMessage());
+            return ResponseEntity.notFound().build();
+        }
+    }
+    
+    @GetMapping("/aliments/{alimentId}")
+    @Operation(
+        summary = "Aliments reliés",
+        description = "Aliments à réactivité croisée directe ou transitive, avec le coefficient atténué le long du meilleur chemin"
+    )
+    @ApiResponse(responseCode = "200", description = "Aliments reliés récupérés")
+    @ApiResponse(responseCode = "404", description = "Aliment non trouvé")
+    public ResponseEntity<List<ReactiviteCroiseeResponse>> getAlimentsRelies(@PathVariable Long alimentId) {
+        try {
+            return ResponseEntity.ok(reactiviteCroiseeService.getAlimentsRelies(alimentId));
+        } catch (RuntimeException e) {
+            log.error("Erreur lors de la récupération des aliments reliés à {}: {}", alimentId, e.getMessage());
+            return ResponseEntity.notFound().build();
+        }
+    }
+}
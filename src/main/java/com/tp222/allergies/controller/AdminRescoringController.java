@@ -0,0 +1,78 @@
+package com.tp222.allergies.controller;
+
+import com.tp222.allergies.model.dto.response.ProgressionRescoringResponse;
+import com.tp222.allergies.service.RescoringService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+/**
+ * Contrôleur d'administration du re-scoring des réactions
+ */
+@RestController
+@RequestMapping("/admin/rescoring")
+@RequiredArgsConstructor
+@Slf4j
+@Tag(name = "Administration - Re-scoring", description = "Recalcul des probabilités d'allergie après changement d'algorithme")
+public class AdminRescoringController {
+    
+    private final RescoringService rescoringService;
+    
+    @PostMapping
+    @Operation(
+        summary = "Démarrer un re-scoring",
+        description = "Recalcule la probabilité de toutes les réactions avec la version courante de l'algorithme, " +
+                     "par plages d'identifiants traitées en parallèle et reprenables."
+    )
+    @ApiResponse(responseCode = "202", description = "Job démarré")
+    public ResponseEntity<ProgressionRescoringResponse> demarrer(
+            @Parameter(description = "Nombre de réactions par chunk") @RequestParam(required = false) Integer tailleChunk) {
+        
+        log.info("Demande de re-scoring des réactions (taille de chunk: {})", tailleChunk);
+        return ResponseEntity.status(HttpStatus.ACCEPTED).body(rescoringService.demarrer(tailleChunk));
+    }
+    
+    @GetMapping("/{jobId}")
+    @Operation(summary = "Progression d'un re-scoring", description = "Avancement, débit mesuré et ETA du job")
+    @ApiResponse(responseCode = "200", description = "Progression récupérée")
+    @ApiResponse(responseCode = "404", description = "Job non trouvé")
+    public ResponseEntity<ProgressionRescoringResponse> getProgression(@PathVariable Long jobId) {
+        try {
+            return ResponseEntity.ok(rescoringService.getProgression(jobId));
+        } catch (RuntimeException e) {
+            log.error("Erreur lors de la récupération du job de re-scoring: {}", e.getMessage());
+            return ResponseEntity.notFound().build();
+        }
+    }
+    
+    @PostMapping("/{jobId}/reprise")
+    @Operation(summary = "Reprendre un re-scoring", description = "Relance les chunks non traités d'un job en cours")
+    @ApiResponse(responseCode = "202", description = "Job relancé")
+    @ApiResponse(responseCode = "404", description = "Job non trouvé")
+    public ResponseEntity<ProgressionRescoringResponse> reprendre(@PathVariable Long jobId) {
+        try {
+            return ResponseEntity.status(HttpStatus.ACCEPTED).body(rescoringService.reprendre(jobId));
+        } catch (RuntimeException e) {
+            log.error("Erreur lors de la reprise du job de re-scoring: {}", e.getMessage());
+            return ResponseEntity.notFound().build();
+        }
+    }
+    
+    @PostMapping("/{jobId}/annulation")
+    @Operation(summary = "Annuler un re-scoring", description = "Arrête le job après les chunks en cours")
+    @ApiResponse(responseCode = "200", description = "Job annulé")
+    public ResponseEntity<ProgressionRescoringResponse> annuler(@PathVariable Long jobId) {
+        try {
+            return ResponseEntity.ok(rescoringService.annuler(jobId));
+        } catch (RuntimeException e) {
+            log.error("Erreur lors de l'annulation du job de re-scoring: {}", e.getMessage());
+            return ResponseEntity.notFound().build();
+        }
+    }
+}
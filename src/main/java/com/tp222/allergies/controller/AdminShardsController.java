@@ -0,0 +1,73 @@
+package com.tp222.allergies.controller;
+
+import com.tp222.allergies.service.sharding.ReequilibrageShards;
+import com.tp222.allergies.service.sharding.ReplicationCatalogue;
+import com.tp222.allergies.service.sharding.RoutageShards;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Contrôleur d'administration du partitionnement par utilisateur
+ */
+@RestController
+@RequestMapping("/admin/shards")
+@RequiredArgsConstructor
+@Slf4j
+@Tag(name = "Administration - Shards", description = "Carte des shards, réplication du catalogue et rééquilibrage")
+public class AdminShardsController {
+
+    private final RoutageShards routageShards;
+    private final ReplicationCatalogue replicationCatalogue;
+    private final ReequilibrageShards reequilibrageShards;
+
+    @GetMapping
+    @Operation(summary = "Carte des shards", description = "Shards déclarés, shard principal et, si demandé, shard d'un utilisateur")
+    @ApiResponse(responseCode = "200", description = "Carte récupérée")
+    public ResponseEntity<Map<String, Object>> getCarte(
+            @Parameter(description = "ID d'un utilisateur à localiser") @RequestParam(required = false) Long utilisateurId) {
+        Map<String, Object> carte = new LinkedHashMap<>();
+        carte.put("actif", routageShards.isActif());
+        carte.put("principal", routageShards.getPrincipal());
+        carte.put("shards", routageShards.getShards());
+        if (utilisateurId != null) {
+            carte.put("shardUtilisateur", routageShards.shardDe(utilisateurId));
+        }
+        return ResponseEntity.ok(carte);
+    }
+
+    @PostMapping("/catalogue/synchronisation")
+    @Operation(summary = "Resynchroniser le catalogue", description = "Recopie catégories, allergies et aliments du principal vers les autres shards")
+    @ApiResponse(responseCode = "200", description = "Catalogue recopié")
+    @ApiResponse(responseCode = "409", description = "Sharding désactivé")
+    public ResponseEntity<Map<String, Integer>> synchroniserCatalogue() {
+        if (!routageShards.isActif()) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).build();
+        }
+        return ResponseEntity.ok(Map.of("lignes", replicationCatalogue.synchroniser()));
+    }
+
+    @PostMapping("/reequilibrage")
+    @Operation(
+        summary = "Rééquilibrer les shards",
+        description = "Déplace chaque utilisateur, avec ses allergies et réactions, vers le shard que lui attribue l'anneau " +
+                     "(après ajout d'un shard). À lancer sans trafic d'écriture."
+    )
+    @ApiResponse(responseCode = "200", description = "Rééquilibrage effectué")
+    @ApiResponse(responseCode = "409", description = "Sharding désactivé")
+    public ResponseEntity<ReequilibrageShards.Bilan> reequilibrer() {
+        if (!routageShards.isActif()) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).build();
+        }
+        log.info("Demande de rééquilibrage des shards {}", routageShards.getShards());
+        return ResponseEntity.ok(reequilibrageShards.reequilibrer());
+    }
+}
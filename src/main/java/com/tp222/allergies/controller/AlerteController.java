@@ -0,0 +1,49 @@
+package com.tp222.allergies.controller;
+
+import com.tp222.allergies.model.dto.response.AlerteAllergieEvent;
+import com.tp222.allergies.service.AlerteAllergieBus;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+/**
+ * Contrôleur du flux temps réel des alertes allergiques (Server-Sent Events)
+ */
+@RestController
+@RequestMapping("/allergies/alertes")
+@RequiredArgsConstructor
+@Slf4j
+@Tag(name = "Alertes Temps Réel", description = "Flux SSE des réactions allergiques détectées et des risques élevés")
+public class AlerteController {
+
+    private final AlerteAllergieBus alerteAllergieBus;
+
+    @Value("${allergies.alertes.timeout-ms:1800000}")
+    private long timeoutMs;
+
+    @GetMapping(value = "/flux", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    @Operation(
+        summary = "S'abonner aux alertes allergiques",
+        description = "Flux SSE des alertes REACTION_ALLERGIQUE (probabilité >30%) et RISQUE_ELEVE " +
+                     "(vérification ELEVE/CRITIQUE), filtrable par utilisateur et par gravité minimale."
+    )
+    @ApiResponse(responseCode = "200", description = "Flux d'alertes ouvert")
+    public SseEmitter abonner(
+            @Parameter(description = "ID de l'utilisateur suivi (tous si absent)")
+            @RequestParam(required = false) Long utilisateurId,
+            @Parameter(description = "Niveau minimal: MODERE, ELEVE/SEVERE ou CRITIQUE")
+            @RequestParam(required = false) String niveauMin,
+            @Parameter(description = "Politique si le client est trop lent: SUPPRIMER_ANCIEN, SUPPRIMER_NOUVEAU, DECONNECTER")
+            @RequestParam(defaultValue = "SUPPRIMER_ANCIEN") AlerteAllergieBus.PolitiqueSaturation politique) {
+
+        log.info("Nouvel abonnement aux alertes: utilisateur={}, niveauMin={}", utilisateurId, niveauMin);
+        return alerteAllergieBus.abonner(utilisateurId, AlerteAllergieEvent.gravite(niveauMin), politique, timeoutMs);
+    }
+}
@@ -5,6 +5,9 @@ import com.tp222.allergies.model.dto.response.ProfilAllergiqueResponse;
 import com.tp222.allergies.model.dto.response.VerificationRisqueResponse;
 import com.tp222.allergies.model.entity.ReactionAllergique;
 import com.tp222.allergies.service.AllergieService;
+import com.tp222.allergies.service.ReactionDoublonException;
+import com.tp222.allergies.service.VerificationRisqueCoalescer;
+import com.tp222.allergies.service.sharding.RoutageUtilisateur;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
@@ -15,6 +18,7 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 
 /**
  * Contrôleur REST pour la gestion des allergies avec IA
@@ -27,8 +31,10 @@ import org.springframework.web.bind.annotation.*;
 public class AllergieController {
     
     private final AllergieService allergieService;
+    private final VerificationRisqueCoalescer verificationRisqueCoalescer;
     
     @PostMapping("/reactions")
+    @RoutageUtilisateur
     @Operation(
         summary = "Enregistrer une réaction allergique",
         description = "Enregistre une nouvelle réaction allergique avec analyse IA automatique. " +
@@ -37,6 +43,8 @@ public class AllergieController {
     @ApiResponse(responseCode = "201", description = "Réaction enregistrée avec succès")
     @ApiResponse(responseCode = "400", description = "Données invalides")
     @ApiResponse(responseCode = "404", description = "Utilisateur ou aliment non trouvé")
+    @ApiResponse(responseCode = "409", description = "Réaction déjà enregistrée (même utilisateur, aliment et minute) : " +
+                 "la réaction existante est renvoyée, rien n'est stocké")
     public ResponseEntity<ReactionAllergique> enregistrerReaction(
             @Valid @RequestBody ReactionAllergiqueRequest request) {
         
@@ -55,6 +63,14 @@ public class AllergieController {
             
             return ResponseEntity.status(HttpStatus.CREATED).body(reaction);
             
+        } catch (ReactionDoublonException e) {
+            log.info("Réaction en double ignorée: utilisateur={}, aliment={}, date={}",
+                    request.getUtilisateurId(), request.getAlimentId(), request.getDateReaction());
+            // Arrêtée par la contrainte d'unicité : la transaction est annulée, la réaction est relue
+            ReactionAllergique existante = e.getReactionExistante() != null ? e.getReactionExistante()
+                    : allergieService.getReactionExistante(request.getUtilisateurId(), request.getAlimentId(),
+                            request.getDateReaction());
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(existante);
         } catch (RuntimeException e) {
             log.error("Erreur lors de l'enregistrement de la réaction: {}", e.getMessage());
             return ResponseEntity.badRequest().build();
@@ -62,21 +78,29 @@ public class AllergieController {
     }
     
     @GetMapping("/verification-risque")
+    @RoutageUtilisateur
     @Operation(
         summary = "Vérifier le risque d'allergie",
         description = "Analyse intelligente du risque d'allergie pour un utilisateur et un aliment spécifique. " +
                      "Utilise l'IA pour évaluer les probabilités basées sur l'historique et les allergies connues."
     )
     @ApiResponse(responseCode = "200", description = "Analyse de risque effectuée")
+    @ApiResponse(responseCode = "304", description = "Analyse inchangée depuis l'ETag fourni (If-None-Match)")
     @ApiResponse(responseCode = "404", description = "Utilisateur ou aliment non trouvé")
     public ResponseEntity<VerificationRisqueResponse> verifierRisque(
             @Parameter(description = "ID de l'utilisateur") @RequestParam Long utilisateurId,
-            @Parameter(description = "ID de l'aliment") @RequestParam Long alimentId) {
+            @Parameter(description = "ID de l'aliment") @RequestParam Long alimentId,
+            WebRequest webRequest) {
         
         log.info("Demande de vérification de risque: utilisateur={}, aliment={}", utilisateurId, alimentId);
         
         try {
-            VerificationRisqueResponse response = allergieService.verifierRisque(utilisateurId, alimentId);
+            String etag = allergieService.getEtagVerification(utilisateurId, alimentId);
+            if (webRequest.checkNotModified(etag)) {
+                return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).build();
+            }
+            
+            VerificationRisqueResponse response = verificationRisqueCoalescer.verifierRisque(utilisateurId, alimentId);
             
             // Log d'alerte si risque élevé détecté
             if ("CRITIQUE".equals(response.getNiveauRisque()) || "ELEVE".equals(response.getNiveauRisque())) {
@@ -84,7 +108,7 @@ public class AllergieController {
                         utilisateurId, alimentId, response.getNiveauRisque(), response.getScoreRisque());
             }
             
-            return ResponseEntity.ok(response);
+            return ResponseEntity.ok().eTag(etag).body(response);
             
         } catch (RuntimeException e) {
             log.error("Erreur lors de la vérification de risque: {}", e.getMessage());
@@ -93,19 +117,28 @@ public class AllergieController {
     }
     
     @GetMapping("/profil/{utilisateurId}")
+    @RoutageUtilisateur
     @Operation(
         summary = "Obtenir le profil allergique complet",
         description = "Récupère le profil allergique détaillé d'un utilisateur incluant ses allergies, " +
                      "réactions récentes et statistiques personnalisées."
     )
     @ApiResponse(responseCode = "200", description = "Profil allergique récupéré")
+    @ApiResponse(responseCode = "304", description = "Profil inchangé depuis l'ETag fourni (If-None-Match)")
     @ApiResponse(responseCode = "404", description = "Utilisateur non trouvé")
     public ResponseEntity<ProfilAllergiqueResponse> getProfilAllergique(
-            @Parameter(description = "ID de l'utilisateur") @PathVariable Long utilisateurId) {
+            @Parameter(description = "ID de l'utilisateur") @PathVariable Long utilisateurId,
+            WebRequest webRequest) {
         
         log.info("Demande de profil allergique pour utilisateur: {}", utilisateurId);
         
         try {
+            // Version lue avant le profil : une écriture concurrente donne au pire un ETag plus ancien que le corps
+            String etag = allergieService.getEtagProfil(utilisateurId);
+            if (webRequest.checkNotModified(etag)) {
+                return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).build();
+            }
+            
             ProfilAllergiqueResponse profil = allergieService.getProfilAllergique(utilisateurId);
             
             // Log informatif sur le profil
@@ -115,7 +148,7 @@ public class AllergieController {
                     profil.getStatistiques().getNombreReactionsDernierMois(),
                     profil.getStatistiques().getScoreRisqueGlobal());
             
-            return ResponseEntity.ok(profil);
+            return ResponseEntity.ok().eTag(etag).body(profil);
             
         } catch (RuntimeException e) {
             log.error("Erreur lors de la récupération du profil allergique: {}", e.getMessage());
@@ -134,7 +167,7 @@ public class AllergieController {
         DetectionStatusResponse status = DetectionStatusResponse.builder()
                 .detectionActive(true)
                 .seuilDetection(30.0)
-                .algorithmeVersion("v2.1")
+                .algorithmeVersion(allergieService.getVersionAlgorithme())
                 .description("Système IA de détection automatique des allergies basé sur l'analyse " +
                            "de la probabilité de réaction (seuil: >30%). Analyse multifactorielle " +
                            "incluant sévérité, historique, intervention médicale et composition alimentaire.")
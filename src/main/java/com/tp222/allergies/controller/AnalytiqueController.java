@@ -0,0 +1,50 @@
+package com.tp222.allergies.controller;
+
+import com.tp222.allergies.model.dto.response.StatistiquesGlobalesResponse;
+import com.tp222.allergies.service.AnalytiqueService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+/**
+ * Contrôleur REST des statistiques globales (scatter-gather sur les shards)
+ */
+@RestController
+@RequestMapping("/analytiques")
+@RequiredArgsConstructor
+@Slf4j
+@Tag(name = "Analytique", description = "Statistiques agrégées sur l'ensemble des utilisateurs")
+public class AnalytiqueController {
+
+    private static final int LIMITE_MAX = 100;
+
+    private final AnalytiqueService analytiqueService;
+
+    @GetMapping("/statistiques")
+    @Operation(
+        summary = "Statistiques globales",
+        description = "Réactions par mois, aliments les plus problématiques, allergies les plus fréquentes et par sévérité, " +
+                     "agrégés sur tous les shards interrogés en parallèle"
+    )
+    @ApiResponse(responseCode = "200", description = "Statistiques calculées")
+    @ApiResponse(responseCode = "400", description = "Limite invalide")
+    @ApiResponse(responseCode = "503", description = "Un shard n'a pas répondu")
+    public ResponseEntity<StatistiquesGlobalesResponse> getStatistiques(
+            @Parameter(description = "Nombre d'aliments et d'allergies dans les classements") @RequestParam(defaultValue = "10") int limite) {
+        if (limite < 1 || limite > LIMITE_MAX) {
+            return ResponseEntity.badRequest().build();
+        }
+        try {
+            return ResponseEntity.ok(analytiqueService.getStatistiques(limite));
+        } catch (RuntimeException e) {
+            log.error("Erreur lors du calcul des statistiques globales: {}", e.getMessage());
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package com.tp222.allergies.controller;
+
+import com.tp222.allergies.service.catalogue.CatalogueBinaireService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import java.time.Duration;
+import java.util.Optional;
+
+/**
+ * Contrôleur REST de l'instantané binaire du catalogue (vérifications de risque hors ligne)
+ */
+@RestController
+@RequestMapping("/catalogue")
+@RequiredArgsConstructor
+@Slf4j
+@Tag(name = "Catalogue", description = "Instantané binaire versionné du catalogue et deltas entre versions")
+public class CatalogueController {
+
+    static final String EN_TETE_VERSION = "X-Catalogue-Version";
+
+    // Une version désigne un contenu figé : cache partagé sans revalidation
+    private static final CacheControl IMMUABLE = CacheControl.maxAge(Duration.ofDays(365)).cachePublic().immutable();
+
+    private final CatalogueBinaireService catalogueBinaireService;
+
+    @GetMapping(value = "/instantane", produces = MediaType.APPLICATION_OCTET_STREAM_VALUE)
+    @Operation(
+        summary = "Instantané courant du catalogue",
+        description = "Toujours revalidé (If-None-Match) ; la version courante est aussi renvoyée dans " +
+                     EN_TETE_VERSION + ". Un client déjà équipé récupère plutôt le delta depuis sa version."
+    )
+    @ApiResponse(responseCode = "200", description = "Instantané binaire (format ACAT)")
+    @ApiResponse(responseCode = "304", description = "Le client a déjà la version courante")
+    @ApiResponse(responseCode = "503", description = "Instantané pas encore construit")
+    public ResponseEntity<byte[]> courant(WebRequest webRequest) {
+        Optional<CatalogueBinaireService.Instantane> courant = catalogueBinaireService.getCourant();
+        if (courant.isEmpty()) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
+        }
+        CatalogueBinaireService.Instantane instantane = courant.get();
+        String etag = "\"" + instantane.version() + "\"";
+        if (webRequest.checkNotModified(etag)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag)
+                    .header(EN_TETE_VERSION, instantane.version()).build();
+        }
+        return ResponseEntity.ok()
+                .eTag(etag)
+                .cacheControl(CacheControl.noCache())
+                .header(EN_TETE_VERSION, instantane.version())
+                .body(instantane.octets());
+    }
+
+    @GetMapping(value = "/instantane/{version}", produces = MediaType.APPLICATION_OCTET_STREAM_VALUE)
+    @Operation(summary = "Instantané d'une version donnée", description = "Contenu immuable, mis en cache un an")
+    @ApiResponse(responseCode = "200", description = "Instantané binaire")
+    @ApiResponse(responseCode = "404", description = "Version inconnue ou plus conservée")
+    public ResponseEntity<byte[]> version(@Parameter(description = "Version (empreinte du contenu)") @PathVariable String version) {
+        return catalogueBinaireService.getVersion(version)
+                .map(instantane -> ResponseEntity.ok()
+                        .eTag("\"" + instantane.version() + "\"")
+                        .cacheControl(IMMUABLE)
+                        .body(instantane.octets()))
+                .orElseGet(() -> ResponseEntity.notFound().build());
+    }
+
+    @GetMapping(value = "/deltas/{depuis}/{cible}", produces = MediaType.APPLICATION_OCTET_STREAM_VALUE)
+    @Operation(
+        summary = "Delta binaire entre deux versions",
+        description = "Appliqué à l'instantané depuis, donne l'instantané cible (à contrôler par son empreinte SHA-256). " +
+                     "En 404, le client télécharge l'instantané complet."
+    )
+    @ApiResponse(responseCode = "200", description = "Delta binaire (format ACDL)")
+    @ApiResponse(responseCode = "404", description = "Une des versions n'est plus conservée")
+    public ResponseEntity<byte[]> delta(@Parameter(description = "Version détenue par le client") @PathVariable String depuis,
+                                        @Parameter(description = "Version visée") @PathVariable String cible) {
+        return catalogueBinaireService.getDelta(depuis, cible)
+                .map(delta -> ResponseEntity.ok()
+                        .cacheControl(IMMUABLE)
+                        .header(EN_TETE_VERSION, cible)
+                        .body(delta))
+                .orElseGet(() -> ResponseEntity.notFound().build());
+    }
+}
@@ -0,0 +1,103 @@
+package com.tp222.allergies.controller;
+
+import com.tp222.allergies.model.dto.response.CohorteResponse;
+import com.tp222.allergies.service.IndexCohortes;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Contrôleur REST des cohortes d'utilisateurs, calculées sur les bitmaps compressés
+ */
+@RestController
+@RequestMapping("/cohortes")
+@RequiredArgsConstructor
+@Slf4j
+@Tag(name = "Cohortes", description = "Cohortes d'utilisateurs par allergie, sévérité et nombre d'allergies")
+public class CohorteController {
+
+    private static final int TAILLE_PAGE_MAX = 10000;
+
+    private final IndexCohortes indexCohortes;
+
+    @GetMapping
+    @Operation(
+        summary = "Rechercher une cohorte",
+        description = "Combinaison booléenne : allergies requises (toutes ou au moins une), allergies exclues, " +
+                     "sévérité, nombre minimal d'allergies actives, utilisateurs actifs seulement"
+    )
+    @ApiResponse(responseCode = "200", description = "Cohorte calculée")
+    @ApiResponse(responseCode = "400", description = "Pagination invalide")
+    public ResponseEntity<CohorteResponse> rechercher(
+            @Parameter(description = "IDs des allergies requises") @RequestParam(required = false) List<Long> allergies,
+            @Parameter(description = "true = toutes les allergies requises, false = au moins une") @RequestParam(defaultValue = "true") boolean toutes,
+            @Parameter(description = "IDs des allergies exclues") @RequestParam(required = false) List<Long> exclure,
+            @Parameter(description = "LEGER, MODERE, SEVERE ou CRITIQUE") @RequestParam(required = false) String severite,
+            @Parameter(description = "Nombre minimal d'allergies actives") @RequestParam(required = false) Integer minAllergies,
+            @Parameter(description = "Utilisateurs actifs seulement") @RequestParam(defaultValue = "true") boolean actifsSeulement,
+            @RequestParam(defaultValue = "0") int page,
+            @RequestParam(defaultValue = "1000") int taille) {
+        if (page < 0 || taille < 1 || taille > TAILLE_PAGE_MAX) {
+            return ResponseEntity.badRequest().build();
+        }
+        IndexCohortes.Criteres criteres = new IndexCohortes.Criteres(allergies, toutes, exclure, severite, minAllergies, actifsSeulement);
+        return ResponseEntity.ok(reponse(indexCohortes.rechercher(criteres, page, taille), page, taille));
+    }
+
+    @GetMapping("/critiques")
+    @Operation(summary = "Utilisateurs actifs ayant une allergie critique")
+    @ApiResponse(responseCode = "200", description = "Cohorte calculée")
+    public ResponseEntity<CohorteResponse> critiques(@RequestParam(defaultValue = "0") int page,
+                                                     @RequestParam(defaultValue = "1000") int taille) {
+        if (page < 0 || taille < 1 || taille > TAILLE_PAGE_MAX) {
+            return ResponseEntity.badRequest().build();
+        }
+        return ResponseEntity.ok(reponse(indexCohortes.utilisateursAllergiesCritiques(page, taille), page, taille));
+    }
+
+    @GetMapping("/allergies/{allergieId}")
+    @Operation(summary = "Utilisateurs ayant une allergie donnée")
+    @ApiResponse(responseCode = "200", description = "Cohorte calculée")
+    public ResponseEntity<CohorteResponse> parAllergie(@Parameter(description = "ID de l'allergie") @PathVariable Long allergieId,
+                                                       @RequestParam(defaultValue = "0") int page,
+                                                       @RequestParam(defaultValue = "1000") int taille) {
+        if (page < 0 || taille < 1 || taille > TAILLE_PAGE_MAX) {
+            return ResponseEntity.badRequest().build();
+        }
+        return ResponseEntity.ok(reponse(indexCohortes.utilisateursParAllergie(allergieId, page, taille), page, taille));
+    }
+
+    @GetMapping("/allergies-multiples")
+    @Operation(summary = "Utilisateurs ayant au moins deux allergies actives")
+    @ApiResponse(responseCode = "200", description = "Cohorte calculée")
+    public ResponseEntity<CohorteResponse> allergiesMultiples(@RequestParam(defaultValue = "0") int page,
+                                                              @RequestParam(defaultValue = "1000") int taille) {
+        if (page < 0 || taille < 1 || taille > TAILLE_PAGE_MAX) {
+            return ResponseEntity.badRequest().build();
+        }
+        return ResponseEntity.ok(reponse(indexCohortes.utilisateursAllergiesMultiples(page, taille), page, taille));
+    }
+
+    @GetMapping("/repartition")
+    @Operation(summary = "Répartition des utilisateurs par nombre d'allergies actives")
+    @ApiResponse(responseCode = "200", description = "Nombre d'utilisateurs pour 1, 2, ... allergies")
+    public ResponseEntity<Map<Integer, Long>> repartition() {
+        return ResponseEntity.ok(indexCohortes.repartitionNombreAllergies());
+    }
+
+    private static CohorteResponse reponse(IndexCohortes.Cohorte cohorte, int page, int taille) {
+        return CohorteResponse.builder()
+                .tailleCohorte(cohorte.taille())
+                .page(page)
+                .taillePage(taille)
+                .utilisateurIds(cohorte.utilisateurIds())
+                .build();
+    }
+}
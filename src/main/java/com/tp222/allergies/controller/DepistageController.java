@@ -0,0 +1,66 @@
+package com.tp222.allergies.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.tp222.allergies.model.dto.request.DepistageMenuRequest;
+import com.tp222.allergies.model.dto.response.ConviveARisqueResponse;
+import com.tp222.allergies.service.DepistageMenuService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.validation.Valid;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * Contrôleur REST du dépistage de population (menus de restauration collective)
+ */
+@RestController
+@RequestMapping("/depistage")
+@RequiredArgsConstructor
+@Slf4j
+@Tag(name = "Dépistage", description = "Dépistage d'un menu sur un groupe de convives")
+public class DepistageController {
+
+    private static final MediaType NDJSON = MediaType.parseMediaType("application/x-ndjson");
+    private static final int LIGNES_PAR_FLUSH = 500;
+
+    private final DepistageMenuService depistageMenuService;
+    private final ObjectMapper objectMapper;
+
+    @PostMapping(value = "/menu", produces = "application/x-ndjson")
+    @Operation(
+        summary = "Dépister un menu",
+        description = "Évalue en une passe les aliments et recettes du menu pour tous les convives du groupe " +
+                     "(tous les utilisateurs actifs si aucun n'est indiqué). Retourne une ligne JSON par couple " +
+                     "convive/élément à risque, de la gravité la plus élevée à la plus faible."
+    )
+    @ApiResponse(responseCode = "200", description = "Liste des convives à risque (NDJSON)")
+    @ApiResponse(responseCode = "400", description = "Menu invalide, aliment ou recette inconnu")
+    public ResponseEntity<StreamingResponseBody> depisterMenu(@Valid @RequestBody DepistageMenuRequest request) {
+        List<ConviveARisqueResponse> convives;
+        try {
+            convives = depistageMenuService.depister(request);
+        } catch (RuntimeException e) {
+            log.error("Erreur lors du dépistage du menu: {}", e.getMessage());
+            return ResponseEntity.badRequest().build();
+        }
+
+        StreamingResponseBody corps = (OutputStream sortie) -> {
+            int lignes = 0;
+            for (ConviveARisqueResponse convive : convives) {
+                sortie.write(objectMapper.writeValueAsString(convive).getBytes(StandardCharsets.UTF_8));
+                sortie.write('\n');
+                if (++lignes % LIGNES_PAR_FLUSH == 0) sortie.flush();
+            }
+            sortie.flush();
+        };
+        return ResponseEntity.ok().contentType(NDJSON).body(corps);
+    }
+}
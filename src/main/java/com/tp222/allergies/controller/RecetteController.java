@@ -0,0 +1,142 @@
+package com.tp222.allergies.controller;
+
+import com.tp222.allergies.model.dto.request.RecetteRequest;
+import com.tp222.allergies.model.dto.response.RecetteResponse;
+import com.tp222.allergies.model.dto.response.SecuriteRecetteResponse;
+import com.tp222.allergies.service.IndexRecettes;
+import com.tp222.allergies.service.RecetteService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.validation.Valid;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import java.math.BigDecimal;
+import java.util.List;
+
+/**
+ * Contrôleur REST pour la gestion des recettes
+ */
+@RestController
+@RequestMapping("/recettes")
+@RequiredArgsConstructor
+@Slf4j
+@Tag(name = "Recettes", description = "API de gestion des recettes avec profil allergénique précalculé")
+public class RecetteController {
+
+    private static final int TAILLE_PAGE_MAX = 200;
+
+    private final RecetteService recetteService;
+
+    @PostMapping
+    @Operation(
+        summary = "Créer une recette",
+        description = "Analyse les ingrédients, les rattache aux aliments du catalogue et matérialise " +
+                     "les allergènes et les totaux nutritionnels de la recette."
+    )
+    @ApiResponse(responseCode = "201", description = "Recette créée")
+    @ApiResponse(responseCode = "400", description = "Données invalides ou aliment inconnu")
+    public ResponseEntity<RecetteResponse> creer(@Valid @RequestBody RecetteRequest request) {
+        try {
+            return ResponseEntity.status(HttpStatus.CREATED).body(recetteService.creer(request));
+        } catch (RuntimeException e) {
+            log.error("Erreur lors de la création de la recette: {}", e.getMessage());
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    @GetMapping
+    @Operation(summary = "Lister les recettes", description = "Liste les recettes actives, éventuellement sous un seuil de calories par portion")
+    @ApiResponse(responseCode = "200", description = "Recettes récupérées")
+    public ResponseEntity<List<RecetteResponse>> lister(
+            @Parameter(description = "Calories maximum par portion") @RequestParam(required = false) BigDecimal caloriesMax) {
+        return ResponseEntity.ok(recetteService.lister(caloriesMax));
+    }
+
+    @GetMapping("/{id}")
+    @Operation(summary = "Obtenir une recette", description = "Retourne une recette avec ses ingrédients rattachés")
+    @ApiResponse(responseCode = "200", description = "Recette trouvée")
+    @ApiResponse(responseCode = "404", description = "Recette non trouvée")
+    public ResponseEntity<RecetteResponse> getRecette(@Parameter(description = "ID de la recette") @PathVariable Long id) {
+        try {
+            return ResponseEntity.ok(recetteService.getRecette(id));
+        } catch (RuntimeException e) {
+            return ResponseEntity.notFound().build();
+        }
+    }
+
+    @PutMapping("/{id}")
+    @Operation(summary = "Modifier une recette", description = "Remplace la recette et recalcule son profil matérialisé")
+    @ApiResponse(responseCode = "200", description = "Recette modifiée")
+    @ApiResponse(responseCode = "400", description = "Données invalides ou recette non trouvée")
+    public ResponseEntity<RecetteResponse> modifier(
+            @Parameter(description = "ID de la recette") @PathVariable Long id,
+            @Valid @RequestBody RecetteRequest request) {
+        try {
+            return ResponseEntity.ok(recetteService.modifier(id, request));
+        } catch (RuntimeException e) {
+            log.error("Erreur lors de la modification de la recette {}: {}", id, e.getMessage());
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    @DeleteMapping("/{id}")
+    @Operation(summary = "Supprimer une recette", description = "Désactive une recette")
+    @ApiResponse(responseCode = "204", description = "Recette supprimée")
+    @ApiResponse(responseCode = "404", description = "Recette non trouvée")
+    public ResponseEntity<Void> supprimer(@Parameter(description = "ID de la recette") @PathVariable Long id) {
+        try {
+            recetteService.supprimer(id);
+            return ResponseEntity.noContent().build();
+        } catch (RuntimeException e) {
+            return ResponseEntity.notFound().build();
+        }
+    }
+
+    @GetMapping("/sures")
+    @Operation(
+        summary = "Recettes sûres pour un utilisateur",
+        description = "Recettes sans allergène ni aliment à éviter pour l'utilisateur, dont tous les ingrédients sont reconnus, " +
+                     "filtrées sur l'index inversé des recettes et paginées dans l'ordre des identifiants"
+    )
+    @ApiResponse(responseCode = "200", description = "Recettes récupérées")
+    @ApiResponse(responseCode = "404", description = "Utilisateur non trouvé")
+    public ResponseEntity<Page<RecetteResponse>> getRecettesSures(
+            @Parameter(description = "ID de l'utilisateur") @RequestParam Long utilisateurId,
+            @Parameter(description = "Recettes de 30 minutes ou moins") @RequestParam(required = false) Boolean rapide,
+            @Parameter(description = "FACILE, MOYEN ou DIFFICILE") @RequestParam(required = false) String niveauDifficulte,
+            @Parameter(description = "Type de cuisine") @RequestParam(required = false) String typeCuisine,
+            @Parameter(description = "Calories maximum par portion") @RequestParam(required = false) BigDecimal caloriesMax,
+            @Parameter(description = "Numéro de page (à partir de 0)") @RequestParam(defaultValue = "0") int page,
+            @Parameter(description = "Taille de page") @RequestParam(defaultValue = "20") int taille) {
+        if (page < 0 || taille < 1 || taille > TAILLE_PAGE_MAX) {
+            return ResponseEntity.badRequest().build();
+        }
+        try {
+            IndexRecettes.Criteres criteres = new IndexRecettes.Criteres(rapide, niveauDifficulte, typeCuisine, caloriesMax);
+            return ResponseEntity.ok(recetteService.rechercherRecettesSures(utilisateurId, criteres, PageRequest.of(page, taille)));
+        } catch (RuntimeException e) {
+            return ResponseEntity.notFound().build();
+        }
+    }
+
+    @GetMapping("/{id}/securite")
+    @Operation(summary = "Vérifier une recette pour un utilisateur", description = "Détaille les allergènes et aliments en cause")
+    @ApiResponse(responseCode = "200", description = "Vérification effectuée")
+    @ApiResponse(responseCode = "404", description = "Recette ou utilisateur non trouvé")
+    public ResponseEntity<SecuriteRecetteResponse> verifierSecurite(
+            @Parameter(description = "ID de la recette") @PathVariable Long id,
+            @Parameter(description = "ID de l'utilisateur") @RequestParam Long utilisateurId) {
+        try {
+            return ResponseEntity.ok(recetteService.verifierSecurite(id, utilisateurId));
+        } catch (RuntimeException e) {
+            return ResponseEntity.notFound().build();
+        }
+    }
+}
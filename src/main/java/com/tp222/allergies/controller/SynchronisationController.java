@@ -0,0 +1,57 @@
+package com.tp222.allergies.controller;
+
+import com.tp222.allergies.model.dto.response.ChangementsResponse;
+import com.tp222.allergies.service.SynchronisationService;
+import com.tp222.allergies.service.sharding.RoutageUtilisateur;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+/**
+ * Contrôleur REST de la synchronisation différentielle des clients mobiles hors ligne
+ */
+@RestController
+@RequestMapping("/synchronisation")
+@RequiredArgsConstructor
+@Slf4j
+@Tag(name = "Synchronisation", description = "Changements des données d'un utilisateur depuis un curseur")
+public class SynchronisationController {
+
+    private static final int TAILLE_PAGE_MAX = 2000;
+
+    private final SynchronisationService synchronisationService;
+
+    @GetMapping("/{utilisateurId}")
+    @RoutageUtilisateur
+    @Operation(
+        summary = "Changements depuis un curseur",
+        description = "Allergies, réactions et aliments créés ou modifiés depuis le curseur, lignes désactivées " +
+                     "en suppressions. Sans curseur, toutes les données sont envoyées. Rappeler avec le curseur " +
+                     "renvoyé tant que complet vaut false."
+    )
+    @ApiResponse(responseCode = "200", description = "Page de changements")
+    @ApiResponse(responseCode = "400", description = "Curseur invalide (le client doit repartir sans curseur) ou taille invalide")
+    @ApiResponse(responseCode = "404", description = "Utilisateur non trouvé")
+    public ResponseEntity<ChangementsResponse> changements(
+            @Parameter(description = "ID de l'utilisateur") @PathVariable Long utilisateurId,
+            @Parameter(description = "Curseur renvoyé par la synchronisation précédente") @RequestParam(required = false) String curseur,
+            @Parameter(description = "Nombre de lignes par type et par page") @RequestParam(defaultValue = "500") int taille) {
+        if (taille < 1 || taille > TAILLE_PAGE_MAX) {
+            return ResponseEntity.badRequest().build();
+        }
+        try {
+            return ResponseEntity.ok(synchronisationService.changementsDepuis(utilisateurId, curseur, taille));
+        } catch (IllegalArgumentException e) {
+            log.warn("Synchronisation refusée pour l'utilisateur {}: {}", utilisateurId, e.getMessage());
+            return ResponseEntity.badRequest().build();
+        } catch (RuntimeException e) {
+            log.error("Erreur lors de la synchronisation: {}", e.getMessage());
+            return ResponseEntity.notFound().build();
+        }
+    }
+}
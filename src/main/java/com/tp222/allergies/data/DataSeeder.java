@@ -2,6 +2,9 @@ package com.tp222.allergies.data;
 
 import com.tp222.allergies.model.entity.*;
 import com.tp222.allergies.repository.*;
+import com.tp222.allergies.service.sharding.ReequilibrageShards;
+import com.tp222.allergies.service.sharding.RoutageShards;
+import com.tp222.allergies.service.sharding.ScatterGather;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.boot.CommandLineRunner;
@@ -28,10 +31,14 @@ public class DataSeeder implements CommandLineRunner {
     private final AlimentRepository alimentRepository;
     private final AllergieUtilisateurRepository allergieUtilisateurRepository;
     private final ReactionAllergiqueRepository reactionAllergiqueRepository;
+    private final ReactiviteCroiseeRepository reactiviteCroiseeRepository;
+    private final RoutageShards routageShards;
+    private final ScatterGather scatterGather;
+    private final ReequilibrageShards reequilibrageShards;
     
     @Override
     public void run(String... args) throws Exception {
-        if (utilisateurRepository.count() == 0) {
+        if (aucunUtilisateur()) {
             log.info("Initialisation des données de test...");
             
             // Création des catégories d'aliments
@@ -52,10 +59,24 @@ public class DataSeeder implements CommandLineRunner {
             // Création de réactions de test
             creerReactionsTest(utilisateurs, aliments);
             
+            // Réactivités croisées connues
+            creerReactivitesCroisees(aliments);
+            
+            // Avec le sharding, tout est créé sur le principal puis chaque utilisateur rejoint son shard
+            reequilibrageShards.reequilibrerApresCommit();
+            
             log.info("Données de test initialisées avec succès !");
         }
     }
     
+    private boolean aucunUtilisateur() {
+        if (!routageShards.isActif()) {
+            return utilisateurRepository.count() == 0;
+        }
+        return scatterGather.surTousLesShards(utilisateurRepository::count).values().stream()
+                .mapToLong(Long::longValue).sum() == 0;
+    }
+    
     private List<Categorie> creerCategories() {
         List<Categorie> categories = Arrays.asList(
             Categorie.builder()
@@ -432,4 +453,19 @@ public class DataSeeder implements CommandLineRunner {
         
         log.info("Créé {} réactions de test avec détection automatique", 3);
     }
+    
+    private void creerReactivitesCroisees(List<Aliment> aliments) {
+        // Syndrome pollen-aliments : les sensibilisés au pollen de bouleau réagissent souvent à la pomme et à la carotte
+        ReactiviteCroisee pommeCarotte = ReactiviteCroisee.builder()
+                .alimentSource(aliments.get(0)) // Pomme
+                .alimentCible(aliments.get(1)) // Carotte
+                .coefficient(BigDecimal.valueOf(0.35))
+                .description("Syndrome pollen-aliments (bouleau, protéines PR-10)")
+                .actif(true)
+                .build();
+        
+        reactiviteCroiseeRepository.save(pommeCarotte);
+        
+        log.info("Créé {} réactivités croisées", 1);
+    }
 }
@@ -0,0 +1,32 @@
+package com.tp222.allergies.model.dto.request;
+
+import jakarta.validation.constraints.Size;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * DTO pour le dépistage d'un menu sur un groupe de convives
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class DepistageMenuRequest {
+    
+    // Convives à dépister ; vide = tous les utilisateurs actifs
+    @Size(max = 50000, message = "Le groupe ne peut pas dépasser 50000 convives")
+    @Builder.Default
+    private List<Long> utilisateurIds = new ArrayList<>();
+    
+    @Size(max = 200, message = "Le menu ne peut pas dépasser 200 aliments")
+    @Builder.Default
+    private List<Long> alimentIds = new ArrayList<>();
+    
+    @Size(max = 200, message = "Le menu ne peut pas dépasser 200 recettes")
+    @Builder.Default
+    private List<Long> recetteIds = new ArrayList<>();
+}
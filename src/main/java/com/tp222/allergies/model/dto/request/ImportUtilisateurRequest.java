@@ -0,0 +1,55 @@
+package com.tp222.allergies.model.dto.request;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * DTO d'une ligne d'import en masse (un utilisateur et ses allergies).
+ * Les contraintes sont celles des entités Utilisateur et AllergieUtilisateur, vérifiées à l'import.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ImportUtilisateurRequest {
+
+    private String username;
+    private String email;
+    private String motDePasse;
+    private String prenom;
+    private String nom;
+    private LocalDate dateNaissance;
+    private String sexe;
+    private Double poids;
+    private Double taille;
+    private String niveauActivite;
+    private String objectifSante;
+    private String numeroTelephone;
+    private String adresse;
+    private String medecinTraitant;
+    private String contactUrgence;
+    private String telephoneUrgence;
+
+    private List<AllergieImport> allergies;
+
+    /**
+     * Allergie déclarée, désignée par son nom dans le catalogue ("Allergie aux arachides" ou "arachides")
+     */
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @Builder
+    public static class AllergieImport {
+
+        private String nom;
+        private String niveauSeverite; // à défaut, celui de l'allergie du catalogue
+        private LocalDate dateDiagnostic;
+        private String diagnostiquePar;
+        private String notes;
+        private String traitementActuel;
+    }
+}
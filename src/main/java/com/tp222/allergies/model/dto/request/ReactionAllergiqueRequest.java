@@ -15,7 +15,7 @@ import java.math.BigDecimal;
 @NoArgsConstructor
 @AllArgsConstructor
 @Builder
-public class ReactionAllergiqueRequest {
+public class ReactionAllergiqueRequest implements RequeteUtilisateur {
     
     @NotNull(message = "L'ID de l'utilisateur est obligatoire")
     private Long utilisateurId;
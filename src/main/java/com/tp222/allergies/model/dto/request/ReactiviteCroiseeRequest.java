@@ -0,0 +1,32 @@
+package com.tp222.allergies.model.dto.request;
+
+import jakarta.validation.constraints.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import java.math.BigDecimal;
+
+/**
+ * DTO pour la création/modification d'une réactivité croisée entre deux aliments
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ReactiviteCroiseeRequest {
+    
+    @NotNull(message = "L'ID du premier aliment est obligatoire")
+    private Long alimentSourceId;
+    
+    @NotNull(message = "L'ID du second aliment est obligatoire")
+    private Long alimentCibleId;
+    
+    @NotNull(message = "Le coefficient est obligatoire")
+    @DecimalMin(value = "0.0", inclusive = false, message = "Le coefficient doit être strictement positif")
+    @DecimalMax(value = "1.0", message = "Le coefficient ne peut pas dépasser 1")
+    private BigDecimal coefficient;
+    
+    @Size(max = 500, message = "La description ne peut pas dépasser 500 caractères")
+    private String description;
+}
@@ -0,0 +1,72 @@
+package com.tp222.allergies.model.dto.request;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import java.math.BigDecimal;
+import java.util.List;
+
+/**
+ * DTO pour la création/modification d'une recette
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class RecetteRequest {
+    
+    @NotBlank(message = "Le nom de la recette est obligatoire")
+    @Size(max = 200, message = "Le nom ne peut pas dépasser 200 caractères")
+    private String nom;
+    
+    @Size(max = 2000, message = "La description ne peut pas dépasser 2000 caractères")
+    private String description;
+    
+    @NotBlank(message = "Les instructions sont obligatoires")
+    @Size(max = 5000, message = "Les instructions ne peuvent pas dépasser 5000 caractères")
+    private String instructions;
+    
+    @Min(value = 1, message = "Le temps de préparation doit être positif")
+    private Integer tempsPreparation; // en minutes
+    
+    @Min(value = 0, message = "Le temps de cuisson doit être positif ou nul")
+    private Integer tempsCuisson; // en minutes
+    
+    @Min(value = 1, message = "Le nombre de portions doit être au moins 1")
+    private Integer nombrePortions;
+    
+    @Pattern(regexp = "^(FACILE|MOYEN|DIFFICILE)$", message = "Niveau de difficulté invalide")
+    private String niveauDifficulte;
+    
+    @Size(max = 50, message = "Le type de cuisine ne peut pas dépasser 50 caractères")
+    private String typeCuisine;
+    
+    @Size(max = 255, message = "L'URL de l'image ne peut pas dépasser 255 caractères")
+    private String imageUrl;
+    
+    // Texte libre, une ligne par ingrédient ("200 g de farine"), analysé si ingredientsStructures est vide
+    @Size(max = 2000, message = "Les ingrédients ne peuvent pas dépasser 2000 caractères")
+    private String ingredients;
+    
+    @Valid
+    private List<IngredientRequest> ingredientsStructures;
+    
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @Builder
+    public static class IngredientRequest {
+        
+        @NotNull(message = "L'ID de l'aliment est obligatoire")
+        private Long alimentId;
+        
+        @DecimalMin(value = "0.0", message = "La quantité doit être positive")
+        private BigDecimal quantiteGrammes;
+        
+        @Size(max = 255, message = "Le libellé ne peut pas dépasser 255 caractères")
+        private String libelle;
+    }
+}
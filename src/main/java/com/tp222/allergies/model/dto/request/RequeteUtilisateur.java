@@ -0,0 +1,9 @@
+package com.tp222.allergies.model.dto.request;
+
+/**
+ * Corps de requête rattaché à un utilisateur, utilisé pour choisir son shard
+ */
+public interface RequeteUtilisateur {
+
+    Long getUtilisateurId();
+}
@@ -0,0 +1,41 @@
+package com.tp222.allergies.model.dto.response;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * DTO d'une alerte allergique diffusée en temps réel aux tableaux de bord cliniques
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class AlerteAllergieEvent {
+
+    private String type; // REACTION_ALLERGIQUE, RISQUE_ELEVE
+    private Long utilisateurId;
+    private Long alimentId;
+    private String nomAliment;
+    private String niveau; // Niveau de sévérité de la réaction ou niveau de risque
+    private int gravite; // 0 (faible) à 3 (critique), commun aux deux échelles
+    private Integer scoreRisque;
+    private BigDecimal probabiliteAllergie;
+    private LocalDateTime dateAlerte;
+
+    /**
+     * Convertit un niveau de sévérité (LEGER..CRITIQUE) ou de risque (FAIBLE..CRITIQUE) en gravité 0-3
+     */
+    public static int gravite(String niveau) {
+        if (niveau == null) return 0;
+        return switch (niveau) {
+            case "CRITIQUE" -> 3;
+            case "SEVERE", "ELEVE" -> 2;
+            case "MODERE" -> 1;
+            default -> 0;
+        };
+    }
+}
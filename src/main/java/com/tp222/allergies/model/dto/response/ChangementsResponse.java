@@ -0,0 +1,97 @@
+package com.tp222.allergies.model.dto.response;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * DTO d'une page de synchronisation différentielle (clients mobiles hors ligne).
+ * Le client applique la page puis renvoie le curseur ; tant que complet est false, d'autres
+ * changements attendent déjà.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ChangementsResponse {
+
+    private Long utilisateurId;
+
+    /** Curseur opaque à renvoyer à la prochaine synchronisation */
+    private String curseur;
+
+    /** true si la page contient tous les changements connus à la lecture */
+    private boolean complet;
+
+    private List<AllergieChangee> allergies;
+    private List<ReactionChangee> reactions;
+    private List<AlimentChange> aliments;
+
+    /** Lignes désactivées, à retirer du stockage local */
+    private List<Suppression> suppressions;
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @Builder
+    public static class AllergieChangee {
+        private Long allergieId;
+        private String nomAllergie;
+        private String typeAllergie;
+        private String niveauSeverite;
+        private LocalDateTime dateDiagnostic;
+        private String diagnostiquePar;
+        private String notes;
+        private String traitementActuel;
+        private LocalDateTime dateModification;
+        private Long version;
+    }
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @Builder
+    public static class ReactionChangee {
+        private Long reactionId;
+        private Long alimentId;
+        private LocalDateTime dateReaction;
+        private String niveauSeverite;
+        private String symptomes;
+        private Integer dureeReaction;
+        private BigDecimal quantiteConsommee;
+        private String traitementUtilise;
+        private Boolean medecinConsulte;
+        private Boolean hospitalisationRequise;
+        private BigDecimal probabiliteAllergie;
+        private String notes;
+        private LocalDateTime dateModification;
+        private Long version;
+    }
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @Builder
+    public static class AlimentChange {
+        private Long alimentId;
+        private String nom;
+        private String categorie;
+        private String allergenesPotentiels;
+        private LocalDateTime dateModification;
+    }
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @Builder
+    public static class Suppression {
+        /** ALLERGIE ou ALIMENT */
+        private String type;
+        private Long id;
+        private LocalDateTime dateModification;
+    }
+}
@@ -0,0 +1,22 @@
+package com.tp222.allergies.model.dto.response;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import java.util.List;
+
+/**
+ * DTO de réponse pour une cohorte d'utilisateurs (page d'identifiants et taille totale)
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class CohorteResponse {
+    
+    private long tailleCohorte;
+    private int page;
+    private int taillePage;
+    private List<Long> utilisateurIds; // ordre croissant
+}
@@ -0,0 +1,28 @@
+package com.tp222.allergies.model.dto.response;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import java.util.List;
+
+/**
+ * Ligne de la liste des convives à risque pour un élément du menu
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ConviveARisqueResponse {
+    
+    private Long utilisateurId;
+    private String nomUtilisateur;
+    private String prenomUtilisateur;
+    private String typeElement; // ALIMENT ou RECETTE
+    private Long elementId;
+    private String nomElement;
+    private Integer scoreRisque;
+    private String niveauRisque;
+    private List<String> allergiesEnCause;
+    private List<String> alimentsEnCause; // Aliments du menu (ou de la recette) ayant déclenché le risque
+}
@@ -0,0 +1,31 @@
+package com.tp222.allergies.model.dto.response;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import java.time.LocalDateTime;
+
+/**
+ * DTO pour une demande d'effacement RGPD (progression et trace d'audit)
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class EffacementUtilisateurResponse {
+    
+    private Long effacementId;
+    private Long utilisateurId;
+    private String mode;
+    private String statut;
+    private String etape;
+    private String demandePar;
+    private String reference;
+    private long reactionsTraitees;
+    private long allergiesTraitees;
+    private long evenementsSupprimes;
+    private LocalDateTime dateCreation;
+    private LocalDateTime dateFin;
+    private String messageErreur;
+}
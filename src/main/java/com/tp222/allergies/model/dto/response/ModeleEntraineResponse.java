@@ -0,0 +1,29 @@
+package com.tp222.allergies.model.dto.response;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import java.time.LocalDateTime;
+
+/**
+ * DTO de réponse pour un modèle de risque entraîné hors ligne
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ModeleEntraineResponse {
+    
+    private String version;
+    private String typeModele;
+    private String statut; // EN_COURS, TERMINE, ECHEC
+    private Long nombreExemples;
+    private Long nombrePositifs;
+    private Integer epoques;
+    private Double logLossValidation;
+    private Double aucValidation;
+    private String messageErreur;
+    private LocalDateTime dateCreation;
+    private LocalDateTime dateFin;
+}
@@ -0,0 +1,22 @@
+package com.tp222.allergies.model.dto.response;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+
+/**
+ * DTO de réponse pour l'état des modèles de risque (actif et candidat shadow)
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ModeleRisqueResponse {
+    
+    private String versionActive;
+    private String versionCandidate; // null si aucune évaluation shadow en cours
+    private long evaluationsShadow;
+    private long evaluationsShadowIgnorees; // file shadow pleine
+    private double tauxDesaccord; // désaccords de niveau ou de détection / évaluations
+}
@@ -0,0 +1,33 @@
+package com.tp222.allergies.model.dto.response;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import java.time.LocalDateTime;
+
+/**
+ * DTO pour la progression d'un import d'utilisateurs en masse
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ProgressionImportResponse {
+
+    private Long importId;
+    private String format;
+    private String statut;
+    private long octetsTotal;
+    private long octetsLus;
+    private double pourcentage;
+    private long lignesLues;
+    private long utilisateursImportes;
+    private long allergiesImportees;
+    private long lignesRejetees; // détail dans le fichier de rejets
+    private double debitLignesParSeconde;
+    private Long etaSecondes; // null si inconnu
+    private LocalDateTime dateCreation;
+    private LocalDateTime dateFin;
+    private String messageErreur;
+}
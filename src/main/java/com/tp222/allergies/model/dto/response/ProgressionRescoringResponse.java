@@ -0,0 +1,31 @@
+package com.tp222.allergies.model.dto.response;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import java.time.LocalDateTime;
+
+/**
+ * DTO pour la progression d'un job de re-scoring
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ProgressionRescoringResponse {
+    
+    private Long jobId;
+    private String algorithmeVersion;
+    private String statut;
+    private int nombreChunks;
+    private int chunksTermines;
+    private double pourcentage;
+    private long reactionsTraitees;
+    private long allergiesDetectees;
+    private double debitReactionsParSeconde; // mesuré depuis le (re)démarrage
+    private Long etaSecondes; // null si inconnu
+    private LocalDateTime dateCreation;
+    private LocalDateTime dateFin;
+    private String messageErreur;
+}
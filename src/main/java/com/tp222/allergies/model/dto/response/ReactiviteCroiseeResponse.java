@@ -0,0 +1,25 @@
+package com.tp222.allergies.model.dto.response;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import java.math.BigDecimal;
+
+/**
+ * DTO de réponse pour une réactivité croisée (arête directe ou relation transitive)
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ReactiviteCroiseeResponse {
+    
+    private Long id; // null pour une relation transitive calculée
+    private Long alimentSourceId;
+    private String nomAlimentSource;
+    private Long alimentCibleId;
+    private String nomAlimentCible;
+    private BigDecimal coefficient;
+    private String description;
+}
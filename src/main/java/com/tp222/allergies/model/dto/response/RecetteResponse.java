@@ -0,0 +1,52 @@
+package com.tp222.allergies.model.dto.response;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import java.math.BigDecimal;
+import java.util.List;
+
+/**
+ * DTO de réponse pour une recette avec son profil allergénique et nutritionnel matérialisé
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class RecetteResponse {
+    
+    private Long id;
+    private String nom;
+    private String description;
+    private String instructions;
+    private Integer tempsPreparation;
+    private Integer tempsCuisson;
+    private Integer tempsTotal;
+    private Integer nombrePortions;
+    private String niveauDifficulte;
+    private String typeCuisine;
+    private String imageUrl;
+    
+    private List<String> allergenes;
+    private BigDecimal caloriesParPortion;
+    private BigDecimal poidsTotalGrammes;
+    private BigDecimal caloriesTotales;
+    private BigDecimal proteinesTotales;
+    private BigDecimal glucidesTotaux;
+    private BigDecimal lipidesTotaux;
+    private Integer ingredientsNonReconnus;
+    
+    private List<IngredientInfo> ingredients; // null dans les listes
+    
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @Builder
+    public static class IngredientInfo {
+        private String libelle;
+        private Long alimentId; // null si non reconnu
+        private String nomAliment;
+        private BigDecimal quantiteGrammes;
+    }
+}
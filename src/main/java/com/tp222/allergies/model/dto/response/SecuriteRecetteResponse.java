@@ -0,0 +1,25 @@
+package com.tp222.allergies.model.dto.response;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import java.util.List;
+
+/**
+ * DTO de réponse pour la vérification d'une recette pour un utilisateur
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class SecuriteRecetteResponse {
+    
+    private Long recetteId;
+    private String nomRecette;
+    private Long utilisateurId;
+    private boolean sure;
+    private List<String> allergenesEnCause;
+    private List<String> alimentsEnCause; // Aliments ayant déjà provoqué une réaction allergique
+    private Integer ingredientsNonReconnus;
+}
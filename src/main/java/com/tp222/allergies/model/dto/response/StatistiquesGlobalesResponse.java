@@ -0,0 +1,57 @@
+package com.tp222.allergies.model.dto.response;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * DTO de réponse pour les statistiques agrégées sur tous les shards
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class StatistiquesGlobalesResponse {
+
+    private long nombreUtilisateurs;
+    private long nombreReactions;
+    private List<ReactionsMois> reactionsParMois;
+    private List<Frequence> alimentsProblematiques; // réactions avec probabilité > 30 %
+    private List<Frequence> allergiesFrequentes;
+    private Map<String, Long> allergiesParSeverite;
+    private List<RepartitionShard> shards;
+    private long dureeMs;
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @Builder
+    public static class ReactionsMois {
+        private int annee;
+        private int mois;
+        private long nombre;
+    }
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @Builder
+    public static class Frequence {
+        private Long id;
+        private String nom;
+        private long nombre;
+    }
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @Builder
+    public static class RepartitionShard {
+        private String shard;
+        private long utilisateurs;
+        private long reactions;
+    }
+}
@@ -25,6 +25,7 @@ public class VerificationRisqueResponse {
     
     private List<AllergieRisque> allergiesDetectees;
     private List<ReactionHistorique> reactionsPassees;
+    private List<ReactionCroisee> reactionsCroisees; // Réactions à des aliments à réactivité croisée
     private List<String> recommandations;
     
     private AnalyseIA analyseIA;
@@ -54,6 +55,18 @@ public class VerificationRisqueResponse {
         private boolean hospitalisationRequise;
     }
     
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @Builder
+    public static class ReactionCroisee {
+        private Long alimentId;
+        private String nomAliment;
+        private java.math.BigDecimal coefficient; // Coefficient de réactivité avec l'aliment vérifié
+        private java.time.LocalDateTime dateReaction;
+        private String niveauSeverite;
+    }
+    
     @Data
     @NoArgsConstructor
     @AllArgsConstructor
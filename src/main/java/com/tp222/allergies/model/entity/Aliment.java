@@ -1,5 +1,6 @@
 package com.tp222.allergies.model.entity;
 
+import com.tp222.allergies.service.sharding.CatalogueEntityListener;
 import jakarta.persistence.*;
 import jakarta.validation.constraints.*;
 import lombok.Data;
@@ -15,7 +16,10 @@ import java.math.BigDecimal;
  * Entité représentant un aliment
  */
 @Entity
-@Table(name = "aliments")
+@Table(name = "aliments", indexes = {
+    @Index(name = "idx_aliments_date_modification", columnList = "date_modification")
+})
+@EntityListeners(CatalogueEntityListener.class)
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -1,5 +1,6 @@
 package com.tp222.allergies.model.entity;
 
+import com.tp222.allergies.service.CohortesEntityListener;
 import jakarta.persistence.*;
 import jakarta.validation.constraints.*;
 import lombok.Data;
@@ -14,7 +15,10 @@ import java.time.LocalDateTime;
  * Entité de liaison entre Utilisateur et Allergie
  */
 @Entity
-@Table(name = "allergies_utilisateurs")
+@Table(name = "allergies_utilisateurs", indexes = {
+    @Index(name = "idx_allergies_utilisateurs_version_sync", columnList = "utilisateur_id, version_sync")
+})
+@EntityListeners(CohortesEntityListener.class)
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -65,6 +69,11 @@ public class AllergieUtilisateur {
     @Column(name = "date_modification")
     private LocalDateTime dateModification;
     
+    // Version des données de l'utilisateur à la dernière écriture de la ligne (curseur de synchronisation)
+    @Column(name = "version_sync", nullable = false, columnDefinition = "bigint default 0")
+    @Builder.Default
+    private Long versionSync = 0L;
+    
     /**
      * Classe pour la clé composée
      */
@@ -1,5 +1,6 @@
 package com.tp222.allergies.model.entity;
 
+import com.tp222.allergies.service.sharding.CatalogueEntityListener;
 import jakarta.persistence.*;
 import jakarta.validation.constraints.*;
 import lombok.Data;
@@ -15,6 +16,7 @@ import java.time.LocalDateTime;
  */
 @Entity
 @Table(name = "categories")
+@EntityListeners(CatalogueEntityListener.class)
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -0,0 +1,51 @@
+package com.tp222.allergies.model.entity;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import java.time.LocalDateTime;
+
+/**
+ * Plage d'identifiants de réactions d'un shard traitée d'un bloc par un job de re-scoring (point de reprise)
+ */
+@Entity
+@Table(name = "chunks_rescoring", indexes = {
+    @Index(name = "idx_chunks_rescoring_job_statut", columnList = "job_id, statut, debut_id")
+})
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ChunkRescoring {
+    
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+    
+    @Column(name = "job_id", nullable = false)
+    private Long jobId;
+    
+    @Column(name = "shard", length = 50)
+    private String shard; // shard des réactions, null sans sharding
+    
+    @Column(name = "debut_id", nullable = false)
+    private Long debutId; // inclus
+    
+    @Column(name = "fin_id", nullable = false)
+    private Long finId; // exclu
+    
+    @Column(name = "statut", nullable = false, length = 20)
+    @Builder.Default
+    private String statut = "A_FAIRE"; // A_FAIRE, EN_COURS, TERMINE
+    
+    @Column(name = "proprietaire", length = 36)
+    private String proprietaire; // instance qui a réservé le chunk
+    
+    @Column(name = "fin_bail")
+    private LocalDateTime finBail; // au-delà, un chunk EN_COURS peut être repris par une autre instance
+    
+    @Column(name = "date_traitement")
+    private LocalDateTime dateTraitement;
+}
@@ -0,0 +1,85 @@
+package com.tp222.allergies.model.entity;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import org.hibernate.annotations.CreationTimestamp;
+import org.hibernate.annotations.UpdateTimestamp;
+import java.time.LocalDateTime;
+
+/**
+ * Demande d'effacement RGPD d'un utilisateur : point de reprise du job et trace d'audit.
+ * Ne contient aucune donnée personnelle ; conservée après la suppression de l'utilisateur.
+ * Un seul effacement EN_COURS par utilisateur (index unique partiel uk_effacements_utilisateur_en_cours).
+ */
+@Entity
+@Table(name = "effacements_utilisateurs", indexes = {
+    @Index(name = "idx_effacements_utilisateur", columnList = "utilisateur_id")
+})
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class EffacementUtilisateur {
+    
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+    
+    @Column(name = "utilisateur_id", nullable = false)
+    private Long utilisateurId;
+    
+    @Column(name = "mode", nullable = false, length = 20)
+    private String mode; // SUPPRESSION, ANONYMISATION
+    
+    @Column(name = "statut", nullable = false, length = 20)
+    private String statut; // EN_COURS, TERMINE, ECHEC
+    
+    @Column(name = "etape", nullable = false, length = 20)
+    @Builder.Default
+    private String etape = "DEMANDE"; // DEMANDE, REACTIONS, ALLERGIES, UTILISATEUR, TERMINE
+    
+    @Column(name = "demande_par", nullable = false, length = 100)
+    private String demandePar;
+    
+    @Column(name = "reference", length = 100)
+    private String reference; // référence de la demande RGPD (ticket, courrier)
+    
+    @Column(name = "reactions_traitees", nullable = false)
+    @Builder.Default
+    private Long reactionsTraitees = 0L;
+    
+    @Column(name = "allergies_traitees", nullable = false)
+    @Builder.Default
+    private Long allergiesTraitees = 0L;
+    
+    @Column(name = "evenements_supprimes", nullable = false)
+    @Builder.Default
+    private Long evenementsSupprimes = 0L;
+    
+    @Column(name = "proprietaire", length = 36)
+    private String proprietaire; // instance qui exécute le job
+    
+    @Column(name = "fin_bail")
+    private LocalDateTime finBail; // au-delà, une autre instance peut reprendre le job
+    
+    @Column(name = "message_erreur", columnDefinition = "TEXT")
+    private String messageErreur;
+    
+    @CreationTimestamp
+    @Column(name = "date_creation", nullable = false, updatable = false)
+    private LocalDateTime dateCreation;
+    
+    @UpdateTimestamp
+    @Column(name = "date_modification")
+    private LocalDateTime dateModification;
+    
+    @Column(name = "date_fin")
+    private LocalDateTime dateFin;
+    
+    public boolean isEnCours() {
+        return "EN_COURS".equals(statut);
+    }
+}
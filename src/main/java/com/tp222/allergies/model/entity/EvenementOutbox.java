@@ -0,0 +1,51 @@
+package com.tp222.allergies.model.entity;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import org.hibernate.annotations.CreationTimestamp;
+import java.time.LocalDateTime;
+
+/**
+ * Événement métier en attente de diffusion (transactional outbox).
+ * Écrit dans la même transaction que la donnée qu'il décrit, puis relayé vers les systèmes aval.
+ */
+@Entity
+@Table(name = "outbox_evenements", indexes = {
+    @Index(name = "idx_outbox_non_traites", columnList = "date_traitement, id")
+})
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class EvenementOutbox {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "type_evenement", nullable = false, length = 50)
+    private String typeEvenement; // REACTION_ENREGISTREE, ALLERGIE_DETECTEE
+
+    @Column(name = "utilisateur_id", nullable = false)
+    private Long utilisateurId; // Clé d'ordonnancement : ordre garanti par utilisateur
+
+    @Column(name = "payload", nullable = false, columnDefinition = "TEXT")
+    private String payload;
+
+    @Column(name = "tentatives", nullable = false)
+    @Builder.Default
+    private Integer tentatives = 0;
+
+    @CreationTimestamp
+    @Column(name = "date_creation", nullable = false, updatable = false)
+    private LocalDateTime dateCreation;
+
+    @Column(name = "date_traitement")
+    private LocalDateTime dateTraitement;
+
+    @Column(name = "date_rejet")
+    private LocalDateTime dateRejet; // Mis de côté après trop d'échecs du sink, plus relayé
+}
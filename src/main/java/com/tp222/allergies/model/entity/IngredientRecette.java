@@ -0,0 +1,55 @@
+package com.tp222.allergies.model.entity;
+
+import jakarta.persistence.*;
+import jakarta.validation.constraints.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.EqualsAndHashCode;
+import lombok.ToString;
+import java.math.BigDecimal;
+
+/**
+ * Ingrédient d'une recette, relié à l'aliment du catalogue reconnu dans son libellé
+ */
+@Entity
+@Table(name = "ingredients_recettes", indexes = {
+    @Index(name = "idx_ingredients_recette", columnList = "recette_id"),
+    @Index(name = "idx_ingredients_aliment", columnList = "aliment_id")
+})
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class IngredientRecette {
+    
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+    
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "recette_id", nullable = false)
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
+    private Recette recette;
+    
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "aliment_id")
+    private Aliment aliment; // null si le libellé ne correspond à aucun aliment connu
+    
+    @Column(name = "libelle", nullable = false)
+    @Size(max = 255, message = "Le libellé ne peut pas dépasser 255 caractères")
+    private String libelle; // Ligne d'origine, ex: "200 g de farine"
+    
+    @Column(name = "quantite_grammes", precision = 10, scale = 2)
+    @DecimalMin(value = "0.0", message = "La quantité doit être positive")
+    private BigDecimal quantiteGrammes; // null si non précisée
+    
+    @Column(name = "ordre", nullable = false)
+    private Integer ordre;
+    
+    public boolean isReconnu() {
+        return aliment != null;
+    }
+}
@@ -0,0 +1,74 @@
+package com.tp222.allergies.model.entity;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import org.hibernate.annotations.CreationTimestamp;
+import org.hibernate.annotations.UpdateTimestamp;
+import java.time.LocalDateTime;
+
+/**
+ * Job de recalcul des probabilités d'allergie après un changement de version d'algorithme
+ */
+@Entity
+@Table(name = "jobs_rescoring")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class JobRescoring {
+    
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+    
+    @Column(name = "algorithme_version", nullable = false, length = 20)
+    private String algorithmeVersion;
+    
+    @Column(name = "statut", nullable = false, length = 20)
+    private String statut; // EN_COURS, TERMINE, ANNULE, ECHEC
+    
+    @Column(name = "id_min", nullable = false)
+    private Long idMin;
+    
+    @Column(name = "id_max", nullable = false)
+    private Long idMax;
+    
+    @Column(name = "taille_chunk", nullable = false)
+    private Integer tailleChunk;
+    
+    @Column(name = "nombre_chunks", nullable = false)
+    private Integer nombreChunks;
+    
+    @Column(name = "chunks_termines", nullable = false)
+    @Builder.Default
+    private Integer chunksTermines = 0;
+    
+    @Column(name = "reactions_traitees", nullable = false)
+    @Builder.Default
+    private Long reactionsTraitees = 0L;
+    
+    @Column(name = "allergies_detectees", nullable = false)
+    @Builder.Default
+    private Long allergiesDetectees = 0L;
+    
+    @Column(name = "message_erreur", columnDefinition = "TEXT")
+    private String messageErreur;
+    
+    @CreationTimestamp
+    @Column(name = "date_creation", nullable = false, updatable = false)
+    private LocalDateTime dateCreation;
+    
+    @UpdateTimestamp
+    @Column(name = "date_modification")
+    private LocalDateTime dateModification;
+    
+    @Column(name = "date_fin")
+    private LocalDateTime dateFin;
+    
+    public boolean isEnCours() {
+        return "EN_COURS".equals(statut);
+    }
+}
@@ -0,0 +1,70 @@
+package com.tp222.allergies.model.entity;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import org.hibernate.annotations.CreationTimestamp;
+import java.time.LocalDateTime;
+
+/**
+ * Modèle de risque appris hors ligne ; ses poids sont chargés au démarrage par les déploiements
+ * qui le sélectionnent
+ */
+@Entity
+@Table(name = "modeles_risque")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ModeleRisqueEntraine {
+    
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+    
+    @Column(name = "version", nullable = false, unique = true, length = 20)
+    private String version; // Stockée avec chaque réaction scorée par ce modèle
+    
+    @Column(name = "type_modele", nullable = false, length = 20)
+    private String typeModele; // LOGISTIQUE
+    
+    @Column(name = "statut", nullable = false, length = 20)
+    private String statut; // EN_COURS, TERMINE, ECHEC
+    
+    @Column(name = "poids", columnDefinition = "TEXT")
+    private String poids; // Poids séparés par des virgules, standardisation incluse
+    
+    @Column(name = "biais")
+    private Double biais;
+    
+    @Column(name = "nombre_exemples")
+    private Long nombreExemples;
+    
+    @Column(name = "nombre_positifs")
+    private Long nombrePositifs; // Réactions confirmées par un médecin
+    
+    @Column(name = "epoques")
+    private Integer epoques;
+    
+    @Column(name = "log_loss_validation")
+    private Double logLossValidation;
+    
+    @Column(name = "auc_validation")
+    private Double aucValidation;
+    
+    @Column(name = "message_erreur", columnDefinition = "TEXT")
+    private String messageErreur;
+    
+    @CreationTimestamp
+    @Column(name = "date_creation", nullable = false, updatable = false)
+    private LocalDateTime dateCreation;
+    
+    @Column(name = "date_fin")
+    private LocalDateTime dateFin;
+    
+    public boolean isTermine() {
+        return "TERMINE".equals(statut);
+    }
+}
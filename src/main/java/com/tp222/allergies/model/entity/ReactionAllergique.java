@@ -9,19 +9,27 @@ import lombok.Builder;
 import org.hibernate.annotations.CreationTimestamp;
 import org.hibernate.annotations.UpdateTimestamp;
 import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
 import java.math.BigDecimal;
 
 /**
  * Entité représentant une réaction allergique d'un utilisateur à un aliment
  */
 @Entity
-@Table(name = "reactions_allergiques")
+@Table(name = "reactions_allergiques", indexes = {
+    @Index(name = "idx_reactions_utilisateur_version_sync", columnList = "utilisateur_id, version_sync")
+}, uniqueConstraints = {
+    // Une réaction par utilisateur, aliment et minute : les renvois et ré-imports sont refusés
+    @UniqueConstraint(name = ReactionAllergique.CONTRAINTE_UNICITE, columnNames = {"utilisateur_id", "aliment_id", "minute_reaction"})
+})
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
 @Builder
 public class ReactionAllergique {
     
+    public static final String CONTRAINTE_UNICITE = "uk_reactions_utilisateur_aliment_minute";
+    
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
@@ -38,6 +46,10 @@ public class ReactionAllergique {
     @NotNull(message = "La date de réaction est obligatoire")
     private LocalDateTime dateReaction;
     
+    // dateReaction à la minute, fixée à l'insertion ; nulle sur les doublons antérieurs à la contrainte
+    @Column(name = "minute_reaction", updatable = false)
+    private LocalDateTime minuteReaction;
+    
     @Column(name = "niveau_severite")
     @Pattern(regexp = "^(LEGER|MODERE|SEVERE|CRITIQUE)$", message = "Niveau de sévérité invalide")
     private String niveauSeverite;
@@ -77,6 +89,9 @@ public class ReactionAllergique {
     @DecimalMax(value = "1.0", message = "La probabilité doit être entre 0 et 1")
     private BigDecimal probabiliteAllergie;
     
+    @Column(name = "algorithme_version", length = 20)
+    private String algorithmeVersion; // Version de l'algorithme ayant calculé probabiliteAllergie
+    
     @Column(name = "notes", columnDefinition = "TEXT")
     @Size(max = 1000, message = "Les notes ne peuvent pas dépasser 1000 caractères")
     private String notes;
@@ -89,6 +104,23 @@ public class ReactionAllergique {
     @Column(name = "date_modification")
     private LocalDateTime dateModification;
     
+    // Version des données de l'utilisateur à la dernière écriture de la ligne (curseur de synchronisation)
+    @Column(name = "version_sync", nullable = false, columnDefinition = "bigint default 0")
+    @Builder.Default
+    private Long versionSync = 0L;
+    
+    @PrePersist
+    void fixerMinuteReaction() {
+        minuteReaction = minute(dateReaction);
+    }
+    
+    /**
+     * Date tronquée à la minute : deux réactions de la même minute pour le même aliment sont un doublon
+     */
+    public static LocalDateTime minute(LocalDateTime date) {
+        return date == null ? null : date.truncatedTo(ChronoUnit.MINUTES);
+    }
+    
     /**
      * Détermine si la réaction indique une allergie probable (>30% de probabilité)
      * @return true si allergie probable, false sinon
@@ -113,35 +145,4 @@ public class ReactionAllergique {
     public boolean hasRequiredMedicalIntervention() {
         return medecinConsulte == Boolean.TRUE || hospitalisationRequise == Boolean.TRUE;
     }
-    
-    /**
-     * Calcule un score de risque basé sur plusieurs facteurs
-     * @return score de risque entre 0 et 100
-     */
-    public int calculateRiskScore() {
-        int score = 0;
-        
-        // Score basé sur la sévérité
-        if ("CRITIQUE".equals(niveauSeverite)) score += 40;
-        else if ("SEVERE".equals(niveauSeverite)) score += 30;
-        else if ("MODERE".equals(niveauSeverite)) score += 20;
-        else if ("LEGER".equals(niveauSeverite)) score += 10;
-        
-        // Score basé sur la probabilité d'allergie
-        if (probabiliteAllergie != null) {
-            score += probabiliteAllergie.multiply(BigDecimal.valueOf(30)).intValue();
-        }
-        
-        // Score basé sur l'intervention médicale
-        if (hospitalisationRequise == Boolean.TRUE) score += 20;
-        else if (medecinConsulte == Boolean.TRUE) score += 10;
-        
-        // Score basé sur la durée de réaction
-        if (dureeReaction != null) {
-            if (dureeReaction > 240) score += 10; // Plus de 4 heures
-            else if (dureeReaction > 60) score += 5; // Plus d'1 heure
-        }
-        
-        return Math.min(score, 100);
-    }
 }
@@ -0,0 +1,60 @@
+package com.tp222.allergies.model.entity;
+
+import jakarta.persistence.*;
+import jakarta.validation.constraints.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import org.hibernate.annotations.CreationTimestamp;
+import org.hibernate.annotations.UpdateTimestamp;
+import java.time.LocalDateTime;
+import java.math.BigDecimal;
+
+/**
+ * Réactivité croisée connue entre deux aliments (arête non orientée du graphe de réactivité).
+ * Le couple est stocké avec alimentSource.id < alimentCible.id pour rester unique.
+ */
+@Entity
+@Table(name = "reactivites_croisees", uniqueConstraints = {
+    @UniqueConstraint(name = "uk_reactivite_couple", columnNames = {"aliment_source_id", "aliment_cible_id"})
+})
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ReactiviteCroisee {
+    
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+    
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "aliment_source_id", nullable = false)
+    private Aliment alimentSource;
+    
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "aliment_cible_id", nullable = false)
+    private Aliment alimentCible;
+    
+    @Column(name = "coefficient", nullable = false, precision = 4, scale = 3)
+    @DecimalMin(value = "0.0", inclusive = false, message = "Le coefficient doit être strictement positif")
+    @DecimalMax(value = "1.0", message = "Le coefficient ne peut pas dépasser 1")
+    private BigDecimal coefficient; // Part du risque transmise d'un aliment à l'autre
+    
+    @Column(name = "description", columnDefinition = "TEXT")
+    @Size(max = 500, message = "La description ne peut pas dépasser 500 caractères")
+    private String description; // Ex: "Syndrome pollen-aliments (bouleau)"
+    
+    @Column(name = "actif")
+    @Builder.Default
+    private Boolean actif = true;
+    
+    @CreationTimestamp
+    @Column(name = "date_creation", nullable = false, updatable = false)
+    private LocalDateTime dateCreation;
+    
+    @UpdateTimestamp
+    @Column(name = "date_modification")
+    private LocalDateTime dateModification;
+}
@@ -10,7 +10,12 @@ import org.hibernate.annotations.CreationTimestamp;
 import org.hibernate.annotations.UpdateTimestamp;
 import java.time.LocalDateTime;
 import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 /**
  * Entité représentant une recette
@@ -63,16 +68,49 @@ public class Recette {
     
     @Column(name = "calories_par_portion")
     @Min(value = 0, message = "Les calories doivent être positives")
-    private BigDecimal caloriesParPortion;
+    private BigDecimal caloriesParPortion; // Matérialisé à l'écriture
     
     @Column(name = "ingredients", columnDefinition = "TEXT")
     @NotBlank(message = "La liste des ingrédients est obligatoire")
     @Size(max = 2000, message = "Les ingrédients ne peuvent pas dépasser 2000 caractères")
-    private String ingredients;
+    private String ingredients; // Texte saisi, analysé une seule fois à l'écriture
     
     @Column(name = "allergenes_presents", columnDefinition = "TEXT")
     @Size(max = 500, message = "Les allergènes ne peuvent pas dépasser 500 caractères")
-    private String allergenesPresents;
+    private String allergenesPresents; // Affichage ; la référence est l'ensemble allergenes
+    
+    @OneToMany(mappedBy = "recette", cascade = CascadeType.ALL, orphanRemoval = true, fetch = FetchType.LAZY)
+    @OrderBy("ordre")
+    @Builder.Default
+    private List<IngredientRecette> ingredientsLies = new ArrayList<>();
+    
+    // Allergènes normalisés des aliments de la recette, matérialisés à l'écriture
+    @ElementCollection(fetch = FetchType.LAZY)
+    @CollectionTable(name = "recettes_allergenes", joinColumns = @JoinColumn(name = "recette_id"),
+            indexes = @Index(name = "idx_recettes_allergenes_allergene", columnList = "allergene"))
+    @Column(name = "allergene", length = 100)
+    @Builder.Default
+    private Set<String> allergenes = new HashSet<>();
+    
+    // Totaux nutritionnels de la recette entière, matérialisés à l'écriture
+    @Column(name = "poids_total_grammes", precision = 10, scale = 2)
+    private BigDecimal poidsTotalGrammes;
+    
+    @Column(name = "calories_totales", precision = 10, scale = 2)
+    private BigDecimal caloriesTotales;
+    
+    @Column(name = "proteines_totales", precision = 10, scale = 2)
+    private BigDecimal proteinesTotales;
+    
+    @Column(name = "glucides_totaux", precision = 10, scale = 2)
+    private BigDecimal glucidesTotaux;
+    
+    @Column(name = "lipides_totaux", precision = 10, scale = 2)
+    private BigDecimal lipidesTotaux;
+    
+    @Column(name = "ingredients_non_reconnus")
+    @Builder.Default
+    private Integer ingredientsNonReconnus = 0; // Allergènes inconnus : la recette ne peut être garantie sûre
     
     @Column(name = "image_url")
     @Size(max = 255, message = "L'URL de l'image ne peut pas dépasser 255 caractères")
@@ -119,15 +157,12 @@ public class Recette {
     
     /**
      * Vérifie si la recette est adaptée à un utilisateur (pas d'allergènes problématiques)
-     * @param userAllergies liste des allergies de l'utilisateur
+     * @param allergenesUtilisateur allergènes normalisés (voir Allergenes.normaliser) à éviter
      * @return true si adaptée, false sinon
      */
-    public boolean isSafeForUser(List<String> userAllergies) {
-        if (userAllergies == null || userAllergies.isEmpty()) return true;
-        if (allergenesPresents == null || allergenesPresents.trim().isEmpty()) return true;
-        
-        String allergenesLower = allergenesPresents.toLowerCase();
-        return userAllergies.stream()
-                .noneMatch(allergie -> allergenesLower.contains(allergie.toLowerCase()));
+    public boolean isSafeForUser(Collection<String> allergenesUtilisateur) {
+        if (ingredientsNonReconnus != null && ingredientsNonReconnus > 0) return false;
+        if (allergenesUtilisateur == null || allergenesUtilisateur.isEmpty()) return true;
+        return Collections.disjoint(allergenes, allergenesUtilisateur);
     }
 }
@@ -1,5 +1,6 @@
 package com.tp222.allergies.model.entity;
 
+import com.tp222.allergies.service.CohortesEntityListener;
 import jakarta.persistence.*;
 import jakarta.validation.constraints.*;
 import lombok.Data;
@@ -17,6 +18,7 @@ import java.util.List;
  */
 @Entity
 @Table(name = "utilisateurs")
+@EntityListeners(CohortesEntityListener.class)
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -109,6 +111,15 @@ public class Utilisateur {
     @Column(name = "date_modification")
     private LocalDateTime dateModification;
     
+    // Version des données de l'utilisateur (réactions, allergies), incrémentée en SQL uniquement
+    @Column(name = "version_donnees", nullable = false, updatable = false, columnDefinition = "bigint default 0")
+    @Builder.Default
+    private Long versionDonnees = 0L;
+    
+    // Renseignée au début d'un effacement RGPD ; écrite en SQL uniquement
+    @Column(name = "date_demande_effacement", insertable = false, updatable = false)
+    private LocalDateTime dateDemandeEffacement;
+    
     // Relations
     @OneToMany(mappedBy = "utilisateur", cascade = CascadeType.ALL, fetch = FetchType.LAZY)
     private List<AllergieUtilisateur> allergies;
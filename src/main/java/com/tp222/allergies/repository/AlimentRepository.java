@@ -7,6 +7,7 @@ import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 import java.math.BigDecimal;
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
 
@@ -58,7 +59,7 @@ public interface AlimentRepository extends JpaRepository<Aliment, Long> {
     /**
      * Trouve les aliments sans allergènes
      */
-    @Query("SELECT a FROM Aliment a WHERE a.allergenesPotentiels IS NULL OR a.allergenesPotentiels = '' AND a.actif = true")
+    @Query("SELECT a FROM Aliment a WHERE (a.allergenesPotentiels IS NULL OR a.allergenesPotentiels = '') AND a.actif = true")
     List<Aliment> findAllergenFreeFoods();
     
     /**
@@ -87,4 +88,12 @@ public interface AlimentRepository extends JpaRepository<Aliment, Long> {
     @Query("SELECT c.nom, AVG(a.calories), AVG(a.proteines), AVG(a.glucides), AVG(a.lipides) " +
            "FROM Aliment a JOIN a.categorie c WHERE a.actif = true GROUP BY c.nom")
     List<Object[]> getNutritionalStatsByCategory();
+    
+    /**
+     * Aliments concernés par les réactions d'un utilisateur et modifiés depuis une date (actifs ou non)
+     */
+    @Query("SELECT DISTINCT a FROM ReactionAllergique r JOIN r.aliment a " +
+           "WHERE r.utilisateur.id = :utilisateurId AND a.dateModification > :depuis")
+    List<Aliment> findModifiesPourUtilisateur(@Param("utilisateurId") Long utilisateurId,
+                                              @Param("depuis") LocalDateTime depuis);
 }
@@ -2,6 +2,7 @@ package com.tp222.allergies.repository;
 
 import com.tp222.allergies.model.entity.Allergie;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
@@ -19,6 +20,25 @@ public interface AllergieRepository extends JpaRepository<Allergie, Long> {
      */
     Optional<Allergie> findByNom(String nom);
     
+    /**
+     * Identifiant d'une allergie par son nom
+     */
+    @Query("SELECT a.id FROM Allergie a WHERE a.nom = :nom")
+    Optional<Long> findIdByNom(@Param("nom") String nom);
+    
+    /**
+     * Insère l'allergie sauf si une allergie du même nom existe (PostgreSQL) ; une insertion
+     * concurrente du même nom est attendue puis ignorée au lieu de violer l'unicité
+     * @return 1 si l'allergie a été insérée, 0 si elle existait
+     */
+    @Modifying
+    @Query(value = "INSERT INTO allergies (nom, description, niveau_severite, type_allergie, symptomes, " +
+                   "traitement_recommande, actif, date_creation, date_modification) VALUES (" +
+                   ":#{#a.nom}, :#{#a.description}, :#{#a.niveauSeverite}, :#{#a.typeAllergie}, :#{#a.symptomes}, " +
+                   ":#{#a.traitementRecommande}, :#{#a.actif}, :#{#a.dateCreation}, :#{#a.dateCreation}) " +
+                   "ON CONFLICT (nom) DO NOTHING", nativeQuery = true)
+    int insererSiAbsente(@Param("a") Allergie allergie);
+    
     /**
      * Trouve toutes les allergies actives
      */
@@ -4,12 +4,19 @@ import com.tp222.allergies.model.entity.AllergieUtilisateur;
 import com.tp222.allergies.model.entity.AllergieUtilisateur.AllergieUtilisateurId;
 import com.tp222.allergies.model.entity.Utilisateur;
 import com.tp222.allergies.model.entity.Allergie;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 /**
  * Repository pour l'entité AllergieUtilisateur
@@ -72,9 +79,62 @@ public interface AllergieUtilisateurRepository extends JpaRepository<AllergieUti
     @Query("SELECT au FROM AllergieUtilisateur au WHERE au.utilisateur = :utilisateur AND au.niveauSeverite = 'CRITIQUE' AND au.actif = true")
     List<AllergieUtilisateur> findCriticalAllergiesByUser(@Param("utilisateur") Utilisateur utilisateur);
     
+    /**
+     * Nombre d'utilisateurs par allergie active (identifiants seuls, agrégeable entre shards)
+     */
+    @Query("SELECT au.allergie.id, COUNT(au) FROM AllergieUtilisateur au WHERE au.actif = true GROUP BY au.allergie.id")
+    List<Object[]> countActivesParAllergie();
+    
     /**
      * Statistiques des allergies par sévérité
      */
     @Query("SELECT au.niveauSeverite, COUNT(au) FROM AllergieUtilisateur au WHERE au.actif = true GROUP BY au.niveauSeverite")
     List<Object[]> getAllergieStatsBySeverity();
+    
+    /**
+     * Allergies actives d'un groupe d'utilisateurs, allergie chargée (dépistage de population)
+     */
+    @Query("SELECT au FROM AllergieUtilisateur au JOIN FETCH au.allergie " +
+           "WHERE au.actif = true AND au.utilisateur.id IN :utilisateurIds")
+    List<AllergieUtilisateur> findActivesByUtilisateurIds(@Param("utilisateurIds") Collection<Long> utilisateurIds);
+    
+    /**
+     * Associations actives (utilisateur, allergie, sévérité) triées par utilisateur, lues en flux
+     * pour le chargement des bitmaps de cohortes (à consommer dans une transaction)
+     */
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "5000"))
+    @Query("SELECT au.utilisateur.id, au.allergie.id, au.niveauSeverite FROM AllergieUtilisateur au " +
+           "WHERE au.actif = true ORDER BY au.utilisateur.id")
+    Stream<Object[]> streamAssociationsActives();
+    
+    /**
+     * Allergies actives (allergie, sévérité) d'un utilisateur
+     */
+    @Query("SELECT au.allergie.id, au.niveauSeverite FROM AllergieUtilisateur au " +
+           "WHERE au.utilisateur.id = :utilisateurId AND au.actif = true")
+    List<Object[]> findAssociationsActivesByUtilisateurId(@Param("utilisateurId") Long utilisateurId);
+    
+    /**
+     * Associations d'un utilisateur écrites entre deux versions de ses données (y compris les désactivées),
+     * allergie chargée, dans l'ordre des versions
+     */
+    @Query("SELECT au FROM AllergieUtilisateur au JOIN FETCH au.allergie WHERE au.utilisateur.id = :utilisateurId " +
+           "AND au.versionSync > :depuis AND au.versionSync <= :jusqua ORDER BY au.versionSync, au.allergie.id")
+    List<AllergieUtilisateur> findChangementsSync(@Param("utilisateurId") Long utilisateurId, @Param("depuis") long depuis,
+                                                 @Param("jusqua") long jusqua, Pageable pageable);
+    
+    /**
+     * Supprime en masse les associations d'un utilisateur (quelques lignes par utilisateur)
+     */
+    @Modifying
+    @Query("DELETE FROM AllergieUtilisateur au WHERE au.utilisateur.id = :utilisateurId")
+    int supprimerParUtilisateurId(@Param("utilisateurId") Long utilisateurId);
+    
+    /**
+     * Efface le texte libre des associations d'un utilisateur ; allergie et sévérité restent
+     */
+    @Modifying
+    @Query("UPDATE AllergieUtilisateur au SET au.diagnostiquePar = NULL, au.notes = NULL, au.traitementActuel = NULL " +
+           "WHERE au.utilisateur.id = :utilisateurId")
+    int anonymiserParUtilisateurId(@Param("utilisateurId") Long utilisateurId);
 }
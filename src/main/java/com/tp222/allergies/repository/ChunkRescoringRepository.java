@@ -0,0 +1,45 @@
+package com.tp222.allergies.repository;
+
+import com.tp222.allergies.model.entity.ChunkRescoring;
+import org.springframework.stereotype.Repository;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Repository pour l'entité ChunkRescoring
+ */
+@Repository
+public interface ChunkRescoringRepository extends JpaRepository<ChunkRescoring, Long> {
+    
+    /**
+     * Trouve les chunks d'un job qu'une instance peut réserver (à faire, ou bail expiré), dans l'ordre des identifiants
+     */
+    @Query("SELECT c FROM ChunkRescoring c WHERE c.jobId = :jobId " +
+           "AND (c.statut = 'A_FAIRE' OR (c.statut = 'EN_COURS' AND c.finBail < :maintenant)) ORDER BY c.debutId")
+    List<ChunkRescoring> findReservables(@Param("jobId") Long jobId, @Param("maintenant") LocalDateTime maintenant);
+    
+    /**
+     * Réserve atomiquement un chunk à faire, ou dont le bail a expiré, tant que son job est en cours
+     * @return 1 si le chunk est réservé par cette instance, 0 s'il l'est par une autre ou terminé
+     */
+    @Modifying
+    @Query("UPDATE ChunkRescoring c SET c.statut = 'EN_COURS', c.proprietaire = :proprietaire, c.finBail = :finBail " +
+           "WHERE c.id = :id AND (c.statut = 'A_FAIRE' OR (c.statut = 'EN_COURS' AND c.finBail < :maintenant)) " +
+           "AND EXISTS (SELECT j.id FROM JobRescoring j WHERE j.id = c.jobId AND j.statut = 'EN_COURS')")
+    int reserver(@Param("id") Long id, @Param("proprietaire") String proprietaire,
+                 @Param("finBail") LocalDateTime finBail, @Param("maintenant") LocalDateTime maintenant);
+    
+    /**
+     * Marque terminé un chunk encore réservé par cette instance
+     * @return 0 si la réservation a été perdue (bail expiré et chunk repris)
+     */
+    @Modifying
+    @Query("UPDATE ChunkRescoring c SET c.statut = 'TERMINE', c.dateTraitement = :maintenant, c.finBail = null " +
+           "WHERE c.id = :id AND c.statut = 'EN_COURS' AND c.proprietaire = :proprietaire")
+    int terminer(@Param("id") Long id, @Param("proprietaire") String proprietaire,
+                 @Param("maintenant") LocalDateTime maintenant);
+}
@@ -0,0 +1,63 @@
+package com.tp222.allergies.repository;
+
+import com.tp222.allergies.model.entity.EffacementUtilisateur;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Repository pour l'entité EffacementUtilisateur
+ */
+@Repository
+public interface EffacementUtilisateurRepository extends JpaRepository<EffacementUtilisateur, Long> {
+    
+    /**
+     * Trouve les effacements par statut
+     */
+    List<EffacementUtilisateur> findByStatut(String statut);
+    
+    /**
+     * Historique des demandes d'effacement d'un utilisateur
+     */
+    List<EffacementUtilisateur> findByUtilisateurIdOrderByIdDesc(Long utilisateurId);
+    
+    /**
+     * Effacement déjà en cours pour un utilisateur
+     */
+    Optional<EffacementUtilisateur> findFirstByUtilisateurIdAndStatut(Long utilisateurId, String statut);
+    
+    /**
+     * Enregistre l'avancement d'un lot
+     */
+    @Modifying
+    @Query("UPDATE EffacementUtilisateur e SET e.etape = :etape, " +
+           "e.reactionsTraitees = e.reactionsTraitees + :reactions, " +
+           "e.allergiesTraitees = e.allergiesTraitees + :allergies, " +
+           "e.evenementsSupprimes = e.evenementsSupprimes + :evenements WHERE e.id = :id")
+    int ajouterAvancement(@Param("id") Long id, @Param("etape") String etape, @Param("reactions") long reactions,
+                          @Param("allergies") long allergies, @Param("evenements") long evenements);
+    
+    /**
+     * Réserve ou prolonge l'exécution d'un effacement en cours : libre, déjà à cette instance, ou bail expiré
+     * @return 0 si une autre instance l'exécute
+     */
+    @Modifying
+    @Query("UPDATE EffacementUtilisateur e SET e.proprietaire = :proprietaire, e.finBail = :finBail " +
+           "WHERE e.id = :id AND e.statut = 'EN_COURS' " +
+           "AND (e.proprietaire IS NULL OR e.proprietaire = :proprietaire OR e.finBail < :maintenant)")
+    int reserver(@Param("id") Long id, @Param("proprietaire") String proprietaire,
+                 @Param("finBail") LocalDateTime finBail, @Param("maintenant") LocalDateTime maintenant);
+    
+    /**
+     * Rend un effacement détenu par cette instance (arrêt, échec) : une autre peut le reprendre sans attendre le bail
+     */
+    @Modifying
+    @Query("UPDATE EffacementUtilisateur e SET e.proprietaire = NULL, e.finBail = NULL " +
+           "WHERE e.id = :id AND e.proprietaire = :proprietaire")
+    int liberer(@Param("id") Long id, @Param("proprietaire") String proprietaire);
+}
@@ -0,0 +1,76 @@
+package com.tp222.allergies.repository;
+
+import com.tp222.allergies.model.entity.EvenementOutbox;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Repository pour l'entité EvenementOutbox
+ */
+@Repository
+public interface EvenementOutboxRepository extends JpaRepository<EvenementOutbox, Long> {
+
+    /**
+     * Trouve le prochain lot d'événements non traités et non rejetés, dans l'ordre d'écriture
+     */
+    @Query("SELECT e FROM EvenementOutbox e WHERE e.dateTraitement IS NULL AND e.dateRejet IS NULL ORDER BY e.id")
+    List<EvenementOutbox> findLotNonTraite(Pageable pageable);
+
+    /**
+     * Compte les événements en attente de diffusion
+     */
+    long countByDateTraitementIsNullAndDateRejetIsNull();
+
+    /**
+     * Compte les événements rejetés (lettres mortes)
+     */
+    long countByDateRejetIsNotNull();
+
+    /**
+     * Date de création de l'événement en attente le plus ancien
+     */
+    @Query("SELECT MIN(e.dateCreation) FROM EvenementOutbox e WHERE e.dateTraitement IS NULL AND e.dateRejet IS NULL")
+    LocalDateTime findDateCreationPlusAncienNonTraite();
+
+    /**
+     * Marque un lot comme diffusé
+     */
+    @Modifying
+    @Query("UPDATE EvenementOutbox e SET e.dateTraitement = :date WHERE e.id IN :ids")
+    int marquerTraites(@Param("ids") Collection<Long> ids, @Param("date") LocalDateTime date);
+
+    /**
+     * Incrémente le compteur de tentatives d'un lot en échec
+     */
+    @Modifying
+    @Query("UPDATE EvenementOutbox e SET e.tentatives = e.tentatives + 1 WHERE e.id IN :ids")
+    int incrementerTentatives(@Param("ids") Collection<Long> ids);
+
+    /**
+     * Met un événement de côté après trop d'échecs : le relais passe aux suivants
+     */
+    @Modifying
+    @Query("UPDATE EvenementOutbox e SET e.dateRejet = :date WHERE e.id = :id AND e.dateTraitement IS NULL")
+    int rejeter(@Param("id") Long id, @Param("date") LocalDateTime date);
+
+    /**
+     * Purge les événements diffusés avant une date
+     */
+    @Modifying
+    @Query("DELETE FROM EvenementOutbox e WHERE e.dateTraitement < :date")
+    int supprimerTraitesAvant(@Param("date") LocalDateTime date);
+
+    /**
+     * Supprime les événements d'un utilisateur, diffusés ou non (effacement RGPD)
+     */
+    @Modifying
+    @Query("DELETE FROM EvenementOutbox e WHERE e.utilisateurId = :utilisateurId")
+    int supprimerParUtilisateurId(@Param("utilisateurId") Long utilisateurId);
+}
@@ -0,0 +1,30 @@
+package com.tp222.allergies.repository;
+
+import com.tp222.allergies.model.entity.JobRescoring;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import java.util.List;
+
+/**
+ * Repository pour l'entité JobRescoring
+ */
+@Repository
+public interface JobRescoringRepository extends JpaRepository<JobRescoring, Long> {
+    
+    /**
+     * Trouve les jobs par statut
+     */
+    List<JobRescoring> findByStatut(String statut);
+    
+    /**
+     * Enregistre atomiquement l'avancement d'un chunk (plusieurs workers mettent à jour le même job)
+     */
+    @Modifying
+    @Query("UPDATE JobRescoring j SET j.chunksTermines = j.chunksTermines + 1, " +
+           "j.reactionsTraitees = j.reactionsTraitees + :traitees, " +
+           "j.allergiesDetectees = j.allergiesDetectees + :detectees WHERE j.id = :id")
+    int ajouterAvancement(@Param("id") Long id, @Param("traitees") long traitees, @Param("detectees") long detectees);
+}
@@ -0,0 +1,29 @@
+package com.tp222.allergies.repository;
+
+import com.tp222.allergies.model.entity.ModeleRisqueEntraine;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Repository pour l'entité ModeleRisqueEntraine
+ */
+@Repository
+public interface ModeleRisqueEntraineRepository extends JpaRepository<ModeleRisqueEntraine, Long> {
+    
+    /**
+     * Trouve un modèle par sa version
+     */
+    Optional<ModeleRisqueEntraine> findByVersion(String version);
+    
+    /**
+     * Trouve le dernier modèle entraîné avec succès d'un type donné
+     */
+    Optional<ModeleRisqueEntraine> findFirstByTypeModeleAndStatutOrderByIdDesc(String typeModele, String statut);
+    
+    /**
+     * Liste les modèles du plus récent au plus ancien
+     */
+    List<ModeleRisqueEntraine> findAllByOrderByIdDesc();
+}
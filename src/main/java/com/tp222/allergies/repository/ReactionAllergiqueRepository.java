@@ -3,13 +3,21 @@ package com.tp222.allergies.repository;
 import com.tp222.allergies.model.entity.ReactionAllergique;
 import com.tp222.allergies.model.entity.Utilisateur;
 import com.tp222.allergies.model.entity.Aliment;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import java.time.LocalDateTime;
 import java.math.BigDecimal;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
 
 /**
  * Repository pour l'entité ReactionAllergique
@@ -32,6 +40,34 @@ public interface ReactionAllergiqueRepository extends JpaRepository<ReactionAlle
      */
     List<ReactionAllergique> findByUtilisateurAndAliment(Utilisateur utilisateur, Aliment aliment);
     
+    /**
+     * Compte les réactions d'un utilisateur pour un aliment spécifique
+     */
+    long countByUtilisateurAndAliment(Utilisateur utilisateur, Aliment aliment);
+    
+    /**
+     * Réaction déjà enregistrée pour ce couple à cette minute (lecture par la contrainte d'unicité)
+     */
+    Optional<ReactionAllergique> findFirstByUtilisateurIdAndAlimentIdAndMinuteReaction(
+        Long utilisateurId, Long alimentId, LocalDateTime minuteReaction);
+    
+    /**
+     * Clés (utilisateurId, alimentId, dateReaction) de toutes les réactions, pour le filtre de doublons
+     */
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "5000"))
+    @Query("SELECT r.utilisateur.id, r.aliment.id, r.dateReaction FROM ReactionAllergique r")
+    Stream<Object[]> streamClesDoublons();
+    
+    /**
+     * Trouve les réactions d'un utilisateur à un ensemble d'aliments
+     */
+    List<ReactionAllergique> findByUtilisateurAndAlimentIdIn(Utilisateur utilisateur, Collection<Long> alimentIds);
+    
+    /**
+     * Trouve les réactions d'un groupe d'utilisateurs à un ensemble d'aliments
+     */
+    List<ReactionAllergique> findByUtilisateurIdInAndAlimentIdIn(Collection<Long> utilisateurIds, Collection<Long> alimentIds);
+    
     /**
      * Trouve les réactions par niveau de sévérité
      */
@@ -55,6 +91,20 @@ public interface ReactionAllergiqueRepository extends JpaRepository<ReactionAlle
     @Query("SELECT r FROM ReactionAllergique r WHERE r.utilisateur = :utilisateur AND r.dateReaction >= :dateDebut ORDER BY r.dateReaction DESC")
     List<ReactionAllergique> findRecentReactionsByUser(@Param("utilisateur") Utilisateur utilisateur, @Param("dateDebut") LocalDateTime dateDebut);
     
+    /**
+     * Réactions récentes d'un utilisateur, aliment chargé, des plus récentes aux plus anciennes
+     * (chargement du tampon mémoire des réactions récentes)
+     */
+    @Query("SELECT r FROM ReactionAllergique r JOIN FETCH r.aliment WHERE r.utilisateur.id = :utilisateurId " +
+           "AND r.dateReaction >= :dateDebut ORDER BY r.dateReaction DESC, r.id DESC")
+    List<ReactionAllergique> findRecentesAvecAliment(@Param("utilisateurId") Long utilisateurId,
+                                                     @Param("dateDebut") LocalDateTime dateDebut, Pageable pageable);
+    
+    /**
+     * Nombre de réactions d'un utilisateur depuis une date
+     */
+    long countByUtilisateurAndDateReactionGreaterThanEqual(Utilisateur utilisateur, LocalDateTime dateDebut);
+    
     /**
      * Analyse des tendances - réactions par aliment
      */
@@ -67,6 +117,20 @@ public interface ReactionAllergiqueRepository extends JpaRepository<ReactionAlle
     @Query("SELECT r.aliment, COUNT(r) as reactionCount FROM ReactionAllergique r WHERE r.probabiliteAllergie > 0.3 GROUP BY r.aliment ORDER BY reactionCount DESC")
     List<Object[]> getMostProblematicFoods();
     
+    /**
+     * Aliments auxquels l'utilisateur a eu au moins une réaction probablement allergique
+     * (identifiants seuls, sans charger l'historique)
+     */
+    @Query("SELECT DISTINCT r.aliment.id FROM ReactionAllergique r WHERE r.utilisateur.id = :utilisateurId " +
+           "AND r.probabiliteAllergie > 0.3")
+    List<Long> findAlimentIdsAllergiques(@Param("utilisateurId") Long utilisateurId);
+    
+    /**
+     * Nombre de réactions probablement allergiques par aliment (identifiants seuls, agrégeable entre shards)
+     */
+    @Query("SELECT r.aliment.id, COUNT(r) FROM ReactionAllergique r WHERE r.probabiliteAllergie > 0.3 GROUP BY r.aliment.id")
+    List<Object[]> countReactionsProblematiquesParAliment();
+    
     /**
      * Statistiques des réactions par mois
      */
@@ -85,6 +149,47 @@ public interface ReactionAllergiqueRepository extends JpaRepository<ReactionAlle
     @Query("SELECT r FROM ReactionAllergique r WHERE r.quantiteConsommee IS NOT NULL AND r.probabiliteAllergie IS NOT NULL ORDER BY r.quantiteConsommee")
     List<ReactionAllergique> getQuantityCorrelationData();
     
+    /**
+     * Bornes des identifiants de réactions (re-scoring par plages)
+     */
+    @Query("SELECT MIN(r.id), MAX(r.id) FROM ReactionAllergique r")
+    List<Object[]> findBornesIds();
+    
+    /**
+     * Charge les réactions d'une plage d'identifiants avec leur utilisateur et leur aliment
+     */
+    @Query("SELECT r FROM ReactionAllergique r JOIN FETCH r.aliment JOIN FETCH r.utilisateur " +
+           "WHERE r.id >= :debut AND r.id < :fin ORDER BY r.id")
+    List<ReactionAllergique> findByIdRange(@Param("debut") Long debut, @Param("fin") Long fin);
+    
+    /**
+     * Pour chaque réaction de la plage, nombre de réactions antérieures du même utilisateur au même aliment
+     */
+    @Query("SELECT r.id, (SELECT COUNT(r2) FROM ReactionAllergique r2 " +
+           "WHERE r2.utilisateur = r.utilisateur AND r2.aliment = r.aliment AND r2.id < r.id) " +
+           "FROM ReactionAllergique r WHERE r.id >= :debut AND r.id < :fin")
+    List<Object[]> countHistoriqueAnterieurByIdRange(@Param("debut") Long debut, @Param("fin") Long fin);
+    
+    /**
+     * Exemples d'entraînement du modèle de risque, lus en flux (à consommer dans une transaction) :
+     * niveauSeverite, dureeReaction, quantiteConsommee, hospitalisationRequise, medecinConsulte,
+     * historique antérieur, allergenesPotentiels, et 1 si une allergie alimentaire correspondant à
+     * l'aliment a été diagnostiquée pour l'utilisateur par un autre diagnostiqueur que la détection automatique
+     */
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"))
+    @Query("SELECT r.niveauSeverite, r.dureeReaction, r.quantiteConsommee, r.hospitalisationRequise, " +
+           "r.medecinConsulte, " +
+           "(SELECT COUNT(r2) FROM ReactionAllergique r2 " +
+           "WHERE r2.utilisateur = r.utilisateur AND r2.aliment = r.aliment AND r2.id < r.id), " +
+           "a.allergenesPotentiels, " +
+           "CASE WHEN EXISTS (SELECT au FROM AllergieUtilisateur au JOIN au.allergie al " +
+           "WHERE au.utilisateur = r.utilisateur AND al.typeAllergie = 'ALIMENTAIRE' " +
+           "AND LOWER(al.nom) LIKE CONCAT('%', LOWER(a.nom), '%') " +
+           "AND au.diagnostiquePar IS NOT NULL AND au.diagnostiquePar <> :diagnosticAutomatique) " +
+           "THEN 1 ELSE 0 END " +
+           "FROM ReactionAllergique r JOIN r.aliment a ORDER BY r.id")
+    Stream<Object[]> streamExemplesEntrainement(@Param("diagnosticAutomatique") String diagnosticAutomatique);
+    
     /**
      * Score de risque moyen par aliment
      */
@@ -102,4 +207,42 @@ public interface ReactionAllergiqueRepository extends JpaRepository<ReactionAlle
            "GROUP BY r.aliment " +
            "ORDER BY avgRiskScore DESC")
     List<Object[]> getAverageRiskScoreByFood();
+    
+    /**
+     * Réactions d'un utilisateur écrites entre deux versions de ses données (synchronisation différentielle),
+     * dans l'ordre des versions
+     */
+    @Query("SELECT r FROM ReactionAllergique r WHERE r.utilisateur.id = :utilisateurId " +
+           "AND r.versionSync > :depuis AND r.versionSync <= :jusqua ORDER BY r.versionSync, r.id")
+    List<ReactionAllergique> findChangementsSync(@Param("utilisateurId") Long utilisateurId, @Param("depuis") long depuis,
+                                                @Param("jusqua") long jusqua, Pageable pageable);
+    
+    /**
+     * Prochain lot de réactions d'un utilisateur à effacer
+     */
+    @Query("SELECT r.id FROM ReactionAllergique r WHERE r.utilisateur.id = :utilisateurId ORDER BY r.id")
+    List<Long> findIdsByUtilisateurId(@Param("utilisateurId") Long utilisateurId, Pageable pageable);
+    
+    /**
+     * Prochain lot de réactions d'un utilisateur portant encore du texte libre (anonymisation)
+     */
+    @Query("SELECT r.id FROM ReactionAllergique r WHERE r.utilisateur.id = :utilisateurId AND (" +
+           "r.symptomes IS NOT NULL OR r.traitementUtilise IS NOT NULL OR r.contexteConsommation IS NOT NULL " +
+           "OR r.lieuReaction IS NOT NULL OR r.notes IS NOT NULL) ORDER BY r.id")
+    List<Long> findIdsAAnonymiser(@Param("utilisateurId") Long utilisateurId, Pageable pageable);
+    
+    /**
+     * Suppression en masse, sans chargement dans le contexte de persistance
+     */
+    @Modifying
+    @Query("DELETE FROM ReactionAllergique r WHERE r.id IN :ids")
+    int supprimerParIds(@Param("ids") Collection<Long> ids);
+    
+    /**
+     * Efface le texte libre ; date, aliment, sévérité et probabilité restent pour les statistiques
+     */
+    @Modifying
+    @Query("UPDATE ReactionAllergique r SET r.symptomes = NULL, r.traitementUtilise = NULL, " +
+           "r.contexteConsommation = NULL, r.lieuReaction = NULL, r.notes = NULL WHERE r.id IN :ids")
+    int anonymiserParIds(@Param("ids") Collection<Long> ids);
 }
@@ -0,0 +1,34 @@
+package com.tp222.allergies.repository;
+
+import com.tp222.allergies.model.entity.Aliment;
+import com.tp222.allergies.model.entity.ReactiviteCroisee;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Repository pour l'entité ReactiviteCroisee
+ */
+@Repository
+public interface ReactiviteCroiseeRepository extends JpaRepository<ReactiviteCroisee, Long> {
+    
+    /**
+     * Trouve l'arête d'un couple d'aliments (source < cible)
+     */
+    Optional<ReactiviteCroisee> findByAlimentSourceAndAlimentCible(Aliment alimentSource, Aliment alimentCible);
+    
+    /**
+     * Arêtes actives avec leurs aliments, pour l'administration
+     */
+    @Query("SELECT r FROM ReactiviteCroisee r JOIN FETCH r.alimentSource JOIN FETCH r.alimentCible " +
+           "WHERE r.actif = true ORDER BY r.id")
+    List<ReactiviteCroisee> findActivesAvecAliments();
+    
+    /**
+     * Arêtes actives réduites à (sourceId, cibleId, coefficient) pour le calcul de la fermeture
+     */
+    @Query("SELECT r.alimentSource.id, r.alimentCible.id, r.coefficient FROM ReactiviteCroisee r WHERE r.actif = true")
+    List<Object[]> findAretesActives();
+}
@@ -0,0 +1,52 @@
+package com.tp222.allergies.repository;
+
+import com.tp222.allergies.model.entity.Recette;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Repository pour l'entité Recette
+ */
+@Repository
+public interface RecetteRepository extends JpaRepository<Recette, Long> {
+    
+    /**
+     * Trouve une recette active
+     */
+    Optional<Recette> findByIdAndActifTrue(Long id);
+    
+    /**
+     * Trouve toutes les recettes actives
+     */
+    List<Recette> findByActifTrueOrderByNom();
+    
+    /**
+     * Trouve les recettes actives sous un seuil de calories par portion (valeur matérialisée)
+     */
+    List<Recette> findByActifTrueAndCaloriesParPortionLessThanEqualOrderByCaloriesParPortion(BigDecimal caloriesMax);
+    
+    /**
+     * Colonnes matérialisées des recettes actives, pour le chargement de l'index de recherche :
+     * id, tempsPreparation, tempsCuisson, niveauDifficulte, typeCuisine, caloriesParPortion, ingredientsNonReconnus
+     */
+    @Query("SELECT r.id, r.tempsPreparation, r.tempsCuisson, r.niveauDifficulte, r.typeCuisine, " +
+           "r.caloriesParPortion, r.ingredientsNonReconnus FROM Recette r WHERE r.actif = true")
+    List<Object[]> findProfilsRecettesActives();
+    
+    /**
+     * Couples (recette, allergène normalisé) des recettes actives
+     */
+    @Query("SELECT r.id, a FROM Recette r JOIN r.allergenes a WHERE r.actif = true")
+    List<Object[]> findAllergenesRecettesActives();
+    
+    /**
+     * Couples (recette, aliment) des ingrédients reconnus des recettes actives
+     */
+    @Query("SELECT i.recette.id, i.aliment.id FROM IngredientRecette i WHERE i.aliment IS NOT NULL AND i.recette.actif = true")
+    List<Object[]> findAlimentsRecettesActives();
+}
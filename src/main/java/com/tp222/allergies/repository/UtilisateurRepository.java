@@ -2,10 +2,13 @@ package com.tp222.allergies.repository;
 
 import com.tp222.allergies.model.entity.Utilisateur;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -35,6 +38,18 @@ public interface UtilisateurRepository extends JpaRepository<Utilisateur, Long>
      */
     boolean existsByEmail(String email);
     
+    /**
+     * Noms d'utilisateur déjà pris parmi ceux donnés (dédoublonnage d'un lot d'import)
+     */
+    @Query("SELECT u.username FROM Utilisateur u WHERE u.username IN :usernames")
+    List<String> findUsernamesExistants(@Param("usernames") Collection<String> usernames);
+    
+    /**
+     * Emails déjà pris parmi ceux donnés (dédoublonnage d'un lot d'import)
+     */
+    @Query("SELECT u.email FROM Utilisateur u WHERE u.email IN :emails")
+    List<String> findEmailsExistants(@Param("emails") Collection<String> emails);
+    
     /**
      * Trouve tous les utilisateurs actifs
      */
@@ -85,4 +100,64 @@ public interface UtilisateurRepository extends JpaRepository<Utilisateur, Long>
      */
     @Query("SELECT u FROM Utilisateur u WHERE u.dateCreation >= :dateCreation")
     List<Utilisateur> findRecentUsers(@Param("dateCreation") java.time.LocalDateTime dateCreation);
+    
+    /**
+     * Identifiants des utilisateurs actifs
+     */
+    @Query("SELECT u.id FROM Utilisateur u WHERE u.actif = true ORDER BY u.id")
+    List<Long> findIdsActifs();
+    
+    /**
+     * Version des données d'un utilisateur (lecture par clé primaire, pour les ETag)
+     */
+    @Query("SELECT u.versionDonnees FROM Utilisateur u WHERE u.id = :id")
+    Optional<Long> findVersionDonneesById(@Param("id") Long id);
+    
+    /**
+     * Incrémente la version des données, dans la transaction de l'écriture qui les modifie.
+     * En SQL natif : la colonne n'est jamais écrite par une mise à jour de l'entité.
+     */
+    @Modifying
+    @Query(value = "UPDATE utilisateurs SET version_donnees = version_donnees + 1 WHERE id IN (:ids)", nativeQuery = true)
+    int incrementerVersionDonnees(@Param("ids") Collection<Long> ids);
+    
+    /**
+     * Versions des données d'un groupe d'utilisateurs : paires (id, version)
+     */
+    @Query("SELECT u.id, u.versionDonnees FROM Utilisateur u WHERE u.id IN :ids")
+    List<Object[]> findVersionsDonnees(@Param("ids") Collection<Long> ids);
+    
+    /**
+     * Incrémente la version des données d'un utilisateur, sauf si son effacement est demandé
+     * @return 0 si l'utilisateur est en cours d'effacement (ou n'existe pas)
+     */
+    @Modifying
+    @Query(value = "UPDATE utilisateurs SET version_donnees = version_donnees + 1 " +
+                   "WHERE id = :id AND date_demande_effacement IS NULL", nativeQuery = true)
+    int incrementerVersionDonneesHorsEffacement(@Param("id") Long id);
+    
+    /**
+     * Verrouille la ligne de l'utilisateur jusqu'à la fin de la transaction, sans l'écrire,
+     * sauf si son effacement est demandé
+     * @return vide si l'utilisateur est effacé, anonymisé ou en cours d'effacement (ou n'existe pas)
+     */
+    @Query(value = "SELECT id FROM utilisateurs WHERE id = :id AND date_demande_effacement IS NULL FOR UPDATE",
+           nativeQuery = true)
+    Optional<Long> verrouillerHorsEffacement(@Param("id") Long id);
+    
+    /**
+     * Marque l'effacement demandé et désactive l'utilisateur : plus aucune écriture de ses données
+     * n'est acceptée (voir incrementerVersionDonneesHorsEffacement)
+     */
+    @Modifying
+    @Query(value = "UPDATE utilisateurs SET date_demande_effacement = COALESCE(date_demande_effacement, :date), " +
+                   "actif = false, version_donnees = version_donnees + 1 WHERE id = :id", nativeQuery = true)
+    int marquerEffacementDemande(@Param("id") Long id, @Param("date") LocalDateTime date);
+    
+    /**
+     * Suppression sans passer par les cascades JPA (réactions et allergies déjà supprimées par lots)
+     */
+    @Modifying
+    @Query("DELETE FROM Utilisateur u WHERE u.id = :id")
+    int supprimerParId(@Param("id") Long id);
 }
@@ -0,0 +1,231 @@
+package com.tp222.allergies.service;
+
+import com.tp222.allergies.model.dto.response.AlerteAllergieEvent;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Bus d'événements en mémoire pour les alertes allergiques temps réel.
+ *
+ * La publication ne fait qu'un offer() non bloquant dans une file centrale bornée :
+ * le chemin de requête n'attend jamais un abonné. Un thread de distribution répartit
+ * ensuite les événements dans la file bornée de chaque abonné (filtrage utilisateur /
+ * gravité), et l'envoi SSE se fait sur un thread virtuel par abonné actif, de sorte
+ * qu'un client lent ne bloque que lui-même.
+ */
+@Component
+@Slf4j
+public class AlerteAllergieBus {
+
+    /**
+     * Politique appliquée quand la file d'un abonné est pleine
+     */
+    public enum PolitiqueSaturation {
+        SUPPRIMER_ANCIEN,   // on garde les alertes les plus récentes
+        SUPPRIMER_NOUVEAU,  // on garde les alertes les plus anciennes
+        DECONNECTER         // l'abonné trop lent est déconnecté
+    }
+
+    private final BlockingQueue<AlerteAllergieEvent> fileCentrale;
+    private final Set<Abonnement> abonnements = ConcurrentHashMap.newKeySet();
+    private final ExecutorService envois = Executors.newVirtualThreadPerTaskExecutor();
+    private final Thread distributeur;
+    private final int capaciteAbonne;
+    private final int pertesAvantDeconnexion;
+
+    private final Counter publiees;
+    private final Counter rejeteesBus;
+    private final Counter perdues;
+    private final Counter deconnexions;
+
+    public AlerteAllergieBus(MeterRegistry registry,
+                             @Value("${allergies.alertes.capacite-bus:10000}") int capaciteBus,
+                             @Value("${allergies.alertes.capacite-abonne:256}") int capaciteAbonne,
+                             @Value("${allergies.alertes.pertes-avant-deconnexion:1000}") int pertesAvantDeconnexion) {
+        this.fileCentrale = new ArrayBlockingQueue<>(capaciteBus);
+        this.capaciteAbonne = capaciteAbonne;
+        this.pertesAvantDeconnexion = pertesAvantDeconnexion;
+        this.publiees = registry.counter("allergies.alertes.publiees");
+        this.rejeteesBus = registry.counter("allergies.alertes.rejetees");
+        this.perdues = registry.counter("allergies.alertes.perdues");
+        this.deconnexions = registry.counter("allergies.alertes.deconnexions");
+        Gauge.builder("allergies.alertes.abonnes", abonnements, Set::size).register(registry);
+        Gauge.builder("allergies.alertes.file", fileCentrale, BlockingQueue::size).register(registry);
+
+        this.distributeur = Thread.ofPlatform().daemon().name("alertes-distributeur").start(this::distribuer);
+    }
+
+    /**
+     * Publie une alerte sans jamais bloquer ; si la file centrale est pleine l'alerte est comptée et ignorée
+     */
+    public void publier(AlerteAllergieEvent alerte) {
+        if (fileCentrale.offer(alerte)) {
+            publiees.increment();
+        } else {
+            rejeteesBus.increment();
+        }
+    }
+
+    /**
+     * Publie l'alerte après le commit de la transaction courante (ou immédiatement hors transaction),
+     * afin de ne jamais signaler une écriture annulée
+     */
+    public void publierApresCommit(AlerteAllergieEvent alerte) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            publier(alerte);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                publier(alerte);
+            }
+        });
+    }
+
+    /**
+     * Enregistre un abonné SSE
+     * @param utilisateurId filtre optionnel sur l'utilisateur
+     * @param graviteMin gravité minimale (0-3) des alertes transmises
+     */
+    public SseEmitter abonner(Long utilisateurId, int graviteMin, PolitiqueSaturation politique, long timeoutMs) {
+        SseEmitter emitter = new SseEmitter(timeoutMs);
+        Abonnement abonnement = new Abonnement(emitter, utilisateurId, graviteMin, politique);
+        abonnements.add(abonnement);
+        emitter.onCompletion(() -> abonnements.remove(abonnement));
+        emitter.onTimeout(() -> abonnements.remove(abonnement));
+        emitter.onError(e -> abonnements.remove(abonnement));
+        log.debug("Nouvel abonné aux alertes (utilisateur: {}, gravité min: {}), total: {}",
+                utilisateurId, graviteMin, abonnements.size());
+        return emitter;
+    }
+
+    private void distribuer() {
+        while (!Thread.currentThread().isInterrupted()) {
+            AlerteAllergieEvent alerte;
+            try {
+                alerte = fileCentrale.take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            for (Abonnement abonnement : abonnements) {
+                if (abonnement.accepte(alerte)) {
+                    abonnement.deposer(alerte);
+                }
+            }
+        }
+    }
+
+    @PreDestroy
+    void arreter() {
+        distributeur.interrupt();
+        abonnements.forEach(a -> a.emitter.complete());
+        envois.shutdownNow();
+    }
+
+    /**
+     * Abonné avec sa propre file bornée ; un seul envoi en cours à la fois par abonné
+     */
+    private final class Abonnement {
+
+        private final SseEmitter emitter;
+        private final Long utilisateurId;
+        private final int graviteMin;
+        private final PolitiqueSaturation politique;
+        private final ArrayDeque<AlerteAllergieEvent> file = new ArrayDeque<>();
+        private final ReentrantLock verrou = new ReentrantLock();
+        private final AtomicBoolean envoiPlanifie = new AtomicBoolean();
+        private int pertes;
+
+        private Abonnement(SseEmitter emitter, Long utilisateurId, int graviteMin, PolitiqueSaturation politique) {
+            this.emitter = emitter;
+            this.utilisateurId = utilisateurId;
+            this.graviteMin = graviteMin;
+            this.politique = politique;
+        }
+
+        boolean accepte(AlerteAllergieEvent alerte) {
+            return alerte.getGravite() >= graviteMin
+                    && (utilisateurId == null || utilisateurId.equals(alerte.getUtilisateurId()));
+        }
+
+        void deposer(AlerteAllergieEvent alerte) {
+            boolean deconnecter = false;
+            verrou.lock();
+            try {
+                if (file.size() >= capaciteAbonne) {
+                    perdues.increment();
+                    pertes++;
+                    switch (politique) {
+                        case SUPPRIMER_ANCIEN -> {
+                            file.pollFirst();
+                            file.addLast(alerte);
+                        }
+                        case SUPPRIMER_NOUVEAU -> { }
+                        case DECONNECTER -> deconnecter = true;
+                    }
+                    deconnecter |= pertes >= pertesAvantDeconnexion;
+                } else {
+                    file.addLast(alerte);
+                }
+            } finally {
+                verrou.unlock();
+            }
+
+            if (deconnecter) {
+                fermerAbonneLent();
+            } else if (envoiPlanifie.compareAndSet(false, true)) {
+                envois.execute(this::vider);
+            }
+        }
+
+        private void vider() {
+            try {
+                while (true) {
+                    AlerteAllergieEvent alerte;
+                    verrou.lock();
+                    try {
+                        alerte = file.pollFirst();
+                        if (alerte == null) {
+                            envoiPlanifie.set(false);
+                            return;
+                        }
+                    } finally {
+                        verrou.unlock();
+                    }
+                    emitter.send(SseEmitter.event().name(alerte.getType()).data(alerte));
+                }
+            } catch (IOException | IllegalStateException e) {
+                abonnements.remove(this);
+                emitter.completeWithError(e);
+            }
+        }
+
+        private void fermerAbonneLent() {
+            if (abonnements.remove(this)) {
+                deconnexions.increment();
+                log.warn("Abonné aux alertes déconnecté (consommateur trop lent, {} alertes perdues)", pertes);
+                emitter.complete();
+            }
+        }
+    }
+}
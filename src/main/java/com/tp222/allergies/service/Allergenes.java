@@ -0,0 +1,91 @@
+package com.tp222.allergies.service;
+
+import java.text.Normalizer;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * Normalisation des noms d'allergènes et d'aliments.
+ *
+ * Les allergènes sont comparés sous une forme canonique (minuscules, sans accents, ligatures
+ * dépliées, mots au singulier) : "Œufs", "oeuf" et "œuf" donnent tous "oeuf". C'est sous
+ * cette forme qu'ils sont matérialisés dans recettes_allergenes.
+ */
+public final class Allergenes {
+
+    private static final Pattern SEPARATEURS = Pattern.compile("[,;/]");
+    private static final Pattern DIACRITIQUES = Pattern.compile("\\p{M}+");
+    private static final Pattern NON_ALPHANUMERIQUE = Pattern.compile("[^a-z0-9 ]+");
+    private static final Pattern PREFIXE_ALLERGIE =
+            Pattern.compile("^allergie (aux|au|a la|a l|a|de|des|du) ");
+
+    private Allergenes() {
+    }
+
+    /**
+     * Forme canonique d'un nom (allergène, aliment ou ingrédient)
+     */
+    public static String normaliser(String texte) {
+        if (texte == null) return "";
+        String s = texte.toLowerCase()
+                .replace("œ", "oe")
+                .replace("æ", "ae")
+                .replace('\'', ' ')
+                .replace('’', ' ');
+        s = DIACRITIQUES.matcher(Normalizer.normalize(s, Normalizer.Form.NFD)).replaceAll("");
+        s = NON_ALPHANUMERIQUE.matcher(s).replaceAll(" ");
+        StringBuilder resultat = new StringBuilder(s.length());
+        for (String mot : s.trim().split("\\s+")) {
+            if (mot.isEmpty()) continue;
+            if (resultat.length() > 0) resultat.append(' ');
+            resultat.append(singulier(mot));
+        }
+        return resultat.toString();
+    }
+
+    /**
+     * Allergènes canoniques d'une liste libre ("Lait, Lactose")
+     */
+    public static Set<String> extraire(String allergenesPotentiels) {
+        Set<String> allergenes = new LinkedHashSet<>();
+        if (allergenesPotentiels == null) return allergenes;
+        for (String partie : SEPARATEURS.split(allergenesPotentiels)) {
+            String allergene = normaliser(partie);
+            if (!allergene.isEmpty()) allergenes.add(allergene);
+        }
+        return allergenes;
+    }
+
+    /**
+     * Ce sur quoi porte une allergie, d'après son nom ("Allergie au lait de vache" -> "lait de vache")
+     */
+    public static String depuisNomAllergie(String nomAllergie) {
+        return PREFIXE_ALLERGIE.matcher(normaliser(nomAllergie)).replaceFirst("");
+    }
+
+    /**
+     * Allergènes du catalogue concernés par une allergie : l'un des deux termes contient l'autre,
+     * mot pour mot ("lait de vache" concerne "lait")
+     */
+    public static Set<String> concernes(String objetAllergie, Collection<String> catalogue) {
+        Set<String> concernes = new LinkedHashSet<>();
+        if (objetAllergie.isEmpty()) return concernes;
+        String objet = " " + objetAllergie + " ";
+        for (String allergene : catalogue) {
+            String terme = " " + allergene + " ";
+            if (objet.contains(terme) || terme.contains(objet)) {
+                concernes.add(allergene);
+            }
+        }
+        return concernes;
+    }
+
+    private static String singulier(String mot) {
+        if (mot.length() > 3 && (mot.endsWith("s") || mot.endsWith("x"))) {
+            return mot.substring(0, mot.length() - 1);
+        }
+        return mot;
+    }
+}
@@ -2,17 +2,30 @@ package com.tp222.allergies.service;
 
 import com.tp222.allergies.model.entity.*;
 import com.tp222.allergies.model.dto.request.ReactionAllergiqueRequest;
+import com.tp222.allergies.model.dto.response.AlerteAllergieEvent;
 import com.tp222.allergies.model.dto.response.ProfilAllergiqueResponse;
 import com.tp222.allergies.model.dto.response.VerificationRisqueResponse;
 import com.tp222.allergies.repository.*;
+import com.tp222.allergies.service.coherence.CoherenceCaches;
+import com.tp222.allergies.service.outbox.OutboxService;
+import com.tp222.allergies.service.scoring.EntreeScoreRisque;
+import com.tp222.allergies.service.scoring.FacteursProbabilite;
+import com.tp222.allergies.service.scoring.RiskModel;
+import com.tp222.allergies.service.scoring.RiskModelRegistry;
+import com.tp222.allergies.service.sharding.RoutageShards;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.math.BigDecimal;
 import java.util.List;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.stream.Collectors;
 
 /**
@@ -29,10 +42,25 @@ public class AllergieService {
     private final AlimentRepository alimentRepository;
     private final AllergieUtilisateurRepository allergieUtilisateurRepository;
     private final ReactionAllergiqueRepository reactionAllergiqueRepository;
+    private final AlerteAllergieBus alerteAllergieBus;
+    private final OutboxService outboxService;
+    private final RiskModelRegistry riskModelRegistry;
+    private final ReactiviteCroiseeService reactiviteCroiseeService;
+    private final RoutageShards routageShards;
+    private final CoherenceCaches coherenceCaches;
+    private final ReactionsRecentes reactionsRecentes;
+    private final DoublonsReactions doublonsReactions;
+    private final AllergiesAutomatiques allergiesAutomatiques;
+    
+    // Diagnostiqueur des allergies créées par la détection automatique (exclues des exemples confirmés)
+    public static final String DIAGNOSTIC_AUTOMATIQUE = "Système IA - Détection automatique";
     
     // Seuil de détection automatique d'allergie (>30%)
     private static final BigDecimal SEUIL_DETECTION_ALLERGIE = BigDecimal.valueOf(0.3);
     
+    // Verrous de détection par aliment (allergie au nom unique) ; par utilisateur, la ligne utilisateur suffit
+    private final StripedLocks verrousAliments = new StripedLocks(64);
+    
     /**
      * Enregistre une nouvelle réaction allergique avec analyse IA
      */
@@ -46,6 +74,19 @@ public class AllergieService {
         Aliment aliment = alimentRepository.findById(request.getAlimentId())
                 .orElseThrow(() -> new RuntimeException("Aliment non trouvé"));
         
+        // Ligne utilisateur verrouillée jusqu'au commit : un renvoi concurrent attend cette transaction,
+        // puis voit sa réaction ; la probabilité est calculée sur l'historique complet
+        long versionSync = versionner(utilisateur.getId());
+        
+        // Renvoi d'un client ou export ré-importé : signalé, ni stocké ni compté dans l'historique
+        doublonsReactions.existante(utilisateur.getId(), aliment.getId(), request.getDateReaction())
+                .ifPresent(existante -> {
+                    throw new ReactionDoublonException(existante);
+                });
+        
+        // Un seul modèle pour toute la requête, même en cas d'échange à chaud concurrent
+        RiskModel modele = riskModelRegistry.getActif();
+        
         // Création de la réaction
         ReactionAllergique reaction = ReactionAllergique.builder()
                 .utilisateur(utilisateur)
@@ -60,15 +101,38 @@ public class AllergieService {
                 .lieuReaction(request.getLieuReaction())
                 .medecinConsulte(request.getMedecinConsulte())
                 .hospitalisationRequise(request.getHospitalisationRequise())
-                .probabiliteAllergie(calculerProbabiliteAllergie(request, utilisateur, aliment))
+                .probabiliteAllergie(calculerProbabiliteAllergie(modele, request, utilisateur, aliment))
+                .algorithmeVersion(modele.getVersion())
                 .notes(request.getNotes())
+                .versionSync(versionSync)
                 .build();
         
-        reaction = reactionAllergiqueRepository.save(reaction);
+        try {
+            reaction = reactionAllergiqueRepository.save(reaction);
+        } catch (DataIntegrityViolationException e) {
+            // Écrite par une autre instance depuis le chargement de son filtre : relue après annulation
+            if (DoublonsReactions.violationUnicite(e)) throw new ReactionDoublonException(null);
+            throw e;
+        }
+        doublonsReactions.ajouter(reaction);
+        outboxService.enregistrer(OutboxService.REACTION_ENREGISTREE, utilisateur.getId(), payloadReaction(reaction));
+        // Vérifications de risque mémorisées pour cet utilisateur, sur toutes les instances
+        coherenceCaches.invaliderApresCommit(CoherenceCaches.VERIFICATION, utilisateur.getId());
+        reactionsRecentes.ajouterApresCommit(reaction);
         
         // Détection automatique d'allergie si probabilité > 30%
         if (reaction.isAllergic()) {
             detecterEtCreerAllergie(utilisateur, aliment, reaction);
+            alerteAllergieBus.publierApresCommit(AlerteAllergieEvent.builder()
+                    .type("REACTION_ALLERGIQUE")
+                    .utilisateurId(utilisateur.getId())
+                    .alimentId(aliment.getId())
+                    .nomAliment(aliment.getNom())
+                    .niveau(reaction.getNiveauSeverite())
+                    .gravite(AlerteAllergieEvent.gravite(reaction.getNiveauSeverite()))
+                    .probabiliteAllergie(reaction.getProbabiliteAllergie())
+                    .dateAlerte(LocalDateTime.now())
+                    .build());
         }
         
         log.info("Réaction allergique enregistrée avec ID: {} et probabilité: {}", 
@@ -77,6 +141,15 @@ public class AllergieService {
         return reaction;
     }
     
+    /**
+     * Réaction enregistrée pour ce couple à la minute de dateReaction, null si aucune
+     */
+    @Transactional(readOnly = true)
+    public ReactionAllergique getReactionExistante(Long utilisateurId, Long alimentId, LocalDateTime dateReaction) {
+        return reactionAllergiqueRepository.findFirstByUtilisateurIdAndAlimentIdAndMinuteReaction(
+                utilisateurId, alimentId, ReactionAllergique.minute(dateReaction)).orElse(null);
+    }
+    
     /**
      * Vérifie le risque d'allergie pour un utilisateur et un aliment
      */
@@ -97,12 +170,47 @@ public class AllergieService {
         List<ReactionAllergique> reactionsPassees = reactionAllergiqueRepository
                 .findByUtilisateurAndAliment(utilisateur, aliment);
         
+        // Réactions aux aliments à réactivité croisée (lecture O(1) du coefficient dans la fermeture)
+        FermetureReactivite fermeture = reactiviteCroiseeService.getFermeture();
+        FermetureReactivite.AlimentsRelies relies = fermeture.relies(alimentId);
+        List<ReactionAllergique> reactionsCroisees = relies.estVide() ? List.of() : reactionAllergiqueRepository
+                .findByUtilisateurAndAlimentIdIn(utilisateur, Arrays.stream(relies.alimentIds()).boxed().toList());
+        List<EntreeScoreRisque.ReactionCroisee> facteursCroises = reactionsCroisees.stream()
+                .map(r -> new EntreeScoreRisque.ReactionCroisee(EntreeScoreRisque.FacteursReaction.de(r),
+                        fermeture.coefficient(alimentId, r.getAliment().getId())))
+                .toList();
+        
         // Analyse du risque
         VerificationRisqueResponse.AnalyseIA analyseIA = analyserRisqueIA(
                 utilisateur, aliment, allergiesUtilisateur, reactionsPassees);
         
-        int scoreRisque = calculerScoreRisque(allergiesUtilisateur, reactionsPassees, aliment);
-        String niveauRisque = determinerNiveauRisque(scoreRisque);
+        RiskModel modele = riskModelRegistry.getActif();
+        EntreeScoreRisque entree = EntreeScoreRisque.de(allergiesUtilisateur, reactionsPassees, facteursCroises, aliment);
+        int scoreRisque = modele.scoreRisque(entree);
+        String niveauRisque = modele.niveauRisque(scoreRisque);
+        riskModelRegistry.evaluerScoreEnShadow(entree, scoreRisque, niveauRisque);
+        
+        if ("CRITIQUE".equals(niveauRisque) || "ELEVE".equals(niveauRisque)) {
+            alerteAllergieBus.publier(AlerteAllergieEvent.builder()
+                    .type("RISQUE_ELEVE")
+                    .utilisateurId(utilisateurId)
+                    .alimentId(alimentId)
+                    .nomAliment(aliment.getNom())
+                    .niveau(niveauRisque)
+                    .gravite(AlerteAllergieEvent.gravite(niveauRisque))
+                    .scoreRisque(scoreRisque)
+                    .probabiliteAllergie(analyseIA.getProbabiliteAllergieGlobale())
+                    .dateAlerte(LocalDateTime.now())
+                    .build());
+        }
+        
+        List<String> recommandations = genererRecommandations(niveauRisque, allergiesUtilisateur);
+        if (!reactionsCroisees.isEmpty()) {
+            recommandations.add("Réactivité croisée possible avec : " + reactionsCroisees.stream()
+                    .map(r -> r.getAliment().getNom())
+                    .distinct()
+                    .collect(Collectors.joining(", ")));
+        }
         
         return VerificationRisqueResponse.builder()
                 .risqueDetecte(scoreRisque > 30)
@@ -113,7 +221,8 @@ public class AllergieService {
                 .nomAliment(aliment.getNom())
                 .allergiesDetectees(mapAllergiesRisque(allergiesUtilisateur, aliment))
                 .reactionsPassees(mapReactionsHistoriques(reactionsPassees))
-                .recommandations(genererRecommandations(scoreRisque, allergiesUtilisateur))
+                .reactionsCroisees(mapReactionsCroisees(reactionsCroisees, facteursCroises))
+                .recommandations(recommandations)
                 .analyseIA(analyseIA)
                 .build();
     }
@@ -130,8 +239,12 @@ public class AllergieService {
         List<AllergieUtilisateur> allergies = allergieUtilisateurRepository
                 .findByUtilisateurAndActifTrue(utilisateur);
         
-        List<ReactionAllergique> reactionsRecentes = reactionAllergiqueRepository
-                .findRecentReactionsByUser(utilisateur, LocalDateTime.now().minusMonths(3));
+        // Fenêtre de trois mois servie par le tampon mémoire, la base seulement s'il ne la couvre pas
+        LocalDateTime debutFenetre = LocalDateTime.now().minusMonths(3);
+        List<ReactionsRecentes.ReactionRecente> recentes = reactionsRecentes.depuis(utilisateurId, debutFenetre)
+                .orElseGet(() -> reactionAllergiqueRepository.findRecentReactionsByUser(utilisateur, debutFenetre).stream()
+                        .map(ReactionsRecentes.ReactionRecente::de)
+                        .toList());
         
         ProfilAllergiqueResponse.StatistiquesAllergie stats = calculerStatistiques(utilisateur);
         
@@ -141,56 +254,107 @@ public class AllergieService {
                 .prenomUtilisateur(utilisateur.getPrenom())
                 .emailUtilisateur(utilisateur.getEmail())
                 .allergies(mapAllergiesInfo(allergies))
-                .reactionsRecentes(mapReactionsRecentesInfo(reactionsRecentes))
+                .reactionsRecentes(mapReactionsRecentesInfo(recentes))
                 .statistiques(stats)
                 .build();
     }
     
+    /**
+     * ETag fort du profil : version des données de l'utilisateur et jour courant (le profil contient
+     * des fenêtres glissantes : réactions des trois derniers mois, statistiques du dernier mois).
+     * Une seule lecture par clé primaire, sans charger le profil.
+     */
+    @Transactional(readOnly = true)
+    public String getEtagProfil(Long utilisateurId) {
+        return "\"p" + versionDonnees(utilisateurId) + "-" + LocalDate.now() + "\"";
+    }
+    
+    /**
+     * ETag fort d'une vérification de risque : s'y ajoutent le modèle actif et l'empreinte du graphe
+     * de réactivité croisée, identiques sur toutes les instances à jour
+     */
+    @Transactional(readOnly = true)
+    public String getEtagVerification(Long utilisateurId, Long alimentId) {
+        return "\"v" + versionDonnees(utilisateurId) + "-" + alimentId + "-" + riskModelRegistry.getActif().getVersion()
+                + "-" + Long.toHexString(reactiviteCroiseeService.getEmpreinte()) + "-" + LocalDate.now() + "\"";
+    }
+    
+    private long versionDonnees(Long utilisateurId) {
+        return utilisateurRepository.findVersionDonneesById(utilisateurId)
+                .orElseThrow(() -> new RuntimeException("Utilisateur non trouvé"));
+    }
+    
+    /**
+     * Incrémente la version des données de l'utilisateur et la renvoie, pour marquer la ligne écrite.
+     * La ligne utilisateur reste verrouillée jusqu'au commit : les versions d'un même utilisateur sont
+     * validées dans leur ordre : aucune ligne n'apparaît sous une version déjà lue par un client.
+     * Le même verrou sérialise l'écriture avec le début d'un effacement : une fois l'effacement
+     * demandé, plus aucune donnée n'est écrite pour l'utilisateur.
+     */
+    private long versionner(Long utilisateurId) {
+        if (utilisateurRepository.incrementerVersionDonneesHorsEffacement(utilisateurId) == 0) {
+            throw new RuntimeException("Utilisateur en cours d'effacement");
+        }
+        return versionDonnees(utilisateurId);
+    }
+    
+    /**
+     * Version du modèle de risque actif, stockée avec chaque réaction
+     */
+    public String getVersionAlgorithme() {
+        return riskModelRegistry.getActif().getVersion();
+    }
+    
     /**
      * Calcule la probabilité d'allergie basée sur plusieurs facteurs
      */
-    private BigDecimal calculerProbabiliteAllergie(ReactionAllergiqueRequest request, 
+    private BigDecimal calculerProbabiliteAllergie(RiskModel modele, ReactionAllergiqueRequest request, 
                                                   Utilisateur utilisateur, Aliment aliment) {
-        BigDecimal probabilite = BigDecimal.ZERO;
-        
-        // Facteur 1: Sévérité de la réaction (0.4 max)
-        probabilite = probabilite.add(getProbabiliteBySeverite(request.getNiveauSeverite()));
-        
-        // Facteur 2: Intervention médicale (0.3 max)
-        if (Boolean.TRUE.equals(request.getHospitalisationRequise())) {
-            probabilite = probabilite.add(BigDecimal.valueOf(0.3));
-        } else if (Boolean.TRUE.equals(request.getMedecinConsulte())) {
-            probabilite = probabilite.add(BigDecimal.valueOf(0.15));
-        }
-        
-        // Facteur 3: Historique avec cet aliment (0.2 max)
-        List<ReactionAllergique> historique = reactionAllergiqueRepository
-                .findByUtilisateurAndAliment(utilisateur, aliment);
-        if (!historique.isEmpty()) {
-            probabilite = probabilite.add(BigDecimal.valueOf(0.1 * Math.min(historique.size(), 2)));
-        }
-        
-        // Facteur 4: Allergènes connus dans l'aliment (0.1 max)
-        if (aliment.containsAllergenes()) {
-            probabilite = probabilite.add(BigDecimal.valueOf(0.1));
-        }
-        
-        return probabilite.min(BigDecimal.ONE); // Max 1.0
+        long tailleHistorique = reactionAllergiqueRepository.countByUtilisateurAndAliment(utilisateur, aliment);
+        return calculerProbabiliteAllergie(modele, new FacteursProbabilite(request.getNiveauSeverite(),
+                request.getDureeReaction(), request.getQuantiteConsommee(), request.getHospitalisationRequise(),
+                request.getMedecinConsulte(), tailleHistorique, aliment.containsAllergenes()));
+    }
+    
+    /**
+     * Calcule la probabilité d'allergie à partir des facteurs d'une réaction avec le modèle donné,
+     * et soumet les mêmes facteurs au modèle candidat éventuel (shadow). Réservé aux requêtes :
+     * le re-scoring appelle le modèle directement pour ne pas mêler l'historique au trafic comparé.
+     */
+    private BigDecimal calculerProbabiliteAllergie(RiskModel modele, FacteursProbabilite facteurs) {
+        BigDecimal probabilite = modele.probabiliteAllergie(facteurs);
+        riskModelRegistry.evaluerProbabiliteEnShadow(facteurs, probabilite, SEUIL_DETECTION_ALLERGIE);
+        return probabilite;
     }
     
-    private BigDecimal getProbabiliteBySeverite(String severite) {
-        if (severite == null) return BigDecimal.ZERO;
-        return switch (severite) {
-            case "CRITIQUE" -> BigDecimal.valueOf(0.4);
-            case "SEVERE" -> BigDecimal.valueOf(0.3);
-            case "MODERE" -> BigDecimal.valueOf(0.2);
-            case "LEGER" -> BigDecimal.valueOf(0.1);
-            default -> BigDecimal.ZERO;
-        };
+    /**
+     * Relance la détection automatique pour une réaction existante dont le score recalculé
+     * franchit le seuil (utilisé par le re-scoring, une transaction par réaction).
+     * Les réactions conservées d'un utilisateur anonymisé ne recréent aucune donnée de santé.
+     */
+    public void detecterAllergiePourReaction(Long reactionId) {
+        reactionAllergiqueRepository.findById(reactionId)
+                .filter(ReactionAllergique::isAllergic)
+                .ifPresent(reaction -> {
+                    Long utilisateurId = reaction.getUtilisateur().getId();
+                    if (utilisateurRepository.verrouillerHorsEffacement(utilisateurId).isEmpty()) {
+                        log.debug("Détection ignorée pour la réaction {} : utilisateur {} effacé ou anonymisé",
+                                reactionId, utilisateurId);
+                        return;
+                    }
+                    detecterEtCreerAllergie(reaction.getUtilisateur(), reaction.getAliment(), reaction);
+                });
     }
     
     /**
-     * Détecte automatiquement une allergie et la crée si nécessaire
+     * Détecte automatiquement une allergie et la crée si nécessaire.
+     * 
+     * L'appelant tient déjà la ligne de l'utilisateur (versionner, verrouillerHorsEffacement) jusqu'à la fin
+     * de la transaction : une seconde réaction concurrente du même utilisateur, sur cette instance
+     * ou une autre, attend le commit et voit l'association créée.
+     * L'allergie « Allergie à X » est partagée entre utilisateurs (nom unique) : elle est
+     * réutilisée si elle existe, et sa création est sérialisée par aliment. La bande de l'aliment
+     * est prise après la ligne utilisateur (ordre décrit dans StripedLocks).
      */
     private void detecterEtCreerAllergie(Utilisateur utilisateur, Aliment aliment, ReactionAllergique reaction) {
         log.info("Détection automatique d'allergie potentielle pour utilisateur: {} et aliment: {}", 
@@ -205,40 +369,58 @@ public class AllergieService {
                          au.getAllergie().getNom().toLowerCase().contains(aliment.getNom().toLowerCase()));
         
         if (!allergieDejaConnue) {
-            // Créer une nouvelle allergie automatiquement détectée
-            Allergie nouvelleAllergie = creerAllergieAutomatique(aliment, reaction);
-            associerAllergieUtilisateur(utilisateur, nouvelleAllergie, reaction);
+            verrousAliments.verrouillerJusquaFinTransaction(aliment.getId());
+            Allergie allergie = allergiesAutomatiques.obtenir(aliment, reaction);
+            associerAllergieUtilisateur(utilisateur, allergie, reaction);
         }
     }
     
-    private Allergie creerAllergieAutomatique(Aliment aliment, ReactionAllergique reaction) {
-        return Allergie.builder()
-                .nom("Allergie à " + aliment.getNom())
-                .description("Allergie détectée automatiquement par le système IA")
-                .niveauSeverite(reaction.getNiveauSeverite())
-                .typeAllergie("ALIMENTAIRE")
-                .symptomes(reaction.getSymptomes())
-                .traitementRecommande("Consultation médicale recommandée pour confirmation")
-                .actif(true)
-                .build();
-    }
-    
     private void associerAllergieUtilisateur(Utilisateur utilisateur, Allergie allergie, ReactionAllergique reaction) {
         AllergieUtilisateur.AllergieUtilisateurId id = new AllergieUtilisateur.AllergieUtilisateurId(
                 utilisateur.getId(), allergie.getId());
         
-        AllergieUtilisateur association = AllergieUtilisateur.builder()
-                .id(id)
-                .utilisateur(utilisateur)
-                .allergie(allergie)
-                .niveauSeverite(reaction.getNiveauSeverite())
-                .dateDiagnostic(LocalDateTime.now())
-                .diagnostiquePar("Système IA - Détection automatique")
-                .notes("Allergie détectée automatiquement suite à une réaction avec probabilité > 30%")
-                .actif(true)
-                .build();
+        // Association existante (éventuellement inactive) : on la réactive au lieu d'insérer un doublon
+        AllergieUtilisateur association = allergieUtilisateurRepository.findById(id)
+                .orElseGet(() -> AllergieUtilisateur.builder()
+                        .id(id)
+                        .utilisateur(utilisateur)
+                        .allergie(allergie)
+                        .build());
+        
+        association.setNiveauSeverite(reaction.getNiveauSeverite());
+        association.setDateDiagnostic(LocalDateTime.now());
+        association.setDiagnostiquePar(DIAGNOSTIC_AUTOMATIQUE);
+        association.setNotes("Allergie détectée automatiquement suite à une réaction avec probabilité > 30%");
+        association.setActif(true);
+        association.setVersionSync(versionner(utilisateur.getId()));
         
         allergieUtilisateurRepository.save(association);
+        
+        Map<String, Object> payload = new LinkedHashMap<>();
+        payload.put("utilisateurId", utilisateur.getId());
+        payload.put("allergieId", allergie.getId());
+        payload.put("nomAllergie", allergie.getNom());
+        payload.put("niveauSeverite", association.getNiveauSeverite());
+        payload.put("dateDiagnostic", association.getDateDiagnostic());
+        payload.put("diagnostiquePar", association.getDiagnostiquePar());
+        payload.put("reactionId", reaction.getId());
+        outboxService.enregistrer(OutboxService.ALLERGIE_DETECTEE, utilisateur.getId(), payload);
+    }
+    
+    private Map<String, Object> payloadReaction(ReactionAllergique reaction) {
+        Map<String, Object> payload = new LinkedHashMap<>();
+        payload.put("reactionId", reaction.getId());
+        payload.put("utilisateurId", reaction.getUtilisateur().getId());
+        payload.put("alimentId", reaction.getAliment().getId());
+        payload.put("dateReaction", reaction.getDateReaction());
+        payload.put("niveauSeverite", reaction.getNiveauSeverite());
+        payload.put("symptomes", reaction.getSymptomes());
+        payload.put("dureeReaction", reaction.getDureeReaction());
+        payload.put("quantiteConsommee", reaction.getQuantiteConsommee());
+        payload.put("medecinConsulte", reaction.getMedecinConsulte());
+        payload.put("hospitalisationRequise", reaction.getHospitalisationRequise());
+        payload.put("probabiliteAllergie", reaction.getProbabiliteAllergie());
+        return payload;
     }
     
     // Méthodes de mapping et d'analyse privées (suite dans le prochain message)
@@ -298,52 +480,30 @@ public class AllergieService {
                 .build();
     }
     
-    private int calculerScoreRisque(List<AllergieUtilisateur> allergies, 
-                                   List<ReactionAllergique> reactions, Aliment aliment) {
-        int score = 0;
-        
-        // Score basé sur les allergies existantes
-        for (AllergieUtilisateur allergie : allergies) {
-            if (allergie.isCritique()) score += 30;
-            else score += 15;
-        }
-        
-        // Score basé sur les réactions passées
-        for (ReactionAllergique reaction : reactions) {
-            score += reaction.calculateRiskScore() / 4; // Pondération
-        }
-        
-        // Score basé sur l'aliment
-        if (aliment.containsAllergenes()) score += 10;
-        
-        return Math.min(score, 100);
-    }
-    
-    private String determinerNiveauRisque(int score) {
-        if (score >= 70) return "CRITIQUE";
-        if (score >= 50) return "ELEVE";
-        if (score >= 30) return "MODERE";
-        return "FAIBLE";
-    }
-    
-    private List<String> genererRecommandations(int scoreRisque, List<AllergieUtilisateur> allergies) {
+    private List<String> genererRecommandations(String niveauRisque, List<AllergieUtilisateur> allergies) {
         List<String> recommandations = new ArrayList<>();
         
-        if (scoreRisque >= 70) {
-            recommandations.add("URGENT: Éviter absolument cet aliment");
-            recommandations.add("Consulter immédiatement un allergologue");
-            recommandations.add("Porter en permanence un auto-injecteur d'épinéphrine");
-        } else if (scoreRisque >= 50) {
-            recommandations.add("Éviter cet aliment");
-            recommandations.add("Consulter un allergologue dans les plus brefs délais");
-            recommandations.add("Avoir des antihistaminiques à portée de main");
-        } else if (scoreRisque >= 30) {
-            recommandations.add("Consommer avec prudence et en petites quantités");
-            recommandations.add("Surveiller l'apparition de symptômes");
-            recommandations.add("Consulter un médecin pour évaluation");
-        } else {
-            recommandations.add("Risque faible - consommation possible avec surveillance");
-            recommandations.add("Rester attentif aux éventuels symptômes");
+        // Paliers du modèle actif (seuils de ParametresModele), comme le niveau de risque renvoyé
+        switch (niveauRisque) {
+            case "CRITIQUE" -> {
+                recommandations.add("URGENT: Éviter absolument cet aliment");
+                recommandations.add("Consulter immédiatement un allergologue");
+                recommandations.add("Porter en permanence un auto-injecteur d'épinéphrine");
+            }
+            case "ELEVE" -> {
+                recommandations.add("Éviter cet aliment");
+                recommandations.add("Consulter un allergologue dans les plus brefs délais");
+                recommandations.add("Avoir des antihistaminiques à portée de main");
+            }
+            case "MODERE" -> {
+                recommandations.add("Consommer avec prudence et en petites quantités");
+                recommandations.add("Surveiller l'apparition de symptômes");
+                recommandations.add("Consulter un médecin pour évaluation");
+            }
+            default -> {
+                recommandations.add("Risque faible - consommation possible avec surveillance");
+                recommandations.add("Rester attentif aux éventuels symptômes");
+            }
         }
         
         return recommandations;
@@ -366,16 +526,16 @@ public class AllergieService {
                 .collect(Collectors.toList());
     }
     
-    private List<ProfilAllergiqueResponse.ReactionRecenteInfo> mapReactionsRecentesInfo(List<ReactionAllergique> reactions) {
+    private List<ProfilAllergiqueResponse.ReactionRecenteInfo> mapReactionsRecentesInfo(List<ReactionsRecentes.ReactionRecente> reactions) {
         return reactions.stream()
                 .map(r -> ProfilAllergiqueResponse.ReactionRecenteInfo.builder()
-                        .reactionId(r.getId())
-                        .nomAliment(r.getAliment().getNom())
-                        .dateReaction(r.getDateReaction())
-                        .niveauSeverite(r.getNiveauSeverite())
-                        .symptomes(r.getSymptomes())
-                        .hospitalisationRequise(r.getHospitalisationRequise())
-                        .probabiliteAllergie(r.getProbabiliteAllergie())
+                        .reactionId(r.id())
+                        .nomAliment(r.nomAliment())
+                        .dateReaction(r.dateReaction())
+                        .niveauSeverite(r.niveauSeverite())
+                        .symptomes(r.symptomes())
+                        .hospitalisationRequise(r.hospitalisationRequise())
+                        .probabiliteAllergie(r.probabiliteAllergie())
                         .build())
                 .collect(Collectors.toList());
     }
@@ -394,6 +554,22 @@ public class AllergieService {
                 .collect(Collectors.toList());
     }
     
+    private List<VerificationRisqueResponse.ReactionCroisee> mapReactionsCroisees(
+            List<ReactionAllergique> reactions, List<EntreeScoreRisque.ReactionCroisee> facteurs) {
+        List<VerificationRisqueResponse.ReactionCroisee> resultat = new ArrayList<>(reactions.size());
+        for (int i = 0; i < reactions.size(); i++) {
+            ReactionAllergique r = reactions.get(i);
+            resultat.add(VerificationRisqueResponse.ReactionCroisee.builder()
+                    .alimentId(r.getAliment().getId())
+                    .nomAliment(r.getAliment().getNom())
+                    .coefficient(ReactiviteCroiseeService.coefficient((float) facteurs.get(i).coefficient()))
+                    .dateReaction(r.getDateReaction())
+                    .niveauSeverite(r.getNiveauSeverite())
+                    .build());
+        }
+        return resultat;
+    }
+    
     private List<VerificationRisqueResponse.ReactionHistorique> mapReactionsHistoriques(List<ReactionAllergique> reactions) {
         return reactions.stream()
                 .map(r -> VerificationRisqueResponse.ReactionHistorique.builder()
@@ -409,8 +585,9 @@ public class AllergieService {
     private ProfilAllergiqueResponse.StatistiquesAllergie calculerStatistiques(Utilisateur utilisateur) {
         List<AllergieUtilisateur> allergies = allergieUtilisateurRepository.findByUtilisateurAndActifTrue(utilisateur);
         List<ReactionAllergique> toutesReactions = reactionAllergiqueRepository.findByUtilisateur(utilisateur);
-        List<ReactionAllergique> reactionsMois = reactionAllergiqueRepository
-                .findRecentReactionsByUser(utilisateur, LocalDateTime.now().minusMonths(1));
+        LocalDateTime debutMois = LocalDateTime.now().minusMonths(1);
+        long reactionsMois = reactionsRecentes.compter(utilisateur.getId(), debutMois)
+                .orElseGet(() -> reactionAllergiqueRepository.countByUtilisateurAndDateReactionGreaterThanEqual(utilisateur, debutMois));
         
         int nombreAllergiesCritiques = (int) allergies.stream()
                 .filter(AllergieUtilisateur::isCritique)
@@ -425,7 +602,7 @@ public class AllergieService {
                 .nombreAllergies(allergies.size())
                 .nombreAllergiesCritiques(nombreAllergiesCritiques)
                 .nombreReactionsTotal(toutesReactions.size())
-                .nombreReactionsDernierMois(reactionsMois.size())
+                .nombreReactionsDernierMois((int) reactionsMois)
                 .allergieRecurrente(trouverAllergieRecurrente(allergies))
                 .alimentRisque(trouverAlimentRisque(toutesReactions))
                 .scoreRisqueGlobal(Math.min(scoreRisqueGlobal, 100))
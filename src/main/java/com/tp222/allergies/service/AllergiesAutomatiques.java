@@ -0,0 +1,95 @@
+package com.tp222.allergies.service;
+
+import com.tp222.allergies.model.entity.Aliment;
+import com.tp222.allergies.model.entity.Allergie;
+import com.tp222.allergies.model.entity.ReactionAllergique;
+import com.tp222.allergies.repository.AllergieRepository;
+import com.tp222.allergies.service.catalogue.CatalogueBinaireService;
+import com.tp222.allergies.service.sharding.ReplicationCatalogue;
+import com.tp222.allergies.service.sharding.RoutageShards;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.dialect.PostgreSQLDialect;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.stereotype.Component;
+import java.time.LocalDateTime;
+
+/**
+ * Allergies « Allergie à X » du catalogue, partagées entre tous les utilisateurs détectés
+ * allergiques à l'aliment X (nom unique).
+ *
+ * Sur PostgreSQL, l'allergie est créée par INSERT … ON CONFLICT DO NOTHING puis relue : deux
+ * instances qui détectent la même allergie en même temps obtiennent la même ligne, sans violation
+ * d'unicité ni transaction annulée. Les autres bases (H2 : tests, profils locaux à une instance)
+ * passent par JPA, la création étant sérialisée par aliment dans l'instance.
+ */
+@Component
+public class AllergiesAutomatiques {
+
+    private final AllergieRepository allergieRepository;
+    private final RoutageShards routageShards;
+    private final ReplicationCatalogue replicationCatalogue;
+    private final ObjectProvider<CatalogueBinaireService> catalogueBinaire;
+    private final boolean insertionSansConflit;
+
+    public AllergiesAutomatiques(AllergieRepository allergieRepository,
+                                 RoutageShards routageShards,
+                                 ReplicationCatalogue replicationCatalogue,
+                                 ObjectProvider<CatalogueBinaireService> catalogueBinaire,
+                                 EntityManagerFactory entityManagerFactory) {
+        this.allergieRepository = allergieRepository;
+        this.routageShards = routageShards;
+        this.replicationCatalogue = replicationCatalogue;
+        this.catalogueBinaire = catalogueBinaire;
+        this.insertionSansConflit = entityManagerFactory.unwrap(SessionFactoryImplementor.class)
+                .getJdbcServices().getDialect() instanceof PostgreSQLDialect;
+    }
+
+    public static String nom(Aliment aliment) {
+        return "Allergie à " + aliment.getNom();
+    }
+
+    /**
+     * Allergie automatique de l'aliment, créée d'après la réaction si elle n'existe pas encore.
+     * À appeler dans la transaction de l'utilisateur : avec le sharding, l'allergie est créée sur
+     * le principal puis répliquée (y compris sur le shard de l'utilisateur) avant d'être relue ici.
+     */
+    public Allergie obtenir(Aliment aliment, ReactionAllergique reaction) {
+        String nom = nom(aliment);
+        return allergieRepository.findByNom(nom).orElseGet(() -> {
+            Long id = routageShards.ecrireCatalogue(() -> creer(aliment, reaction));
+            return allergieRepository.findById(id)
+                    .orElseThrow(() -> new RuntimeException("Allergie non trouvée après réplication"));
+        });
+    }
+
+    /**
+     * @return l'identifiant de l'allergie, créée par cette transaction ou par une autre
+     */
+    private Long creer(Aliment aliment, ReactionAllergique reaction) {
+        Allergie allergie = Allergie.builder()
+                .nom(nom(aliment))
+                .description("Allergie détectée automatiquement par le système IA")
+                .niveauSeverite(reaction.getNiveauSeverite())
+                .typeAllergie("ALIMENTAIRE")
+                .symptomes(reaction.getSymptomes())
+                .traitementRecommande("Consultation médicale recommandée pour confirmation")
+                .actif(true)
+                .build();
+        if (!insertionSansConflit) {
+            return allergieRepository.save(allergie).getId();
+        }
+
+        // Écriture SQL : les écouteurs du catalogue ne sont pas appelés, la réplication l'est ici
+        replicationCatalogue.verifierEcriture("allergies");
+        allergie.setDateCreation(LocalDateTime.now());
+        boolean creee = allergieRepository.insererSiAbsente(allergie) > 0;
+        Long id = allergieRepository.findIdByNom(allergie.getNom())
+                .orElseThrow(() -> new RuntimeException("Allergie non trouvée"));
+        if (creee) {
+            replicationCatalogue.repliquerApresCommit("allergies", id);
+            catalogueBinaire.getObject().signalerModificationApresCommit();
+        }
+        return id;
+    }
+}
@@ -0,0 +1,84 @@
+package com.tp222.allergies.service;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Analyse de la liste d'ingrédients libre d'une recette.
+ *
+ * Une ligne (ou un élément séparé par ';') a la forme "[quantité] [unité] [de|d'] nom", par
+ * exemple "200 g de farine", "1 c. à soupe d'huile" ou "2 œufs". La quantité est convertie en
+ * grammes ; les volumes sont assimilés à de l'eau.
+ */
+public final class AnalyseurIngredients {
+
+    /**
+     * Ingrédient analysé ; quantiteGrammes est null si la ligne ne donne pas de quantité
+     */
+    public record LigneIngredient(String libelle, String nom, BigDecimal quantiteGrammes) {
+    }
+
+    // Poids moyen d'une unité ("2 œufs"), faute de poids unitaire par aliment
+    private static final BigDecimal POIDS_UNITE = BigDecimal.valueOf(50);
+
+    private static final Pattern SEPARATEURS = Pattern.compile("[\\n;]+");
+    private static final Pattern LIGNE = Pattern.compile(
+            "^\\s*[-*•]?\\s*(?<quantite>\\d+(?:[.,]\\d+)?|\\d+/\\d+)?\\s*" +
+            "(?<unite>kg|mg|g|cl|ml|dl|l|c\\.?\\s*(?:à|a)\\s*(?:s\\.?|soupe)|c\\.?\\s*(?:à|a)\\s*(?:c\\.?|café|cafe)|" +
+            "cuillères? (?:à|a) soupe|cuillères? (?:à|a) café|pincées?|tasses?|verres?)?\\.?\\s+" +
+            "(?:de\\s+|d'\\s*)?(?<nom>.+?)\\s*$",
+            Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE);
+
+    private AnalyseurIngredients() {
+    }
+
+    public static List<LigneIngredient> analyser(String texte) {
+        List<LigneIngredient> lignes = new ArrayList<>();
+        if (texte == null) return lignes;
+        for (String brut : SEPARATEURS.split(texte)) {
+            String libelle = brut.trim();
+            if (libelle.isEmpty()) continue;
+            Matcher m = LIGNE.matcher(" " + libelle);
+            if (!m.matches() || m.group("quantite") == null) {
+                lignes.add(new LigneIngredient(libelle, nettoyerNom(libelle), null));
+                continue;
+            }
+            BigDecimal quantite = quantite(m.group("quantite"));
+            lignes.add(new LigneIngredient(libelle, nettoyerNom(m.group("nom")),
+                    quantite.multiply(grammesParUnite(m.group("unite")))));
+        }
+        return lignes;
+    }
+
+    private static BigDecimal quantite(String texte) {
+        if (texte.contains("/")) {
+            String[] fraction = texte.split("/");
+            return BigDecimal.valueOf(Double.parseDouble(fraction[0]) / Double.parseDouble(fraction[1]));
+        }
+        return new BigDecimal(texte.replace(',', '.'));
+    }
+
+    private static BigDecimal grammesParUnite(String unite) {
+        if (unite == null) return POIDS_UNITE;
+        String u = Allergenes.normaliser(unite).replace(" ", "");
+        if (u.equals("kg") || u.equals("l")) return BigDecimal.valueOf(1000);
+        if (u.equals("g") || u.equals("ml")) return BigDecimal.ONE;
+        if (u.equals("mg")) return BigDecimal.valueOf(0.001);
+        if (u.equals("cl")) return BigDecimal.TEN;
+        if (u.equals("dl")) return BigDecimal.valueOf(100);
+        if (u.contains("soupe") || u.endsWith("as")) return BigDecimal.valueOf(15);
+        if (u.contains("cafe") || u.endsWith("ac")) return BigDecimal.valueOf(5);
+        if (u.startsWith("pincee")) return BigDecimal.valueOf(0.5);
+        if (u.startsWith("tasse") || u.startsWith("verre")) return BigDecimal.valueOf(200);
+        return POIDS_UNITE;
+    }
+
+    private static String nettoyerNom(String nom) {
+        // "farine (type 55)" -> "farine"
+        int parenthese = nom.indexOf('(');
+        return (parenthese > 0 ? nom.substring(0, parenthese) : nom).trim();
+    }
+}
@@ -0,0 +1,138 @@
+package com.tp222.allergies.service;
+
+import com.tp222.allergies.model.dto.response.StatistiquesGlobalesResponse;
+import com.tp222.allergies.model.entity.Aliment;
+import com.tp222.allergies.model.entity.Allergie;
+import com.tp222.allergies.repository.AlimentRepository;
+import com.tp222.allergies.repository.AllergieRepository;
+import com.tp222.allergies.repository.AllergieUtilisateurRepository;
+import com.tp222.allergies.repository.ReactionAllergiqueRepository;
+import com.tp222.allergies.repository.UtilisateurRepository;
+import com.tp222.allergies.service.sharding.ScatterGather;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Statistiques sur l'ensemble des utilisateurs, calculées en scatter-gather.
+ *
+ * Chaque shard agrège ses propres données (comptes par mois, par aliment, par allergie, par
+ * sévérité) ; les agrégats partiels ne portent que des identifiants et des comptes, additionnés
+ * ici. Les noms viennent du catalogue, identique sur tous les shards.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class AnalytiqueService {
+
+    private final ScatterGather scatterGather;
+    private final UtilisateurRepository utilisateurRepository;
+    private final ReactionAllergiqueRepository reactionAllergiqueRepository;
+    private final AllergieUtilisateurRepository allergieUtilisateurRepository;
+    private final AlimentRepository alimentRepository;
+    private final AllergieRepository allergieRepository;
+
+    /**
+     * Agrégats d'un shard
+     */
+    private record Partiel(long utilisateurs, long reactions, List<Object[]> parMois, List<Object[]> parAliment,
+                           List<Object[]> parAllergie, List<Object[]> parSeverite) {
+    }
+
+    public StatistiquesGlobalesResponse getStatistiques(int limite) {
+        long debut = System.nanoTime();
+        Map<String, Partiel> partiels = scatterGather.surTousLesShards(() -> new Partiel(
+                utilisateurRepository.count(),
+                reactionAllergiqueRepository.count(),
+                reactionAllergiqueRepository.getReactionStatsByMonth(),
+                reactionAllergiqueRepository.countReactionsProblematiquesParAliment(),
+                allergieUtilisateurRepository.countActivesParAllergie(),
+                allergieUtilisateurRepository.getAllergieStatsBySeverity()));
+
+        long utilisateurs = 0;
+        long reactions = 0;
+        Map<Integer, Long> parMois = new TreeMap<>();
+        Map<Long, Long> parAliment = new HashMap<>();
+        Map<Long, Long> parAllergie = new HashMap<>();
+        Map<String, Long> parSeverite = new TreeMap<>();
+        List<StatistiquesGlobalesResponse.RepartitionShard> repartition = new ArrayList<>();
+        for (Map.Entry<String, Partiel> entree : partiels.entrySet()) {
+            Partiel partiel = entree.getValue();
+            utilisateurs += partiel.utilisateurs();
+            reactions += partiel.reactions();
+            for (Object[] ligne : partiel.parMois()) {
+                int cle = ((Number) ligne[0]).intValue() * 100 + ((Number) ligne[1]).intValue();
+                parMois.merge(cle, ((Number) ligne[2]).longValue(), Long::sum);
+            }
+            additionner(parAliment, partiel.parAliment());
+            additionner(parAllergie, partiel.parAllergie());
+            for (Object[] ligne : partiel.parSeverite()) {
+                parSeverite.merge(ligne[0] == null ? "NON_RENSEIGNE" : (String) ligne[0], ((Number) ligne[1]).longValue(), Long::sum);
+            }
+            repartition.add(StatistiquesGlobalesResponse.RepartitionShard.builder()
+                    .shard(entree.getKey())
+                    .utilisateurs(partiel.utilisateurs())
+                    .reactions(partiel.reactions())
+                    .build());
+        }
+
+        List<StatistiquesGlobalesResponse.ReactionsMois> mois = parMois.entrySet().stream()
+                .map(e -> StatistiquesGlobalesResponse.ReactionsMois.builder()
+                        .annee(e.getKey() / 100)
+                        .mois(e.getKey() % 100)
+                        .nombre(e.getValue())
+                        .build())
+                .toList();
+        List<Map.Entry<Long, Long>> topAliments = premiers(parAliment, limite);
+        Map<Long, String> nomsAliments = alimentRepository.findAllById(topAliments.stream().map(Map.Entry::getKey).toList()).stream()
+                .collect(Collectors.toMap(Aliment::getId, Aliment::getNom));
+        List<Map.Entry<Long, Long>> topAllergies = premiers(parAllergie, limite);
+        Map<Long, String> nomsAllergies = allergieRepository.findAllById(topAllergies.stream().map(Map.Entry::getKey).toList()).stream()
+                .collect(Collectors.toMap(Allergie::getId, Allergie::getNom));
+
+        long dureeMs = (System.nanoTime() - debut) / 1_000_000;
+        log.info("Statistiques globales calculées sur {} shards en {} ms", partiels.size(), dureeMs);
+        return StatistiquesGlobalesResponse.builder()
+                .nombreUtilisateurs(utilisateurs)
+                .nombreReactions(reactions)
+                .reactionsParMois(mois)
+                .alimentsProblematiques(frequences(topAliments, nomsAliments::get))
+                .allergiesFrequentes(frequences(topAllergies, nomsAllergies::get))
+                .allergiesParSeverite(parSeverite)
+                .shards(repartition)
+                .dureeMs(dureeMs)
+                .build();
+    }
+
+    private static void additionner(Map<Long, Long> total, List<Object[]> lignes) {
+        for (Object[] ligne : lignes) {
+            total.merge(((Number) ligne[0]).longValue(), ((Number) ligne[1]).longValue(), Long::sum);
+        }
+    }
+
+    private static List<Map.Entry<Long, Long>> premiers(Map<Long, Long> comptes, int limite) {
+        return comptes.entrySet().stream()
+                .sorted(Map.Entry.<Long, Long>comparingByValue(Comparator.reverseOrder()).thenComparing(Map.Entry.<Long, Long>comparingByKey()))
+                .limit(limite)
+                .toList();
+    }
+
+    private static List<StatistiquesGlobalesResponse.Frequence> frequences(List<Map.Entry<Long, Long>> comptes,
+                                                                          Function<Long, String> noms) {
+        return comptes.stream()
+                .map(e -> StatistiquesGlobalesResponse.Frequence.builder()
+                        .id(e.getKey())
+                        .nom(noms.apply(e.getKey()))
+                        .nombre(e.getValue())
+                        .build())
+                .toList();
+    }
+}
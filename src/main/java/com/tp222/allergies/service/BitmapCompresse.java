@@ -0,0 +1,450 @@
+package com.tp222.allergies.service;
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+/**
+ * Ensemble d'entiers positifs compressé à la manière de Roaring.
+ *
+ * Les 16 bits de poids fort d'une valeur désignent un conteneur, les 16 bits de poids faible la
+ * position dans ce conteneur. Un conteneur peu rempli (au plus 4096 valeurs) est un tableau trié
+ * de char ; au-delà, un bitmap de 1024 mots de 64 bits (8 Ko). Un million d'identifiants
+ * contigus occupent ainsi environ 128 Ko, et quelques identifiants épars quelques octets chacun.
+ *
+ * Les opérations ensemblistes (et, ou, sauf) produisent une nouvelle instance. La classe n'est
+ * pas thread-safe : l'appelant synchronise les modifications.
+ */
+public final class BitmapCompresse {
+
+    private static final int SEUIL_TABLEAU = 4096;
+    private static final int MOTS = 1024;
+
+    private char[] cles = new char[4];
+    private Conteneur[] conteneurs = new Conteneur[4];
+    private int nombre;
+
+    public static BitmapCompresse de(int... valeurs) {
+        BitmapCompresse bitmap = new BitmapCompresse();
+        for (int valeur : valeurs) bitmap.ajouter(valeur);
+        return bitmap;
+    }
+
+    public boolean ajouter(int valeur) {
+        verifier(valeur);
+        char cle = (char) (valeur >>> 16);
+        int i = chercher(cle);
+        if (i < 0) {
+            i = -i - 1;
+            inserer(i, cle, new Tableau());
+        }
+        int avant = conteneurs[i].cardinalite();
+        conteneurs[i] = conteneurs[i].ajouter((char) valeur);
+        return conteneurs[i].cardinalite() != avant;
+    }
+
+    public boolean retirer(int valeur) {
+        if (valeur < 0) return false;
+        int i = chercher((char) (valeur >>> 16));
+        if (i < 0) return false;
+        int avant = conteneurs[i].cardinalite();
+        conteneurs[i] = conteneurs[i].retirer((char) valeur);
+        boolean retire = conteneurs[i].cardinalite() != avant;
+        if (conteneurs[i].cardinalite() == 0) supprimer(i);
+        return retire;
+    }
+
+    public boolean contient(int valeur) {
+        if (valeur < 0) return false;
+        int i = chercher((char) (valeur >>> 16));
+        return i >= 0 && conteneurs[i].contient((char) valeur);
+    }
+
+    public long cardinalite() {
+        long total = 0;
+        for (int i = 0; i < nombre; i++) total += conteneurs[i].cardinalite();
+        return total;
+    }
+
+    public boolean estVide() {
+        return nombre == 0;
+    }
+
+    /**
+     * Parcourt les valeurs dans l'ordre croissant
+     */
+    public void pourChaque(IntConsumer action) {
+        for (int i = 0; i < nombre; i++) {
+            conteneurs[i].pourChaque(cles[i] << 16, action);
+        }
+    }
+
+    public int[] valeurs() {
+        int[] valeurs = new int[(int) cardinalite()];
+        int[] position = {0};
+        pourChaque(v -> valeurs[position[0]++] = v);
+        return valeurs;
+    }
+
+    /**
+     * Valeurs de rang [debut, debut + taille[ dans l'ordre croissant (pagination)
+     */
+    public int[] page(long debut, int taille) {
+        int[] page = new int[(int) Math.max(0, Math.min(taille, cardinalite() - debut))];
+        long rang = 0;
+        int rempli = 0;
+        for (int i = 0; i < nombre && rempli < page.length; i++) {
+            int cardinalite = conteneurs[i].cardinalite();
+            if (rang + cardinalite <= debut) {
+                rang += cardinalite;
+                continue;
+            }
+            int[] valeurs = new int[cardinalite];
+            int[] k = {0};
+            conteneurs[i].pourChaque(cles[i] << 16, v -> valeurs[k[0]++] = v);
+            for (int j = (int) Math.max(0, debut - rang); j < cardinalite && rempli < page.length; j++) {
+                page[rempli++] = valeurs[j];
+            }
+            rang += cardinalite;
+        }
+        return page;
+    }
+
+    public BitmapCompresse copie() {
+        BitmapCompresse copie = new BitmapCompresse();
+        copie.cles = Arrays.copyOf(cles, Math.max(4, nombre));
+        copie.conteneurs = new Conteneur[copie.cles.length];
+        for (int i = 0; i < nombre; i++) copie.conteneurs[i] = conteneurs[i].copie();
+        copie.nombre = nombre;
+        return copie;
+    }
+
+    /**
+     * Taille approximative en mémoire, en octets
+     */
+    public long octets() {
+        long total = 16L + cles.length * 2L + conteneurs.length * 8L;
+        for (int i = 0; i < nombre; i++) total += conteneurs[i].octets();
+        return total;
+    }
+
+    public static BitmapCompresse et(BitmapCompresse a, BitmapCompresse b) {
+        BitmapCompresse resultat = new BitmapCompresse();
+        int i = 0;
+        int j = 0;
+        while (i < a.nombre && j < b.nombre) {
+            if (a.cles[i] < b.cles[j]) i++;
+            else if (a.cles[i] > b.cles[j]) j++;
+            else {
+                Conteneur c = a.conteneurs[i].et(b.conteneurs[j]);
+                if (c.cardinalite() > 0) resultat.inserer(resultat.nombre, a.cles[i], c);
+                i++;
+                j++;
+            }
+        }
+        return resultat;
+    }
+
+    public static BitmapCompresse ou(BitmapCompresse a, BitmapCompresse b) {
+        BitmapCompresse resultat = new BitmapCompresse();
+        int i = 0;
+        int j = 0;
+        while (i < a.nombre || j < b.nombre) {
+            if (j >= b.nombre || (i < a.nombre && a.cles[i] < b.cles[j])) {
+                resultat.inserer(resultat.nombre, a.cles[i], a.conteneurs[i].copie());
+                i++;
+            } else if (i >= a.nombre || a.cles[i] > b.cles[j]) {
+                resultat.inserer(resultat.nombre, b.cles[j], b.conteneurs[j].copie());
+                j++;
+            } else {
+                resultat.inserer(resultat.nombre, a.cles[i], a.conteneurs[i].ou(b.conteneurs[j]));
+                i++;
+                j++;
+            }
+        }
+        return resultat;
+    }
+
+    /**
+     * Valeurs de a absentes de b
+     */
+    public static BitmapCompresse sauf(BitmapCompresse a, BitmapCompresse b) {
+        BitmapCompresse resultat = new BitmapCompresse();
+        int j = 0;
+        for (int i = 0; i < a.nombre; i++) {
+            while (j < b.nombre && b.cles[j] < a.cles[i]) j++;
+            Conteneur c = j < b.nombre && b.cles[j] == a.cles[i]
+                    ? a.conteneurs[i].sauf(b.conteneurs[j])
+                    : a.conteneurs[i].copie();
+            if (c.cardinalite() > 0) resultat.inserer(resultat.nombre, a.cles[i], c);
+        }
+        return resultat;
+    }
+
+    private static void verifier(int valeur) {
+        if (valeur < 0) {
+            throw new IllegalArgumentException("Valeur négative: " + valeur);
+        }
+    }
+
+    private int chercher(char cle) {
+        int bas = 0;
+        int haut = nombre - 1;
+        while (bas <= haut) {
+            int milieu = (bas + haut) >>> 1;
+            if (cles[milieu] < cle) bas = milieu + 1;
+            else if (cles[milieu] > cle) haut = milieu - 1;
+            else return milieu;
+        }
+        return -(bas + 1);
+    }
+
+    private void inserer(int i, char cle, Conteneur conteneur) {
+        if (nombre == cles.length) {
+            cles = Arrays.copyOf(cles, nombre * 2);
+            conteneurs = Arrays.copyOf(conteneurs, nombre * 2);
+        }
+        System.arraycopy(cles, i, cles, i + 1, nombre - i);
+        System.arraycopy(conteneurs, i, conteneurs, i + 1, nombre - i);
+        cles[i] = cle;
+        conteneurs[i] = conteneur;
+        nombre++;
+    }
+
+    private void supprimer(int i) {
+        System.arraycopy(cles, i + 1, cles, i, nombre - i - 1);
+        System.arraycopy(conteneurs, i + 1, conteneurs, i, nombre - i - 1);
+        conteneurs[--nombre] = null;
+    }
+
+    /**
+     * Conteneur de 65536 valeurs possibles ; ajouter/retirer peuvent changer de représentation
+     */
+    private abstract static sealed class Conteneur permits Tableau, Bits {
+
+        abstract Conteneur ajouter(char valeur);
+
+        abstract Conteneur retirer(char valeur);
+
+        abstract boolean contient(char valeur);
+
+        abstract int cardinalite();
+
+        abstract void pourChaque(int base, IntConsumer action);
+
+        abstract Conteneur copie();
+
+        abstract long octets();
+
+        abstract Bits enBits();
+
+        Conteneur et(Conteneur autre) {
+            if (this instanceof Tableau t) return t.filtrer(autre, true);
+            if (autre instanceof Tableau t) return t.filtrer(this, true);
+            return ((Bits) this).combiner((Bits) autre, 0);
+        }
+
+        Conteneur ou(Conteneur autre) {
+            if (this instanceof Tableau a && autre instanceof Tableau b && a.n + b.n <= SEUIL_TABLEAU) {
+                return a.fusionner(b);
+            }
+            return enBits().combiner(autre.enBits(), 1);
+        }
+
+        Conteneur sauf(Conteneur autre) {
+            if (this instanceof Tableau t) return t.filtrer(autre, false);
+            return ((Bits) this).combiner(autre.enBits(), 2);
+        }
+    }
+
+    private static final class Tableau extends Conteneur {
+
+        char[] valeurs;
+        int n;
+
+        Tableau() {
+            this(new char[4], 0);
+        }
+
+        Tableau(char[] valeurs, int n) {
+            this.valeurs = valeurs;
+            this.n = n;
+        }
+
+        @Override
+        Conteneur ajouter(char valeur) {
+            int i = Arrays.binarySearch(valeurs, 0, n, valeur);
+            if (i >= 0) return this;
+            if (n >= SEUIL_TABLEAU) {
+                return enBits().ajouter(valeur);
+            }
+            i = -i - 1;
+            if (n == valeurs.length) valeurs = Arrays.copyOf(valeurs, Math.min(SEUIL_TABLEAU, n * 2));
+            System.arraycopy(valeurs, i, valeurs, i + 1, n - i);
+            valeurs[i] = valeur;
+            n++;
+            return this;
+        }
+
+        @Override
+        Conteneur retirer(char valeur) {
+            int i = Arrays.binarySearch(valeurs, 0, n, valeur);
+            if (i < 0) return this;
+            System.arraycopy(valeurs, i + 1, valeurs, i, n - i - 1);
+            n--;
+            return this;
+        }
+
+        @Override
+        boolean contient(char valeur) {
+            return Arrays.binarySearch(valeurs, 0, n, valeur) >= 0;
+        }
+
+        @Override
+        int cardinalite() {
+            return n;
+        }
+
+        @Override
+        void pourChaque(int base, IntConsumer action) {
+            for (int i = 0; i < n; i++) action.accept(base | valeurs[i]);
+        }
+
+        @Override
+        Conteneur copie() {
+            return new Tableau(Arrays.copyOf(valeurs, Math.max(4, n)), n);
+        }
+
+        @Override
+        long octets() {
+            return 16L + valeurs.length * 2L;
+        }
+
+        @Override
+        Bits enBits() {
+            Bits bits = new Bits();
+            for (int i = 0; i < n; i++) bits.ajouter(valeurs[i]);
+            return bits;
+        }
+
+        Tableau filtrer(Conteneur autre, boolean garderCommuns) {
+            char[] resultat = new char[Math.max(4, n)];
+            int k = 0;
+            for (int i = 0; i < n; i++) {
+                if (autre.contient(valeurs[i]) == garderCommuns) resultat[k++] = valeurs[i];
+            }
+            return new Tableau(resultat, k);
+        }
+
+        Tableau fusionner(Tableau autre) {
+            char[] resultat = new char[Math.max(4, n + autre.n)];
+            int i = 0;
+            int j = 0;
+            int k = 0;
+            while (i < n || j < autre.n) {
+                if (j >= autre.n || (i < n && valeurs[i] < autre.valeurs[j])) resultat[k++] = valeurs[i++];
+                else if (i >= n || valeurs[i] > autre.valeurs[j]) resultat[k++] = autre.valeurs[j++];
+                else {
+                    resultat[k++] = valeurs[i++];
+                    j++;
+                }
+            }
+            return new Tableau(resultat, k);
+        }
+    }
+
+    private static final class Bits extends Conteneur {
+
+        final long[] mots;
+        int cardinalite;
+
+        Bits() {
+            this(new long[MOTS], 0);
+        }
+
+        Bits(long[] mots, int cardinalite) {
+            this.mots = mots;
+            this.cardinalite = cardinalite;
+        }
+
+        @Override
+        Conteneur ajouter(char valeur) {
+            long masque = 1L << valeur;
+            if ((mots[valeur >>> 6] & masque) == 0) {
+                mots[valeur >>> 6] |= masque;
+                cardinalite++;
+            }
+            return this;
+        }
+
+        @Override
+        Conteneur retirer(char valeur) {
+            long masque = 1L << valeur;
+            if ((mots[valeur >>> 6] & masque) != 0) {
+                mots[valeur >>> 6] &= ~masque;
+                cardinalite--;
+            }
+            return cardinalite <= SEUIL_TABLEAU ? enTableau() : this;
+        }
+
+        @Override
+        boolean contient(char valeur) {
+            return (mots[valeur >>> 6] & (1L << valeur)) != 0;
+        }
+
+        @Override
+        int cardinalite() {
+            return cardinalite;
+        }
+
+        @Override
+        void pourChaque(int base, IntConsumer action) {
+            for (int m = 0; m < MOTS; m++) {
+                long mot = mots[m];
+                while (mot != 0) {
+                    action.accept(base | (m << 6) | Long.numberOfTrailingZeros(mot));
+                    mot &= mot - 1;
+                }
+            }
+        }
+
+        @Override
+        Conteneur copie() {
+            return new Bits(mots.clone(), cardinalite);
+        }
+
+        @Override
+        long octets() {
+            return 16L + MOTS * 8L;
+        }
+
+        @Override
+        Bits enBits() {
+            return this;
+        }
+
+        /**
+         * operation : 0 = et, 1 = ou, 2 = sauf
+         */
+        Conteneur combiner(Bits autre, int operation) {
+            long[] resultat = new long[MOTS];
+            int total = 0;
+            for (int m = 0; m < MOTS; m++) {
+                resultat[m] = switch (operation) {
+                    case 0 -> mots[m] & autre.mots[m];
+                    case 1 -> mots[m] | autre.mots[m];
+                    default -> mots[m] & ~autre.mots[m];
+                };
+                total += Long.bitCount(resultat[m]);
+            }
+            Bits bits = new Bits(resultat, total);
+            return total <= SEUIL_TABLEAU ? bits.enTableau() : bits;
+        }
+
+        Tableau enTableau() {
+            char[] valeurs = new char[Math.max(4, cardinalite)];
+            int[] k = {0};
+            pourChaque(0, v -> valeurs[k[0]++] = (char) v);
+            return new Tableau(valeurs, cardinalite);
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package com.tp222.allergies.service;
+
+import com.tp222.allergies.model.entity.AllergieUtilisateur;
+import com.tp222.allergies.model.entity.Utilisateur;
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.PostRemove;
+import jakarta.persistence.PostUpdate;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.stereotype.Component;
+
+/**
+ * Répercute les écritures sur Utilisateur et AllergieUtilisateur dans l'index des cohortes.
+ *
+ * Instancié par Hibernate via le conteneur de beans Spring ; l'index est résolu à la première
+ * écriture pour ne pas dépendre de l'EntityManagerFactory en cours de construction.
+ */
+@Component
+public class CohortesEntityListener {
+
+    private final ObjectProvider<IndexCohortes> indexCohortes;
+
+    public CohortesEntityListener(ObjectProvider<IndexCohortes> indexCohortes) {
+        this.indexCohortes = indexCohortes;
+    }
+
+    @PostPersist
+    @PostUpdate
+    void apresEcriture(Object entite) {
+        if (entite instanceof AllergieUtilisateur association && association.getId() != null) {
+            indexCohortes.getObject().rafraichirApresCommit(association.getId().getUtilisateurId());
+        } else if (entite instanceof Utilisateur utilisateur && utilisateur.getId() != null) {
+            indexCohortes.getObject().definirActifApresCommit(utilisateur.getId(), Boolean.TRUE.equals(utilisateur.getActif()));
+        }
+    }
+
+    @PostRemove
+    void apresSuppression(Object entite) {
+        if (entite instanceof AllergieUtilisateur association && association.getId() != null) {
+            indexCohortes.getObject().rafraichirApresCommit(association.getId().getUtilisateurId());
+        } else if (entite instanceof Utilisateur utilisateur && utilisateur.getId() != null) {
+            indexCohortes.getObject().retirerApresCommit(utilisateur.getId());
+        }
+    }
+}
@@ -0,0 +1,430 @@
+package com.tp222.allergies.service;
+
+import com.tp222.allergies.model.dto.request.DepistageMenuRequest;
+import com.tp222.allergies.model.dto.response.AlerteAllergieEvent;
+import com.tp222.allergies.model.dto.response.ConviveARisqueResponse;
+import com.tp222.allergies.model.entity.AllergieUtilisateur;
+import com.tp222.allergies.model.entity.Aliment;
+import com.tp222.allergies.model.entity.IngredientRecette;
+import com.tp222.allergies.model.entity.ReactionAllergique;
+import com.tp222.allergies.model.entity.Recette;
+import com.tp222.allergies.model.entity.Utilisateur;
+import com.tp222.allergies.repository.AlimentRepository;
+import com.tp222.allergies.repository.AllergieUtilisateurRepository;
+import com.tp222.allergies.repository.ReactionAllergiqueRepository;
+import com.tp222.allergies.repository.RecetteRepository;
+import com.tp222.allergies.repository.UtilisateurRepository;
+import com.tp222.allergies.service.scoring.EntreeScoreRisque;
+import com.tp222.allergies.service.scoring.RiskModel;
+import com.tp222.allergies.service.scoring.RiskModelRegistry;
+import com.tp222.allergies.service.sharding.RoutageShards;
+import com.tp222.allergies.service.sharding.ScatterGather;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Dépistage d'un menu (aliments et recettes) sur un groupe de convives.
+ *
+ * Les profils allergiques du groupe sont chargés une seule fois et indexés en bitmaps
+ * (objet d'allergie -> convives, aliment -> convives ayant déjà réagi). Pour chaque aliment du
+ * menu, l'union des bitmaps concernés donne les convives candidats, auxquels s'ajoutent les
+ * convives dont le score sans aucune réaction (nombre d'allergies, aliment porteur d'allergènes)
+ * dépasse déjà le seuil. Seuls ces couples sont évalués par le modèle de risque, en parallèle sur
+ * un pool fork/join. Un couple écarté n'a aucune réaction à l'aliment ni à ses aliments reliés :
+ * son score est ce score de base, inférieur au seuil. Le score de chaque couple est donc celui que
+ * donnerait la vérification de risque unitaire ; une recette prend le score de son ingrédient le
+ * plus risqué.
+ *
+ * Avec le sharding, les profils des convives sont lus shard par shard ; le menu (catalogue et
+ * recettes) est lu sur le shard principal.
+ */
+@Service
+@Slf4j
+public class DepistageMenuService {
+
+    public static final String TYPE_ALIMENT = "ALIMENT";
+    public static final String TYPE_RECETTE = "RECETTE";
+
+    // Même seuil que VerificationRisqueResponse.risqueDetecte
+    private static final int SEUIL_RISQUE = 30;
+    private static final int TAILLE_LOT_IN = 1000;
+    private static final int COUPLES_PAR_TACHE = 256;
+
+    private final UtilisateurRepository utilisateurRepository;
+    private final AlimentRepository alimentRepository;
+    private final RecetteRepository recetteRepository;
+    private final AllergieUtilisateurRepository allergieUtilisateurRepository;
+    private final ReactionAllergiqueRepository reactionAllergiqueRepository;
+    private final RiskModelRegistry riskModelRegistry;
+    private final ReactiviteCroiseeService reactiviteCroiseeService;
+    private final RoutageShards routageShards;
+    private final ScatterGather scatterGather;
+    private final ForkJoinPool pool;
+
+    public DepistageMenuService(UtilisateurRepository utilisateurRepository,
+                                AlimentRepository alimentRepository,
+                                RecetteRepository recetteRepository,
+                                AllergieUtilisateurRepository allergieUtilisateurRepository,
+                                ReactionAllergiqueRepository reactionAllergiqueRepository,
+                                RiskModelRegistry riskModelRegistry,
+                                ReactiviteCroiseeService reactiviteCroiseeService,
+                                RoutageShards routageShards,
+                                ScatterGather scatterGather,
+                                @Value("${allergies.depistage.parallelisme:4}") int parallelisme) {
+        this.utilisateurRepository = utilisateurRepository;
+        this.alimentRepository = alimentRepository;
+        this.recetteRepository = recetteRepository;
+        this.allergieUtilisateurRepository = allergieUtilisateurRepository;
+        this.reactionAllergiqueRepository = reactionAllergiqueRepository;
+        this.riskModelRegistry = riskModelRegistry;
+        this.reactiviteCroiseeService = reactiviteCroiseeService;
+        this.routageShards = routageShards;
+        this.scatterGather = scatterGather;
+        this.pool = new ForkJoinPool(Math.max(1, parallelisme));
+    }
+
+    /**
+     * Profil d'un convive extrait des entités : compteurs du modèle de risque et objets d'allergie
+     */
+    private static final class ProfilConvive {
+        int allergiesCritiques;
+        int allergiesNonCritiques;
+        final Map<String, String> nomsParObjet = new HashMap<>(); // objet d'allergie -> nom de l'allergie
+    }
+
+    /**
+     * Liste des convives à risque, triée par gravité décroissante puis par score
+     */
+    @Transactional(readOnly = true)
+    public List<ConviveARisqueResponse> depister(DepistageMenuRequest request) {
+        long debut = System.nanoTime();
+
+        List<Long> utilisateurIds = request.getUtilisateurIds() == null || request.getUtilisateurIds().isEmpty()
+                ? idsActifs()
+                : request.getUtilisateurIds().stream().distinct().toList();
+        Map<Long, Integer> ordinaux = new HashMap<>(utilisateurIds.size() * 2);
+        for (Long id : utilisateurIds) {
+            ordinaux.put(id, ordinaux.size());
+        }
+
+        // Menu : aliments demandés puis ingrédients reconnus des recettes, chacun une seule fois
+        Map<Long, Aliment> aliments = new LinkedHashMap<>();
+        List<Long> alimentsDemandes = request.getAlimentIds() == null ? List.of() : request.getAlimentIds().stream().distinct().toList();
+        Map<Long, Aliment> trouves = alimentRepository.findAllById(alimentsDemandes).stream()
+                .collect(Collectors.toMap(Aliment::getId, Function.identity()));
+        for (Long id : alimentsDemandes) {
+            Aliment aliment = trouves.get(id);
+            if (aliment == null) throw new RuntimeException("Aliment non trouvé");
+            aliments.put(id, aliment);
+        }
+        List<Recette> recettes = new ArrayList<>();
+        if (request.getRecetteIds() != null) {
+            for (Long id : request.getRecetteIds().stream().distinct().toList()) {
+                Recette recette = recetteRepository.findByIdAndActifTrue(id)
+                        .orElseThrow(() -> new RuntimeException("Recette non trouvée"));
+                recettes.add(recette);
+                for (IngredientRecette ingredient : recette.getIngredientsLies()) {
+                    if (ingredient.getAliment() != null) aliments.putIfAbsent(ingredient.getAliment().getId(), ingredient.getAliment());
+                }
+            }
+        }
+        if (utilisateurIds.isEmpty() || aliments.isEmpty()) {
+            return List.of();
+        }
+        List<Aliment> menu = new ArrayList<>(aliments.values());
+        Map<Long, Integer> indexMenu = new HashMap<>();
+        for (int i = 0; i < menu.size(); i++) indexMenu.put(menu.get(i).getId(), i);
+
+        // Profils : objet d'allergie -> bitmap des convives
+        ProfilConvive[] profils = new ProfilConvive[utilisateurIds.size()];
+        Map<String, BitSet> parObjet = new HashMap<>();
+        // Données des convives : une lecture par shard, avec les seuls convives qu'il porte
+        routageShards.parcourirParShard(utilisateurIds, ids -> {
+            for (List<Long> lot : lots(ids)) {
+                for (AllergieUtilisateur allergie : allergieUtilisateurRepository.findActivesByUtilisateurIds(lot)) {
+                    int u = ordinaux.get(allergie.getUtilisateur().getId());
+                    if (profils[u] == null) profils[u] = new ProfilConvive();
+                    if (allergie.isCritique()) profils[u].allergiesCritiques++;
+                    else profils[u].allergiesNonCritiques++;
+                    String objet = Allergenes.depuisNomAllergie(allergie.getAllergie().getNom());
+                    if (objet.isEmpty()) continue;
+                    profils[u].nomsParObjet.put(objet, allergie.getAllergie().getNom());
+                    parObjet.computeIfAbsent(objet, k -> new BitSet(profils.length)).set(u);
+                }
+            }
+        });
+
+        // Réactions passées aux aliments du menu et à leurs aliments à réactivité croisée
+        FermetureReactivite fermeture = reactiviteCroiseeService.getFermeture();
+        Set<Long> alimentsSuivis = new LinkedHashSet<>(aliments.keySet());
+        for (Aliment aliment : menu) {
+            for (long relie : fermeture.relies(aliment.getId()).alimentIds()) alimentsSuivis.add(relie);
+        }
+        Map<Long, Map<Integer, List<EntreeScoreRisque.FacteursReaction>>> reactions = new HashMap<>();
+        routageShards.parcourirParShard(utilisateurIds, ids -> {
+            for (List<Long> lot : lots(ids)) {
+                for (ReactionAllergique reaction : reactionAllergiqueRepository.findByUtilisateurIdInAndAlimentIdIn(lot, alimentsSuivis)) {
+                    reactions.computeIfAbsent(reaction.getAliment().getId(), k -> new HashMap<>())
+                            .computeIfAbsent(ordinaux.get(reaction.getUtilisateur().getId()), k -> new ArrayList<>())
+                            .add(EntreeScoreRisque.FacteursReaction.de(reaction));
+                }
+            }
+        });
+
+        // Convives à risque sans réaction, selon que l'aliment porte des allergènes ou non
+        RiskModel modele = riskModelRegistry.getActif();
+        BitSet risqueDeBaseSansAllergenes = risqueDeBase(profils, modele, false);
+        BitSet risqueDeBaseAvecAllergenes = risqueDeBase(profils, modele, true);
+
+        // Couples candidats : union des bitmaps des objets d'allergie concernés, des convives ayant réagi
+        // et des convives à risque sans réaction
+        List<int[]> couples = new ArrayList<>();
+        List<Set<String>> objetsParAliment = new ArrayList<>(menu.size());
+        for (int a = 0; a < menu.size(); a++) {
+            Aliment aliment = menu.get(a);
+            Set<String> termes = Allergenes.extraire(aliment.getAllergenesPotentiels());
+            termes.add(Allergenes.normaliser(aliment.getNom()));
+            BitSet candidats = new BitSet(profils.length);
+            Set<String> objets = new LinkedHashSet<>();
+            for (Map.Entry<String, BitSet> entree : parObjet.entrySet()) {
+                if (!Allergenes.concernes(entree.getKey(), termes).isEmpty()) {
+                    candidats.or(entree.getValue());
+                    objets.add(entree.getKey());
+                }
+            }
+            objetsParAliment.add(objets);
+            candidats.or(aliment.containsAllergenes() ? risqueDeBaseAvecAllergenes : risqueDeBaseSansAllergenes);
+            ajouterReagissants(candidats, reactions.get(aliment.getId()));
+            for (long relie : fermeture.relies(aliment.getId()).alimentIds()) {
+                ajouterReagissants(candidats, reactions.get(relie));
+            }
+            for (int u = candidats.nextSetBit(0); u >= 0; u = candidats.nextSetBit(u + 1)) {
+                couples.add(new int[] {u, a});
+            }
+        }
+
+        // Évaluation parallèle des seuls couples candidats, avec un modèle unique pour tout le dépistage
+        // Les tâches ne touchent pas aux entités (ingrédients éventuellement chargés paresseusement)
+        long[] idsMenu = menu.stream().mapToLong(Aliment::getId).toArray();
+        boolean[] avecAllergenes = new boolean[menu.size()];
+        for (int a = 0; a < menu.size(); a++) avecAllergenes[a] = menu.get(a).containsAllergenes();
+        int[] scores = new int[couples.size()];
+        pool.invoke(new EvaluationCouples(couples, scores, 0, couples.size(), modele, idsMenu, avecAllergenes,
+                profils, reactions, fermeture));
+
+        Map<Long, Utilisateur> convives = new HashMap<>();
+        Set<Long> aRisque = new LinkedHashSet<>();
+        for (int k = 0; k < scores.length; k++) {
+            if (scores[k] > SEUIL_RISQUE) aRisque.add(utilisateurIds.get(couples.get(k)[0]));
+        }
+        routageShards.parcourirParShard(aRisque, ids -> {
+            for (List<Long> lot : lots(ids)) {
+                utilisateurRepository.findAllById(lot).forEach(u -> convives.put(u.getId(), u));
+            }
+        });
+
+        List<ConviveARisqueResponse> resultat = new ArrayList<>();
+        Map<Long, Integer> scoresAliments = new HashMap<>(); // (convive, aliment du menu) -> score
+        for (int k = 0; k < scores.length; k++) {
+            int u = couples.get(k)[0];
+            int a = couples.get(k)[1];
+            scoresAliments.put((long) u * menu.size() + a, scores[k]);
+            if (scores[k] <= SEUIL_RISQUE || a >= alimentsDemandes.size()) continue;
+            Aliment aliment = menu.get(a);
+            resultat.add(ligne(convives.get(utilisateurIds.get(u)), utilisateurIds.get(u), TYPE_ALIMENT, aliment.getId(),
+                    aliment.getNom(), scores[k], modele, allergiesEnCause(profils[u], objetsParAliment.get(a)), List.of(aliment.getNom())));
+        }
+        for (Recette recette : recettes) {
+            List<Integer> ingredients = recette.getIngredientsLies().stream()
+                    .filter(i -> i.getAliment() != null)
+                    .map(i -> indexMenu.get(i.getAliment().getId()))
+                    .distinct()
+                    .toList();
+            for (Long utilisateurId : aRisque) {
+                int u = ordinaux.get(utilisateurId);
+                int meilleur = 0;
+                Set<String> objets = new LinkedHashSet<>();
+                List<String> enCause = new ArrayList<>();
+                for (int a : ingredients) {
+                    int score = scoresAliments.getOrDefault((long) u * menu.size() + a, 0);
+                    if (score <= SEUIL_RISQUE) continue;
+                    meilleur = Math.max(meilleur, score);
+                    objets.addAll(objetsParAliment.get(a));
+                    enCause.add(menu.get(a).getNom());
+                }
+                if (meilleur > SEUIL_RISQUE) {
+                    resultat.add(ligne(convives.get(utilisateurId), utilisateurId, TYPE_RECETTE, recette.getId(),
+                            recette.getNom(), meilleur, modele, allergiesEnCause(profils[u], objets), enCause));
+                }
+            }
+        }
+
+        resultat.sort(Comparator
+                .comparingInt((ConviveARisqueResponse r) -> AlerteAllergieEvent.gravite(r.getNiveauRisque())).reversed()
+                .thenComparing(ConviveARisqueResponse::getScoreRisque, Comparator.reverseOrder())
+                .thenComparing(ConviveARisqueResponse::getUtilisateurId)
+                .thenComparing(ConviveARisqueResponse::getElementId));
+
+        log.info("Dépistage du menu: {} convives, {} aliments, {} couples évalués, {} lignes à risque en {} ms",
+                utilisateurIds.size(), menu.size(), couples.size(), resultat.size(), (System.nanoTime() - debut) / 1_000_000);
+        return resultat;
+    }
+
+    /**
+     * Convives dont le score sans aucune réaction dépasse le seuil, pour un aliment avec ou sans allergènes.
+     * Ce score ne dépend que du nombre d'allergies : un calcul par profil distinct.
+     */
+    private static BitSet risqueDeBase(ProfilConvive[] profils, RiskModel modele, boolean avecAllergenes) {
+        BitSet aRisque = new BitSet(profils.length);
+        Map<Long, Boolean> parProfil = new HashMap<>();
+        for (int u = 0; u < profils.length; u++) {
+            int critiques = profils[u] == null ? 0 : profils[u].allergiesCritiques;
+            int nonCritiques = profils[u] == null ? 0 : profils[u].allergiesNonCritiques;
+            boolean risque = parProfil.computeIfAbsent(((long) critiques << 32) | nonCritiques,
+                    k -> modele.scoreRisque(new EntreeScoreRisque(critiques, nonCritiques, List.of(), List.of(),
+                            avecAllergenes)) > SEUIL_RISQUE);
+            if (risque) aRisque.set(u);
+        }
+        return aRisque;
+    }
+
+    private static void ajouterReagissants(BitSet candidats, Map<Integer, List<EntreeScoreRisque.FacteursReaction>> reactions) {
+        if (reactions == null) return;
+        reactions.keySet().forEach(candidats::set);
+    }
+
+    private static List<String> allergiesEnCause(ProfilConvive profil, Set<String> objets) {
+        if (profil == null) return List.of();
+        return objets.stream()
+                .map(profil.nomsParObjet::get)
+                .filter(Objects::nonNull)
+                .distinct()
+                .toList();
+    }
+
+    private static ConviveARisqueResponse ligne(Utilisateur utilisateur, Long utilisateurId, String type, Long elementId,
+                                                String nomElement, int score, RiskModel modele,
+                                                List<String> allergiesEnCause, List<String> alimentsEnCause) {
+        return ConviveARisqueResponse.builder()
+                .utilisateurId(utilisateurId)
+                .nomUtilisateur(utilisateur != null ? utilisateur.getNom() : null)
+                .prenomUtilisateur(utilisateur != null ? utilisateur.getPrenom() : null)
+                .typeElement(type)
+                .elementId(elementId)
+                .nomElement(nomElement)
+                .scoreRisque(score)
+                .niveauRisque(modele.niveauRisque(score))
+                .allergiesEnCause(allergiesEnCause)
+                .alimentsEnCause(alimentsEnCause)
+                .build();
+    }
+
+    /**
+     * Tous les utilisateurs actifs, rassemblés depuis chaque shard dans l'ordre des identifiants
+     */
+    private List<Long> idsActifs() {
+        if (!routageShards.isActif()) return utilisateurRepository.findIdsActifs();
+        return scatterGather.surTousLesShards(utilisateurRepository::findIdsActifs).values().stream()
+                .flatMap(List::stream)
+                .sorted()
+                .toList();
+    }
+
+    private static List<List<Long>> lots(List<Long> ids) {
+        List<List<Long>> lots = new ArrayList<>();
+        for (int i = 0; i < ids.size(); i += TAILLE_LOT_IN) {
+            lots.add(ids.subList(i, Math.min(ids.size(), i + TAILLE_LOT_IN)));
+        }
+        return lots;
+    }
+
+    @PreDestroy
+    void arreter() {
+        pool.shutdownNow();
+    }
+
+    /**
+     * Évalue une plage de couples (convive, aliment) ; découpe récursivement au-delà de COUPLES_PAR_TACHE.
+     * N'accède qu'à des données déjà extraites des entités.
+     */
+    private static final class EvaluationCouples extends RecursiveAction {
+
+        private final List<int[]> couples;
+        private final int[] scores;
+        private final int debut;
+        private final int fin;
+        private final RiskModel modele;
+        private final long[] idsMenu;
+        private final boolean[] avecAllergenes;
+        private final ProfilConvive[] profils;
+        private final Map<Long, Map<Integer, List<EntreeScoreRisque.FacteursReaction>>> reactions;
+        private final FermetureReactivite fermeture;
+
+        EvaluationCouples(List<int[]> couples, int[] scores, int debut, int fin, RiskModel modele,
+                          long[] idsMenu, boolean[] avecAllergenes, ProfilConvive[] profils, Map<Long, Map<Integer, List<EntreeScoreRisque.FacteursReaction>>> reactions,
+                          FermetureReactivite fermeture) {
+            this.couples = couples;
+            this.scores = scores;
+            this.debut = debut;
+            this.fin = fin;
+            this.modele = modele;
+            this.idsMenu = idsMenu;
+            this.avecAllergenes = avecAllergenes;
+            this.profils = profils;
+            this.reactions = reactions;
+            this.fermeture = fermeture;
+        }
+
+        @Override
+        protected void compute() {
+            if (fin - debut > COUPLES_PAR_TACHE) {
+                int milieu = (debut + fin) >>> 1;
+                invokeAll(new EvaluationCouples(couples, scores, debut, milieu, modele, idsMenu, avecAllergenes,
+                                profils, reactions, fermeture),
+                        new EvaluationCouples(couples, scores, milieu, fin, modele, idsMenu, avecAllergenes,
+                                profils, reactions, fermeture));
+                return;
+            }
+            for (int k = debut; k < fin; k++) {
+                int u = couples.get(k)[0];
+                int a = couples.get(k)[1];
+                ProfilConvive profil = profils[u];
+
+                List<EntreeScoreRisque.ReactionCroisee> croisees = new ArrayList<>();
+                FermetureReactivite.AlimentsRelies relies = fermeture.relies(idsMenu[a]);
+                for (int i = 0; i < relies.taille(); i++) {
+                    for (EntreeScoreRisque.FacteursReaction facteurs : reactionsDe(relies.alimentIds()[i], u)) {
+                        croisees.add(new EntreeScoreRisque.ReactionCroisee(facteurs, relies.coefficients()[i]));
+                    }
+                }
+                scores[k] = modele.scoreRisque(new EntreeScoreRisque(
+                        profil == null ? 0 : profil.allergiesCritiques,
+                        profil == null ? 0 : profil.allergiesNonCritiques,
+                        reactionsDe(idsMenu[a], u), croisees, avecAllergenes[a]));
+            }
+        }
+
+        private List<EntreeScoreRisque.FacteursReaction> reactionsDe(long alimentId, int u) {
+            Map<Integer, List<EntreeScoreRisque.FacteursReaction>> parConvive = reactions.get(alimentId);
+            if (parConvive == null) return List.of();
+            return parConvive.getOrDefault(u, List.of());
+        }
+    }
+}
@@ -0,0 +1,164 @@
+package com.tp222.allergies.service;
+
+import com.tp222.allergies.model.entity.ReactionAllergique;
+import com.tp222.allergies.repository.ReactionAllergiqueRepository;
+import com.tp222.allergies.service.sharding.RoutageShards;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Stream;
+
+/**
+ * Détection des réactions en double à l'enregistrement (renvois de clients sur réseau instable,
+ * exports de cliniques ré-importés) : même utilisateur, même aliment, même minute.
+ *
+ * Un filtre de Bloom des clés connues répond en mémoire « certainement nouvelle » pour l'essentiel
+ * des écritures ; seul un « peut-être » coûte une lecture par la contrainte d'unicité
+ * (utilisateur_id, aliment_id, minute_reaction). La vérification a lieu sous le verrou de la ligne
+ * utilisateur : deux envois simultanés sont sérialisés et le second lit la réaction du premier. La
+ * contrainte reste la garantie pour une réaction écrite par une autre instance depuis le chargement.
+ *
+ * Le filtre est chargé en arrière-plan au démarrage depuis tous les shards ; tant qu'il ne l'est
+ * pas, chaque écriture est confirmée en base. Quand le nombre de clés dépasse sa capacité, il est
+ * rechargé avec une capacité double pour garder le taux de faux positifs visé.
+ */
+@Service
+@Slf4j
+public class DoublonsReactions {
+
+    private final ReactionAllergiqueRepository reactionAllergiqueRepository;
+    private final RoutageShards routageShards;
+    private final TransactionTemplate transactionLecture;
+    private final double tauxFauxPositifs;
+
+    private volatile FiltreBloom filtre;
+    // Filtre en cours de chargement : reçoit aussi les clés écrites pendant le chargement
+    private volatile FiltreBloom enChargement;
+    private volatile boolean pret;
+    private final AtomicBoolean chargementEnCours = new AtomicBoolean();
+
+    private final Counter nouvellesFiltre;
+    private final Counter nouvellesBase;
+    private final Counter doublons;
+
+    public DoublonsReactions(ReactionAllergiqueRepository reactionAllergiqueRepository,
+                             RoutageShards routageShards,
+                             PlatformTransactionManager transactionManager,
+                             MeterRegistry registry,
+                             @Value("${allergies.doublons.capacite:1000000}") long capacite,
+                             @Value("${allergies.doublons.taux-faux-positifs:0.01}") double tauxFauxPositifs) {
+        this.reactionAllergiqueRepository = reactionAllergiqueRepository;
+        this.routageShards = routageShards;
+        this.transactionLecture = new TransactionTemplate(transactionManager);
+        this.transactionLecture.setReadOnly(true);
+        this.tauxFauxPositifs = tauxFauxPositifs;
+        this.filtre = new FiltreBloom(capacite, tauxFauxPositifs);
+        this.nouvellesFiltre = registry.counter("allergies.doublons_reactions.verifications", "resultat", "nouvelle_filtre");
+        this.nouvellesBase = registry.counter("allergies.doublons_reactions.verifications", "resultat", "nouvelle_base");
+        this.doublons = registry.counter("allergies.doublons_reactions.verifications", "resultat", "doublon");
+        Gauge.builder("allergies.doublons_reactions.taux_faux_positifs_estime", this,
+                d -> d.filtre.tauxFauxPositifsEstime()).register(registry);
+        Gauge.builder("allergies.doublons_reactions.memoire_octets", this, d -> d.filtre.octets()).register(registry);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void demarrer() {
+        recharger(filtre.getCapacite());
+    }
+
+    /**
+     * Réaction déjà enregistrée pour ce couple à la même minute. À appeler dans la transaction
+     * d'écriture, sur le shard de l'utilisateur, après le verrouillage de sa ligne.
+     */
+    public Optional<ReactionAllergique> existante(Long utilisateurId, Long alimentId, LocalDateTime dateReaction) {
+        if (pret && !filtre.peutContenir(cle(utilisateurId, alimentId, dateReaction))) {
+            nouvellesFiltre.increment();
+            return Optional.empty();
+        }
+        Optional<ReactionAllergique> existante = reactionAllergiqueRepository
+                .findFirstByUtilisateurIdAndAlimentIdAndMinuteReaction(utilisateurId, alimentId,
+                        ReactionAllergique.minute(dateReaction));
+        (existante.isPresent() ? doublons : nouvellesBase).increment();
+        return existante;
+    }
+
+    /**
+     * Ajoute la clé d'une réaction insérée. Si la transaction est annulée, la clé reste un faux
+     * positif : une lecture en base de plus, jamais un refus.
+     */
+    public void ajouter(ReactionAllergique reaction) {
+        long cle = cle(reaction.getUtilisateur().getId(), reaction.getAliment().getId(), reaction.getDateReaction());
+        FiltreBloom courant = filtre;
+        courant.ajouter(cle);
+        FiltreBloom charge = enChargement;
+        if (charge != null) {
+            charge.ajouter(cle);
+        }
+        if (courant.getInsertions() > courant.getCapacite()) {
+            recharger(courant.getCapacite() * 2);
+        }
+    }
+
+    /**
+     * Vrai si l'insertion a échoué sur la contrainte d'unicité des réactions
+     */
+    public static boolean violationUnicite(DataIntegrityViolationException e) {
+        String message = String.valueOf(e.getMostSpecificCause().getMessage()).toLowerCase(Locale.ROOT);
+        return message.contains(ReactionAllergique.CONTRAINTE_UNICITE);
+    }
+
+    private void recharger(long capacite) {
+        if (!chargementEnCours.compareAndSet(false, true)) {
+            return;
+        }
+        Thread t = new Thread(() -> {
+            try {
+                charger(capacite);
+            } catch (RuntimeException e) {
+                log.error("Chargement du filtre de doublons de réactions en échec: {}", e.getMessage());
+            } finally {
+                enChargement = null;
+                chargementEnCours.set(false);
+            }
+        }, "doublons-reactions-chargement");
+        t.setDaemon(true);
+        t.start();
+    }
+
+    private void charger(long capacite) {
+        long debut = System.nanoTime();
+        FiltreBloom nouveau = new FiltreBloom(capacite, tauxFauxPositifs);
+        enChargement = nouveau;
+        for (String shard : routageShards.getShards()) {
+            routageShards.executerSur(shard, () -> transactionLecture.execute(status -> {
+                try (Stream<Object[]> lignes = reactionAllergiqueRepository.streamClesDoublons()) {
+                    lignes.forEach(ligne -> nouveau.ajouter(cle(((Number) ligne[0]).longValue(),
+                            ((Number) ligne[1]).longValue(), (LocalDateTime) ligne[2])));
+                }
+                return null;
+            }));
+        }
+        filtre = nouveau;
+        pret = true;
+        log.info("Filtre de doublons de réactions chargé en {} ms: {} clés, capacité {}, {} Ko",
+                (System.nanoTime() - debut) / 1_000_000, nouveau.getInsertions(), capacite, nouveau.octets() / 1024);
+    }
+
+    private static long cle(long utilisateurId, long alimentId, LocalDateTime dateReaction) {
+        long minute = Math.floorDiv(dateReaction.toEpochSecond(ZoneOffset.UTC), 60);
+        return ((utilisateurId * 0x9E3779B97F4A7C15L) ^ alimentId) * 0xC2B2AE3D27D4EB4FL + minute;
+    }
+}
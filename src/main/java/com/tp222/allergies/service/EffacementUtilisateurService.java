@@ -0,0 +1,415 @@
+package com.tp222.allergies.service;
+
+import com.tp222.allergies.model.dto.response.EffacementUtilisateurResponse;
+import com.tp222.allergies.model.entity.EffacementUtilisateur;
+import com.tp222.allergies.repository.AllergieUtilisateurRepository;
+import com.tp222.allergies.repository.EffacementUtilisateurRepository;
+import com.tp222.allergies.repository.EvenementOutboxRepository;
+import com.tp222.allergies.repository.ReactionAllergiqueRepository;
+import com.tp222.allergies.repository.UtilisateurRepository;
+import com.tp222.allergies.service.coherence.CoherenceCaches;
+import com.tp222.allergies.service.outbox.OutboxService;
+import com.tp222.allergies.service.sharding.RoutageShards;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Effacement RGPD d'un utilisateur, en tâche de fond.
+ *
+ * Supprimer un utilisateur par JPA chargerait toutes ses réactions (cascade) et les supprimerait une
+ * à une dans une seule longue transaction. Ici, l'effacement est découpé en transactions courtes :
+ * l'utilisateur est d'abord marqué (plus aucune écriture acceptée, voir AllergieService.versionner),
+ * puis ses réactions sont supprimées ou anonymisées par lots d'identifiants, avec une pause entre
+ * deux lots, puis ses allergies, et enfin la ligne utilisateur elle-même. Aucun verrou n'est tenu
+ * plus longtemps qu'un lot : les écritures concurrentes des autres utilisateurs passent entre deux.
+ *
+ * Chaque étape ne traite que ce qui reste à traiter : après un arrêt, le job est repris depuis le
+ * début sans rien refaire. La demande est conservée comme trace d'audit (qui, quand, quoi, combien),
+ * sans donnée personnelle. Les compteurs sont mis à jour après chaque lot, dans une transaction
+ * distincte (l'audit est sur le principal, les données sur le shard de l'utilisateur) : un arrêt
+ * entre les deux sous-compte au plus un lot.
+ *
+ * En mode ANONYMISATION, réactions et allergies restent pour les statistiques, débarrassées de leur
+ * texte libre, et l'identité de l'utilisateur est remplacée.
+ *
+ * Un seul effacement EN_COURS par utilisateur (index unique partiel) : deux demandes simultanées
+ * renvoient le même. Plusieurs instances peuvent le reprendre après un redémarrage : il est réservé
+ * avec un bail, prolongé à chaque lot, et seule l'instance qui le détient l'exécute. Une instance
+ * qui perd sa réservation (bail expiré, job repris ailleurs) s'arrête au lot suivant ; un job dont
+ * l'instance a disparu est repris par la recherche périodique des effacements en cours.
+ */
+@Service
+@Slf4j
+public class EffacementUtilisateurService {
+
+    public static final String SUPPRESSION = "SUPPRESSION";
+    public static final String ANONYMISATION = "ANONYMISATION";
+
+    private final UtilisateurRepository utilisateurRepository;
+    private final ReactionAllergiqueRepository reactionAllergiqueRepository;
+    private final AllergieUtilisateurRepository allergieUtilisateurRepository;
+    private final EvenementOutboxRepository evenementOutboxRepository;
+    private final EffacementUtilisateurRepository effacementRepository;
+    private final OutboxService outboxService;
+    private final IndexCohortes indexCohortes;
+    private final ReactionsRecentes reactionsRecentes;
+    private final CoherenceCaches coherenceCaches;
+    private final RoutageShards routageShards;
+    private final TransactionTemplate transactionTemplate;
+
+    private final int tailleLot;
+    private final long pauseMs;
+    private final long bailSecondes;
+    // Propriétaire des effacements exécutés par cette instance
+    private final String proprietaire = UUID.randomUUID().toString();
+
+    private final ExecutorService workers;
+    private final Set<Long> enCours = ConcurrentHashMap.newKeySet();
+    private volatile boolean arrete;
+
+    public EffacementUtilisateurService(UtilisateurRepository utilisateurRepository,
+                                        ReactionAllergiqueRepository reactionAllergiqueRepository,
+                                        AllergieUtilisateurRepository allergieUtilisateurRepository,
+                                        EvenementOutboxRepository evenementOutboxRepository,
+                                        EffacementUtilisateurRepository effacementRepository,
+                                        OutboxService outboxService,
+                                        IndexCohortes indexCohortes,
+                                        ReactionsRecentes reactionsRecentes,
+                                        CoherenceCaches coherenceCaches,
+                                        RoutageShards routageShards,
+                                        PlatformTransactionManager transactionManager,
+                                        @Value("${allergies.effacement.taille-lot:500}") int tailleLot,
+                                        @Value("${allergies.effacement.pause-ms:20}") long pauseMs,
+                                        @Value("${allergies.effacement.workers:2}") int nombreWorkers,
+                                        @Value("${allergies.effacement.bail-secondes:300}") long bailSecondes) {
+        this.utilisateurRepository = utilisateurRepository;
+        this.reactionAllergiqueRepository = reactionAllergiqueRepository;
+        this.allergieUtilisateurRepository = allergieUtilisateurRepository;
+        this.evenementOutboxRepository = evenementOutboxRepository;
+        this.effacementRepository = effacementRepository;
+        this.outboxService = outboxService;
+        this.indexCohortes = indexCohortes;
+        this.reactionsRecentes = reactionsRecentes;
+        this.coherenceCaches = coherenceCaches;
+        this.routageShards = routageShards;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.tailleLot = Math.max(1, tailleLot);
+        this.pauseMs = Math.max(0, pauseMs);
+        this.bailSecondes = Math.max(1, bailSecondes);
+        this.workers = Executors.newFixedThreadPool(Math.max(1, nombreWorkers), r -> {
+            Thread t = new Thread(r, "effacement-worker");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /**
+     * Enregistre la demande et démarre l'effacement ; une demande déjà en cours pour l'utilisateur est renvoyée telle quelle
+     * @throws IllegalArgumentException si le mode ou le demandeur est invalide
+     */
+    public EffacementUtilisateurResponse demander(Long utilisateurId, String mode, String demandePar, String reference) {
+        String modeEffacement = mode == null ? SUPPRESSION : mode.trim().toUpperCase();
+        if (!SUPPRESSION.equals(modeEffacement) && !ANONYMISATION.equals(modeEffacement)) {
+            throw new IllegalArgumentException("Mode d'effacement invalide: " + mode);
+        }
+        if (demandePar == null || demandePar.isBlank() || demandePar.length() > 100) {
+            throw new IllegalArgumentException("Le demandeur est obligatoire (100 caractères au plus)");
+        }
+        if (reference != null && reference.length() > 100) {
+            throw new IllegalArgumentException("La référence ne peut pas dépasser 100 caractères");
+        }
+
+        EffacementUtilisateur existant = effacementRepository.findFirstByUtilisateurIdAndStatut(utilisateurId, "EN_COURS").orElse(null);
+        if (existant != null) {
+            lancer(existant.getId());
+            return mapToResponse(existant);
+        }
+        if (!routageShards.lirePourUtilisateur(utilisateurId, () -> utilisateurRepository.existsById(utilisateurId))) {
+            throw new RuntimeException("Utilisateur non trouvé");
+        }
+
+        EffacementUtilisateur effacement;
+        try {
+            effacement = effacementRepository.save(EffacementUtilisateur.builder()
+                    .utilisateurId(utilisateurId)
+                    .mode(modeEffacement)
+                    .statut("EN_COURS")
+                    .demandePar(demandePar.trim())
+                    .reference(reference)
+                    .build());
+        } catch (DataIntegrityViolationException e) {
+            // Demande simultanée, sur cette instance ou une autre : son effacement est renvoyé
+            existant = effacementRepository.findFirstByUtilisateurIdAndStatut(utilisateurId, "EN_COURS")
+                    .orElseThrow(() -> e);
+            lancer(existant.getId());
+            return mapToResponse(existant);
+        }
+        log.info("Effacement {} demandé pour l'utilisateur {} ({}) par {}",
+                effacement.getId(), utilisateurId, modeEffacement, effacement.getDemandePar());
+        lancer(effacement.getId());
+        return mapToResponse(effacement);
+    }
+
+    /**
+     * Relance un effacement en cours ou en échec
+     */
+    public EffacementUtilisateurResponse reprendre(Long effacementId) {
+        transactionTemplate.executeWithoutResult(status -> {
+            EffacementUtilisateur effacement = trouver(effacementId);
+            if ("ECHEC".equals(effacement.getStatut())) {
+                effacement.setStatut("EN_COURS");
+                effacement.setProprietaire(null);
+                effacement.setFinBail(null);
+                effacement.setMessageErreur(null);
+                effacement.setDateFin(null);
+            }
+        });
+        if (trouver(effacementId).isEnCours()) {
+            lancer(effacementId);
+        }
+        return getEffacement(effacementId);
+    }
+
+    public EffacementUtilisateurResponse getEffacement(Long effacementId) {
+        return mapToResponse(trouver(effacementId));
+    }
+
+    public List<EffacementUtilisateurResponse> getHistorique(Long utilisateurId) {
+        return effacementRepository.findByUtilisateurIdOrderByIdDesc(utilisateurId).stream()
+                .map(this::mapToResponse)
+                .toList();
+    }
+
+    /**
+     * Reprend les effacements interrompus (arrêt ou crash) au démarrage de l'application, puis
+     * périodiquement : ceux qu'exécute une autre instance dont le bail court sont laissés à celle-ci
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(initialDelayString = "${allergies.effacement.reprise-ms:60000}",
+               fixedDelayString = "${allergies.effacement.reprise-ms:60000}")
+    public void reprendreEffacementsInterrompus() {
+        LocalDateTime maintenant = LocalDateTime.now();
+        for (EffacementUtilisateur effacement : effacementRepository.findByStatut("EN_COURS")) {
+            if (enCours.contains(effacement.getId())
+                    || effacement.getFinBail() != null && effacement.getFinBail().isAfter(maintenant)) continue;
+            log.info("Reprise de l'effacement {} de l'utilisateur {} (étape {})",
+                    effacement.getId(), effacement.getUtilisateurId(), effacement.getEtape());
+            lancer(effacement.getId());
+        }
+    }
+
+    private EffacementUtilisateur trouver(Long effacementId) {
+        return effacementRepository.findById(effacementId)
+                .orElseThrow(() -> new RuntimeException("Effacement non trouvé"));
+    }
+
+    private void lancer(Long effacementId) {
+        if (!enCours.add(effacementId)) {
+            log.info("L'effacement {} est déjà en cours d'exécution", effacementId);
+            return;
+        }
+        workers.execute(() -> {
+            try {
+                executer(trouver(effacementId));
+            } finally {
+                transactionTemplate.executeWithoutResult(status -> effacementRepository.liberer(effacementId, proprietaire));
+                enCours.remove(effacementId);
+            }
+        });
+    }
+
+    private void executer(EffacementUtilisateur effacement) {
+        Long id = effacement.getId();
+        Long utilisateurId = effacement.getUtilisateurId();
+        boolean anonymiser = ANONYMISATION.equals(effacement.getMode());
+        if (!reserver(id)) {
+            log.debug("L'effacement {} est exécuté par une autre instance", id);
+            return;
+        }
+        try {
+            surShardUtilisateur(utilisateurId, () -> {
+                utilisateurRepository.marquerEffacementDemande(utilisateurId, LocalDateTime.now());
+                indexCohortes.definirActifApresCommit(utilisateurId, false);
+                invaliderCaches(utilisateurId);
+                return null;
+            });
+            if (!avancer(id, "REACTIONS", 0, 0, 0)) return;
+
+            Pageable lot = PageRequest.of(0, tailleLot);
+            int traitees;
+            do {
+                if (arrete) return;
+                traitees = surShardUtilisateur(utilisateurId, () -> {
+                    List<Long> ids = anonymiser
+                            ? reactionAllergiqueRepository.findIdsAAnonymiser(utilisateurId, lot)
+                            : reactionAllergiqueRepository.findIdsByUtilisateurId(utilisateurId, lot);
+                    if (ids.isEmpty()) return 0;
+                    return anonymiser
+                            ? reactionAllergiqueRepository.anonymiserParIds(ids)
+                            : reactionAllergiqueRepository.supprimerParIds(ids);
+                });
+                if (traitees > 0) {
+                    if (!avancer(id, "REACTIONS", traitees, 0, 0)) return;
+                    pause();
+                }
+            } while (traitees > 0);
+
+            int allergies = surShardUtilisateur(utilisateurId, () -> anonymiser
+                    ? allergieUtilisateurRepository.anonymiserParUtilisateurId(utilisateurId)
+                    : allergieUtilisateurRepository.supprimerParUtilisateurId(utilisateurId));
+            if (!avancer(id, "UTILISATEUR", 0, allergies, 0)) return;
+
+            int evenements = surShardUtilisateur(utilisateurId, () -> {
+                int supprimes = evenementOutboxRepository.supprimerParUtilisateurId(utilisateurId);
+                if (anonymiser) {
+                    anonymiserUtilisateur(utilisateurId);
+                } else {
+                    utilisateurRepository.supprimerParId(utilisateurId);
+                    indexCohortes.retirerApresCommit(utilisateurId);
+                }
+                // Les systèmes aval effacent à leur tour ce qu'ils ont reçu de l'outbox
+                Map<String, Object> payload = new LinkedHashMap<>();
+                payload.put("utilisateurId", utilisateurId);
+                payload.put("mode", effacement.getMode());
+                payload.put("dateEffacement", LocalDateTime.now());
+                outboxService.enregistrer(OutboxService.UTILISATEUR_EFFACE, utilisateurId, payload);
+                invaliderCaches(utilisateurId);
+                return supprimes;
+            });
+
+            if (!avancer(id, "TERMINE", 0, 0, evenements)) return;
+            transactionTemplate.executeWithoutResult(status -> effacementRepository.findById(id).ifPresent(e -> {
+                e.setStatut("TERMINE");
+                e.setDateFin(LocalDateTime.now());
+            }));
+            log.info("Effacement {} de l'utilisateur {} terminé ({})", id, utilisateurId, effacement.getMode());
+        } catch (RuntimeException e) {
+            if (arrete) return; // arrêt de l'application : repris au prochain démarrage
+            log.error("Échec de l'effacement {} de l'utilisateur {}: {}", id, utilisateurId, e.getMessage(), e);
+            transactionTemplate.executeWithoutResult(status -> effacementRepository.findById(id).ifPresent(echec -> {
+                echec.setStatut("ECHEC");
+                echec.setMessageErreur(e.getMessage());
+                echec.setDateFin(LocalDateTime.now());
+            }));
+        }
+    }
+
+    /**
+     * Remplace l'identité ; l'année de naissance reste pour les statistiques par âge
+     */
+    private void anonymiserUtilisateur(Long utilisateurId) {
+        utilisateurRepository.findById(utilisateurId).ifPresent(utilisateur -> {
+            utilisateur.setUsername("anonyme-" + utilisateurId);
+            utilisateur.setEmail("anonyme-" + utilisateurId + "@anonyme.invalid");
+            utilisateur.setMotDePasse(UUID.randomUUID().toString());
+            utilisateur.setPrenom("Anonyme");
+            utilisateur.setNom("Anonyme");
+            if (utilisateur.getDateNaissance() != null) {
+                utilisateur.setDateNaissance(utilisateur.getDateNaissance().withDayOfYear(1));
+            }
+            utilisateur.setObjectifSante(null);
+            utilisateur.setNumeroTelephone(null);
+            utilisateur.setAdresse(null);
+            utilisateur.setMedecinTraitant(null);
+            utilisateur.setContactUrgence(null);
+            utilisateur.setTelephoneUrgence(null);
+            utilisateur.setActif(false);
+        });
+    }
+
+    private void invaliderCaches(Long utilisateurId) {
+        coherenceCaches.invaliderApresCommit(CoherenceCaches.VERIFICATION, utilisateurId);
+        reactionsRecentes.invaliderApresCommit(utilisateurId);
+    }
+
+    /**
+     * Transaction courte sur le shard qui porte les données de l'utilisateur
+     */
+    private <T> T surShardUtilisateur(Long utilisateurId, Supplier<T> travail) {
+        if (!routageShards.isActif()) {
+            return transactionTemplate.execute(status -> travail.get());
+        }
+        return routageShards.executerSur(routageShards.shardDe(utilisateurId),
+                () -> transactionTemplate.execute(status -> travail.get()));
+    }
+
+    private boolean reserver(Long id) {
+        LocalDateTime maintenant = LocalDateTime.now();
+        return transactionTemplate.execute(status -> effacementRepository.reserver(id, proprietaire,
+                maintenant.plusSeconds(bailSecondes), maintenant)) == 1;
+    }
+
+    /**
+     * Enregistre l'avancement et prolonge le bail, si cette instance détient toujours l'effacement
+     * @return false si une autre instance l'a repris : le job s'arrête sans rien compter
+     */
+    private boolean avancer(Long id, String etape, long reactions, long allergies, long evenements) {
+        LocalDateTime maintenant = LocalDateTime.now();
+        boolean detenu = transactionTemplate.execute(status -> {
+            if (effacementRepository.reserver(id, proprietaire, maintenant.plusSeconds(bailSecondes), maintenant) == 0) {
+                return false;
+            }
+            effacementRepository.ajouterAvancement(id, etape, reactions, allergies, evenements);
+            return true;
+        });
+        if (!detenu) {
+            log.warn("L'effacement {} a été repris par une autre instance, arrêt ici", id);
+        }
+        return detenu;
+    }
+
+    private void pause() {
+        if (pauseMs == 0) return;
+        try {
+            TimeUnit.MILLISECONDS.sleep(pauseMs);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            arrete = true;
+        }
+    }
+
+    private EffacementUtilisateurResponse mapToResponse(EffacementUtilisateur effacement) {
+        return EffacementUtilisateurResponse.builder()
+                .effacementId(effacement.getId())
+                .utilisateurId(effacement.getUtilisateurId())
+                .mode(effacement.getMode())
+                .statut(effacement.getStatut())
+                .etape(effacement.getEtape())
+                .demandePar(effacement.getDemandePar())
+                .reference(effacement.getReference())
+                .reactionsTraitees(effacement.getReactionsTraitees())
+                .allergiesTraitees(effacement.getAllergiesTraitees())
+                .evenementsSupprimes(effacement.getEvenementsSupprimes())
+                .dateCreation(effacement.getDateCreation())
+                .dateFin(effacement.getDateFin())
+                .messageErreur(effacement.getMessageErreur())
+                .build();
+    }
+
+    @PreDestroy
+    void arreter() {
+        arrete = true;
+        workers.shutdownNow();
+    }
+}
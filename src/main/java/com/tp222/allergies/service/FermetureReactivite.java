@@ -0,0 +1,201 @@
+package com.tp222.allergies.service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Fermeture transitive immuable du graphe de réactivité croisée.
+ *
+ * Le coefficient entre deux aliments est le meilleur produit des coefficients le long d'un
+ * chemin (semi-anneau max × : chaque intermédiaire atténue le risque transmis). La matrice
+ * n × n est stockée à plat en float, avec pour chaque aliment la liste précalculée de ses
+ * aliments reliés au-dessus du seuil ; une vérification de risque ne fait donc que des
+ * lectures de tableau. Toute modification produit une nouvelle instance.
+ */
+public final class FermetureReactivite {
+
+    /**
+     * Arête non orientée du graphe
+     */
+    public record Arete(long alimentA, long alimentB, float coefficient) {
+    }
+
+    /**
+     * Aliments reliés à un aliment, triés par coefficient décroissant
+     */
+    public record AlimentsRelies(long[] alimentIds, float[] coefficients) {
+
+        private static final AlimentsRelies AUCUN = new AlimentsRelies(new long[0], new float[0]);
+
+        public int taille() {
+            return alimentIds.length;
+        }
+
+        public boolean estVide() {
+            return alimentIds.length == 0;
+        }
+    }
+
+    private final long[] aliments;
+    private final Map<Long, Integer> index;
+    private final float[] matrice;
+    private final float seuil;
+    private final AlimentsRelies[] relies;
+
+    private FermetureReactivite(long[] aliments, float[] matrice, float seuil) {
+        this.aliments = aliments;
+        this.matrice = matrice;
+        this.seuil = seuil;
+        this.index = new HashMap<>(aliments.length * 2);
+        for (int i = 0; i < aliments.length; i++) {
+            index.put(aliments[i], i);
+        }
+        this.relies = new AlimentsRelies[aliments.length];
+        for (int i = 0; i < aliments.length; i++) {
+            relies[i] = calculerRelies(i);
+        }
+    }
+
+    public static FermetureReactivite vide(float seuil) {
+        return new FermetureReactivite(new long[0], new float[0], seuil);
+    }
+
+    /**
+     * Calcul complet (Floyd-Warshall sur le semi-anneau max ×), en O(n³)
+     */
+    public static FermetureReactivite calculer(Collection<Arete> aretes, float seuil) {
+        List<Long> noeuds = new ArrayList<>();
+        Map<Long, Integer> positions = new HashMap<>();
+        for (Arete arete : aretes) {
+            positions.computeIfAbsent(arete.alimentA(), id -> { noeuds.add(id); return noeuds.size() - 1; });
+            positions.computeIfAbsent(arete.alimentB(), id -> { noeuds.add(id); return noeuds.size() - 1; });
+        }
+        int n = noeuds.size();
+        float[] m = new float[n * n];
+        for (int i = 0; i < n; i++) {
+            m[i * n + i] = 1f;
+        }
+        for (Arete arete : aretes) {
+            int a = positions.get(arete.alimentA());
+            int b = positions.get(arete.alimentB());
+            m[a * n + b] = Math.max(m[a * n + b], arete.coefficient());
+            m[b * n + a] = m[a * n + b];
+        }
+        for (int k = 0; k < n; k++) {
+            for (int i = 0; i < n; i++) {
+                float ik = m[i * n + k];
+                if (ik == 0f) continue;
+                for (int j = 0; j < n; j++) {
+                    float candidat = ik * m[k * n + j];
+                    if (candidat > m[i * n + j]) {
+                        m[i * n + j] = candidat;
+                    }
+                }
+            }
+        }
+        return new FermetureReactivite(noeuds.stream().mapToLong(Long::longValue).toArray(), m, seuil);
+    }
+
+    /**
+     * Ajout (ou renforcement) d'une arête en O(n²) : la fermeture étant déjà calculée, le meilleur
+     * chemin empruntant la nouvelle arête passe au plus une fois par elle
+     */
+    public FermetureReactivite avecArete(Arete arete) {
+        long[] nouveaux = aliments;
+        for (long id : new long[] {arete.alimentA(), arete.alimentB()}) {
+            if (!index.containsKey(id) && (nouveaux == aliments || nouveaux[nouveaux.length - 1] != id)) {
+                nouveaux = Arrays.copyOf(nouveaux, nouveaux.length + 1);
+                nouveaux[nouveaux.length - 1] = id;
+            }
+        }
+        int ancien = aliments.length;
+        int n = nouveaux.length;
+        float[] m = new float[n * n];
+        for (int i = 0; i < ancien; i++) {
+            System.arraycopy(matrice, i * ancien, m, i * n, ancien);
+        }
+        for (int i = ancien; i < n; i++) {
+            m[i * n + i] = 1f;
+        }
+
+        int a = positionDans(nouveaux, arete.alimentA());
+        int b = positionDans(nouveaux, arete.alimentB());
+        float w = arete.coefficient();
+        float[] versA = new float[n];
+        float[] versB = new float[n];
+        for (int i = 0; i < n; i++) {
+            versA[i] = m[i * n + a];
+            versB[i] = m[i * n + b];
+        }
+        for (int i = 0; i < n; i++) {
+            float viaAB = versA[i] * w;
+            float viaBA = versB[i] * w;
+            if (viaAB == 0f && viaBA == 0f) continue;
+            for (int j = 0; j < n; j++) {
+                float candidat = Math.max(viaAB * versB[j], viaBA * versA[j]);
+                if (candidat > m[i * n + j]) {
+                    m[i * n + j] = candidat;
+                }
+            }
+        }
+        return new FermetureReactivite(nouveaux, m, seuil);
+    }
+
+    /**
+     * Coefficient de réactivité croisée entre deux aliments (0 si aucun chemin), en O(1)
+     */
+    public float coefficient(long alimentA, long alimentB) {
+        Integer a = index.get(alimentA);
+        Integer b = index.get(alimentB);
+        if (a == null || b == null) {
+            return 0f;
+        }
+        return matrice[a * aliments.length + b];
+    }
+
+    /**
+     * Aliments reliés à un aliment au-dessus du seuil (lui-même exclu)
+     */
+    public AlimentsRelies relies(long alimentId) {
+        Integer i = index.get(alimentId);
+        return i == null ? AlimentsRelies.AUCUN : relies[i];
+    }
+
+    public int nombreAliments() {
+        return aliments.length;
+    }
+
+    private AlimentsRelies calculerRelies(int i) {
+        int n = aliments.length;
+        Integer[] voisins = new Integer[n];
+        int taille = 0;
+        for (int j = 0; j < n; j++) {
+            if (j != i && matrice[i * n + j] >= seuil) {
+                voisins[taille++] = j;
+            }
+        }
+        Arrays.sort(voisins, 0, taille, (x, y) -> Float.compare(matrice[i * n + y], matrice[i * n + x]));
+        long[] ids = new long[taille];
+        float[] coefficients = new float[taille];
+        for (int k = 0; k < taille; k++) {
+            ids[k] = aliments[voisins[k]];
+            coefficients[k] = matrice[i * n + voisins[k]];
+        }
+        return new AlimentsRelies(ids, coefficients);
+    }
+
+    private int positionDans(long[] noeuds, long id) {
+        Integer position = index.get(id);
+        if (position != null) {
+            return position;
+        }
+        for (int i = aliments.length; i < noeuds.length; i++) {
+            if (noeuds[i] == id) return i;
+        }
+        throw new IllegalStateException("Aliment absent de la fermeture: " + id);
+    }
+}
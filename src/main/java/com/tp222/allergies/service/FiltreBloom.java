@@ -0,0 +1,100 @@
+package com.tp222.allergies.service;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Filtre de Bloom concurrent sur des clés de 64 bits.
+ *
+ * « Absent » est certain, « peut-être présent » se confirme ailleurs. Les k positions d'une clé
+ * sont dérivées de deux hachages (h1 + i·h2, Kirsch et Mitzenmacher). Ajouts et lectures sans
+ * verrou : un bit posé n'est jamais retiré, une lecture concurrente d'un ajout voit au pire la clé
+ * absente, comme avant l'ajout. Pas de suppression : une clé retirée de la source reste un faux
+ * positif jusqu'au prochain rechargement.
+ */
+public final class FiltreBloom {
+
+    private final AtomicLongArray mots;
+    private final long nombreBits;
+    private final int nombreHachages;
+    private final long capacite;
+    private final LongAdder insertions = new LongAdder();
+
+    /**
+     * @param capacite nombre de clés prévu
+     * @param tauxFauxPositifs taux visé à capacité atteinte, dans ]0, 1[
+     */
+    public FiltreBloom(long capacite, double tauxFauxPositifs) {
+        if (capacite <= 0 || tauxFauxPositifs <= 0 || tauxFauxPositifs >= 1) {
+            throw new IllegalArgumentException("Capacité ou taux de faux positifs invalide");
+        }
+        double ln2 = Math.log(2);
+        long bits = (long) Math.ceil(-capacite * Math.log(tauxFauxPositifs) / (ln2 * ln2));
+        long nombreMots = Math.max(1, (bits + 63) >>> 6);
+        if (nombreMots > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Filtre de Bloom trop grand : " + bits + " bits");
+        }
+        this.mots = new AtomicLongArray((int) nombreMots);
+        this.nombreBits = nombreMots << 6;
+        this.nombreHachages = Math.max(1, (int) Math.round((double) nombreBits / capacite * ln2));
+        this.capacite = capacite;
+    }
+
+    public void ajouter(long cle) {
+        long h1 = melanger(cle);
+        long h2 = melanger(h1) | 1;
+        for (int i = 0; i < nombreHachages; i++) {
+            long bit = Math.floorMod(h1 + i * h2, nombreBits);
+            int mot = (int) (bit >>> 6);
+            long masque = 1L << bit;
+            long courant = mots.get(mot);
+            while ((courant & masque) == 0) {
+                long temoin = mots.compareAndExchange(mot, courant, courant | masque);
+                if (temoin == courant) break;
+                courant = temoin;
+            }
+        }
+        insertions.increment();
+    }
+
+    /**
+     * @return false si la clé n'a certainement jamais été ajoutée
+     */
+    public boolean peutContenir(long cle) {
+        long h1 = melanger(cle);
+        long h2 = melanger(h1) | 1;
+        for (int i = 0; i < nombreHachages; i++) {
+            long bit = Math.floorMod(h1 + i * h2, nombreBits);
+            if ((mots.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Taux de faux positifs attendu pour le nombre d'ajouts effectués : (1 - e^(-kn/m))^k
+     */
+    public double tauxFauxPositifsEstime() {
+        return Math.pow(1 - Math.exp(-(double) nombreHachages * insertions.sum() / nombreBits), nombreHachages);
+    }
+
+    public long getInsertions() {
+        return insertions.sum();
+    }
+
+    public long getCapacite() {
+        return capacite;
+    }
+
+    public long octets() {
+        return (long) mots.length() * Long.BYTES;
+    }
+
+    // Finaliseur de SplitMix64 : chaque bit d'entrée influence tous les bits de sortie
+    private static long melanger(long x) {
+        x = (x ^ (x >>> 30)) * 0xBF58476D1CE4E5B9L;
+        x = (x ^ (x >>> 27)) * 0x94D049BB133111EBL;
+        return x ^ (x >>> 31);
+    }
+}
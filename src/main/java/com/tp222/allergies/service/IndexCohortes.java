@@ -0,0 +1,402 @@
+package com.tp222.allergies.service;
+
+import com.tp222.allergies.repository.AllergieUtilisateurRepository;
+import com.tp222.allergies.repository.UtilisateurRepository;
+import com.tp222.allergies.service.coherence.CoherenceCaches;
+import com.tp222.allergies.service.sharding.RoutageShards;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+/**
+ * Bitmaps compressés des utilisateurs par allergie, par sévérité et par nombre d'allergies.
+ *
+ * Seules les associations actives sont indexées. Le nombre d'allergies de chaque utilisateur est
+ * stocké en tranches de bits (la tranche k contient les utilisateurs dont le bit k du compte est
+ * à 1), ce qui répond à « au moins n allergies » par quelques opérations sur les bitmaps.
+ *
+ * L'index est chargé au démarrage puis tenu à jour après le commit de chaque écriture sur
+ * AllergieUtilisateur ou Utilisateur (voir CohortesEntityListener) : seul l'utilisateur concerné
+ * est relu ; les autres instances reçoivent l'identifiant via CoherenceCaches et relisent
+ * l'utilisateur à leur tour. Les cohortes (utilisateurs critiques, par allergie, allergies multiples) sont des
+ * combinaisons booléennes calculées en mémoire, sans jointure ni GROUP BY.
+ */
+@Service
+@Slf4j
+public class IndexCohortes {
+
+    public static final String CRITIQUE = "CRITIQUE";
+
+    private final AllergieUtilisateurRepository allergieUtilisateurRepository;
+    private final UtilisateurRepository utilisateurRepository;
+    private final RoutageShards routageShards;
+    private final CoherenceCaches coherenceCaches;
+    private final TransactionTemplate transactionLecture;
+
+    private final ReadWriteLock verrou = new ReentrantReadWriteLock();
+    private BitmapCompresse actifs = new BitmapCompresse();
+    private BitmapCompresse avecAllergies = new BitmapCompresse();
+    private final Map<Long, BitmapCompresse> parAllergie = new HashMap<>();
+    private final Map<String, BitmapCompresse> parSeverite = new HashMap<>();
+    private final List<BitmapCompresse> tranchesNombre = new ArrayList<>();
+
+    public IndexCohortes(AllergieUtilisateurRepository allergieUtilisateurRepository,
+                         UtilisateurRepository utilisateurRepository,
+                         RoutageShards routageShards,
+                         CoherenceCaches coherenceCaches,
+                         PlatformTransactionManager transactionManager,
+                         MeterRegistry registry) {
+        this.allergieUtilisateurRepository = allergieUtilisateurRepository;
+        this.utilisateurRepository = utilisateurRepository;
+        this.routageShards = routageShards;
+        this.coherenceCaches = coherenceCaches;
+        // Relecture après commit : la transaction d'origine est terminée, on en ouvre une nouvelle
+        this.transactionLecture = new TransactionTemplate(transactionManager);
+        this.transactionLecture.setReadOnly(true);
+        this.transactionLecture.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        Gauge.builder("allergies.cohortes.memoire_octets", this, IndexCohortes::octets).register(registry);
+        coherenceCaches.enregistrer(CoherenceCaches.COHORTES, cle -> resynchroniser(Long.valueOf(cle)), this::charger);
+    }
+
+    /**
+     * Critères d'une cohorte ; les critères absents ne filtrent pas
+     * @param allergies allergies requises (toutes si toutes = true, au moins une sinon)
+     * @param allergiesExclues allergies que les utilisateurs ne doivent pas avoir
+     * @param severite sévérité d'au moins une des allergies de l'utilisateur
+     * @param minAllergies nombre minimal d'allergies actives
+     */
+    public record Criteres(Collection<Long> allergies, boolean toutes, Collection<Long> allergiesExclues,
+                           String severite, Integer minAllergies, boolean actifsSeulement) {
+    }
+
+    /**
+     * Page d'identifiants d'une cohorte (ordre croissant) et taille totale
+     */
+    public record Cohorte(List<Long> utilisateurIds, long taille) {
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void charger() {
+        long debut = System.nanoTime();
+        BitmapCompresse nouveauxActifs = new BitmapCompresse();
+        BitmapCompresse nouveauxAvecAllergies = new BitmapCompresse();
+        Map<Long, BitmapCompresse> nouveauxParAllergie = new HashMap<>();
+        Map<String, BitmapCompresse> nouveauxParSeverite = new HashMap<>();
+        List<BitmapCompresse> nouvellesTranches = new ArrayList<>();
+
+        // Un utilisateur et ses associations sont sur un seul shard : le comptage par utilisateur reste valable
+        for (String shard : routageShards.getShards()) {
+            routageShards.executerSur(shard, () -> transactionLecture.execute(status -> {
+                utilisateurRepository.findIdsActifs().forEach(id -> nouveauxActifs.ajouter(ordinal(id)));
+                try (Stream<Object[]> lignes = allergieUtilisateurRepository.streamAssociationsActives()) {
+                    // Lignes triées par utilisateur : le compte est écrit quand l'utilisateur change
+                    int[] courant = {-1, 0};
+                    lignes.forEach(ligne -> {
+                        int u = ordinal(((Number) ligne[0]).longValue());
+                        if (u != courant[0]) {
+                            ecrireNombre(nouvellesTranches, courant[0], courant[1]);
+                            courant[0] = u;
+                            courant[1] = 0;
+                        }
+                        courant[1]++;
+                        nouveauxAvecAllergies.ajouter(u);
+                        nouveauxParAllergie.computeIfAbsent(((Number) ligne[1]).longValue(), k -> new BitmapCompresse()).ajouter(u);
+                        if (ligne[2] != null) {
+                            nouveauxParSeverite.computeIfAbsent((String) ligne[2], k -> new BitmapCompresse()).ajouter(u);
+                        }
+                    });
+                    ecrireNombre(nouvellesTranches, courant[0], courant[1]);
+                }
+                return null;
+            }));
+        }
+
+        ecrire(() -> {
+            actifs = nouveauxActifs;
+            avecAllergies = nouveauxAvecAllergies;
+            parAllergie.clear();
+            parAllergie.putAll(nouveauxParAllergie);
+            parSeverite.clear();
+            parSeverite.putAll(nouveauxParSeverite);
+            tranchesNombre.clear();
+            tranchesNombre.addAll(nouvellesTranches);
+            return null;
+        });
+        log.info("Index des cohortes chargé: {} utilisateurs actifs, {} avec allergies, {} allergies, {} Ko en {} ms",
+                nouveauxActifs.cardinalite(), nouveauxAvecAllergies.cardinalite(), nouveauxParAllergie.size(),
+                octets() / 1024, (System.nanoTime() - debut) / 1_000_000);
+    }
+
+    /**
+     * Relit les allergies actives d'un utilisateur après le commit de la transaction courante
+     */
+    public void rafraichirApresCommit(Long utilisateurId) {
+        apresCommit(() -> rafraichir(utilisateurId));
+        coherenceCaches.diffuserApresCommit(CoherenceCaches.COHORTES, utilisateurId);
+    }
+
+    /**
+     * Met à jour le statut actif d'un utilisateur après le commit de la transaction courante
+     */
+    public void definirActifApresCommit(Long utilisateurId, boolean actif) {
+        apresCommit(() -> ecrire(() -> actif ? actifs.ajouter(ordinal(utilisateurId)) : actifs.retirer(ordinal(utilisateurId))));
+        coherenceCaches.diffuserApresCommit(CoherenceCaches.COHORTES, utilisateurId);
+    }
+
+    /**
+     * Retire un utilisateur supprimé de tous les bitmaps après le commit de la transaction courante
+     */
+    public void retirerApresCommit(Long utilisateurId) {
+        apresCommit(() -> ecrire(() -> {
+            int u = ordinal(utilisateurId);
+            actifs.retirer(u);
+            appliquer(u, Map.of());
+            return null;
+        }));
+        coherenceCaches.diffuserApresCommit(CoherenceCaches.COHORTES, utilisateurId);
+    }
+
+    public Cohorte utilisateursAllergiesCritiques(int page, int taille) {
+        return rechercher(new Criteres(null, false, null, CRITIQUE, null, true), page, taille);
+    }
+
+    public Cohorte utilisateursParAllergie(Long allergieId, int page, int taille) {
+        return rechercher(new Criteres(List.of(allergieId), true, null, null, null, false), page, taille);
+    }
+
+    public Cohorte utilisateursAllergiesMultiples(int page, int taille) {
+        return rechercher(new Criteres(null, false, null, null, 2, false), page, taille);
+    }
+
+    /**
+     * Combinaison booléenne des critères, calculée sur les bitmaps
+     */
+    public Cohorte rechercher(Criteres criteres, int page, int taille) {
+        return lire(() -> {
+            BitmapCompresse resultat = criteres.actifsSeulement() ? actifs.copie() : null;
+            if (criteres.allergies() != null && !criteres.allergies().isEmpty()) {
+                BitmapCompresse allergies = null;
+                for (Long allergieId : criteres.allergies()) {
+                    BitmapCompresse bitmap = parAllergie.getOrDefault(allergieId, VIDE);
+                    allergies = allergies == null ? bitmap
+                            : criteres.toutes() ? BitmapCompresse.et(allergies, bitmap) : BitmapCompresse.ou(allergies, bitmap);
+                }
+                resultat = intersecter(resultat, allergies);
+            }
+            if (criteres.severite() != null) {
+                resultat = intersecter(resultat, parSeverite.getOrDefault(criteres.severite(), VIDE));
+            }
+            if (criteres.minAllergies() != null && criteres.minAllergies() > 0) {
+                resultat = intersecter(resultat, auMoins(criteres.minAllergies()));
+            }
+            if (resultat == null) {
+                // Aucun critère positif : tous les utilisateurs connus de l'index
+                resultat = BitmapCompresse.ou(actifs, avecAllergies);
+            }
+            if (criteres.allergiesExclues() != null) {
+                for (Long allergieId : criteres.allergiesExclues()) {
+                    BitmapCompresse bitmap = parAllergie.get(allergieId);
+                    if (bitmap != null) resultat = BitmapCompresse.sauf(resultat, bitmap);
+                }
+            }
+            int[] ordinaux = resultat.page((long) page * taille, taille);
+            List<Long> ids = new ArrayList<>(ordinaux.length);
+            for (int ordinal : ordinaux) ids.add((long) ordinal);
+            return new Cohorte(ids, resultat.cardinalite());
+        });
+    }
+
+    /**
+     * Nombre d'utilisateurs par nombre d'allergies actives (1, 2, ...)
+     */
+    public Map<Integer, Long> repartitionNombreAllergies() {
+        return lire(() -> {
+            Map<Integer, Long> repartition = new LinkedHashMap<>();
+            BitmapCompresse courant = auMoins(1);
+            for (int n = 1; !courant.estVide(); n++) {
+                BitmapCompresse suivant = auMoins(n + 1);
+                repartition.put(n, courant.cardinalite() - suivant.cardinalite());
+                courant = suivant;
+            }
+            return repartition;
+        });
+    }
+
+    /**
+     * Nombre d'allergies actives d'un utilisateur, lu dans les tranches
+     */
+    public int nombreAllergies(Long utilisateurId) {
+        int u = ordinal(utilisateurId);
+        return lire(() -> {
+            int nombre = 0;
+            for (int k = 0; k < tranchesNombre.size(); k++) {
+                if (tranchesNombre.get(k).contient(u)) nombre |= 1 << k;
+            }
+            return nombre;
+        });
+    }
+
+    public long octets() {
+        return lire(() -> {
+            long total = actifs.octets() + avecAllergies.octets();
+            for (BitmapCompresse bitmap : parAllergie.values()) total += bitmap.octets();
+            for (BitmapCompresse bitmap : parSeverite.values()) total += bitmap.octets();
+            for (BitmapCompresse bitmap : tranchesNombre) total += bitmap.octets();
+            return total;
+        });
+    }
+
+    private void rafraichir(Long utilisateurId) {
+        List<Object[]> associations = routageShards.executerSur(routageShards.shardDe(utilisateurId), () ->
+                transactionLecture.execute(status -> allergieUtilisateurRepository.findAssociationsActivesByUtilisateurId(utilisateurId)));
+        Map<Long, String> severites = new HashMap<>();
+        for (Object[] ligne : associations) {
+            severites.put(((Number) ligne[0]).longValue(), (String) ligne[1]);
+        }
+        ecrire(() -> {
+            appliquer(ordinal(utilisateurId), severites);
+            return null;
+        });
+    }
+
+    /**
+     * Relit entièrement un utilisateur modifié sur une autre instance : existence, statut actif et allergies
+     */
+    private void resynchroniser(Long utilisateurId) {
+        Optional<Boolean> actif = routageShards.executerSur(routageShards.shardDe(utilisateurId), () ->
+                transactionLecture.execute(status -> utilisateurRepository.findById(utilisateurId)
+                        .map(utilisateur -> Boolean.TRUE.equals(utilisateur.getActif()))));
+        int u = ordinal(utilisateurId);
+        if (actif.isEmpty()) {
+            ecrire(() -> {
+                actifs.retirer(u);
+                appliquer(u, Map.of());
+                return null;
+            });
+            return;
+        }
+        ecrire(() -> actif.get() ? actifs.ajouter(u) : actifs.retirer(u));
+        rafraichir(utilisateurId);
+    }
+
+    /**
+     * Remplace l'état d'un utilisateur dans les bitmaps d'allergies, de sévérité et de nombre
+     * (sous verrou d'écriture)
+     */
+    private void appliquer(int u, Map<Long, String> severites) {
+        parAllergie.entrySet().removeIf(entree -> {
+            if (!severites.containsKey(entree.getKey())) entree.getValue().retirer(u);
+            return entree.getValue().estVide();
+        });
+        severites.keySet().forEach(allergieId -> parAllergie.computeIfAbsent(allergieId, k -> new BitmapCompresse()).ajouter(u));
+
+        Set<String> niveaux = Set.copyOf(severites.values().stream().filter(Objects::nonNull).toList());
+        parSeverite.forEach((niveau, bitmap) -> {
+            if (!niveaux.contains(niveau)) bitmap.retirer(u);
+        });
+        niveaux.forEach(niveau -> parSeverite.computeIfAbsent(niveau, k -> new BitmapCompresse()).ajouter(u));
+
+        if (severites.isEmpty()) avecAllergies.retirer(u);
+        else avecAllergies.ajouter(u);
+        ecrireNombre(tranchesNombre, u, severites.size());
+    }
+
+    /**
+     * Utilisateurs ayant au moins n allergies : comparaison bit à bit sur les tranches, du bit de
+     * poids fort au bit de poids faible (sous verrou de lecture)
+     */
+    private BitmapCompresse auMoins(int n) {
+        if (n >= 1 << tranchesNombre.size()) return new BitmapCompresse();
+        BitmapCompresse superieurs = new BitmapCompresse();
+        BitmapCompresse egaux = avecAllergies;
+        for (int k = tranchesNombre.size() - 1; k >= 0; k--) {
+            BitmapCompresse tranche = tranchesNombre.get(k);
+            if ((n & (1 << k)) != 0) {
+                egaux = BitmapCompresse.et(egaux, tranche);
+            } else {
+                superieurs = BitmapCompresse.ou(superieurs, BitmapCompresse.et(egaux, tranche));
+                egaux = BitmapCompresse.sauf(egaux, tranche);
+            }
+        }
+        return BitmapCompresse.ou(superieurs, egaux);
+    }
+
+    private static void ecrireNombre(List<BitmapCompresse> tranches, int u, int nombre) {
+        if (u < 0) return;
+        while (32 - Integer.numberOfLeadingZeros(nombre) > tranches.size()) {
+            tranches.add(new BitmapCompresse());
+        }
+        for (int k = 0; k < tranches.size(); k++) {
+            if ((nombre & (1 << k)) != 0) tranches.get(k).ajouter(u);
+            else tranches.get(k).retirer(u);
+        }
+    }
+
+    private static final BitmapCompresse VIDE = new BitmapCompresse();
+
+    private static BitmapCompresse intersecter(BitmapCompresse resultat, BitmapCompresse bitmap) {
+        return resultat == null ? bitmap.copie() : BitmapCompresse.et(resultat, bitmap);
+    }
+
+    /**
+     * Les identifiants utilisateur servent directement de valeurs dans les bitmaps
+     */
+    private static int ordinal(long utilisateurId) {
+        if (utilisateurId < 0 || utilisateurId > Integer.MAX_VALUE) {
+            throw new IllegalStateException("Identifiant utilisateur hors de la plage indexable: " + utilisateurId);
+        }
+        return (int) utilisateurId;
+    }
+
+    private <T> T lire(Supplier<T> action) {
+        verrou.readLock().lock();
+        try {
+            return action.get();
+        } finally {
+            verrou.readLock().unlock();
+        }
+    }
+
+    private <T> T ecrire(Supplier<T> action) {
+        verrou.writeLock().lock();
+        try {
+            return action.get();
+        } finally {
+            verrou.writeLock().unlock();
+        }
+    }
+
+    private void apresCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+}
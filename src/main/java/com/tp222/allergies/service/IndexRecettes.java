@@ -0,0 +1,384 @@
+package com.tp222.allergies.service;
+
+import com.tp222.allergies.model.entity.IngredientRecette;
+import com.tp222.allergies.model.entity.Recette;
+import com.tp222.allergies.repository.RecetteRepository;
+import com.tp222.allergies.service.coherence.CoherenceCaches;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Index inversé en mémoire des recettes actives, pour la recherche de recettes sûres.
+ *
+ * Chaque recette reçoit un ordinal dense (ordre croissant des identifiants) ; chaque allergène,
+ * aliment, niveau de difficulté et type de cuisine est associé au bitmap des recettes qui le
+ * portent. Une recherche part du bitmap des recettes actives, retire les bitmaps des allergènes
+ * et aliments à éviter, puis intersecte les filtres : aucun texte n'est relu.
+ *
+ * L'index est une instance immuable publiée par référence volatile. Une écriture est appliquée
+ * après son commit, en copiant uniquement les bitmaps qu'elle modifie ; les autres instances
+ * relisent la recette à réception de son identifiant (CoherenceCaches). Les écritures appliquées
+ * pendant un chargement complet sont rejouées sur l'index chargé : ses lectures ont pu les précéder.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class IndexRecettes {
+
+    private final RecetteRepository recetteRepository;
+    private final CoherenceCaches coherenceCaches;
+    private final PlatformTransactionManager transactionManager;
+
+    private volatile Instantane instantane = Instantane.construire(List.of());
+    // Entrées appliquées depuis le début du chargement en cours, null hors chargement (sous le verrou d'écriture)
+    private List<EntreeRecette> pendantChargement;
+    // Verrous plutôt que moniteurs : un chargement lit la base, ce qui épinglerait un thread virtuel
+    private final ReentrantLock chargement = new ReentrantLock();
+    private final ReentrantLock ecriture = new ReentrantLock();
+
+    /**
+     * Critères de recherche facultatifs (null = pas de filtre)
+     */
+    public record Criteres(Boolean rapide, String niveauDifficulte, String typeCuisine, BigDecimal caloriesMax) {
+    }
+
+    /**
+     * Page d'identifiants de recettes, dans l'ordre des identifiants, et nombre total de résultats
+     */
+    public record Resultat(List<Long> recetteIds, int total) {
+    }
+
+    /**
+     * Ce que l'index retient d'une recette
+     */
+    record EntreeRecette(long id, boolean active, boolean rapide, String difficulte, String cuisine,
+                         float calories, boolean nonReconnue, Set<String> allergenes, Set<Long> alimentIds) {
+
+        static EntreeRecette de(Recette recette) {
+            Set<Long> alimentIds = new HashSet<>();
+            for (IngredientRecette ingredient : recette.getIngredientsLies()) {
+                if (ingredient.getAliment() != null) alimentIds.add(ingredient.getAliment().getId());
+            }
+            return new EntreeRecette(recette.getId(), Boolean.TRUE.equals(recette.getActif()), recette.isRapide(),
+                    cle(recette.getNiveauDifficulte()), cle(recette.getTypeCuisine()),
+                    calories(recette.getCaloriesParPortion()),
+                    recette.getIngredientsNonReconnus() != null && recette.getIngredientsNonReconnus() > 0,
+                    Set.copyOf(recette.getAllergenes()), Set.copyOf(alimentIds));
+        }
+    }
+
+    @PostConstruct
+    void abonner() {
+        coherenceCaches.enregistrer(CoherenceCaches.RECETTES, cle -> reindexer(Long.valueOf(cle)), this::charger);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional(readOnly = true)
+    public void charger() {
+        chargement.lock();
+        try {
+            ecriture.lock();
+            try {
+                pendantChargement = new ArrayList<>();
+            } finally {
+                ecriture.unlock();
+            }
+            try {
+                chargerInstantane();
+            } finally {
+                ecriture.lock();
+                try {
+                    pendantChargement = null;
+                } finally {
+                    ecriture.unlock();
+                }
+            }
+        } finally {
+            chargement.unlock();
+        }
+    }
+
+    private void chargerInstantane() {
+        long debut = System.nanoTime();
+        Map<Long, Set<String>> allergenes = new HashMap<>();
+        for (Object[] ligne : recetteRepository.findAllergenesRecettesActives()) {
+            allergenes.computeIfAbsent(((Number) ligne[0]).longValue(), id -> new HashSet<>()).add((String) ligne[1]);
+        }
+        Map<Long, Set<Long>> aliments = new HashMap<>();
+        for (Object[] ligne : recetteRepository.findAlimentsRecettesActives()) {
+            aliments.computeIfAbsent(((Number) ligne[0]).longValue(), id -> new HashSet<>()).add(((Number) ligne[1]).longValue());
+        }
+
+        List<EntreeRecette> entrees = new ArrayList<>();
+        for (Object[] ligne : recetteRepository.findProfilsRecettesActives()) {
+            long id = ((Number) ligne[0]).longValue();
+            int tempsTotal = (ligne[1] == null ? 0 : ((Number) ligne[1]).intValue())
+                    + (ligne[2] == null ? 0 : ((Number) ligne[2]).intValue());
+            entrees.add(new EntreeRecette(id, true, tempsTotal <= 30, cle((String) ligne[3]), cle((String) ligne[4]),
+                    calories((BigDecimal) ligne[5]), ligne[6] != null && ((Number) ligne[6]).intValue() > 0,
+                    allergenes.getOrDefault(id, Set.of()), aliments.getOrDefault(id, Set.of())));
+        }
+        Instantane charge = Instantane.construire(entrees);
+        int rejouees;
+        ecriture.lock();
+        try {
+            for (EntreeRecette entree : pendantChargement) {
+                charge = charge.avec(entree);
+            }
+            rejouees = pendantChargement.size();
+            instantane = charge;
+        } finally {
+            ecriture.unlock();
+        }
+        log.info("Index des recettes chargé: {} recettes, {} allergènes, {} écritures rejouées en {} ms",
+                entrees.size(), instantane.parAllergene.size(), rejouees, (System.nanoTime() - debut) / 1_000_000);
+    }
+
+    /**
+     * Répercute une recette créée, modifiée ou désactivée, après le commit de la transaction courante
+     */
+    public void indexerApresCommit(Recette recette) {
+        EntreeRecette entree = EntreeRecette.de(recette);
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            appliquer(entree);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                appliquer(entree);
+            }
+        });
+        coherenceCaches.diffuserApresCommit(CoherenceCaches.RECETTES, recette.getId());
+    }
+
+    /**
+     * Relit une recette modifiée sur une autre instance ; une recette disparue est retirée
+     */
+    private void reindexer(Long recetteId) {
+        TransactionTemplate lecture = new TransactionTemplate(transactionManager);
+        lecture.setReadOnly(true);
+        EntreeRecette entree = lecture.execute(status -> recetteRepository.findById(recetteId)
+                .map(EntreeRecette::de)
+                .orElseGet(() -> new EntreeRecette(recetteId, false, false, null, null, Float.NaN, false, Set.of(), Set.of())));
+        appliquer(entree);
+    }
+
+    /**
+     * Allergènes présents dans au moins une recette active (catalogue de rapprochement des allergies)
+     */
+    public Set<String> getAllergenes() {
+        return instantane.parAllergene.keySet();
+    }
+
+    public int taille() {
+        return instantane.actives.cardinality();
+    }
+
+    /**
+     * Recettes actives, entièrement reconnues, sans allergène ni aliment exclus, satisfaisant les critères
+     */
+    public Resultat rechercher(Collection<String> allergenesExclus, Collection<Long> alimentsExclus,
+                               Criteres criteres, int page, int taille) {
+        Instantane index = instantane;
+        BitSet candidates = (BitSet) index.actives.clone();
+        candidates.andNot(index.nonReconnues);
+        for (String allergene : allergenesExclus) {
+            BitSet bitmap = index.parAllergene.get(allergene);
+            if (bitmap != null) candidates.andNot(bitmap);
+        }
+        for (Long alimentId : alimentsExclus) {
+            BitSet bitmap = index.parAliment.get(alimentId);
+            if (bitmap != null) candidates.andNot(bitmap);
+        }
+        if (criteres.rapide() != null) {
+            if (criteres.rapide()) candidates.and(index.rapides);
+            else candidates.andNot(index.rapides);
+        }
+        if (criteres.niveauDifficulte() != null) {
+            candidates.and(index.parDifficulte.getOrDefault(cle(criteres.niveauDifficulte()), VIDE));
+        }
+        if (criteres.typeCuisine() != null) {
+            candidates.and(index.parCuisine.getOrDefault(cle(criteres.typeCuisine()), VIDE));
+        }
+
+        float caloriesMax = criteres.caloriesMax() == null ? Float.NaN : criteres.caloriesMax().floatValue();
+        int debutPage = page * taille;
+        List<Long> ids = new ArrayList<>(Math.min(taille, 1024));
+        int total = 0;
+        for (int i = candidates.nextSetBit(0); i >= 0; i = candidates.nextSetBit(i + 1)) {
+            // Une recette sans calories connues ne satisfait pas un plafond (NaN <= x est faux)
+            if (!Float.isNaN(caloriesMax) && !(index.entrees[i].calories() <= caloriesMax)) continue;
+            if (total >= debutPage && ids.size() < taille) ids.add(index.entrees[i].id());
+            total++;
+        }
+        return new Resultat(ids, total);
+    }
+
+    private void appliquer(EntreeRecette entree) {
+        ecriture.lock();
+        try {
+            instantane = instantane.avec(entree);
+            if (pendantChargement != null) {
+                pendantChargement.add(entree);
+            }
+        } finally {
+            ecriture.unlock();
+        }
+    }
+
+    private static final BitSet VIDE = new BitSet();
+
+    static String cle(String valeur) {
+        return valeur == null || valeur.isBlank() ? null : valeur.trim().toLowerCase(Locale.ROOT);
+    }
+
+    private static float calories(BigDecimal valeur) {
+        return valeur == null ? Float.NaN : valeur.floatValue();
+    }
+
+    /**
+     * État immuable de l'index ; les bitmaps ne sont jamais modifiés une fois publiés
+     */
+    private static final class Instantane {
+
+        final EntreeRecette[] entrees; // par ordinal, identifiants croissants
+        final long[] ids;
+        final BitSet actives;
+        final BitSet nonReconnues;
+        final BitSet rapides;
+        final Map<String, BitSet> parAllergene;
+        final Map<Long, BitSet> parAliment;
+        final Map<String, BitSet> parDifficulte;
+        final Map<String, BitSet> parCuisine;
+
+        private Instantane(EntreeRecette[] entrees, BitSet actives, BitSet nonReconnues, BitSet rapides,
+                           Map<String, BitSet> parAllergene, Map<Long, BitSet> parAliment,
+                           Map<String, BitSet> parDifficulte, Map<String, BitSet> parCuisine) {
+            this.entrees = entrees;
+            this.ids = Arrays.stream(entrees).mapToLong(EntreeRecette::id).toArray();
+            this.actives = actives;
+            this.nonReconnues = nonReconnues;
+            this.rapides = rapides;
+            this.parAllergene = Collections.unmodifiableMap(parAllergene);
+            this.parAliment = parAliment;
+            this.parDifficulte = parDifficulte;
+            this.parCuisine = parCuisine;
+        }
+
+        static Instantane construire(List<EntreeRecette> liste) {
+            EntreeRecette[] entrees = liste.stream()
+                    .sorted((a, b) -> Long.compare(a.id(), b.id()))
+                    .toArray(EntreeRecette[]::new);
+            BitSet actives = new BitSet(entrees.length);
+            BitSet nonReconnues = new BitSet(entrees.length);
+            BitSet rapides = new BitSet(entrees.length);
+            Map<String, BitSet> parAllergene = new HashMap<>();
+            Map<Long, BitSet> parAliment = new HashMap<>();
+            Map<String, BitSet> parDifficulte = new HashMap<>();
+            Map<String, BitSet> parCuisine = new HashMap<>();
+            for (int i = 0; i < entrees.length; i++) {
+                EntreeRecette entree = entrees[i];
+                actives.set(i, entree.active());
+                nonReconnues.set(i, entree.nonReconnue());
+                rapides.set(i, entree.rapide());
+                for (String allergene : entree.allergenes()) {
+                    parAllergene.computeIfAbsent(allergene, k -> new BitSet()).set(i);
+                }
+                for (Long alimentId : entree.alimentIds()) {
+                    parAliment.computeIfAbsent(alimentId, k -> new BitSet()).set(i);
+                }
+                if (entree.difficulte() != null) parDifficulte.computeIfAbsent(entree.difficulte(), k -> new BitSet()).set(i);
+                if (entree.cuisine() != null) parCuisine.computeIfAbsent(entree.cuisine(), k -> new BitSet()).set(i);
+            }
+            return new Instantane(entrees, actives, nonReconnues, rapides, parAllergene, parAliment, parDifficulte, parCuisine);
+        }
+
+        /**
+         * Nouvelle instance intégrant une recette : seuls les bitmaps dont un bit change sont copiés.
+         * Une recette inconnue d'identifiant inférieur au dernier (cas anormal) reconstruit l'index.
+         */
+        Instantane avec(EntreeRecette entree) {
+            int position = Arrays.binarySearch(ids, entree.id());
+            if (position < 0 && -position - 1 < ids.length) {
+                List<EntreeRecette> liste = new ArrayList<>(Arrays.asList(entrees));
+                liste.add(entree);
+                return construire(liste);
+            }
+            int i = position >= 0 ? position : ids.length;
+            EntreeRecette ancienne = position >= 0 ? entrees[i] : null;
+            EntreeRecette[] nouvelles = Arrays.copyOf(entrees, Math.max(entrees.length, i + 1));
+            nouvelles[i] = entree;
+
+            Map<String, BitSet> allergenes = new HashMap<>(parAllergene);
+            Map<Long, BitSet> aliments = new HashMap<>(parAliment);
+            Map<String, BitSet> difficultes = new HashMap<>(parDifficulte);
+            Map<String, BitSet> cuisines = new HashMap<>(parCuisine);
+            remplacer(allergenes, ancienne == null ? Set.of() : ancienne.allergenes(), entree.allergenes(), i);
+            remplacer(aliments, ancienne == null ? Set.of() : ancienne.alimentIds(), entree.alimentIds(), i);
+            remplacer(difficultes, ancienne == null ? null : ancienne.difficulte(), entree.difficulte(), i);
+            remplacer(cuisines, ancienne == null ? null : ancienne.cuisine(), entree.cuisine(), i);
+
+            return new Instantane(nouvelles, copie(actives, i, entree.active()), copie(nonReconnues, i, entree.nonReconnue()),
+                    copie(rapides, i, entree.rapide()), allergenes, aliments, difficultes, cuisines);
+        }
+
+        private static <K> void remplacer(Map<K, BitSet> bitmaps, Set<K> anciennes, Set<K> nouvelles, int i) {
+            for (K cle : anciennes) {
+                if (!nouvelles.contains(cle)) modifier(bitmaps, cle, i, false);
+            }
+            for (K cle : nouvelles) {
+                if (!anciennes.contains(cle)) modifier(bitmaps, cle, i, true);
+            }
+        }
+
+        private static <K> void remplacer(Map<K, BitSet> bitmaps, K ancienne, K nouvelle, int i) {
+            if (Objects.equals(ancienne, nouvelle)) return;
+            modifier(bitmaps, ancienne, i, false);
+            modifier(bitmaps, nouvelle, i, true);
+        }
+
+        private static <K> void modifier(Map<K, BitSet> bitmaps, K cle, int i, boolean valeur) {
+            if (cle == null) return;
+            BitSet actuel = bitmaps.get(cle);
+            if (actuel == null) {
+                if (!valeur) return;
+                actuel = VIDE;
+            }
+            if (actuel.get(i) == valeur) return;
+            BitSet copie = copie(actuel, i, valeur);
+            if (copie.isEmpty()) bitmaps.remove(cle);
+            else bitmaps.put(cle, copie);
+        }
+
+        private static BitSet copie(BitSet bitmap, int i, boolean valeur) {
+            if (bitmap.get(i) == valeur) return bitmap;
+            BitSet copie = (BitSet) bitmap.clone();
+            copie.set(i, valeur);
+            return copie;
+        }
+    }
+}
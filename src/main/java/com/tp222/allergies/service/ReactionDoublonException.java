@@ -0,0 +1,24 @@
+package com.tp222.allergies.service;
+
+import com.tp222.allergies.model.entity.ReactionAllergique;
+
+/**
+ * Réaction déjà enregistrée pour le même utilisateur, le même aliment et la même minute : rien n'est écrit
+ */
+public class ReactionDoublonException extends RuntimeException {
+
+    private final transient ReactionAllergique reactionExistante;
+
+    public ReactionDoublonException(ReactionAllergique reactionExistante) {
+        super("Réaction déjà enregistrée pour cet utilisateur, cet aliment et cette minute");
+        this.reactionExistante = reactionExistante;
+    }
+
+    /**
+     * @return la réaction déjà enregistrée, null si le doublon a été arrêté par la contrainte
+     * d'unicité (réaction écrite par une autre instance, à relire hors de la transaction annulée)
+     */
+    public ReactionAllergique getReactionExistante() {
+        return reactionExistante;
+    }
+}
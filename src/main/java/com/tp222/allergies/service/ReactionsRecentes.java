@@ -0,0 +1,390 @@
+package com.tp222.allergies.service;
+
+import com.tp222.allergies.model.entity.ReactionAllergique;
+import com.tp222.allergies.repository.ReactionAllergiqueRepository;
+import com.tp222.allergies.service.coherence.CoherenceCaches;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.OptionalLong;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Tampon mémoire des réactions récentes de chaque utilisateur, en anneau borné.
+ *
+ * L'anneau d'un utilisateur est chargé à sa première lecture (réactions des horizon-jours derniers
+ * jours, au plus capacite) puis complété après le commit de chaque réaction enregistrée sur cette
+ * instance ; les autres instances retirent l'utilisateur (CoherenceCaches) et le rechargeront. Une
+ * fenêtre n'est servie que si l'anneau la couvre entièrement : un utilisateur qui dépasse la capacité
+ * garde ses réactions les plus récentes et les fenêtres plus longues sont lues en base.
+ *
+ * La mémoire totale estimée est plafonnée : au-delà, les utilisateurs les moins récemment lus sont
+ * retirés. Chargement, ajout et retrait d'un utilisateur se font sous le verrou de sa bande : un ajout
+ * ou un retrait après commit attend la fin d'un chargement en cours et ne peut pas être écrasé par lui.
+ */
+@Service
+@Slf4j
+public class ReactionsRecentes {
+
+    // Estimation de l'empreinte mémoire : enregistrement, deux en-têtes de chaîne, entrée d'index
+    private static final int OCTETS_REACTION = 64 + 2 * 40;
+    private static final int OCTETS_ANNEAU = 128;
+
+    private final ReactionAllergiqueRepository reactionAllergiqueRepository;
+    private final CoherenceCaches coherenceCaches;
+    private final int capacite;
+    private final int horizonJours;
+    private final long memoireMax;
+
+    private final StripedLocks verrous = new StripedLocks(256);
+    private final Map<Long, Anneau> anneaux = new LinkedHashMap<>(1024, 0.75f, true);
+    private final AtomicLong memoire = new AtomicLong();
+
+    private final Counter lecturesMemoire;
+    private final Counter lecturesBase;
+    private final Counter evictions;
+
+    /**
+     * Réaction sous forme compacte : date en microsecondes, probabilité en entier mis à l'échelle
+     */
+    public record ReactionRecente(long id, long alimentId, String nomAliment, long dateReactionMicros,
+                                  String niveauSeverite, String symptomes, boolean hospitalisationRequise,
+                                  int probabiliteNonEchelonnee, byte echelleProbabilite) {
+
+        public static ReactionRecente de(ReactionAllergique reaction) {
+            BigDecimal probabilite = reaction.getProbabiliteAllergie();
+            if (probabilite != null && probabilite.scale() > 9) {
+                probabilite = probabilite.setScale(9, RoundingMode.HALF_UP);
+            }
+            String severite = reaction.getNiveauSeverite();
+            return new ReactionRecente(reaction.getId(), reaction.getAliment().getId(), reaction.getAliment().getNom(),
+                    micros(reaction.getDateReaction()), severite == null ? null : severite.intern(),
+                    reaction.getSymptomes(), Boolean.TRUE.equals(reaction.getHospitalisationRequise()),
+                    probabilite == null ? 0 : probabilite.unscaledValue().intValueExact(),
+                    probabilite == null ? -1 : (byte) Math.max(0, probabilite.scale()));
+        }
+
+        public LocalDateTime dateReaction() {
+            return LocalDateTime.ofEpochSecond(Math.floorDiv(dateReactionMicros, 1_000_000),
+                    (int) Math.floorMod(dateReactionMicros, 1_000_000) * 1000, ZoneOffset.UTC);
+        }
+
+        public BigDecimal probabiliteAllergie() {
+            return echelleProbabilite < 0 ? null : BigDecimal.valueOf(probabiliteNonEchelonnee, echelleProbabilite);
+        }
+
+        int octets() {
+            return OCTETS_REACTION + (nomAliment == null ? 0 : nomAliment.length())
+                    + (symptomes == null ? 0 : symptomes.length());
+        }
+
+        private boolean avant(ReactionRecente autre) {
+            return dateReactionMicros != autre.dateReactionMicros
+                    ? dateReactionMicros < autre.dateReactionMicros : id < autre.id;
+        }
+    }
+
+    public ReactionsRecentes(ReactionAllergiqueRepository reactionAllergiqueRepository,
+                             CoherenceCaches coherenceCaches,
+                             MeterRegistry registry,
+                             @Value("${allergies.reactions-recentes.capacite:32}") int capacite,
+                             @Value("${allergies.reactions-recentes.horizon-jours:92}") int horizonJours,
+                             @Value("${allergies.reactions-recentes.memoire-max-mo:64}") long memoireMaxMo) {
+        this.reactionAllergiqueRepository = reactionAllergiqueRepository;
+        this.coherenceCaches = coherenceCaches;
+        this.capacite = Math.max(1, capacite);
+        this.horizonJours = horizonJours;
+        this.memoireMax = memoireMaxMo * 1024 * 1024;
+        this.lecturesMemoire = registry.counter("allergies.reactions_recentes.lectures", "source", "memoire");
+        this.lecturesBase = registry.counter("allergies.reactions_recentes.lectures", "source", "base");
+        this.evictions = registry.counter("allergies.reactions_recentes.evictions");
+        Gauge.builder("allergies.reactions_recentes.memoire_octets", memoire, AtomicLong::get).register(registry);
+        Gauge.builder("allergies.reactions_recentes.utilisateurs", this, ReactionsRecentes::nombreUtilisateurs).register(registry);
+        coherenceCaches.enregistrer(CoherenceCaches.REACTIONS_RECENTES, cle -> retirer(Long.valueOf(cle)), this::vider);
+        // Les anneaux portent le nom des aliments
+        coherenceCaches.enregistrer(CoherenceCaches.CATALOGUE, cle -> vider(), this::vider);
+    }
+
+    /**
+     * Réactions datées de debut ou après, des plus récentes aux plus anciennes ; vide si la fenêtre
+     * dépasse ce que le tampon garantit (lecture en base à faire par l'appelant)
+     */
+    public Optional<List<ReactionRecente>> depuis(Long utilisateurId, LocalDateTime debut) {
+        Anneau anneau = anneau(utilisateurId, debut);
+        List<ReactionRecente> reactions = anneau == null ? null : anneau.depuis(micros(debut));
+        (reactions == null ? lecturesBase : lecturesMemoire).increment();
+        return Optional.ofNullable(reactions);
+    }
+
+    /**
+     * Nombre de réactions datées de debut ou après ; vide si la fenêtre n'est pas couverte
+     */
+    public OptionalLong compter(Long utilisateurId, LocalDateTime debut) {
+        Anneau anneau = anneau(utilisateurId, debut);
+        long nombre = anneau == null ? -1 : anneau.compter(micros(debut));
+        (nombre < 0 ? lecturesBase : lecturesMemoire).increment();
+        return nombre < 0 ? OptionalLong.empty() : OptionalLong.of(nombre);
+    }
+
+    /**
+     * Ajoute la réaction à l'anneau de l'utilisateur après le commit ; les autres instances le retirent
+     */
+    public void ajouterApresCommit(ReactionAllergique reaction) {
+        Long utilisateurId = reaction.getUtilisateur().getId();
+        ReactionRecente recente = ReactionRecente.de(reaction);
+        coherenceCaches.diffuserApresCommit(CoherenceCaches.REACTIONS_RECENTES, utilisateurId);
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            ajouter(utilisateurId, recente);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                ajouter(utilisateurId, recente);
+            }
+        });
+    }
+
+    /**
+     * Retire l'utilisateur sur toutes les instances après le commit (réactions modifiées en place)
+     */
+    public void invaliderApresCommit(Long utilisateurId) {
+        coherenceCaches.invaliderApresCommit(CoherenceCaches.REACTIONS_RECENTES, utilisateurId);
+    }
+
+    private Anneau anneau(Long utilisateurId, LocalDateTime debut) {
+        if (!coherenceCaches.estCoherent() || debut.isBefore(LocalDateTime.now().minusDays(horizonJours))) {
+            return null;
+        }
+        Anneau anneau;
+        synchronized (anneaux) {
+            anneau = anneaux.get(utilisateurId);
+        }
+        if (anneau != null) {
+            return anneau;
+        }
+        ReentrantLock verrou = verrous.verrou(utilisateurId);
+        verrou.lock();
+        try {
+            synchronized (anneaux) {
+                anneau = anneaux.get(utilisateurId);
+            }
+            if (anneau == null) {
+                anneau = charger(utilisateurId);
+                synchronized (anneaux) {
+                    anneaux.put(utilisateurId, anneau);
+                }
+            }
+        } finally {
+            verrou.unlock();
+        }
+        evincer();
+        return anneau;
+    }
+
+    private Anneau charger(Long utilisateurId) {
+        LocalDateTime horizon = LocalDateTime.now().minusDays(horizonJours);
+        List<ReactionAllergique> lignes = reactionAllergiqueRepository
+                .findRecentesAvecAliment(utilisateurId, horizon, PageRequest.of(0, capacite + 1));
+        // Tout ce qui est daté après le plancher est présent
+        long plancher = micros(horizon) - 1;
+        if (lignes.size() > capacite) {
+            plancher = micros(lignes.get(capacite).getDateReaction());
+            lignes = lignes.subList(0, capacite);
+        }
+        Anneau anneau = new Anneau(plancher);
+        for (int i = lignes.size() - 1; i >= 0; i--) {
+            anneau.ajouter(ReactionRecente.de(lignes.get(i)));
+        }
+        return anneau;
+    }
+
+    private void ajouter(Long utilisateurId, ReactionRecente reaction) {
+        ReentrantLock verrou = verrous.verrou(utilisateurId);
+        verrou.lock();
+        try {
+            Anneau anneau;
+            synchronized (anneaux) {
+                anneau = anneaux.get(utilisateurId);
+            }
+            // Utilisateur absent : il sera chargé, réaction comprise, à sa prochaine lecture
+            if (anneau != null) {
+                anneau.ajouter(reaction);
+            }
+        } finally {
+            verrou.unlock();
+        }
+        evincer();
+    }
+
+    private void retirer(Long utilisateurId) {
+        ReentrantLock verrou = verrous.verrou(utilisateurId);
+        verrou.lock();
+        try {
+            Anneau anneau;
+            synchronized (anneaux) {
+                anneau = anneaux.remove(utilisateurId);
+            }
+            if (anneau != null) {
+                anneau.retirer();
+            }
+        } finally {
+            verrou.unlock();
+        }
+    }
+
+    private void vider() {
+        List<Anneau> retires;
+        synchronized (anneaux) {
+            retires = new ArrayList<>(anneaux.values());
+            anneaux.clear();
+        }
+        retires.forEach(Anneau::retirer);
+    }
+
+    /**
+     * Retire les utilisateurs les moins récemment lus tant que le budget mémoire est dépassé
+     */
+    private void evincer() {
+        while (memoire.get() > memoireMax) {
+            Anneau victime;
+            synchronized (anneaux) {
+                Iterator<Anneau> iterateur = anneaux.values().iterator();
+                if (!iterateur.hasNext()) {
+                    return;
+                }
+                victime = iterateur.next();
+                iterateur.remove();
+            }
+            victime.retirer();
+            evictions.increment();
+        }
+    }
+
+    private int nombreUtilisateurs() {
+        synchronized (anneaux) {
+            return anneaux.size();
+        }
+    }
+
+    private static long micros(LocalDateTime date) {
+        return date.toEpochSecond(ZoneOffset.UTC) * 1_000_000 + date.getNano() / 1000;
+    }
+
+    /**
+     * Anneau d'un utilisateur, en ordre chronologique (tête = plus ancienne). L'empreinte mémoire est
+     * reportée sur le total sous le moniteur de l'anneau, pour qu'un retrait concurrent la décompte
+     * exactement une fois.
+     */
+    private final class Anneau {
+
+        private final ReactionRecente[] elements = new ReactionRecente[capacite];
+        private int tete;
+        private int taille;
+        private long plancher; // micros : toutes les réactions datées strictement après sont présentes
+        private long octets;
+        private boolean retire;
+
+        Anneau(long plancher) {
+            this.plancher = plancher;
+            ajuster(OCTETS_ANNEAU + 8L * capacite);
+        }
+
+        // Un anneau retiré ne reçoit plus les ajouts : il n'est plus servi
+        synchronized List<ReactionRecente> depuis(long debut) {
+            if (retire || debut <= plancher) {
+                return null;
+            }
+            List<ReactionRecente> resultat = new ArrayList<>();
+            for (int i = taille - 1; i >= 0 && element(i).dateReactionMicros() >= debut; i--) {
+                resultat.add(element(i));
+            }
+            return resultat;
+        }
+
+        synchronized long compter(long debut) {
+            if (retire || debut <= plancher) {
+                return -1;
+            }
+            long nombre = 0;
+            for (int i = taille - 1; i >= 0 && element(i).dateReactionMicros() >= debut; i--) {
+                nombre++;
+            }
+            return nombre;
+        }
+
+        synchronized void ajouter(ReactionRecente reaction) {
+            if (retire || reaction.dateReactionMicros() <= plancher) {
+                return;
+            }
+            for (int i = 0; i < taille; i++) {
+                if (element(i).id() == reaction.id()) return;
+            }
+            // Les réactions trop anciennes pour toute fenêtre servie libèrent leur place
+            long horizon = micros(LocalDateTime.now().minusDays(horizonJours));
+            while (taille > 0 && element(0).dateReactionMicros() < horizon) {
+                supprimerTete();
+            }
+            if (taille == capacite) {
+                if (reaction.avant(element(0))) {
+                    plancher = Math.max(plancher, reaction.dateReactionMicros());
+                    return;
+                }
+                supprimerTete();
+            }
+            // Insertion depuis la fin : les réactions arrivent presque toujours dans l'ordre
+            int position = taille;
+            while (position > 0 && reaction.avant(element(position - 1))) {
+                elements[(tete + position) % capacite] = element(position - 1);
+                position--;
+            }
+            elements[(tete + position) % capacite] = reaction;
+            taille++;
+            ajuster(reaction.octets());
+        }
+
+        synchronized void retirer() {
+            if (!retire) {
+                retire = true;
+                memoire.addAndGet(-octets);
+            }
+        }
+
+        private ReactionRecente element(int i) {
+            return elements[(tete + i) % capacite];
+        }
+
+        private void supprimerTete() {
+            ReactionRecente ancienne = elements[tete];
+            elements[tete] = null;
+            tete = (tete + 1) % capacite;
+            taille--;
+            plancher = Math.max(plancher, ancienne.dateReactionMicros());
+            ajuster(-ancienne.octets());
+        }
+
+        private void ajuster(long delta) {
+            octets += delta;
+            if (!retire) {
+                memoire.addAndGet(delta);
+            }
+        }
+    }
+}
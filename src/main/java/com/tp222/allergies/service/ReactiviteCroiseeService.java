@@ -0,0 +1,259 @@
+package com.tp222.allergies.service;
+
+import com.tp222.allergies.model.dto.request.ReactiviteCroiseeRequest;
+import com.tp222.allergies.model.dto.response.ReactiviteCroiseeResponse;
+import com.tp222.allergies.model.entity.Aliment;
+import com.tp222.allergies.model.entity.ReactiviteCroisee;
+import com.tp222.allergies.repository.AlimentRepository;
+import com.tp222.allergies.repository.ReactiviteCroiseeRepository;
+import com.tp222.allergies.service.coherence.CoherenceCaches;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Gestion du graphe de réactivité croisée entre aliments et de sa fermeture transitive.
+ *
+ * La fermeture est calculée au démarrage puis mise à jour après le commit de chaque
+ * modification : un ajout ou un renforcement d'arête est intégré en O(n²), un affaiblissement
+ * ou une suppression relance le calcul complet. Les vérifications de risque ne lisent que
+ * l'instance publiée, jamais la base. Les autres instances, prévenues par CoherenceCaches,
+ * relisent toutes les arêtes.
+ */
+@Service
+@Slf4j
+@Transactional
+public class ReactiviteCroiseeService {
+
+    private final ReactiviteCroiseeRepository reactiviteCroiseeRepository;
+    private final AlimentRepository alimentRepository;
+    private final CoherenceCaches coherenceCaches;
+    private final float seuil;
+
+    // Arêtes actives (couple trié -> coefficient), copie mémoire servant aux recalculs complets
+    private final Map<List<Long>, Float> aretes = new HashMap<>();
+    private volatile FermetureReactivite fermeture;
+    private volatile long empreinte; // fonction du seul contenu des arêtes : identique d'une instance à l'autre
+
+    public ReactiviteCroiseeService(ReactiviteCroiseeRepository reactiviteCroiseeRepository,
+                                    AlimentRepository alimentRepository,
+                                    CoherenceCaches coherenceCaches,
+                                    @Value("${allergies.reactivite-croisee.seuil:0.05}") float seuil) {
+        this.reactiviteCroiseeRepository = reactiviteCroiseeRepository;
+        this.alimentRepository = alimentRepository;
+        this.coherenceCaches = coherenceCaches;
+        this.seuil = seuil;
+        this.fermeture = FermetureReactivite.vide(seuil);
+        coherenceCaches.enregistrer(CoherenceCaches.REACTIVITE, cle -> initialiser(), this::initialiser);
+    }
+
+    /**
+     * Fermeture courante, utilisée sur le chemin de requête
+     */
+    public FermetureReactivite getFermeture() {
+        return fermeture;
+    }
+    
+    /**
+     * Empreinte des arêtes actives (composante des ETag de vérification de risque)
+     */
+    public long getEmpreinte() {
+        return empreinte;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional(readOnly = true)
+    public void initialiser() {
+        List<FermetureReactivite.Arete> actives = reactiviteCroiseeRepository.findAretesActives().stream()
+                .map(ligne -> new FermetureReactivite.Arete(((Number) ligne[0]).longValue(),
+                        ((Number) ligne[1]).longValue(), ((BigDecimal) ligne[2]).floatValue()))
+                .toList();
+        synchronized (this) {
+            aretes.clear();
+            actives.forEach(arete -> aretes.put(couple(arete), arete.coefficient()));
+            recalculer();
+        }
+    }
+
+    @Transactional(readOnly = true)
+    public List<ReactiviteCroiseeResponse> lister() {
+        return reactiviteCroiseeRepository.findActivesAvecAliments().stream()
+                .map(this::mapReactivite)
+                .toList();
+    }
+
+    /**
+     * Crée (ou réactive) la réactivité croisée d'un couple d'aliments
+     */
+    public ReactiviteCroiseeResponse creer(ReactiviteCroiseeRequest request) {
+        if (request.getAlimentSourceId().equals(request.getAlimentCibleId())) {
+            throw new IllegalArgumentException("Une réactivité croisée relie deux aliments distincts");
+        }
+        Aliment a = alimentRepository.findById(Math.min(request.getAlimentSourceId(), request.getAlimentCibleId()))
+                .orElseThrow(() -> new RuntimeException("Aliment non trouvé"));
+        Aliment b = alimentRepository.findById(Math.max(request.getAlimentSourceId(), request.getAlimentCibleId()))
+                .orElseThrow(() -> new RuntimeException("Aliment non trouvé"));
+
+        ReactiviteCroisee reactivite = reactiviteCroiseeRepository.findByAlimentSourceAndAlimentCible(a, b)
+                .orElseGet(() -> ReactiviteCroisee.builder()
+                        .alimentSource(a)
+                        .alimentCible(b)
+                        .actif(false)
+                        .build());
+        BigDecimal ancien = Boolean.TRUE.equals(reactivite.getActif()) ? reactivite.getCoefficient() : BigDecimal.ZERO;
+        reactivite.setCoefficient(request.getCoefficient());
+        reactivite.setDescription(request.getDescription());
+        reactivite.setActif(true);
+        reactivite = reactiviteCroiseeRepository.save(reactivite);
+
+        log.info("Réactivité croisée {} ↔ {} : {}", a.getNom(), b.getNom(), request.getCoefficient());
+        mettreAJourApresCommit(reactivite, ancien);
+        return mapReactivite(reactivite);
+    }
+
+    /**
+     * Modifie le coefficient ou la description d'une réactivité croisée
+     */
+    public ReactiviteCroiseeResponse modifier(Long id, ReactiviteCroiseeRequest request) {
+        ReactiviteCroisee reactivite = reactiviteCroiseeRepository.findById(id)
+                .filter(r -> Boolean.TRUE.equals(r.getActif()))
+                .orElseThrow(() -> new RuntimeException("Réactivité croisée non trouvée"));
+        BigDecimal ancien = reactivite.getCoefficient();
+        reactivite.setCoefficient(request.getCoefficient());
+        reactivite.setDescription(request.getDescription());
+        reactivite = reactiviteCroiseeRepository.save(reactivite);
+
+        mettreAJourApresCommit(reactivite, ancien);
+        return mapReactivite(reactivite);
+    }
+
+    /**
+     * Désactive une réactivité croisée
+     */
+    public void supprimer(Long id) {
+        ReactiviteCroisee reactivite = reactiviteCroiseeRepository.findById(id)
+                .filter(r -> Boolean.TRUE.equals(r.getActif()))
+                .orElseThrow(() -> new RuntimeException("Réactivité croisée non trouvée"));
+        reactivite.setActif(false);
+        reactiviteCroiseeRepository.save(reactivite);
+        FermetureReactivite.Arete arete = arete(reactivite);
+        apresCommit(() -> retirer(arete));
+        coherenceCaches.diffuserApresCommit(CoherenceCaches.REACTIVITE, null);
+    }
+
+    /**
+     * Aliments reliés (directement ou transitivement) à un aliment, avec le coefficient de la fermeture
+     */
+    @Transactional(readOnly = true)
+    public List<ReactiviteCroiseeResponse> getAlimentsRelies(Long alimentId) {
+        Aliment aliment = alimentRepository.findById(alimentId)
+                .orElseThrow(() -> new RuntimeException("Aliment non trouvé"));
+        FermetureReactivite.AlimentsRelies relies = fermeture.relies(alimentId);
+
+        List<Long> ids = new ArrayList<>(relies.taille());
+        for (long id : relies.alimentIds()) ids.add(id);
+        Map<Long, Aliment> aliments = alimentRepository.findAllById(ids).stream()
+                .collect(Collectors.toMap(Aliment::getId, Function.identity()));
+
+        List<ReactiviteCroiseeResponse> resultat = new ArrayList<>(relies.taille());
+        for (int i = 0; i < relies.taille(); i++) {
+            Aliment relie = aliments.get(relies.alimentIds()[i]);
+            resultat.add(ReactiviteCroiseeResponse.builder()
+                    .alimentSourceId(aliment.getId())
+                    .nomAlimentSource(aliment.getNom())
+                    .alimentCibleId(relies.alimentIds()[i])
+                    .nomAlimentCible(relie == null ? null : relie.getNom())
+                    .coefficient(coefficient(relies.coefficients()[i]))
+                    .build());
+        }
+        return resultat;
+    }
+
+    private void mettreAJourApresCommit(ReactiviteCroisee reactivite, BigDecimal ancien) {
+        FermetureReactivite.Arete arete = arete(reactivite);
+        apresCommit(() -> appliquer(arete, reactivite.getCoefficient().compareTo(ancien) >= 0));
+        coherenceCaches.diffuserApresCommit(CoherenceCaches.REACTIVITE, null);
+    }
+
+    /**
+     * Un renforcement s'intègre incrémentalement ; un affaiblissement peut invalider des chemins
+     * et impose un recalcul complet
+     */
+    private synchronized void appliquer(FermetureReactivite.Arete arete, boolean renforcement) {
+        aretes.put(couple(arete), arete.coefficient());
+        empreinte = aretes.hashCode();
+        if (renforcement) {
+            fermeture = fermeture.avecArete(arete);
+            log.debug("Fermeture de réactivité mise à jour ({} aliments)", fermeture.nombreAliments());
+        } else {
+            recalculer();
+        }
+    }
+
+    private synchronized void retirer(FermetureReactivite.Arete arete) {
+        aretes.remove(couple(arete));
+        recalculer();
+    }
+
+    private void recalculer() {
+        long debut = System.nanoTime();
+        List<FermetureReactivite.Arete> liste = aretes.entrySet().stream()
+                .map(e -> new FermetureReactivite.Arete(e.getKey().get(0), e.getKey().get(1), e.getValue()))
+                .toList();
+        fermeture = FermetureReactivite.calculer(liste, seuil);
+        empreinte = aretes.hashCode();
+        log.info("Fermeture de réactivité croisée calculée: {} arêtes, {} aliments en {} ms",
+                liste.size(), fermeture.nombreAliments(), (System.nanoTime() - debut) / 1_000_000);
+    }
+
+    private static FermetureReactivite.Arete arete(ReactiviteCroisee reactivite) {
+        return new FermetureReactivite.Arete(reactivite.getAlimentSource().getId(),
+                reactivite.getAlimentCible().getId(), reactivite.getCoefficient().floatValue());
+    }
+
+    private static List<Long> couple(FermetureReactivite.Arete arete) {
+        return List.of(Math.min(arete.alimentA(), arete.alimentB()), Math.max(arete.alimentA(), arete.alimentB()));
+    }
+
+    private void apresCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+
+    private ReactiviteCroiseeResponse mapReactivite(ReactiviteCroisee reactivite) {
+        return ReactiviteCroiseeResponse.builder()
+                .id(reactivite.getId())
+                .alimentSourceId(reactivite.getAlimentSource().getId())
+                .nomAlimentSource(reactivite.getAlimentSource().getNom())
+                .alimentCibleId(reactivite.getAlimentCible().getId())
+                .nomAlimentCible(reactivite.getAlimentCible().getNom())
+                .coefficient(reactivite.getCoefficient())
+                .description(reactivite.getDescription())
+                .build();
+    }
+
+    static BigDecimal coefficient(float valeur) {
+        return BigDecimal.valueOf(valeur).setScale(3, RoundingMode.HALF_UP);
+    }
+}
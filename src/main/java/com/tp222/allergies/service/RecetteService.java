@@ -0,0 +1,375 @@
+package com.tp222.allergies.service;
+
+import com.tp222.allergies.model.dto.request.RecetteRequest;
+import com.tp222.allergies.model.dto.response.RecetteResponse;
+import com.tp222.allergies.model.dto.response.SecuriteRecetteResponse;
+import com.tp222.allergies.model.entity.AllergieUtilisateur;
+import com.tp222.allergies.model.entity.Aliment;
+import com.tp222.allergies.model.entity.IngredientRecette;
+import com.tp222.allergies.model.entity.Recette;
+import com.tp222.allergies.model.entity.Utilisateur;
+import com.tp222.allergies.repository.AlimentRepository;
+import com.tp222.allergies.repository.AllergieUtilisateurRepository;
+import com.tp222.allergies.repository.ReactionAllergiqueRepository;
+import com.tp222.allergies.repository.RecetteRepository;
+import com.tp222.allergies.repository.UtilisateurRepository;
+import com.tp222.allergies.service.sharding.RoutageShards;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Service de gestion des recettes.
+ *
+ * Les ingrédients sont analysés et rattachés aux aliments du catalogue une seule fois, à
+ * l'écriture ; le profil allergénique (recettes_allergenes) et les totaux nutritionnels sont
+ * matérialisés sur la recette. Les requêtes de sécurité et de calories ne lisent que ces
+ * colonnes, sans réanalyser le texte ; la recherche de recettes sûres passe par IndexRecettes.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+@Transactional
+public class RecetteService {
+
+    private static final BigDecimal CENT = BigDecimal.valueOf(100);
+
+    private final RecetteRepository recetteRepository;
+    private final AlimentRepository alimentRepository;
+    private final UtilisateurRepository utilisateurRepository;
+    private final AllergieUtilisateurRepository allergieUtilisateurRepository;
+    private final ReactionAllergiqueRepository reactionAllergiqueRepository;
+    private final IndexRecettes indexRecettes;
+    private final RoutageShards routageShards;
+
+    /**
+     * Ce qu'un utilisateur doit éviter : allergènes normalisés et aliments ayant déjà
+     * provoqué une réaction allergique
+     */
+    public record ProfilExclusion(Set<String> allergenes, Set<Long> alimentIds) {
+
+        public boolean estVide() {
+            return allergenes.isEmpty() && alimentIds.isEmpty();
+        }
+    }
+
+    public RecetteResponse creer(RecetteRequest request) {
+        Recette recette = new Recette();
+        appliquer(recette, request);
+        recette = recetteRepository.save(recette);
+        indexRecettes.indexerApresCommit(recette);
+        log.info("Recette créée: {} ({} allergènes, {} ingrédients non reconnus)",
+                recette.getNom(), recette.getAllergenes().size(), recette.getIngredientsNonReconnus());
+        return mapRecette(recette, true);
+    }
+
+    public RecetteResponse modifier(Long id, RecetteRequest request) {
+        Recette recette = recetteRepository.findByIdAndActifTrue(id)
+                .orElseThrow(() -> new RuntimeException("Recette non trouvée"));
+        appliquer(recette, request);
+        recette = recetteRepository.save(recette);
+        indexRecettes.indexerApresCommit(recette);
+        return mapRecette(recette, true);
+    }
+
+    public void supprimer(Long id) {
+        Recette recette = recetteRepository.findByIdAndActifTrue(id)
+                .orElseThrow(() -> new RuntimeException("Recette non trouvée"));
+        recette.setActif(false);
+        indexRecettes.indexerApresCommit(recetteRepository.save(recette));
+    }
+
+    @Transactional(readOnly = true)
+    public RecetteResponse getRecette(Long id) {
+        return recetteRepository.findByIdAndActifTrue(id)
+                .map(recette -> mapRecette(recette, true))
+                .orElseThrow(() -> new RuntimeException("Recette non trouvée"));
+    }
+
+    @Transactional(readOnly = true)
+    public List<RecetteResponse> lister(BigDecimal caloriesMax) {
+        List<Recette> recettes = caloriesMax == null
+                ? recetteRepository.findByActifTrueOrderByNom()
+                : recetteRepository.findByActifTrueAndCaloriesParPortionLessThanEqualOrderByCaloriesParPortion(caloriesMax);
+        return recettes.stream().map(recette -> mapRecette(recette, false)).toList();
+    }
+
+    /**
+     * Vérifie une recette pour un utilisateur à partir du profil matérialisé
+     */
+    @Transactional(readOnly = true)
+    public SecuriteRecetteResponse verifierSecurite(Long recetteId, Long utilisateurId) {
+        Recette recette = recetteRepository.findByIdAndActifTrue(recetteId)
+                .orElseThrow(() -> new RuntimeException("Recette non trouvée"));
+        ProfilExclusion profil = getProfilExclusion(utilisateurId);
+
+        List<String> allergenesEnCause = recette.getAllergenes().stream()
+                .filter(profil.allergenes()::contains)
+                .sorted()
+                .toList();
+        List<String> alimentsEnCause = recette.getIngredientsLies().stream()
+                .filter(i -> i.getAliment() != null && profil.alimentIds().contains(i.getAliment().getId()))
+                .map(i -> i.getAliment().getNom())
+                .distinct()
+                .toList();
+
+        return SecuriteRecetteResponse.builder()
+                .recetteId(recette.getId())
+                .nomRecette(recette.getNom())
+                .utilisateurId(utilisateurId)
+                .sure(alimentsEnCause.isEmpty() && recette.isSafeForUser(profil.allergenes()))
+                .allergenesEnCause(allergenesEnCause)
+                .alimentsEnCause(alimentsEnCause)
+                .ingredientsNonReconnus(recette.getIngredientsNonReconnus())
+                .build();
+    }
+
+    /**
+     * Recettes sûres pour un utilisateur, par soustraction de bitmaps sur l'index inversé ;
+     * seules les recettes de la page demandée sont chargées
+     */
+    @Transactional(readOnly = true)
+    public Page<RecetteResponse> rechercherRecettesSures(Long utilisateurId, IndexRecettes.Criteres criteres, Pageable pageable) {
+        ProfilExclusion profil = getProfilExclusion(utilisateurId);
+        IndexRecettes.Resultat resultat = indexRecettes.rechercher(profil.allergenes(), profil.alimentIds(),
+                criteres, pageable.getPageNumber(), pageable.getPageSize());
+
+        Map<Long, Recette> recettes = recetteRepository.findAllById(resultat.recetteIds()).stream()
+                .collect(Collectors.toMap(Recette::getId, Function.identity()));
+        List<RecetteResponse> contenu = resultat.recetteIds().stream()
+                .map(recettes::get)
+                .filter(Objects::nonNull)
+                .map(recette -> mapRecette(recette, false))
+                .toList();
+        return new PageImpl<>(contenu, pageable, resultat.total());
+    }
+
+    /**
+     * Profil d'exclusion d'un utilisateur : chaque allergie active est rapprochée du catalogue
+     * des allergènes présents dans les recettes indexées ("Allergie au lait de vache" exclut "lait").
+     * Les recettes sont sur le shard principal, le profil est lu sur le shard de l'utilisateur.
+     */
+    @Transactional(readOnly = true)
+    public ProfilExclusion getProfilExclusion(Long utilisateurId) {
+        return routageShards.lirePourUtilisateur(utilisateurId, () -> lireProfilExclusion(utilisateurId));
+    }
+
+    private ProfilExclusion lireProfilExclusion(Long utilisateurId) {
+        Utilisateur utilisateur = utilisateurRepository.findById(utilisateurId)
+                .orElseThrow(() -> new RuntimeException("Utilisateur non trouvé"));
+
+        Set<String> catalogue = indexRecettes.getAllergenes();
+        Set<String> allergenes = new LinkedHashSet<>();
+        for (AllergieUtilisateur allergieUtilisateur : allergieUtilisateurRepository.findByUtilisateurAndActifTrue(utilisateur)) {
+            String objet = Allergenes.depuisNomAllergie(allergieUtilisateur.getAllergie().getNom());
+            if (objet.isEmpty()) continue;
+            allergenes.add(objet);
+            allergenes.addAll(Allergenes.concernes(objet, catalogue));
+        }
+
+        Set<Long> alimentIds = Set.copyOf(reactionAllergiqueRepository.findAlimentIdsAllergiques(utilisateurId));
+
+        return new ProfilExclusion(allergenes, alimentIds);
+    }
+
+    /**
+     * Copie les champs de la requête, rattache les ingrédients et matérialise le profil
+     */
+    private void appliquer(Recette recette, RecetteRequest request) {
+        recette.setNom(request.getNom());
+        recette.setDescription(request.getDescription());
+        recette.setInstructions(request.getInstructions());
+        recette.setTempsPreparation(request.getTempsPreparation());
+        recette.setTempsCuisson(request.getTempsCuisson());
+        recette.setNombrePortions(request.getNombrePortions());
+        recette.setNiveauDifficulte(request.getNiveauDifficulte());
+        recette.setTypeCuisine(request.getTypeCuisine());
+        recette.setImageUrl(request.getImageUrl());
+
+        List<IngredientRecette> ingredients = request.getIngredientsStructures() != null
+                && !request.getIngredientsStructures().isEmpty()
+                ? ingredientsStructures(recette, request.getIngredientsStructures())
+                : ingredientsAnalyses(recette, request.getIngredients());
+        if (ingredients.isEmpty()) {
+            throw new IllegalArgumentException("La recette doit contenir au moins un ingrédient");
+        }
+        recette.setIngredients(request.getIngredients() != null && !request.getIngredients().isBlank()
+                ? request.getIngredients()
+                : ingredients.stream().map(IngredientRecette::getLibelle).collect(Collectors.joining("\n")));
+
+        // orphanRemoval : la collection gérée est vidée puis remplie, jamais remplacée
+        recette.getIngredientsLies().clear();
+        recette.getIngredientsLies().addAll(ingredients);
+        materialiser(recette);
+    }
+
+    private List<IngredientRecette> ingredientsStructures(Recette recette, List<RecetteRequest.IngredientRequest> requetes) {
+        Map<Long, Aliment> aliments = alimentRepository.findAllById(
+                        requetes.stream().map(RecetteRequest.IngredientRequest::getAlimentId).toList()).stream()
+                .collect(Collectors.toMap(Aliment::getId, Function.identity()));
+        List<IngredientRecette> ingredients = new ArrayList<>(requetes.size());
+        for (RecetteRequest.IngredientRequest requete : requetes) {
+            Aliment aliment = aliments.get(requete.getAlimentId());
+            if (aliment == null) {
+                throw new RuntimeException("Aliment non trouvé");
+            }
+            ingredients.add(IngredientRecette.builder()
+                    .recette(recette)
+                    .aliment(aliment)
+                    .libelle(requete.getLibelle() != null ? requete.getLibelle() : aliment.getNom())
+                    .quantiteGrammes(requete.getQuantiteGrammes())
+                    .ordre(ingredients.size())
+                    .build());
+        }
+        return ingredients;
+    }
+
+    private List<IngredientRecette> ingredientsAnalyses(Recette recette, String texte) {
+        List<AnalyseurIngredients.LigneIngredient> lignes = AnalyseurIngredients.analyser(texte);
+        if (lignes.isEmpty()) {
+            return List.of();
+        }
+        Map<String, Aliment> index = indexAliments();
+        List<IngredientRecette> ingredients = new ArrayList<>(lignes.size());
+        for (AnalyseurIngredients.LigneIngredient ligne : lignes) {
+            ingredients.add(IngredientRecette.builder()
+                    .recette(recette)
+                    .aliment(rapprocher(ligne.nom(), index))
+                    .libelle(ligne.libelle())
+                    .quantiteGrammes(ligne.quantiteGrammes())
+                    .ordre(ingredients.size())
+                    .build());
+        }
+        return ingredients;
+    }
+
+    private Map<String, Aliment> indexAliments() {
+        Map<String, Aliment> index = new HashMap<>();
+        for (Aliment aliment : alimentRepository.findByActifTrue()) {
+            index.putIfAbsent(Allergenes.normaliser(aliment.getNom()), aliment);
+        }
+        return index;
+    }
+
+    /**
+     * Rapproche un nom d'ingrédient d'un aliment : égalité de la forme normalisée, sinon
+     * inclusion mot pour mot dans un sens ou dans l'autre ("farine de blé" -> "blé"),
+     * en retenant le nom de longueur la plus proche
+     */
+    static Aliment rapprocher(String nom, Map<String, Aliment> index) {
+        String normalise = Allergenes.normaliser(nom);
+        if (normalise.isEmpty()) return null;
+        Aliment exact = index.get(normalise);
+        if (exact != null) return exact;
+
+        String ingredient = " " + normalise + " ";
+        Aliment meilleur = null;
+        int meilleurEcart = Integer.MAX_VALUE;
+        for (Map.Entry<String, Aliment> entree : index.entrySet()) {
+            String terme = " " + entree.getKey() + " ";
+            if (ingredient.contains(terme) || terme.contains(ingredient)) {
+                int ecart = Math.abs(terme.length() - ingredient.length());
+                if (ecart < meilleurEcart) {
+                    meilleur = entree.getValue();
+                    meilleurEcart = ecart;
+                }
+            }
+        }
+        return meilleur;
+    }
+
+    /**
+     * Recalcule les colonnes matérialisées à partir des ingrédients rattachés
+     */
+    private void materialiser(Recette recette) {
+        Set<String> allergenes = new TreeSet<>();
+        BigDecimal poids = BigDecimal.ZERO;
+        BigDecimal calories = BigDecimal.ZERO;
+        BigDecimal proteines = BigDecimal.ZERO;
+        BigDecimal glucides = BigDecimal.ZERO;
+        BigDecimal lipides = BigDecimal.ZERO;
+        int nonReconnus = 0;
+
+        for (IngredientRecette ingredient : recette.getIngredientsLies()) {
+            Aliment aliment = ingredient.getAliment();
+            if (aliment == null) {
+                nonReconnus++;
+                continue;
+            }
+            allergenes.addAll(Allergenes.extraire(aliment.getAllergenesPotentiels()));
+            BigDecimal grammes = ingredient.getQuantiteGrammes();
+            if (grammes == null) continue;
+            poids = poids.add(grammes);
+            calories = calories.add(pourQuantite(aliment.getCalories(), grammes));
+            proteines = proteines.add(pourQuantite(aliment.getProteines(), grammes));
+            glucides = glucides.add(pourQuantite(aliment.getGlucides(), grammes));
+            lipides = lipides.add(pourQuantite(aliment.getLipides(), grammes));
+        }
+
+        recette.getAllergenes().clear();
+        recette.getAllergenes().addAll(allergenes);
+        recette.setAllergenesPresents(allergenes.isEmpty() ? null : String.join(", ", allergenes));
+        recette.setIngredientsNonReconnus(nonReconnus);
+        recette.setPoidsTotalGrammes(poids.setScale(2, RoundingMode.HALF_UP));
+        recette.setCaloriesTotales(calories.setScale(2, RoundingMode.HALF_UP));
+        recette.setProteinesTotales(proteines.setScale(2, RoundingMode.HALF_UP));
+        recette.setGlucidesTotaux(glucides.setScale(2, RoundingMode.HALF_UP));
+        recette.setLipidesTotaux(lipides.setScale(2, RoundingMode.HALF_UP));
+        int portions = recette.getNombrePortions() != null ? recette.getNombrePortions() : 1;
+        recette.setCaloriesParPortion(calories.divide(BigDecimal.valueOf(portions), 2, RoundingMode.HALF_UP));
+    }
+
+    // Valeurs nutritionnelles du catalogue exprimées pour 100 g
+    private static BigDecimal pourQuantite(BigDecimal valeurPour100g, BigDecimal grammes) {
+        if (valeurPour100g == null) return BigDecimal.ZERO;
+        return valeurPour100g.multiply(grammes).divide(CENT, 4, RoundingMode.HALF_UP);
+    }
+
+    private RecetteResponse mapRecette(Recette recette, boolean avecIngredients) {
+        return RecetteResponse.builder()
+                .id(recette.getId())
+                .nom(recette.getNom())
+                .description(recette.getDescription())
+                .instructions(recette.getInstructions())
+                .tempsPreparation(recette.getTempsPreparation())
+                .tempsCuisson(recette.getTempsCuisson())
+                .tempsTotal(recette.getTempsTotal())
+                .nombrePortions(recette.getNombrePortions())
+                .niveauDifficulte(recette.getNiveauDifficulte())
+                .typeCuisine(recette.getTypeCuisine())
+                .imageUrl(recette.getImageUrl())
+                .allergenes(recette.getAllergenes().stream().sorted().toList())
+                .caloriesParPortion(recette.getCaloriesParPortion())
+                .poidsTotalGrammes(recette.getPoidsTotalGrammes())
+                .caloriesTotales(recette.getCaloriesTotales())
+                .proteinesTotales(recette.getProteinesTotales())
+                .glucidesTotaux(recette.getGlucidesTotaux())
+                .lipidesTotaux(recette.getLipidesTotaux())
+                .ingredientsNonReconnus(recette.getIngredientsNonReconnus())
+                .ingredients(avecIngredients ? recette.getIngredientsLies().stream()
+                        .map(i -> RecetteResponse.IngredientInfo.builder()
+                                .libelle(i.getLibelle())
+                                .alimentId(i.getAliment() != null ? i.getAliment().getId() : null)
+                                .nomAliment(i.getAliment() != null ? i.getAliment().getNom() : null)
+                                .quantiteGrammes(i.getQuantiteGrammes())
+                                .build())
+                        .toList() : null)
+                .build();
+    }
+}
@@ -0,0 +1,514 @@
+package com.tp222.allergies.service;
+
+import com.tp222.allergies.model.dto.response.ProgressionRescoringResponse;
+import com.tp222.allergies.model.entity.ChunkRescoring;
+import com.tp222.allergies.model.entity.JobRescoring;
+import com.tp222.allergies.model.entity.ReactionAllergique;
+import com.tp222.allergies.repository.ChunkRescoringRepository;
+import com.tp222.allergies.repository.JobRescoringRepository;
+import com.tp222.allergies.repository.ReactionAllergiqueRepository;
+import com.tp222.allergies.repository.UtilisateurRepository;
+import com.tp222.allergies.service.scoring.FacteursProbabilite;
+import com.tp222.allergies.service.scoring.RiskModel;
+import com.tp222.allergies.service.scoring.RiskModelRegistry;
+import com.tp222.allergies.service.sharding.RoutageShards;
+import com.tp222.allergies.service.sharding.ScatterGather;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Job de re-scoring : recalcule probabiliteAllergie de toutes les réactions avec la version
+ * courante de l'algorithme.
+ *
+ * Les réactions sont découpées en plages d'identifiants (chunks) persistées ; chaque chunk est
+ * traité et marqué terminé dans la même transaction, ce qui sert de point de reprise après un
+ * arrêt. Plusieurs workers se partagent les chunks, et un débit maximal global protège le trafic
+ * transactionnel. Une réaction dont le nouveau score franchit le seuil relance la détection, dans
+ * sa propre transaction après le commit du chunk ; un arrêt entre les deux perd ces détections,
+ * que la prochaine réaction de l'utilisateur à l'aliment relancera.
+ *
+ * Avec le sharding, les chunks sont découpés dans les identifiants de chaque shard et recalculés
+ * dans une transaction sur ce shard ; le job et ses chunks restent sur le principal, où le chunk
+ * est marqué terminé juste après. Un arrêt entre les deux fait recalculer le chunk à la reprise,
+ * sans autre effet qu'une incrémentation de plus des versions de données.
+ *
+ * Plusieurs instances peuvent exécuter le même job (reprise après un redémarrage progressif) :
+ * chaque chunk est réservé par un UPDATE conditionnel avant d'être traité, avec un bail. Seule
+ * l'instance qui détient la réservation le marque terminé et compte son avancement ; un chunk
+ * dont le bail expire (instance arrêtée) est repris par la recherche périodique des jobs en cours.
+ */
+@Service
+@Slf4j
+public class RescoringService {
+    
+    private static final int TAILLE_LOT_CHUNKS = 1000;
+    
+    private final ReactionAllergiqueRepository reactionAllergiqueRepository;
+    private final JobRescoringRepository jobRescoringRepository;
+    private final ChunkRescoringRepository chunkRescoringRepository;
+    private final UtilisateurRepository utilisateurRepository;
+    private final AllergieService allergieService;
+    private final ReactionsRecentes reactionsRecentes;
+    private final RiskModelRegistry riskModelRegistry;
+    private final RoutageShards routageShards;
+    private final ScatterGather scatterGather;
+    private final TransactionTemplate transactionTemplate;
+    
+    private final int tailleChunkDefaut;
+    private final int nombreWorkers;
+    private final long nsParReaction;
+    private final long bailChunkSecondes;
+    // Propriétaire des chunks réservés par cette instance
+    private final String proprietaire = UUID.randomUUID().toString();
+    
+    private final ExecutorService workers;
+    private final Map<Long, Execution> executions = new ConcurrentHashMap<>();
+    
+    public RescoringService(ReactionAllergiqueRepository reactionAllergiqueRepository,
+                            JobRescoringRepository jobRescoringRepository,
+                            ChunkRescoringRepository chunkRescoringRepository,
+                            UtilisateurRepository utilisateurRepository,
+                            AllergieService allergieService,
+                            ReactionsRecentes reactionsRecentes,
+                            RiskModelRegistry riskModelRegistry,
+                            RoutageShards routageShards,
+                            ScatterGather scatterGather,
+                            PlatformTransactionManager transactionManager,
+                            @Value("${allergies.rescoring.taille-chunk:1000}") int tailleChunkDefaut,
+                            @Value("${allergies.rescoring.workers:4}") int nombreWorkers,
+                            @Value("${allergies.rescoring.debit-max-par-seconde:5000}") int debitMaxParSeconde,
+                            @Value("${allergies.rescoring.bail-chunk-secondes:600}") long bailChunkSecondes) {
+        this.reactionAllergiqueRepository = reactionAllergiqueRepository;
+        this.jobRescoringRepository = jobRescoringRepository;
+        this.chunkRescoringRepository = chunkRescoringRepository;
+        this.utilisateurRepository = utilisateurRepository;
+        this.allergieService = allergieService;
+        this.reactionsRecentes = reactionsRecentes;
+        this.riskModelRegistry = riskModelRegistry;
+        this.routageShards = routageShards;
+        this.scatterGather = scatterGather;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.tailleChunkDefaut = tailleChunkDefaut;
+        this.nombreWorkers = nombreWorkers;
+        this.nsParReaction = TimeUnit.SECONDS.toNanos(1) / Math.max(1, debitMaxParSeconde);
+        this.bailChunkSecondes = Math.max(1, bailChunkSecondes);
+        this.workers = Executors.newFixedThreadPool(nombreWorkers, r -> {
+            Thread t = new Thread(r, "rescoring-worker");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+    
+    /**
+     * Crée un job couvrant toutes les réactions existantes et le démarre
+     */
+    public ProgressionRescoringResponse demarrer(Integer tailleChunk) {
+        int taille = tailleChunk != null && tailleChunk > 0 ? tailleChunk : tailleChunkDefaut;
+        
+        // Bornes des identifiants de chaque shard, lues avant la transaction du job (sur le principal)
+        Map<String, Object[]> bornesParShard = new LinkedHashMap<>();
+        if (routageShards.isActif()) {
+            scatterGather.surTousLesShards(() -> reactionAllergiqueRepository.findBornesIds().get(0))
+                    .forEach(bornesParShard::put);
+        }
+        
+        JobRescoring job = transactionTemplate.execute(status -> {
+            if (!routageShards.isActif()) {
+                bornesParShard.put(null, reactionAllergiqueRepository.findBornesIds().get(0));
+            }
+            long idMin = Long.MAX_VALUE;
+            long idMax = -1L;
+            int nombreChunks = 0;
+            for (Object[] bornes : bornesParShard.values()) {
+                if (bornes[0] == null) continue;
+                long debut = ((Number) bornes[0]).longValue();
+                long fin = ((Number) bornes[1]).longValue();
+                idMin = Math.min(idMin, debut);
+                idMax = Math.max(idMax, fin);
+                nombreChunks += (int) ((fin - debut) / taille + 1);
+            }
+            if (idMax < 0) idMin = 0L;
+            
+            JobRescoring nouveau = jobRescoringRepository.save(JobRescoring.builder()
+                    .algorithmeVersion(allergieService.getVersionAlgorithme())
+                    .statut(nombreChunks == 0 ? "TERMINE" : "EN_COURS")
+                    .idMin(idMin)
+                    .idMax(idMax)
+                    .tailleChunk(taille)
+                    .nombreChunks(nombreChunks)
+                    .build());
+            
+            List<ChunkRescoring> lot = new ArrayList<>(TAILLE_LOT_CHUNKS);
+            for (Map.Entry<String, Object[]> bornes : bornesParShard.entrySet()) {
+                if (bornes.getValue()[0] == null) continue;
+                long fin = ((Number) bornes.getValue()[1]).longValue();
+                for (long debut = ((Number) bornes.getValue()[0]).longValue(); debut <= fin; debut += taille) {
+                    lot.add(ChunkRescoring.builder()
+                            .jobId(nouveau.getId())
+                            .shard(bornes.getKey())
+                            .debutId(debut)
+                            .finId(debut + taille)
+                            .build());
+                    if (lot.size() == TAILLE_LOT_CHUNKS) {
+                        chunkRescoringRepository.saveAll(lot);
+                        lot.clear();
+                    }
+                }
+            }
+            chunkRescoringRepository.saveAll(lot);
+            return nouveau;
+        });
+        
+        log.info("Job de re-scoring {} créé: version {}, {} chunks de {} réactions",
+                job.getId(), job.getAlgorithmeVersion(), job.getNombreChunks(), taille);
+        if (job.isEnCours()) {
+            lancer(job.getId());
+        }
+        return getProgression(job.getId());
+    }
+    
+    /**
+     * Reprend les jobs interrompus (arrêt ou crash) au démarrage de l'application, puis
+     * périodiquement pour les chunks dont le bail a expiré ; les instances qui reprennent le même
+     * job s'en partagent les chunks par réservation
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(initialDelayString = "${allergies.rescoring.reprise-ms:60000}",
+               fixedDelayString = "${allergies.rescoring.reprise-ms:60000}")
+    public void reprendreJobsInterrompus() {
+        for (JobRescoring job : jobRescoringRepository.findByStatut("EN_COURS")) {
+            if (executions.containsKey(job.getId())) continue;
+            List<ChunkRescoring> chunks = chunkRescoringRepository.findReservables(job.getId(), LocalDateTime.now());
+            if (chunks.isEmpty()) {
+                terminerSiComplet(job.getId());
+                continue;
+            }
+            log.info("Reprise du job de re-scoring {} ({}/{} chunks déjà traités)",
+                    job.getId(), job.getChunksTermines(), job.getNombreChunks());
+            lancer(job.getId(), chunks);
+        }
+    }
+    
+    /**
+     * Relance un job en cours s'il n'est pas déjà exécuté par cette instance
+     */
+    public ProgressionRescoringResponse reprendre(Long jobId) {
+        JobRescoring job = jobRescoringRepository.findById(jobId)
+                .orElseThrow(() -> new RuntimeException("Job de re-scoring non trouvé"));
+        if (job.isEnCours()) {
+            lancer(jobId);
+        }
+        return getProgression(jobId);
+    }
+    
+    public ProgressionRescoringResponse annuler(Long jobId) {
+        Execution execution = executions.get(jobId);
+        if (execution != null) {
+            execution.annule = true;
+        }
+        transactionTemplate.executeWithoutResult(status -> jobRescoringRepository.findById(jobId)
+                .filter(JobRescoring::isEnCours)
+                .ifPresent(job -> {
+                    job.setStatut("ANNULE");
+                    job.setDateFin(LocalDateTime.now());
+                }));
+        return getProgression(jobId);
+    }
+    
+    public ProgressionRescoringResponse getProgression(Long jobId) {
+        JobRescoring job = jobRescoringRepository.findById(jobId)
+                .orElseThrow(() -> new RuntimeException("Job de re-scoring non trouvé"));
+        Execution execution = executions.get(jobId);
+        
+        double debit = 0.0;
+        Long eta = null;
+        if (execution != null && execution.chunksTraites.get() > 0) {
+            double secondes = (System.nanoTime() - execution.debutNs) / 1e9;
+            debit = execution.reactionsTraitees.get() / secondes;
+            int restants = job.getNombreChunks() - job.getChunksTermines();
+            eta = (long) (restants * secondes / execution.chunksTraites.get());
+        }
+        
+        return ProgressionRescoringResponse.builder()
+                .jobId(job.getId())
+                .algorithmeVersion(job.getAlgorithmeVersion())
+                .statut(job.getStatut())
+                .nombreChunks(job.getNombreChunks())
+                .chunksTermines(job.getChunksTermines())
+                .pourcentage(job.getNombreChunks() == 0 ? 100.0
+                        : 100.0 * job.getChunksTermines() / job.getNombreChunks())
+                .reactionsTraitees(job.getReactionsTraitees())
+                .allergiesDetectees(job.getAllergiesDetectees())
+                .debitReactionsParSeconde(debit)
+                .etaSecondes(job.isEnCours() ? eta : Long.valueOf(0))
+                .dateCreation(job.getDateCreation())
+                .dateFin(job.getDateFin())
+                .messageErreur(job.getMessageErreur())
+                .build();
+    }
+    
+    private void lancer(Long jobId) {
+        lancer(jobId, chunkRescoringRepository.findReservables(jobId, LocalDateTime.now()));
+    }
+    
+    private void lancer(Long jobId, List<ChunkRescoring> chunks) {
+        Execution execution = new Execution(jobId, chunks);
+        if (executions.putIfAbsent(jobId, execution) != null) {
+            log.info("Le job de re-scoring {} est déjà en cours d'exécution", jobId);
+            return;
+        }
+        for (int i = 0; i < nombreWorkers; i++) {
+            workers.execute(() -> executerWorker(execution));
+        }
+    }
+    
+    private void executerWorker(Execution execution) {
+        try {
+            int index;
+            while (!execution.annule && (index = execution.prochainChunk.getAndIncrement()) < execution.chunks.size()) {
+                ChunkRescoring chunk = execution.chunks.get(index);
+                if (!reserver(chunk)) {
+                    continue; // traité ou réservé par une autre instance, ou job annulé
+                }
+                int traitees = traiterChunk(execution.jobId, chunk);
+                execution.reactionsTraitees.addAndGet(traitees);
+                execution.chunksTraites.incrementAndGet();
+                limiterDebit(execution, traitees);
+            }
+        } catch (RuntimeException e) {
+            execution.annule = true;
+            log.error("Échec du job de re-scoring {}: {}", execution.jobId, e.getMessage(), e);
+            transactionTemplate.executeWithoutResult(status -> jobRescoringRepository.findById(execution.jobId)
+                    .ifPresent(job -> {
+                        job.setStatut("ECHEC");
+                        job.setMessageErreur(e.getMessage());
+                        job.setDateFin(LocalDateTime.now());
+                    }));
+        } finally {
+            if (execution.workersActifs.decrementAndGet() == 0) {
+                terminer(execution);
+            }
+        }
+    }
+    
+    /**
+     * Recalcule un chunk et enregistre le point de reprise (dans la même transaction sans sharding),
+     * puis relance la détection pour les réactions qui franchissent le seuil
+     * @return nombre de réactions recalculées
+     */
+    private int traiterChunk(Long jobId, ChunkRescoring chunk) {
+        List<Long> franchissements = new ArrayList<>();
+        int traitees;
+        if (chunk.getShard() == null) {
+            Integer recalculees = transactionTemplate.execute(status -> {
+                int n = recalculer(chunk, franchissements);
+                if (!marquerTermine(jobId, chunk, n, franchissements.size())) {
+                    status.setRollbackOnly();
+                    return null;
+                }
+                return n;
+            });
+            if (recalculees == null) {
+                log.warn("Chunk {} du job de re-scoring {} repris par une autre instance (bail expiré), annulé ici",
+                        chunk.getId(), jobId);
+                return 0;
+            }
+            traitees = recalculees;
+        } else {
+            int recalculees = surShardDuChunk(chunk,
+                    () -> transactionTemplate.execute(status -> recalculer(chunk, franchissements)));
+            // Réservation perdue : le recalcul est déjà commité sur le shard, seul l'avancement n'est pas compté.
+            // Les détections sont lancées quand même : la reprise ne verra plus ces franchissements
+            if (!transactionTemplate.execute(status -> marquerTermine(jobId, chunk, recalculees, franchissements.size()))) {
+                log.warn("Chunk {} du job de re-scoring {} repris par une autre instance (bail expiré)",
+                        chunk.getId(), jobId);
+            }
+            traitees = recalculees;
+        }
+        
+        // Une transaction courte par détection, sur le shard des réactions, après le commit du chunk :
+        // aucun verrou d'utilisateur ou d'aliment n'est tenu pendant le reste du chunk
+        for (Long reactionId : franchissements) {
+            try {
+                surShardDuChunk(chunk, () -> {
+                    allergieService.detecterAllergiePourReaction(reactionId);
+                    return null;
+                });
+            } catch (RuntimeException e) {
+                log.error("Détection en échec pour la réaction {} (job de re-scoring {}): {}",
+                        reactionId, jobId, e.getMessage());
+            }
+        }
+        return traitees;
+    }
+    
+    /**
+     * Recalcule les réactions d'un chunk dans la transaction courante
+     * @param franchissements reçoit les réactions dont le nouveau score franchit le seuil
+     */
+    private int recalculer(ChunkRescoring chunk, List<Long> franchissements) {
+        List<ReactionAllergique> reactions = reactionAllergiqueRepository
+                .findByIdRange(chunk.getDebutId(), chunk.getFinId());
+        Map<Long, Long> historiques = new HashMap<>();
+        for (Object[] ligne : reactionAllergiqueRepository
+                .countHistoriqueAnterieurByIdRange(chunk.getDebutId(), chunk.getFinId())) {
+            historiques.put((Long) ligne[0], ((Number) ligne[1]).longValue());
+        }
+        
+        // Scores calculés avant toute écriture : les lignes utilisateurs sont verrouillées avant
+        // les réactions, comme lors de l'enregistrement d'une réaction
+        RiskModel modele = riskModelRegistry.getActif();
+        BigDecimal[] probabilites = new BigDecimal[reactions.size()];
+        SortedSet<Long> utilisateursModifies = new TreeSet<>();
+        for (int i = 0; i < reactions.size(); i++) {
+            ReactionAllergique reaction = reactions.get(i);
+            // Sans évaluation shadow : l'historique rejoué fausserait la comparaison sur le trafic réel
+            probabilites[i] = modele.probabiliteAllergie(
+                    FacteursProbabilite.de(reaction, historiques.getOrDefault(reaction.getId(), 0L)));
+            if (reaction.getProbabiliteAllergie() == null || reaction.getProbabiliteAllergie().compareTo(probabilites[i]) != 0) {
+                utilisateursModifies.add(reaction.getUtilisateur().getId());
+            }
+        }
+        
+        Map<Long, Long> versions = new HashMap<>();
+        if (!utilisateursModifies.isEmpty()) {
+            // Profils servis avec les anciennes probabilités : leurs ETag ne doivent plus correspondre.
+            // Une ligne à la fois, par identifiant croissant : deux workers ne se bloquent pas en croix
+            for (Long utilisateurId : utilisateursModifies) {
+                utilisateurRepository.incrementerVersionDonnees(List.of(utilisateurId));
+            }
+            for (Object[] ligne : utilisateurRepository.findVersionsDonnees(utilisateursModifies)) {
+                versions.put((Long) ligne[0], (Long) ligne[1]);
+            }
+            utilisateursModifies.forEach(reactionsRecentes::invaliderApresCommit);
+        }
+        
+        for (int i = 0; i < reactions.size(); i++) {
+            ReactionAllergique reaction = reactions.get(i);
+            boolean etaitAllergique = reaction.isAllergic();
+            if (reaction.getProbabiliteAllergie() == null || reaction.getProbabiliteAllergie().compareTo(probabilites[i]) != 0) {
+                // Les réactions recalculées repartent vers les clients mobiles à la prochaine synchronisation
+                reaction.setVersionSync(versions.get(reaction.getUtilisateur().getId()));
+            }
+            reaction.setProbabiliteAllergie(probabilites[i]);
+            reaction.setAlgorithmeVersion(modele.getVersion());
+            if (!etaitAllergique && reaction.isAllergic()) {
+                franchissements.add(reaction.getId());
+            }
+        }
+        return reactions.size();
+    }
+    
+    /**
+     * Réserve le chunk pour cette instance, dans sa propre transaction sur le principal
+     */
+    private boolean reserver(ChunkRescoring chunk) {
+        LocalDateTime maintenant = LocalDateTime.now();
+        return transactionTemplate.execute(status -> chunkRescoringRepository.reserver(chunk.getId(), proprietaire,
+                maintenant.plusSeconds(bailChunkSecondes), maintenant)) == 1;
+    }
+    
+    /**
+     * Point de reprise du chunk et avancement du job, sur le principal, si la réservation tient toujours
+     * @return false si le chunk a été repris par une autre instance : rien n'est compté
+     */
+    private boolean marquerTermine(Long jobId, ChunkRescoring chunk, int traitees, int detectees) {
+        if (chunkRescoringRepository.terminer(chunk.getId(), proprietaire, LocalDateTime.now()) == 0) {
+            return false;
+        }
+        jobRescoringRepository.ajouterAvancement(jobId, traitees, detectees);
+        return true;
+    }
+    
+    private <T> T surShardDuChunk(ChunkRescoring chunk, Supplier<T> action) {
+        return chunk.getShard() == null ? action.get() : routageShards.executerSur(chunk.getShard(), action);
+    }
+    
+    /**
+     * Débit global partagé par les workers : chaque chunk réserve un créneau proportionnel à sa taille
+     */
+    private void limiterDebit(Execution execution, int traitees) {
+        long maintenant = System.nanoTime();
+        long finCreneau = execution.prochainCreneauNs
+                .updateAndGet(creneau -> Math.max(creneau, maintenant) + traitees * nsParReaction);
+        long attente = finCreneau - maintenant;
+        if (attente > 0) {
+            try {
+                TimeUnit.NANOSECONDS.sleep(attente);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                execution.annule = true;
+            }
+        }
+    }
+    
+    private void terminer(Execution execution) {
+        executions.remove(execution.jobId);
+        terminerSiComplet(execution.jobId);
+    }
+    
+    /**
+     * Clôt le job quand tous ses chunks sont comptés, quelle que soit l'instance qui les a traités
+     */
+    private void terminerSiComplet(Long jobId) {
+        transactionTemplate.executeWithoutResult(status -> jobRescoringRepository.findById(jobId)
+                .filter(JobRescoring::isEnCours)
+                .filter(job -> job.getChunksTermines() >= job.getNombreChunks())
+                .ifPresent(job -> {
+                    job.setStatut("TERMINE");
+                    job.setDateFin(LocalDateTime.now());
+                    log.info("Job de re-scoring {} terminé: {} réactions, {} allergies détectées",
+                            job.getId(), job.getReactionsTraitees(), job.getAllergiesDetectees());
+                }));
+    }
+    
+    @PreDestroy
+    void arreter() {
+        executions.values().forEach(e -> e.annule = true);
+        workers.shutdown();
+    }
+    
+    /**
+     * État en mémoire d'un job exécuté par cette instance
+     */
+    private final class Execution {
+        private final Long jobId;
+        private final List<ChunkRescoring> chunks;
+        private final AtomicInteger prochainChunk = new AtomicInteger();
+        private final AtomicInteger workersActifs = new AtomicInteger(nombreWorkers);
+        private final AtomicInteger chunksTraites = new AtomicInteger();
+        private final AtomicLong reactionsTraitees = new AtomicLong();
+        private final AtomicLong prochainCreneauNs = new AtomicLong(System.nanoTime());
+        private final long debutNs = System.nanoTime();
+        private volatile boolean annule;
+        
+        private Execution(Long jobId, List<ChunkRescoring> chunks) {
+            this.jobId = jobId;
+            this.chunks = chunks;
+        }
+    }
+}
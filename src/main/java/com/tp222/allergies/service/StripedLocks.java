@@ -0,0 +1,63 @@
+package com.tp222.allergies.service;
+
+import org.springframework.transaction.IllegalTransactionStateException;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Ensemble fixe de verrous répartis par hachage de clé (lock striping).
+ *
+ * Deux clés différentes ne se bloquent que si elles tombent sur la même bande ;
+ * la mémoire reste constante quel que soit le nombre d'utilisateurs. Les verrous
+ * sont des ReentrantLock pour ne pas épingler les threads virtuels.
+ *
+ * Ordre d'acquisition avec les verrous de la base : dans une transaction, les lignes à verrouiller
+ * (ligne utilisateur par version_donnees ou FOR UPDATE) le sont avant de prendre une bande, jamais
+ * après. La base ne voit pas les bandes : une transaction qui attendrait une ligne en tenant une
+ * bande pourrait se bloquer indéfiniment contre une autre qui tient la ligne et attend la bande.
+ */
+public class StripedLocks {
+
+    private final ReentrantLock[] bandes;
+    private final int masque;
+
+    /**
+     * @param nombreBandes arrondi à la puissance de deux supérieure
+     */
+    public StripedLocks(int nombreBandes) {
+        int taille = Integer.highestOneBit(Math.max(1, nombreBandes - 1)) << 1;
+        this.bandes = new ReentrantLock[taille];
+        for (int i = 0; i < taille; i++) {
+            bandes[i] = new ReentrantLock();
+        }
+        this.masque = taille - 1;
+    }
+
+    public ReentrantLock verrou(long cle) {
+        long h = cle * 0x9E3779B97F4A7C15L;
+        return bandes[(int) (h ^ (h >>> 32)) & masque];
+    }
+
+    /**
+     * Verrouille la bande de la clé jusqu'à la fin de la transaction courante (commit ou rollback),
+     * afin que le prochain détenteur voie les écritures validées.
+     * @throws IllegalTransactionStateException hors transaction : rien ne libérerait le verrou
+     */
+    public void verrouillerJusquaFinTransaction(long cle) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            throw new IllegalTransactionStateException("Verrou de fin de transaction demandé hors transaction");
+        }
+        ReentrantLock verrou = verrou(cle);
+        if (verrou.isHeldByCurrentThread()) {
+            return;
+        }
+        verrou.lock();
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                verrou.unlock();
+            }
+        });
+    }
+}
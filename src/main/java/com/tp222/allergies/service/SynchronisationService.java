@@ -0,0 +1,227 @@
+package com.tp222.allergies.service;
+
+import com.tp222.allergies.model.dto.response.ChangementsResponse;
+import com.tp222.allergies.model.entity.Aliment;
+import com.tp222.allergies.model.entity.AllergieUtilisateur;
+import com.tp222.allergies.model.entity.ReactionAllergique;
+import com.tp222.allergies.repository.AlimentRepository;
+import com.tp222.allergies.repository.AllergieUtilisateurRepository;
+import com.tp222.allergies.repository.ReactionAllergiqueRepository;
+import com.tp222.allergies.repository.UtilisateurRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.ToLongFunction;
+import java.util.stream.Collectors;
+
+/**
+ * Synchronisation différentielle des données d'un utilisateur pour les clients hors ligne.
+ *
+ * Chaque allergie et réaction écrite porte la version des données de l'utilisateur (versionSync),
+ * incrémentée sous verrou de la ligne utilisateur : les versions d'un utilisateur deviennent visibles
+ * dans l'ordre. La version courante est lue d'abord, puis les lignes dans (curseur, version lue] ; une
+ * écriture concurrente a une version supérieure et partira à la synchronisation suivante. Une page
+ * s'arrête toujours à la fin d'une version, pour que le curseur renvoyé ne coupe jamais une écriture.
+ *
+ * Les suppressions sont logiques (actif = false) : la ligne désactivée reçoit une nouvelle version et
+ * part comme pierre tombale. Les aliments, catalogue commun sans version par utilisateur, suivent leur
+ * dateModification, relue avec une marge pour couvrir les horloges des instances.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class SynchronisationService {
+
+    private static final long MARGE_CATALOGUE_MS = 60_000;
+
+    private final UtilisateurRepository utilisateurRepository;
+    private final AllergieUtilisateurRepository allergieUtilisateurRepository;
+    private final ReactionAllergiqueRepository reactionAllergiqueRepository;
+    private final AlimentRepository alimentRepository;
+
+    /**
+     * Position d'un client : dernière version appliquée et date de lecture du catalogue
+     */
+    private record Curseur(long version, long catalogueMs) {
+
+        static Curseur lire(String valeur) {
+            if (valeur == null || valeur.isBlank()) {
+                return null;
+            }
+            int separateur = valeur.indexOf('-');
+            try {
+                if (!valeur.startsWith("v") || separateur < 0) throw new NumberFormatException();
+                Curseur curseur = new Curseur(Long.parseLong(valeur.substring(1, separateur)),
+                        Long.parseLong(valeur.substring(separateur + 1)));
+                if (curseur.version < 0 || curseur.catalogueMs < 0) throw new NumberFormatException();
+                return curseur;
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Curseur de synchronisation invalide: " + valeur);
+            }
+        }
+
+        @Override
+        public String toString() {
+            return "v" + version + "-" + catalogueMs;
+        }
+    }
+
+    /**
+     * Changements des données d'un utilisateur depuis le curseur (tout, sans curseur)
+     * @param taille nombre indicatif de lignes par type ; dépassé seulement par une version plus grosse qu'une page
+     * @throws IllegalArgumentException si le curseur est illisible ou postérieur aux données
+     */
+    @Transactional(readOnly = true)
+    public ChangementsResponse changementsDepuis(Long utilisateurId, String curseur, int taille) {
+        long versionLue = utilisateurRepository.findVersionDonneesById(utilisateurId)
+                .orElseThrow(() -> new RuntimeException("Utilisateur non trouvé"));
+        long lecture = System.currentTimeMillis();
+
+        // Sans curseur, tout est envoyé et chaque aliment part avec ses réactions : le catalogue part de maintenant
+        Curseur depart = Curseur.lire(curseur);
+        if (depart == null) {
+            depart = new Curseur(-1, lecture);
+        } else if (depart.version() > versionLue) {
+            // Données restaurées depuis une sauvegarde : le client doit repartir de zéro
+            throw new IllegalArgumentException("Curseur postérieur aux données de l'utilisateur: " + curseur);
+        }
+
+        Pageable limite = PageRequest.of(0, taille + 1);
+        List<AllergieUtilisateur> allergies = allergieUtilisateurRepository
+                .findChangementsSync(utilisateurId, depart.version(), versionLue, limite);
+        List<ReactionAllergique> reactions = reactionAllergiqueRepository
+                .findChangementsSync(utilisateurId, depart.version(), versionLue, limite);
+
+        long borne = Math.min(borne(allergies, taille, versionLue, AllergieUtilisateur::getVersionSync),
+                borne(reactions, taille, versionLue, ReactionAllergique::getVersionSync));
+        if (allergies.size() > taille || reactions.size() > taille) {
+            // Page tronquée : relecture entière jusqu'à la première version coupée
+            allergies = allergieUtilisateurRepository
+                    .findChangementsSync(utilisateurId, depart.version(), borne, Pageable.unpaged());
+            reactions = reactionAllergiqueRepository
+                    .findChangementsSync(utilisateurId, depart.version(), borne, Pageable.unpaged());
+        }
+        boolean complet = borne == versionLue;
+
+        Map<Long, Aliment> aliments = new LinkedHashMap<>();
+        Set<Long> alimentsReferences = reactions.stream()
+                .map(r -> r.getAliment().getId())
+                .collect(Collectors.toSet());
+        alimentRepository.findAllById(alimentsReferences).forEach(a -> aliments.put(a.getId(), a));
+        long catalogueMs = depart.catalogueMs();
+        if (complet) {
+            LocalDateTime depuis = LocalDateTime.ofInstant(
+                    Instant.ofEpochMilli(catalogueMs - MARGE_CATALOGUE_MS), ZoneId.systemDefault());
+            alimentRepository.findModifiesPourUtilisateur(utilisateurId, depuis).forEach(a -> aliments.putIfAbsent(a.getId(), a));
+            catalogueMs = lecture;
+        }
+
+        List<ChangementsResponse.Suppression> suppressions = new ArrayList<>();
+        List<ChangementsResponse.AllergieChangee> allergiesChangees = new ArrayList<>();
+        for (AllergieUtilisateur association : allergies) {
+            if (Boolean.TRUE.equals(association.getActif())) {
+                allergiesChangees.add(mapAllergie(association));
+            } else {
+                suppressions.add(ChangementsResponse.Suppression.builder()
+                        .type("ALLERGIE")
+                        .id(association.getAllergie().getId())
+                        .dateModification(association.getDateModification())
+                        .build());
+            }
+        }
+        List<ChangementsResponse.AlimentChange> alimentsChanges = new ArrayList<>();
+        for (Aliment aliment : aliments.values()) {
+            if (Boolean.TRUE.equals(aliment.getActif())) {
+                alimentsChanges.add(mapAliment(aliment));
+            } else {
+                suppressions.add(ChangementsResponse.Suppression.builder()
+                        .type("ALIMENT")
+                        .id(aliment.getId())
+                        .dateModification(aliment.getDateModification())
+                        .build());
+            }
+        }
+
+        log.debug("Synchronisation utilisateur {}: versions {}..{} sur {}, {} allergies, {} réactions, {} aliments",
+                utilisateurId, depart.version(), borne, versionLue, allergies.size(), reactions.size(), aliments.size());
+
+        return ChangementsResponse.builder()
+                .utilisateurId(utilisateurId)
+                .curseur(new Curseur(borne, catalogueMs).toString())
+                .complet(complet)
+                .allergies(allergiesChangees)
+                .reactions(reactions.stream().map(this::mapReaction).toList())
+                .aliments(alimentsChanges)
+                .suppressions(suppressions)
+                .build();
+    }
+
+    /**
+     * Dernière version entièrement contenue dans une liste lue avec taille + 1 lignes au plus :
+     * la version de la ligne en trop peut avoir d'autres lignes au-delà, les précédentes non.
+     * Si toute la liste partage cette version, elle est gardée (et relue entière).
+     */
+    private <T> long borne(List<T> lignes, int taille, long versionLue, ToLongFunction<T> version) {
+        if (lignes.size() <= taille) {
+            return versionLue;
+        }
+        long derniere = version.applyAsLong(lignes.get(lignes.size() - 1));
+        long premiere = version.applyAsLong(lignes.get(0));
+        return premiere == derniere ? derniere : derniere - 1;
+    }
+
+    private ChangementsResponse.AllergieChangee mapAllergie(AllergieUtilisateur association) {
+        return ChangementsResponse.AllergieChangee.builder()
+                .allergieId(association.getAllergie().getId())
+                .nomAllergie(association.getAllergie().getNom())
+                .typeAllergie(association.getAllergie().getTypeAllergie())
+                .niveauSeverite(association.getNiveauSeverite())
+                .dateDiagnostic(association.getDateDiagnostic())
+                .diagnostiquePar(association.getDiagnostiquePar())
+                .notes(association.getNotes())
+                .traitementActuel(association.getTraitementActuel())
+                .dateModification(association.getDateModification())
+                .version(association.getVersionSync())
+                .build();
+    }
+
+    private ChangementsResponse.ReactionChangee mapReaction(ReactionAllergique reaction) {
+        return ChangementsResponse.ReactionChangee.builder()
+                .reactionId(reaction.getId())
+                .alimentId(reaction.getAliment().getId())
+                .dateReaction(reaction.getDateReaction())
+                .niveauSeverite(reaction.getNiveauSeverite())
+                .symptomes(reaction.getSymptomes())
+                .dureeReaction(reaction.getDureeReaction())
+                .quantiteConsommee(reaction.getQuantiteConsommee())
+                .traitementUtilise(reaction.getTraitementUtilise())
+                .medecinConsulte(reaction.getMedecinConsulte())
+                .hospitalisationRequise(reaction.getHospitalisationRequise())
+                .probabiliteAllergie(reaction.getProbabiliteAllergie())
+                .notes(reaction.getNotes())
+                .dateModification(reaction.getDateModification())
+                .version(reaction.getVersionSync())
+                .build();
+    }
+
+    private ChangementsResponse.AlimentChange mapAliment(Aliment aliment) {
+        return ChangementsResponse.AlimentChange.builder()
+                .alimentId(aliment.getId())
+                .nom(aliment.getNom())
+                .categorie(aliment.getCategorie() == null ? null : aliment.getCategorie().getNom())
+                .allergenesPotentiels(aliment.getAllergenesPotentiels())
+                .dateModification(aliment.getDateModification())
+                .build();
+    }
+}
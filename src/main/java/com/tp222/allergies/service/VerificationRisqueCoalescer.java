@@ -0,0 +1,142 @@
+package com.tp222.allergies.service;
+
+import com.tp222.allergies.model.dto.response.VerificationRisqueResponse;
+import com.tp222.allergies.service.coherence.CoherenceCaches;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Regroupement (single-flight) des vérifications de risque identiques.
+ *
+ * Les requêtes concurrentes pour un même couple (utilisateur, aliment) partagent un seul
+ * calcul en vol ; le résultat reste ensuite servi pendant une courte fenêtre pour absorber
+ * les répétitions immédiates (relances clients, préchargements).
+ *
+ * La fenêtre est invalidée sur toutes les instances via CoherenceCaches, et contournée tant que
+ * la borne de fraîcheur n'est plus garantie.
+ */
+@Component
+@Slf4j
+public class VerificationRisqueCoalescer {
+
+    private static final int TAILLE_PURGE = 10_000;
+
+    private final AllergieService allergieService;
+    private final CoherenceCaches coherenceCaches;
+    private final long fenetreNs;
+
+    private final ConcurrentHashMap<Cle, CompletableFuture<VerificationRisqueResponse>> enVol = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Cle, ResultatRecent> resultatsRecents = new ConcurrentHashMap<>();
+
+    private final Counter executions;
+    private final Counter partages;
+    private final Counter fenetre;
+
+    public VerificationRisqueCoalescer(AllergieService allergieService, CoherenceCaches coherenceCaches,
+                                       MeterRegistry registry,
+                                       @Value("${allergies.coalescing.fenetre-ms:250}") long fenetreMs) {
+        this.allergieService = allergieService;
+        this.coherenceCaches = coherenceCaches;
+        this.fenetreNs = TimeUnit.MILLISECONDS.toNanos(fenetreMs);
+        this.executions = Counter.builder("allergies.verification.coalescing")
+                .tag("resultat", "execute")
+                .description("Vérifications de risque réellement calculées")
+                .register(registry);
+        this.partages = Counter.builder("allergies.verification.coalescing")
+                .tag("resultat", "partage")
+                .description("Vérifications ayant rejoint un calcul en vol")
+                .register(registry);
+        this.fenetre = Counter.builder("allergies.verification.coalescing")
+                .tag("resultat", "fenetre")
+                .description("Vérifications servies par la fenêtre de résultats récents")
+                .register(registry);
+        Gauge.builder("allergies.verification.coalescing.ratio", this, VerificationRisqueCoalescer::getRatio)
+                .description("Part des vérifications servies sans calcul")
+                .register(registry);
+        coherenceCaches.enregistrer(CoherenceCaches.VERIFICATION, cle -> invalider(Long.valueOf(cle)), resultatsRecents::clear);
+    }
+
+    public VerificationRisqueResponse verifierRisque(Long utilisateurId, Long alimentId) {
+        Cle cle = new Cle(utilisateurId, alimentId);
+
+        ResultatRecent recent = coherenceCaches.estCoherent() ? resultatsRecents.get(cle) : null;
+        if (recent != null && recent.expiration() - System.nanoTime() > 0) {
+            fenetre.increment();
+            return recent.reponse();
+        }
+
+        CompletableFuture<VerificationRisqueResponse> calcul = new CompletableFuture<>();
+        CompletableFuture<VerificationRisqueResponse> existant = enVol.putIfAbsent(cle, calcul);
+        if (existant != null) {
+            partages.increment();
+            return attendre(existant);
+        }
+
+        executions.increment();
+        try {
+            VerificationRisqueResponse reponse = allergieService.verifierRisque(utilisateurId, alimentId);
+            memoriser(cle, reponse);
+            calcul.complete(reponse);
+            return reponse;
+        } catch (RuntimeException e) {
+            calcul.completeExceptionally(e);
+            throw e;
+        } finally {
+            enVol.remove(cle, calcul);
+        }
+    }
+
+    /**
+     * Oublie les résultats récents d'un utilisateur (après l'enregistrement d'une réaction, sur
+     * cette instance ou une autre)
+     */
+    public void invalider(Long utilisateurId) {
+        resultatsRecents.keySet().removeIf(cle -> cle.utilisateurId().equals(utilisateurId));
+    }
+
+    double getRatio() {
+        double servisSansCalcul = partages.count() + fenetre.count();
+        double total = servisSansCalcul + executions.count();
+        return total == 0 ? 0.0 : servisSansCalcul / total;
+    }
+
+    private void memoriser(Cle cle, VerificationRisqueResponse reponse) {
+        if (fenetreNs <= 0 || !coherenceCaches.estCoherent()) {
+            return;
+        }
+        long maintenant = System.nanoTime();
+        if (resultatsRecents.size() > TAILLE_PURGE) {
+            resultatsRecents.values().removeIf(r -> r.expiration() - maintenant <= 0);
+        }
+        resultatsRecents.put(cle, new ResultatRecent(reponse, maintenant + fenetreNs));
+    }
+
+    private VerificationRisqueResponse attendre(CompletableFuture<VerificationRisqueResponse> calcul) {
+        try {
+            return calcul.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Vérification de risque interrompue", e);
+        } catch (ExecutionException | CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    private record Cle(Long utilisateurId, Long alimentId) {
+    }
+
+    private record ResultatRecent(VerificationRisqueResponse reponse, long expiration) {
+    }
+}
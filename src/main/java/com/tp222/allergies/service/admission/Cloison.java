@@ -0,0 +1,78 @@
+package com.tp222.allergies.service.admission;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Compartiment de concurrence d'un groupe d'endpoints.
+ *
+ * Un compartiment plein rejette immédiatement, sans file d'attente : les autres compartiments (et
+ * donc les connexions qu'ils utilisent) ne sont pas affectés. Une part de la limite est réservée
+ * aux requêtes prioritaires, qui peuvent seules occuper les derniers emplacements.
+ */
+public class Cloison {
+
+    private final String nom;
+    private final LimiteurGradient limiteur;
+    private final double reservePrioritaire;
+    private final AtomicInteger enVol = new AtomicInteger();
+
+    private final Counter admises;
+    private final Counter rejetees;
+    private final Counter rejeteesPrioritaires;
+
+    public Cloison(String nom, LimiteurGradient limiteur, double reservePrioritaire, MeterRegistry registry) {
+        this.nom = nom;
+        this.limiteur = limiteur;
+        this.reservePrioritaire = Math.max(0, Math.min(1, reservePrioritaire));
+        this.admises = registry.counter("allergies.admission.admises", "compartiment", nom);
+        this.rejetees = registry.counter("allergies.admission.rejets", "compartiment", nom, "priorite", "normale");
+        this.rejeteesPrioritaires = registry.counter("allergies.admission.rejets", "compartiment", nom, "priorite", "haute");
+        Gauge.builder("allergies.admission.en_vol", enVol, AtomicInteger::get)
+                .tag("compartiment", nom)
+                .register(registry);
+        Gauge.builder("allergies.admission.limite", limiteur, LimiteurGradient::getLimite)
+                .tag("compartiment", nom)
+                .register(registry);
+        Gauge.builder("allergies.admission.latence_ms", limiteur, LimiteurGradient::getRttCourtMs)
+                .tag("compartiment", nom)
+                .register(registry);
+    }
+
+    public String getNom() {
+        return nom;
+    }
+
+    public int getEnVol() {
+        return enVol.get();
+    }
+
+    /**
+     * Réserve un emplacement ; false si le compartiment est plein pour cette priorité
+     */
+    public boolean entrer(boolean prioritaire) {
+        int limite = limiteur.getLimite();
+        int plafond = prioritaire ? limite : Math.max(1, (int) (limite * (1 - reservePrioritaire)));
+        while (true) {
+            int courant = enVol.get();
+            if (courant >= plafond) {
+                (prioritaire ? rejeteesPrioritaires : rejetees).increment();
+                return false;
+            }
+            if (enVol.compareAndSet(courant, courant + 1)) {
+                admises.increment();
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Libère l'emplacement et alimente la limite adaptative
+     */
+    public void sortir(long dureeNs, boolean echec) {
+        int courant = enVol.getAndDecrement();
+        limiteur.echantillon(dureeNs, courant, echec);
+    }
+}
@@ -0,0 +1,75 @@
+package com.tp222.allergies.service.admission;
+
+/**
+ * Limite de concurrence adaptative fondée sur le gradient de latence.
+ *
+ * Deux moyennes exponentielles du temps de réponse sont tenues : une courte (charge actuelle) et
+ * une longue (référence sans file d'attente). Tant que la latence courte reste sous la référence
+ * (à la tolérance près) la limite croît d'environ sa racine carrée ; quand une file se forme, la
+ * latence courte monte et la limite est réduite dans le rapport des deux latences. Une requête en
+ * échec (5xx) réduit la limite de 10 %.
+ *
+ * Les échantillons pris alors que moins de la moitié de la limite est utilisée sont ignorés pour
+ * la croissance : sans charge, la limite ne grimpe pas indéfiniment.
+ */
+public class LimiteurGradient {
+
+    private static final double TOLERANCE = 1.5;
+    private static final double LISSAGE = 0.2;
+    private static final double ALPHA_COURT = 0.2;
+    private static final double ALPHA_LONG = 1.0 / 600;
+    private static final double REDUCTION_ECHEC = 0.9;
+
+    private final int limiteMin;
+    private final int limiteMax;
+
+    private double limite;
+    private double rttCourt;
+    private double rttLong;
+
+    public LimiteurGradient(int limiteInitiale, int limiteMin, int limiteMax) {
+        if (limiteMin < 1 || limiteMax < limiteMin) {
+            throw new IllegalArgumentException("Bornes de limite invalides: " + limiteMin + ".." + limiteMax);
+        }
+        this.limiteMin = limiteMin;
+        this.limiteMax = limiteMax;
+        this.limite = Math.max(limiteMin, Math.min(limiteMax, limiteInitiale));
+    }
+
+    public synchronized int getLimite() {
+        return (int) limite;
+    }
+
+    public synchronized double getRttCourtMs() {
+        return rttCourt / 1_000_000;
+    }
+
+    public synchronized double getRttLongMs() {
+        return rttLong / 1_000_000;
+    }
+
+    /**
+     * Intègre une requête terminée
+     * @param rttNs durée de traitement
+     * @param enVol requêtes en cours au moment de la fin (celle-ci comprise)
+     * @param echec réponse en erreur serveur : la limite est réduite sans regarder la latence
+     */
+    public synchronized void echantillon(long rttNs, int enVol, boolean echec) {
+        if (echec) {
+            limite = Math.max(limiteMin, limite * REDUCTION_ECHEC);
+            return;
+        }
+        rttCourt = rttCourt == 0 ? rttNs : rttCourt + ALPHA_COURT * (rttNs - rttCourt);
+        rttLong = rttLong == 0 ? rttNs : rttLong + ALPHA_LONG * (rttNs - rttLong);
+        // La référence suit une amélioration durable de la latence (cache chaud, base moins chargée)
+        if (rttLong / rttCourt > 2) {
+            rttLong *= 0.95;
+        }
+        if (enVol < limite / 2) {
+            return;
+        }
+        double gradient = Math.max(0.5, Math.min(1.0, TOLERANCE * rttLong / rttCourt));
+        double nouvelle = limite * gradient + Math.sqrt(limite);
+        limite = Math.max(limiteMin, Math.min(limiteMax, limite * (1 - LISSAGE) + nouvelle * LISSAGE));
+    }
+}
@@ -0,0 +1,206 @@
+package com.tp222.allergies.service.catalogue;
+
+import com.tp222.allergies.model.entity.Allergie;
+import com.tp222.allergies.repository.AlimentRepository;
+import com.tp222.allergies.repository.AllergieRepository;
+import com.tp222.allergies.repository.CategorieRepository;
+import com.tp222.allergies.service.Allergenes;
+import com.tp222.allergies.service.coherence.CoherenceCaches;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.LocalDateTime;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Instantané binaire versionné du catalogue actif (catégories, allergies, aliments et leurs allergènes),
+ * téléchargé par les clients pour vérifier un aliment hors ligne.
+ *
+ * La version est l'empreinte SHA-256 du contenu : un instantané d'une version donnée ne change jamais
+ * et se met en cache indéfiniment, et deux instances à jour servent la même version. Toute écriture du
+ * catalogue, sur n'importe quelle instance (via CoherenceCaches), marque l'instantané à reconstruire ;
+ * la reconstruction est regroupée sur un intervalle court pour absorber les imports en masse. Les
+ * dernières versions sont conservées pour servir des deltas binaires aux clients déjà équipés.
+ */
+@Service
+@Slf4j
+public class CatalogueBinaireService {
+
+    private static final int DELTAS_MAX = 64;
+
+    private final CategorieRepository categorieRepository;
+    private final AllergieRepository allergieRepository;
+    private final AlimentRepository alimentRepository;
+    private final TransactionTemplate lecture;
+    private final CoherenceCaches coherenceCaches;
+    private final int versionsConservees;
+
+    private final AtomicBoolean modifie = new AtomicBoolean(true);
+    private final Map<String, Instantane> versions = new LinkedHashMap<>();
+    private final Map<String, byte[]> deltas = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, byte[]> eldest) {
+            return size() > DELTAS_MAX;
+        }
+    };
+    private volatile Instantane courant;
+
+    private final Counter reconstructions;
+
+    /**
+     * Instantané d'une version du catalogue
+     * @param version empreinte SHA-256 du contenu (32 premiers caractères hexadécimaux)
+     */
+    public record Instantane(String version, byte[] octets, LocalDateTime dateConstruction) {
+    }
+
+    public CatalogueBinaireService(CategorieRepository categorieRepository,
+                                   AllergieRepository allergieRepository,
+                                   AlimentRepository alimentRepository,
+                                   PlatformTransactionManager transactionManager,
+                                   CoherenceCaches coherenceCaches,
+                                   MeterRegistry registry,
+                                   @Value("${allergies.catalogue-binaire.versions-conservees:10}") int versionsConservees) {
+        this.categorieRepository = categorieRepository;
+        this.allergieRepository = allergieRepository;
+        this.alimentRepository = alimentRepository;
+        this.lecture = new TransactionTemplate(transactionManager);
+        this.lecture.setReadOnly(true);
+        this.coherenceCaches = coherenceCaches;
+        this.versionsConservees = Math.max(1, versionsConservees);
+        this.reconstructions = registry.counter("allergies.catalogue.instantane.reconstructions");
+        Gauge.builder("allergies.catalogue.instantane.octets", this,
+                        s -> s.courant == null ? 0 : s.courant.octets().length)
+                .register(registry);
+        coherenceCaches.enregistrer(CoherenceCaches.CATALOGUE, cle -> modifie.set(true), () -> modifie.set(true));
+    }
+
+    /**
+     * Appelé à chaque écriture du catalogue : reconstruction sur toutes les instances après le commit
+     */
+    public void signalerModificationApresCommit() {
+        coherenceCaches.invaliderApresCommit(CoherenceCaches.CATALOGUE, null);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void initialiser() {
+        reconstruireSiModifie();
+    }
+
+    @Scheduled(fixedDelayString = "${allergies.catalogue-binaire.regroupement-ms:5000}")
+    public void reconstruireSiModifie() {
+        // Remis à false avant la lecture : une écriture pendant la construction relancera un tour
+        if (!modifie.getAndSet(false)) {
+            return;
+        }
+        try {
+            reconstruire();
+        } catch (RuntimeException e) {
+            modifie.set(true);
+            log.error("Construction de l'instantané du catalogue en échec: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Version courante ; vide tant que la première construction n'a pas abouti
+     */
+    public Optional<Instantane> getCourant() {
+        return Optional.ofNullable(courant);
+    }
+
+    public synchronized Optional<Instantane> getVersion(String version) {
+        return Optional.ofNullable(versions.get(version));
+    }
+
+    /**
+     * Delta de depuis vers cible, si les deux versions sont encore conservées
+     */
+    public Optional<byte[]> getDelta(String depuis, String cible) {
+        Instantane base;
+        Instantane arrivee;
+        synchronized (this) {
+            byte[] connu = deltas.get(depuis + ">" + cible);
+            if (connu != null) {
+                return Optional.of(connu);
+            }
+            base = versions.get(depuis);
+            arrivee = versions.get(cible);
+        }
+        if (base == null || arrivee == null) {
+            return Optional.empty();
+        }
+        byte[] delta = DeltaBinaire.calculer(base.octets(), arrivee.octets());
+        synchronized (this) {
+            deltas.put(depuis + ">" + cible, delta);
+        }
+        return Optional.of(delta);
+    }
+
+    private void reconstruire() {
+        byte[] octets = lecture.execute(status -> encoder());
+        String version = empreinte(octets);
+        if (courant != null && courant.version().equals(version)) {
+            return;
+        }
+        Instantane instantane = new Instantane(version, octets, LocalDateTime.now());
+        synchronized (this) {
+            versions.remove(version); // retour à une version antérieure : elle redevient la plus récente
+            versions.put(version, instantane);
+            while (versions.size() > versionsConservees) {
+                String ancienne = versions.keySet().iterator().next();
+                versions.remove(ancienne);
+                deltas.keySet().removeIf(cle -> cle.startsWith(ancienne + ">") || cle.endsWith(">" + ancienne));
+            }
+            courant = instantane;
+        }
+        reconstructions.increment();
+        log.info("Instantané du catalogue {} construit: {} octets", version, octets.length);
+    }
+
+    private byte[] encoder() {
+        EncodeurCatalogue encodeur = new EncodeurCatalogue();
+        categorieRepository.findByActifTrue().forEach(c -> encodeur.categorie(new EncodeurCatalogue.Categorie(c.getId(), c.getNom())));
+
+        Set<String> catalogueAllergenes = new LinkedHashSet<>();
+        alimentRepository.findByActifTrue().forEach(a -> {
+            Set<String> allergenes = Allergenes.extraire(a.getAllergenesPotentiels());
+            catalogueAllergenes.addAll(allergenes);
+            encodeur.aliment(new EncodeurCatalogue.Aliment(a.getId(), a.getNom(),
+                    a.getCategorie() == null ? null : a.getCategorie().getId(), allergenes));
+        });
+
+        // Même rapprochement allergie / allergènes que les profils d'exclusion des recettes
+        for (Allergie allergie : allergieRepository.findByActifTrue()) {
+            String objet = Allergenes.depuisNomAllergie(allergie.getNom());
+            encodeur.allergie(new EncodeurCatalogue.Allergie(allergie.getId(), allergie.getNom(),
+                    allergie.getTypeAllergie(), allergie.getNiveauSeverite(), objet.isEmpty() ? null : objet,
+                    Allergenes.concernes(objet, catalogueAllergenes)));
+        }
+        return encodeur.encoder();
+    }
+
+    private static String empreinte(byte[] octets) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(octets);
+            return HexFormat.of().formatHex(hash, 0, 16);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 indisponible", e);
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package com.tp222.allergies.service.catalogue;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Delta binaire entre deux instantanés du catalogue, par copie de blocs.
+ *
+ * Format (varints) :
+ * <pre>
+ * "ACDL" u8:format longueurCible
+ * instructions jusqu'à longueurCible octets produits :
+ *   (longueur &lt;&lt; 1) | 0, octets          — ajout littéral
+ *   (longueur &lt;&lt; 1) | 1, positionSource   — copie depuis l'instantané de base
+ * </pre>
+ * Les blocs alignés de la base sont indexés par empreinte ; chaque correspondance trouvée dans la
+ * cible est étendue dans les deux sens. Le client vérifie le résultat avec l'empreinte SHA-256 de la
+ * version cible.
+ */
+public final class DeltaBinaire {
+
+    public static final byte[] SIGNATURE = {'A', 'C', 'D', 'L'};
+    public static final int FORMAT = 1;
+
+    private static final int BLOC = 16;
+
+    private DeltaBinaire() {
+    }
+
+    public static byte[] calculer(byte[] base, byte[] cible) {
+        Map<Long, Integer> blocs = new HashMap<>(2 * (base.length / BLOC) + 1);
+        for (int i = 0; i + BLOC <= base.length; i += BLOC) {
+            blocs.putIfAbsent(empreinte(base, i), i);
+        }
+
+        ByteArrayOutputStream delta = new ByteArrayOutputStream(Math.max(64, cible.length / 8));
+        delta.writeBytes(SIGNATURE);
+        delta.write(FORMAT);
+        Varints.ecrire(delta, cible.length);
+
+        int position = 0;
+        int litteral = 0; // début des octets pas encore émis
+        while (position + BLOC <= cible.length) {
+            Integer source = blocs.get(empreinte(cible, position));
+            if (source == null || !Arrays.equals(base, source, source + BLOC, cible, position, position + BLOC)) {
+                position++;
+                continue;
+            }
+            int debut = position;
+            int debutSource = source;
+            while (debut > litteral && debutSource > 0 && base[debutSource - 1] == cible[debut - 1]) {
+                debut--;
+                debutSource--;
+            }
+            int fin = position + BLOC;
+            int finSource = source + BLOC;
+            while (fin < cible.length && finSource < base.length && base[finSource] == cible[fin]) {
+                fin++;
+                finSource++;
+            }
+            ajouter(delta, cible, litteral, debut);
+            Varints.ecrire(delta, ((long) (fin - debut) << 1) | 1);
+            Varints.ecrire(delta, debutSource);
+            position = fin;
+            litteral = fin;
+        }
+        ajouter(delta, cible, litteral, cible.length);
+        return delta.toByteArray();
+    }
+
+    /**
+     * Reconstruit la cible (utilisé pour contrôler un delta avant de le servir)
+     * @throws IllegalArgumentException si le delta est illisible ou ne correspond pas à la base
+     */
+    public static byte[] appliquer(byte[] base, byte[] delta) {
+        ByteBuffer entree = ByteBuffer.wrap(delta);
+        try {
+            byte[] signature = new byte[SIGNATURE.length];
+            entree.get(signature);
+            if (!Arrays.equals(signature, SIGNATURE) || entree.get() != FORMAT) {
+                throw new IllegalArgumentException("Delta de catalogue non reconnu");
+            }
+            byte[] cible = new byte[Varints.lireInt(entree)];
+            int position = 0;
+            while (position < cible.length) {
+                long instruction = Varints.lire(entree);
+                int longueur = Math.toIntExact(instruction >>> 1);
+                if ((instruction & 1) == 0) {
+                    entree.get(cible, position, longueur);
+                } else {
+                    System.arraycopy(base, Varints.lireInt(entree), cible, position, longueur);
+                }
+                position += longueur;
+            }
+            return cible;
+        } catch (RuntimeException e) {
+            if (e instanceof IllegalArgumentException) throw e;
+            throw new IllegalArgumentException("Delta de catalogue incohérent avec la base", e);
+        }
+    }
+
+    private static void ajouter(ByteArrayOutputStream delta, byte[] cible, int debut, int fin) {
+        if (fin > debut) {
+            Varints.ecrire(delta, (long) (fin - debut) << 1);
+            delta.write(cible, debut, fin - debut);
+        }
+    }
+
+    private static long empreinte(byte[] octets, int debut) {
+        long h = 1125899906842597L;
+        for (int i = debut; i < debut + BLOC; i++) {
+            h = 31 * h + octets[i];
+        }
+        return h;
+    }
+}
@@ -0,0 +1,149 @@
+package com.tp222.allergies.service.catalogue;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Sérialisation binaire compacte du catalogue actif (format 1), pour les vérifications hors ligne.
+ *
+ * Tous les entiers sont des varints (LEB128 non signé) :
+ * <pre>
+ * "ACAT" u8:format
+ * chaînes     : n, puis n × (longueur UTF-8, octets)          — dictionnaire
+ * allergènes  : n, puis n × indice de chaîne                 — le bit i des bitsets désigne l'allergène i
+ * catégories  : n, puis n × (Δid, nom)
+ * allergies   : n, puis n × (Δid, nom, type, sévérité, objet, bitset)
+ * aliments    : n, puis n × (Δid, nom, idCatégorie + 1, bitset)
+ * bitset      : nombre d'octets, octets (petit-boutiste, zéros de fin omis)
+ * </pre>
+ * Les références de chaîne valent indice + 1 (0 = absente), Δid est l'écart avec l'identifiant
+ * précédent de la section (triée par identifiant). Le dictionnaire suit l'ordre de première
+ * apparition : un même catalogue donne toujours les mêmes octets, et un ajout en fin de catalogue
+ * ne décale pas les octets qui le précèdent, ce qui garde les deltas entre versions petits.
+ */
+public final class EncodeurCatalogue {
+
+    public static final byte[] SIGNATURE = {'A', 'C', 'A', 'T'};
+    public static final int FORMAT = 1;
+
+    public record Categorie(long id, String nom) {
+    }
+
+    /**
+     * @param objet ce sur quoi porte l'allergie, forme canonique ("lait de vache")
+     * @param allergenes allergènes du catalogue concernés par l'allergie
+     */
+    public record Allergie(long id, String nom, String type, String severite, String objet, Collection<String> allergenes) {
+    }
+
+    public record Aliment(long id, String nom, Long categorieId, Collection<String> allergenes) {
+    }
+
+    private final List<Categorie> categories = new ArrayList<>();
+    private final List<Allergie> allergies = new ArrayList<>();
+    private final List<Aliment> aliments = new ArrayList<>();
+
+    private final Map<String, Integer> chaines = new LinkedHashMap<>();
+    private final Map<String, Integer> allergenes = new LinkedHashMap<>();
+
+    public EncodeurCatalogue categorie(Categorie categorie) {
+        categories.add(categorie);
+        return this;
+    }
+
+    public EncodeurCatalogue allergie(Allergie allergie) {
+        allergies.add(allergie);
+        return this;
+    }
+
+    public EncodeurCatalogue aliment(Aliment aliment) {
+        aliments.add(aliment);
+        return this;
+    }
+
+    public byte[] encoder() {
+        categories.sort(Comparator.comparingLong(Categorie::id));
+        allergies.sort(Comparator.comparingLong(Allergie::id));
+        aliments.sort(Comparator.comparingLong(Aliment::id));
+        chaines.clear();
+        allergenes.clear();
+        // Positions des allergènes : d'abord ceux des aliments, les plus anciens en premier
+        aliments.forEach(a -> a.allergenes().forEach(this::allergene));
+        allergies.forEach(a -> a.allergenes().forEach(this::allergene));
+
+        ByteArrayOutputStream corps = new ByteArrayOutputStream(64 * 1024);
+        Varints.ecrire(corps, allergenes.size());
+        allergenes.keySet().forEach(allergene -> Varints.ecrire(corps, chaine(allergene) - 1));
+
+        Varints.ecrire(corps, categories.size());
+        long precedent = 0;
+        for (Categorie categorie : categories) {
+            Varints.ecrire(corps, categorie.id() - precedent);
+            Varints.ecrire(corps, chaine(categorie.nom()));
+            precedent = categorie.id();
+        }
+
+        Varints.ecrire(corps, allergies.size());
+        precedent = 0;
+        for (Allergie allergie : allergies) {
+            Varints.ecrire(corps, allergie.id() - precedent);
+            Varints.ecrire(corps, chaine(allergie.nom()));
+            Varints.ecrire(corps, chaine(allergie.type()));
+            Varints.ecrire(corps, chaine(allergie.severite()));
+            Varints.ecrire(corps, chaine(allergie.objet()));
+            bitset(corps, allergie.allergenes());
+            precedent = allergie.id();
+        }
+
+        Varints.ecrire(corps, aliments.size());
+        precedent = 0;
+        for (Aliment aliment : aliments) {
+            Varints.ecrire(corps, aliment.id() - precedent);
+            Varints.ecrire(corps, chaine(aliment.nom()));
+            Varints.ecrire(corps, aliment.categorieId() == null ? 0 : aliment.categorieId() + 1);
+            bitset(corps, aliment.allergenes());
+            precedent = aliment.id();
+        }
+
+        ByteArrayOutputStream sortie = new ByteArrayOutputStream(corps.size() + 16 * chaines.size());
+        sortie.writeBytes(SIGNATURE);
+        sortie.write(FORMAT);
+        Varints.ecrire(sortie, chaines.size());
+        for (String chaine : chaines.keySet()) {
+            byte[] octets = chaine.getBytes(StandardCharsets.UTF_8);
+            Varints.ecrire(sortie, octets.length);
+            sortie.writeBytes(octets);
+        }
+        sortie.writeBytes(corps.toByteArray());
+        return sortie.toByteArray();
+    }
+
+    private void allergene(String allergene) {
+        allergenes.putIfAbsent(allergene, allergenes.size());
+    }
+
+    /**
+     * Référence de chaîne : indice dans le dictionnaire + 1, 0 pour une valeur absente
+     */
+    private int chaine(String valeur) {
+        if (valeur == null) {
+            return 0;
+        }
+        return chaines.computeIfAbsent(valeur, v -> chaines.size()) + 1;
+    }
+
+    private void bitset(ByteArrayOutputStream corps, Collection<String> membres) {
+        BitSet bits = new BitSet(allergenes.size());
+        membres.forEach(allergene -> bits.set(allergenes.get(allergene)));
+        byte[] octets = bits.toByteArray();
+        Varints.ecrire(corps, octets.length);
+        corps.writeBytes(octets);
+    }
+}
@@ -0,0 +1,41 @@
+package com.tp222.allergies.service.catalogue;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * Entiers positifs à longueur variable (LEB128 non signé) : 7 bits par octet, bit de poids fort
+ * positionné tant qu'il reste des octets. Un identifiant ou un indice inférieur à 128 tient sur un octet.
+ */
+final class Varints {
+
+    private Varints() {
+    }
+
+    static void ecrire(ByteArrayOutputStream sortie, long valeur) {
+        if (valeur < 0) {
+            throw new IllegalArgumentException("Varint négatif: " + valeur);
+        }
+        while ((valeur & ~0x7FL) != 0) {
+            sortie.write((int) ((valeur & 0x7F) | 0x80));
+            valeur >>>= 7;
+        }
+        sortie.write((int) valeur);
+    }
+
+    static long lire(ByteBuffer entree) {
+        long valeur = 0;
+        for (int decalage = 0; decalage < 64; decalage += 7) {
+            byte octet = entree.get();
+            valeur |= (long) (octet & 0x7F) << decalage;
+            if ((octet & 0x80) == 0) {
+                return valeur;
+            }
+        }
+        throw new IllegalArgumentException("Varint trop long");
+    }
+
+    static int lireInt(ByteBuffer entree) {
+        return Math.toIntExact(lire(entree));
+    }
+}
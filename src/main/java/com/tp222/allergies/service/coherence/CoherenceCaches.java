@@ -0,0 +1,275 @@
+package com.tp222.allergies.service.coherence;
+
+import com.tp222.allergies.service.sharding.RoutageShards;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Cohérence des caches et index en mémoire entre instances.
+ *
+ * Chaque cache s'enregistre sous un nom avec une invalidation par clé et une invalidation totale.
+ * Une écriture publie un message (nom du cache, clé) ; les autres instances l'appliquent, l'émetteur
+ * l'ignore. Les messages portent la version de l'émetteur : un message dont la version ne dépasse pas
+ * la dernière appliquée pour la même origine et la même clé est un doublon ou arrive en retard, il est
+ * écarté.
+ *
+ * Borne de fraîcheur : chaque instance publie un battement par shard et mesure l'émission du dernier
+ * battement qui lui est revenu. Le canal délivrant dans l'ordre des commits, tout message émis avant
+ * ce battement a été reçu ; tant que ce battement date de moins de staleness-max-ms, aucune donnée
+ * servie n'est plus ancienne que cette borne. Au-delà, l'instance passe en mode dégradé : les caches
+ * de résultats sont contournés (estCoherent) et tous les caches sont rechargés, puis rechargés de
+ * nouveau périodiquement et au rétablissement du canal.
+ */
+@Service
+@Slf4j
+public class CoherenceCaches implements TransportInvalidation.Abonne {
+
+    public static final String VERIFICATION = "verification";
+    public static final String COHORTES = "cohortes";
+    public static final String RECETTES = "recettes";
+    public static final String REACTIVITE = "reactivite";
+    public static final String CATALOGUE = "catalogue";
+    public static final String REACTIONS_RECENTES = "reactions-recentes";
+
+    static final String BATTEMENT = "battement";
+
+    private static final int VERSIONS_MAX = 100_000;
+
+    private final TransportInvalidation transport;
+    private final RoutageShards routageShards;
+    private final long stalenessMaxMs;
+    private final long resynchronisationDegradeeMs;
+    private final String origine = UUID.randomUUID().toString();
+    private final AtomicLong horloge = new AtomicLong();
+
+    private final Map<String, CacheCoherent> caches = new ConcurrentHashMap<>();
+    private final Map<String, Long> echos = new ConcurrentHashMap<>(); // shard -> émission du dernier battement revenu
+    private final Map<String, Long> dernieresVersions = new LinkedHashMap<>(1024, 0.75f, false) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Long> eldest) {
+            return size() > VERSIONS_MAX;
+        }
+    };
+    private volatile boolean coherent = true;
+    private volatile long derniereResynchronisation;
+
+    private final Counter appliques;
+    private final Counter ecartes;
+    private final Counter resynchronisations;
+    private final DistributionSummary retard;
+
+    private record CacheCoherent(Consumer<String> invalider, Runnable vider) {
+
+        CacheCoherent puis(CacheCoherent suivant) {
+            return new CacheCoherent(invalider.andThen(suivant.invalider()), () -> {
+                vider.run();
+                suivant.vider().run();
+            });
+        }
+    }
+
+    public CoherenceCaches(TransportInvalidation transport, RoutageShards routageShards, MeterRegistry registry,
+                           @Value("${allergies.coherence.staleness-max-ms:5000}") long stalenessMaxMs,
+                           @Value("${allergies.coherence.resynchronisation-degradee-ms:30000}") long resynchronisationDegradeeMs) {
+        this.transport = transport;
+        this.routageShards = routageShards;
+        this.stalenessMaxMs = stalenessMaxMs;
+        this.resynchronisationDegradeeMs = resynchronisationDegradeeMs;
+        long maintenant = System.currentTimeMillis();
+        routageShards.getShards().forEach(shard -> echos.put(shard, maintenant));
+
+        this.appliques = registry.counter("allergies.coherence.messages", "resultat", "applique");
+        this.ecartes = registry.counter("allergies.coherence.messages", "resultat", "ecarte");
+        this.resynchronisations = registry.counter("allergies.coherence.resynchronisations");
+        this.retard = DistributionSummary.builder("allergies.coherence.retard_ms")
+                .description("Délai entre l'émission d'une invalidation et son application")
+                .register(registry);
+        Gauge.builder("allergies.coherence.fraicheur_ms", this, CoherenceCaches::fraicheurMs)
+                .description("Âge du dernier battement revenu (borne effective de fraîcheur)")
+                .register(registry);
+        Gauge.builder("allergies.coherence.coherent", this, c -> c.estCoherent() ? 1 : 0).register(registry);
+
+        transport.abonner(this);
+        log.info("Cohérence des caches: instance {}, transport {}, fraîcheur max {} ms",
+                origine, transport.getClass().getSimpleName(), stalenessMaxMs);
+    }
+
+    /**
+     * Déclare un cache local ; plusieurs caches peuvent suivre le même nom (ils reçoivent alors tous
+     * les invalidations publiées sous ce nom)
+     * @param invalider invalidation d'une clé (reçue sous forme textuelle)
+     * @param vider invalidation ou rechargement complet
+     */
+    public void enregistrer(String cache, Consumer<String> invalider, Runnable vider) {
+        caches.merge(cache, new CacheCoherent(invalider, vider), CacheCoherent::puis);
+    }
+
+    /**
+     * false si la borne de fraîcheur n'est plus garantie : les caches de résultats doivent être contournés
+     */
+    public boolean estCoherent() {
+        return coherent;
+    }
+
+    /**
+     * Invalide la clé sur cette instance et sur les autres, après le commit de la transaction courante
+     */
+    public void invaliderApresCommit(String cache, Object cle) {
+        diffuser(cache, cle, true);
+    }
+
+    /**
+     * Invalide la clé sur les autres instances seulement (l'instance courante a déjà tenu son cache à jour)
+     */
+    public void diffuserApresCommit(String cache, Object cle) {
+        diffuser(cache, cle, false);
+    }
+
+    @Override
+    public void recevoir(MessageInvalidation message) {
+        if (BATTEMENT.equals(message.cache())) {
+            if (origine.equals(message.origine()) && message.cle() != null) {
+                echos.merge(message.cle(), message.emissionMs(), Math::max);
+            }
+            return;
+        }
+        if (origine.equals(message.origine())) {
+            return;
+        }
+        String cle = message.origine() + '/' + message.cache() + '/' + message.cle();
+        synchronized (dernieresVersions) {
+            Long derniere = dernieresVersions.get(cle);
+            if (derniere != null && derniere >= message.version()) {
+                ecartes.increment();
+                log.debug("Invalidation {} écartée (version {} déjà appliquée)", message, derniere);
+                return;
+            }
+            dernieresVersions.put(cle, message.version());
+        }
+        retard.record(Math.max(0, System.currentTimeMillis() - message.emissionMs()));
+        appliquer(message.cache(), message.cle());
+        appliques.increment();
+    }
+
+    @Override
+    public void reprise() {
+        resynchroniser("reprise de l'abonnement");
+    }
+
+    /**
+     * Publie un battement sur chaque shard et contrôle la borne de fraîcheur
+     */
+    @Scheduled(fixedDelayString = "${allergies.coherence.battement-ms:1000}")
+    public void battre() {
+        for (String shard : routageShards.getShards()) {
+            try {
+                routageShards.executerSur(shard, () -> {
+                    transport.publier(new MessageInvalidation(origine, tic(), BATTEMENT, shard));
+                    return null;
+                });
+            } catch (RuntimeException e) {
+                log.warn("Battement de cohérence non publié sur le shard {}: {}", shard, e.getMessage());
+            }
+        }
+        verifier();
+    }
+
+    long fraicheurMs() {
+        long maintenant = System.currentTimeMillis();
+        return echos.values().stream().mapToLong(emission -> maintenant - emission).max().orElse(0);
+    }
+
+    private void verifier() {
+        boolean frais = fraicheurMs() <= stalenessMaxMs;
+        if (!frais && coherent) {
+            coherent = false;
+            log.warn("Canal d'invalidation muet depuis {} ms : caches de résultats contournés", fraicheurMs());
+            resynchroniser("canal muet");
+        } else if (frais && !coherent) {
+            coherent = true;
+            log.info("Canal d'invalidation rétabli");
+            resynchroniser("canal rétabli");
+        } else if (!frais && System.currentTimeMillis() - derniereResynchronisation >= resynchronisationDegradeeMs) {
+            resynchroniser("mode dégradé");
+        }
+    }
+
+    private void diffuser(String cache, Object cle, boolean local) {
+        String valeur = cle == null ? null : String.valueOf(cle);
+        boolean dansTransaction = TransactionSynchronizationManager.isSynchronizationActive();
+        if (dansTransaction && transport.transactionnel()) {
+            // NOTIFY émis dans la transaction (y compris pendant le flush du commit) : délivré au
+            // commit, jamais en cas de rollback
+            transport.publier(new MessageInvalidation(origine, tic(), cache, valeur));
+        }
+        if (!dansTransaction) {
+            publier(cache, valeur);
+            if (local) appliquer(cache, valeur);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                if (!transport.transactionnel()) publier(cache, valeur);
+                if (local) appliquer(cache, valeur);
+            }
+        });
+    }
+
+    private void publier(String cache, String cle) {
+        try {
+            transport.publier(new MessageInvalidation(origine, tic(), cache, cle));
+        } catch (RuntimeException e) {
+            // Les autres instances se resynchroniseront faute de battement si le canal est réellement coupé
+            log.error("Invalidation {}/{} non diffusée: {}", cache, cle, e.getMessage());
+        }
+    }
+
+    private void appliquer(String cache, String cle) {
+        CacheCoherent cible = caches.get(cache);
+        if (cible == null) {
+            return;
+        }
+        try {
+            if (cle == null) cible.vider().run();
+            else cible.invalider().accept(cle);
+        } catch (RuntimeException e) {
+            log.error("Invalidation {}/{} non appliquée: {}", cache, cle, e.getMessage());
+        }
+    }
+
+    private void resynchroniser(String raison) {
+        derniereResynchronisation = System.currentTimeMillis();
+        resynchronisations.increment();
+        log.warn("Resynchronisation de {} caches ({})", caches.size(), raison);
+        caches.forEach((nom, cache) -> {
+            try {
+                cache.vider().run();
+            } catch (RuntimeException e) {
+                log.error("Resynchronisation du cache {} en échec: {}", nom, e.getMessage());
+            }
+        });
+    }
+
+    /**
+     * Horloge hybride : millisecondes murales sur les bits de poids fort, compteur sur les 16 bits
+     * de poids faible ; strictement croissante même si l'horloge murale recule
+     */
+    private long tic() {
+        return horloge.updateAndGet(precedente -> Math.max(precedente + 1, System.currentTimeMillis() << 16));
+    }
+}
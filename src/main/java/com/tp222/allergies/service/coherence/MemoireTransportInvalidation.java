@@ -0,0 +1,47 @@
+package com.tp222.allergies.service.coherence;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Transport en boucle locale (instance unique, développement et tests).
+ *
+ * Les abonnés sont partagés par toute la JVM : plusieurs contextes Spring démarrés dans le même
+ * processus se comportent comme des instances distinctes reliées par un canal fiable. La remise
+ * est synchrone, dans le thread de l'émetteur.
+ */
+@Component
+@ConditionalOnProperty(name = "allergies.coherence.transport", havingValue = "memoire", matchIfMissing = true)
+@Slf4j
+public class MemoireTransportInvalidation implements TransportInvalidation {
+
+    private static final List<Abonne> ABONNES = new CopyOnWriteArrayList<>();
+
+    private final List<Abonne> locaux = new CopyOnWriteArrayList<>();
+
+    @Override
+    public void publier(MessageInvalidation message) {
+        for (Abonne abonne : ABONNES) {
+            try {
+                abonne.recevoir(message);
+            } catch (RuntimeException e) {
+                log.error("Invalidation {} non appliquée par un abonné: {}", message, e.getMessage());
+            }
+        }
+    }
+
+    @Override
+    public void abonner(Abonne abonne) {
+        locaux.add(abonne);
+        ABONNES.add(abonne);
+    }
+
+    @PreDestroy
+    void arreter() {
+        ABONNES.removeAll(locaux);
+    }
+}
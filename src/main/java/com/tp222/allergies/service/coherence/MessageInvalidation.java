@@ -0,0 +1,41 @@
+package com.tp222.allergies.service.coherence;
+
+/**
+ * Message d'invalidation échangé entre instances.
+ *
+ * La version est l'horloge hybride de l'instance émettrice (millisecondes murales décalées de
+ * 16 bits + compteur) : strictement croissante par origine, elle permet d'écarter les doublons
+ * et les messages arrivés dans le désordre, et donne l'âge du message à la réception.
+ *
+ * @param origine identifiant de l'instance émettrice
+ * @param version horloge hybride de l'émetteur au moment de l'émission
+ * @param cache nom du cache concerné (voir CoherenceCaches)
+ * @param cle clé invalidée, ou null pour tout le cache
+ */
+public record MessageInvalidation(String origine, long version, String cache, String cle) {
+
+    private static final char SEPARATEUR = ';';
+
+    /**
+     * Charge utile textuelle (NOTIFY limite la charge utile à 8000 octets ; les clés sont courtes)
+     */
+    public String encoder() {
+        return origine + SEPARATEUR + version + SEPARATEUR + cache + SEPARATEUR + (cle == null ? "" : cle);
+    }
+
+    public static MessageInvalidation decoder(String charge) {
+        String[] parties = charge.split(String.valueOf(SEPARATEUR), 4);
+        if (parties.length != 4) {
+            throw new IllegalArgumentException("Message d'invalidation malformé: " + charge);
+        }
+        return new MessageInvalidation(parties[0], Long.parseLong(parties[1]), parties[2],
+                parties[3].isEmpty() ? null : parties[3]);
+    }
+
+    /**
+     * Instant d'émission (millisecondes) porté par la version
+     */
+    public long emissionMs() {
+        return version >>> 16;
+    }
+}
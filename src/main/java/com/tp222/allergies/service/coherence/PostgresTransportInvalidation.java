@@ -0,0 +1,135 @@
+package com.tp222.allergies.service.coherence;
+
+import com.tp222.allergies.service.sharding.RoutageShards;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Transport PostgreSQL LISTEN/NOTIFY.
+ *
+ * La publication exécute pg_notify sur la connexion de la transaction d'écriture : PostgreSQL ne
+ * délivre la notification qu'au commit, jamais en cas de rollback, et dans l'ordre des commits.
+ * Chaque shard étant une base distincte, un thread d'écoute par shard garde une connexion du pool
+ * en LISTEN ; après une coupure il se reconnecte et signale la reprise aux abonnés.
+ */
+@Component
+@ConditionalOnProperty(name = "allergies.coherence.transport", havingValue = "postgres")
+@Slf4j
+public class PostgresTransportInvalidation implements TransportInvalidation {
+
+    private static final long ATTENTE_RECONNEXION_MAX_MS = 30_000;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final String canal;
+    private final int attenteMs;
+    private final List<Abonne> abonnes = new CopyOnWriteArrayList<>();
+    private final List<Thread> ecouteurs = new ArrayList<>();
+    private volatile boolean arret;
+
+    public PostgresTransportInvalidation(DataSource dataSource, RoutageShards routageShards,
+                                         @Value("${allergies.coherence.canal:allergies_invalidation}") String canal,
+                                         @Value("${allergies.coherence.attente-notification-ms:500}") int attenteMs) {
+        if (!canal.matches("[a-z_][a-z0-9_]*")) {
+            throw new IllegalArgumentException("Nom de canal NOTIFY invalide: " + canal);
+        }
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.canal = canal;
+        this.attenteMs = attenteMs;
+        for (String shard : routageShards.getShards()) {
+            DataSource source = routageShards.getSource(shard);
+            Thread ecouteur = new Thread(() -> ecouter(shard, source), "coherence-ecoute-" + shard);
+            ecouteur.setDaemon(true);
+            ecouteurs.add(ecouteur);
+        }
+        ecouteurs.forEach(Thread::start);
+    }
+
+    @Override
+    public void publier(MessageInvalidation message) {
+        // Même DataSource que JPA : dans une transaction, la connexion liée à la transaction est réutilisée
+        jdbcTemplate.queryForList("SELECT pg_notify(?, ?)", canal, message.encoder());
+    }
+
+    @Override
+    public void abonner(Abonne abonne) {
+        abonnes.add(abonne);
+    }
+
+    @Override
+    public boolean transactionnel() {
+        return true;
+    }
+
+    private void ecouter(String shard, DataSource source) {
+        boolean reprise = false;
+        long attenteReconnexion = 500;
+        while (!arret) {
+            try (Connection connexion = source.getConnection(); Statement statement = connexion.createStatement()) {
+                connexion.setAutoCommit(true);
+                statement.execute("LISTEN " + canal);
+                log.info("Écoute des invalidations sur le canal {} du shard {}", canal, shard);
+                if (reprise) {
+                    abonnes.forEach(Abonne::reprise);
+                }
+                reprise = true;
+                attenteReconnexion = 500;
+                PGConnection pg = connexion.unwrap(PGConnection.class);
+                while (!arret) {
+                    PGNotification[] notifications = pg.getNotifications(attenteMs);
+                    if (notifications == null) continue;
+                    for (PGNotification notification : notifications) {
+                        remettre(notification.getParameter());
+                    }
+                }
+                statement.execute("UNLISTEN " + canal);
+            } catch (SQLException e) {
+                if (arret) break;
+                log.warn("Écoute des invalidations interrompue sur le shard {}: {} ; reconnexion dans {} ms",
+                        shard, e.getMessage(), attenteReconnexion);
+                try {
+                    Thread.sleep(attenteReconnexion);
+                } catch (InterruptedException interruption) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+                attenteReconnexion = Math.min(attenteReconnexion * 2, ATTENTE_RECONNEXION_MAX_MS);
+            }
+        }
+    }
+
+    private void remettre(String charge) {
+        MessageInvalidation message;
+        try {
+            message = MessageInvalidation.decoder(charge);
+        } catch (RuntimeException e) {
+            log.warn("Notification ignorée sur le canal {}: {}", canal, e.getMessage());
+            return;
+        }
+        for (Abonne abonne : abonnes) {
+            try {
+                abonne.recevoir(message);
+            } catch (RuntimeException e) {
+                log.error("Invalidation {} non appliquée par un abonné: {}", message, e.getMessage());
+            }
+        }
+    }
+
+    @PreDestroy
+    void arreter() {
+        arret = true;
+        ecouteurs.forEach(Thread::interrupt);
+    }
+}
@@ -0,0 +1,38 @@
+package com.tp222.allergies.service.coherence;
+
+/**
+ * Canal de diffusion des invalidations entre instances.
+ *
+ * Chaque message publié est remis à toutes les instances abonnées, y compris l'émettrice (ce
+ * retour sert de preuve que l'abonnement est vivant). La livraison est au plus une fois : une
+ * perte est couverte par la borne de fraîcheur de CoherenceCaches, et toute reprise après
+ * coupure doit être signalée par {@link Abonne#reprise()}.
+ */
+public interface TransportInvalidation {
+
+    /**
+     * Publie un message ; appelée dans la transaction d'écriture si le transport est
+     * transactionnel, après son commit sinon
+     */
+    void publier(MessageInvalidation message);
+
+    void abonner(Abonne abonne);
+
+    /**
+     * true si une publication faite dans une transaction n'est délivrée qu'à son commit
+     * (l'invalidation est alors atomique avec l'écriture)
+     */
+    default boolean transactionnel() {
+        return false;
+    }
+
+    interface Abonne {
+
+        void recevoir(MessageInvalidation message);
+
+        /**
+         * Abonnement rétabli après une coupure : des messages ont pu être perdus
+         */
+        void reprise();
+    }
+}
@@ -0,0 +1,610 @@
+package com.tp222.allergies.service.importation;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.tp222.allergies.model.dto.request.ImportUtilisateurRequest;
+import com.tp222.allergies.model.dto.response.ProgressionImportResponse;
+import com.tp222.allergies.model.entity.Allergie;
+import com.tp222.allergies.model.entity.AllergieUtilisateur;
+import com.tp222.allergies.model.entity.Utilisateur;
+import com.tp222.allergies.repository.AllergieRepository;
+import com.tp222.allergies.repository.UtilisateurRepository;
+import com.tp222.allergies.service.Allergenes;
+import com.tp222.allergies.service.sharding.ReequilibrageShards;
+import com.tp222.allergies.service.sharding.RoutageShards;
+import com.tp222.allergies.service.sharding.ScatterGather;
+import jakarta.annotation.PreDestroy;
+import jakarta.validation.Validator;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.NestedExceptionUtils;
+import org.springframework.dao.DataAccessException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * Import en masse d'utilisateurs et de leurs allergies (arrivée d'un nouvel établissement), depuis
+ * un fichier CSV ou NDJSON.
+ *
+ * Le fichier reçu est d'abord recopié sur disque, puis relu en flux par un worker : la mémoire reste
+ * bornée par la taille d'un lot quel que soit le volume. Chaque ligne est validée avec les
+ * contraintes des entités, ses allergies sont résolues par nom dans une table chargée une fois par
+ * import, et les lignes valides sont insérées par lots, une transaction par lot. Les doublons de
+ * username ou d'email (dans le fichier comme en base) sont rejetés : relancer un import déjà passé
+ * n'insère rien de plus. Chaque ligne rejetée est écrite avec ses motifs dans un fichier de rejets
+ * NDJSON.
+ *
+ * Avec le sharding, les utilisateurs sont créés sur le principal puis déplacés vers leur shard dès
+ * le commit de leur lot, sans rééquilibrage complet : ils sont servis pendant le reste de l'import.
+ * Ceux dont le déplacement échoue sont retentés en fin d'import.
+ */
+@Service
+@Slf4j
+public class ImportUtilisateursService {
+
+    static final String COLONNE_ALLERGIES = "allergies";
+
+    public enum Format {
+        CSV, NDJSON;
+
+        /**
+         * Format d'après le type de contenu de la requête
+         * @throws IllegalArgumentException si le type n'est ni CSV ni NDJSON
+         */
+        public static Format depuisTypeContenu(String typeContenu) {
+            String type = typeContenu == null ? "" : typeContenu.toLowerCase();
+            if (type.startsWith("text/csv")) return CSV;
+            if (type.startsWith("application/x-ndjson")) return NDJSON;
+            throw new IllegalArgumentException("Type de contenu non supporté: " + typeContenu);
+        }
+    }
+
+    private final UtilisateurRepository utilisateurRepository;
+    private final AllergieRepository allergieRepository;
+    private final RoutageShards routageShards;
+    private final ScatterGather scatterGather;
+    private final ReequilibrageShards reequilibrageShards;
+    private final Validator validator;
+    private final ObjectMapper objectMapper;
+    private final TransactionTemplate transactionTemplate;
+    private final TransactionTemplate lecture;
+    private final Path repertoire;
+    private final int tailleLot;
+
+    private final ExecutorService worker;
+    // Identifiants uniques d'un démarrage à l'autre : les fichiers de rejets restent sur disque
+    private final AtomicLong sequence = new AtomicLong(System.currentTimeMillis());
+    private final Map<Long, Execution> executions = new ConcurrentHashMap<>();
+
+    public ImportUtilisateursService(UtilisateurRepository utilisateurRepository,
+                                     AllergieRepository allergieRepository,
+                                     RoutageShards routageShards,
+                                     ScatterGather scatterGather,
+                                     ReequilibrageShards reequilibrageShards,
+                                     Validator validator,
+                                     ObjectMapper objectMapper,
+                                     PlatformTransactionManager transactionManager,
+                                     @Value("${allergies.import.repertoire:imports}") String repertoire,
+                                     @Value("${allergies.import.taille-lot:500}") int tailleLot) {
+        this.utilisateurRepository = utilisateurRepository;
+        this.allergieRepository = allergieRepository;
+        this.routageShards = routageShards;
+        this.scatterGather = scatterGather;
+        this.reequilibrageShards = reequilibrageShards;
+        this.validator = validator;
+        this.objectMapper = objectMapper;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.lecture = new TransactionTemplate(transactionManager);
+        this.lecture.setReadOnly(true);
+        this.repertoire = Paths.get(repertoire);
+        this.tailleLot = Math.max(1, tailleLot);
+        // Un import à la fois : les suivants attendent leur tour
+        this.worker = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "import-worker");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /**
+     * Recopie le fichier reçu sur disque et démarre son import
+     */
+    public ProgressionImportResponse demarrer(InputStream corps, Format format) {
+        long id = sequence.incrementAndGet();
+        Path source = repertoire.resolve("import-" + id + "." + format.name().toLowerCase());
+        long octets;
+        try {
+            Files.createDirectories(repertoire);
+            octets = Files.copy(corps, source, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Réception du fichier d'import impossible", e);
+        }
+        Execution execution = new Execution(id, format, source, repertoire.resolve("import-" + id + "-rejets.ndjson"), octets);
+        executions.put(id, execution);
+        log.info("Import {} reçu: {} octets au format {}", id, octets, format);
+        worker.submit(() -> executer(execution));
+        return progression(execution);
+    }
+
+    public ProgressionImportResponse getProgression(Long importId) {
+        return progression(trouver(importId));
+    }
+
+    /**
+     * Fichier des lignes rejetées (NDJSON : ligne, contenu, erreurs), complété lot après lot
+     */
+    public Path getFichierRejets(Long importId) {
+        Path fichier = trouver(importId).fichierRejets;
+        if (!Files.exists(fichier)) {
+            throw new RuntimeException("Fichier de rejets non trouvé pour l'import " + importId);
+        }
+        return fichier;
+    }
+
+    private Execution trouver(Long importId) {
+        Execution execution = executions.get(importId);
+        if (execution == null) {
+            throw new RuntimeException("Import non trouvé avec l'ID: " + importId);
+        }
+        return execution;
+    }
+
+    private void executer(Execution execution) {
+        execution.debutNs = System.nanoTime();
+        try (CompteurOctets compteur = new CompteurOctets(Files.newInputStream(execution.source));
+             BufferedReader lecteur = new BufferedReader(new InputStreamReader(compteur, StandardCharsets.UTF_8));
+             BufferedWriter rejets = Files.newBufferedWriter(execution.fichierRejets, StandardCharsets.UTF_8)) {
+
+            Map<String, AllergieConnue> allergies = chargerAllergies();
+            SourceLignes lignes = execution.format == Format.CSV ? csv(lecteur) : ndjson(lecteur);
+            List<LigneImport> lot = new ArrayList<>(tailleLot);
+            LigneImport ligne;
+            while ((ligne = lignes.suivante()) != null) {
+                lot.add(ligne);
+                execution.lignesLues.incrementAndGet();
+                if (lot.size() == tailleLot) {
+                    traiterLot(execution, lot, allergies, rejets);
+                    lot.clear();
+                    execution.octetsLus = compteur.lus;
+                }
+            }
+            traiterLot(execution, lot, allergies, rejets);
+            execution.octetsLus = execution.octetsTotal;
+            execution.statut = "TERMINE";
+            log.info("Import {} terminé: {} lignes, {} utilisateurs importés, {} lignes rejetées",
+                    execution.id, execution.lignesLues.get(), execution.utilisateursImportes.get(), execution.lignesRejetees.get());
+        } catch (IOException | RuntimeException e) {
+            execution.statut = "ECHEC";
+            execution.messageErreur = e.getMessage();
+            log.error("Import {} en échec après {} lignes: {}", execution.id, execution.lignesLues.get(), e.getMessage());
+        } finally {
+            reprendreDeplacements(execution);
+            execution.dateFin = LocalDateTime.now();
+            try {
+                Files.deleteIfExists(execution.source);
+            } catch (IOException e) {
+                log.warn("Fichier reçu {} non supprimé: {}", execution.source, e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Dernière tentative pour les utilisateurs restés sur le principal, y compris après un échec de l'import
+     */
+    private void reprendreDeplacements(Execution execution) {
+        if (execution.nonDeplaces.isEmpty()) return;
+        try {
+            List<Long> restes = reequilibrageShards.deplacerDepuisPrincipal(List.copyOf(execution.nonDeplaces));
+            execution.nonDeplaces.retainAll(restes);
+        } catch (RuntimeException e) {
+            log.error("Import {}: reprise des déplacements en échec: {}", execution.id, e.getMessage());
+        }
+        if (!execution.nonDeplaces.isEmpty()) {
+            String message = execution.nonDeplaces.size() + " utilisateurs restés sur le shard principal, "
+                    + "à déplacer par un rééquilibrage";
+            execution.messageErreur = execution.messageErreur == null ? message : execution.messageErreur + " ; " + message;
+            log.error("Import {}: {} {}", execution.id, message, execution.nonDeplaces);
+        }
+    }
+
+    private void traiterLot(Execution execution, List<LigneImport> lot, Map<String, AllergieConnue> allergies,
+                            BufferedWriter rejets) throws IOException {
+        List<Candidat> candidats = new ArrayList<>(lot.size());
+        Set<String> usernames = new HashSet<>();
+        Set<String> emails = new HashSet<>();
+        for (LigneImport ligne : lot) {
+            Candidat candidat = ligne.erreurs().isEmpty() ? preparer(ligne, allergies) : null;
+            List<String> erreurs = candidat == null ? ligne.erreurs() : candidat.erreurs();
+            if (erreurs.isEmpty() && !usernames.add(candidat.utilisateur().getUsername())) {
+                erreurs.add("username: déjà présent plus haut dans le fichier");
+            }
+            if (erreurs.isEmpty() && !emails.add(candidat.utilisateur().getEmail())) {
+                erreurs.add("email: déjà présent plus haut dans le fichier");
+            }
+            if (erreurs.isEmpty()) {
+                candidats.add(candidat);
+            } else {
+                rejeter(execution, rejets, ligne, erreurs);
+            }
+        }
+
+        // Les lots précédents sont déjà en base : cette vérification couvre aussi les doublons entre lots
+        Set<String> usernamesPris = existants(utilisateurRepository::findUsernamesExistants, usernames);
+        Set<String> emailsPris = existants(utilisateurRepository::findEmailsExistants, emails);
+        List<Candidat> aInserer = new ArrayList<>(candidats.size());
+        for (Candidat candidat : candidats) {
+            if (usernamesPris.contains(candidat.utilisateur().getUsername())) {
+                candidat.erreurs().add("username: déjà utilisé");
+            }
+            if (emailsPris.contains(candidat.utilisateur().getEmail())) {
+                candidat.erreurs().add("email: déjà utilisé");
+            }
+            if (candidat.erreurs().isEmpty()) {
+                aInserer.add(candidat);
+            } else {
+                rejeter(execution, rejets, candidat.ligne(), candidat.erreurs());
+            }
+        }
+
+        List<Long> crees = new ArrayList<>(aInserer.size());
+        try {
+            try {
+                inserer(aInserer);
+                compterImportes(execution, aInserer);
+                aInserer.forEach(candidat -> crees.add(candidat.utilisateur().getId()));
+            } catch (DataAccessException e) {
+                // Conflit avec une écriture concurrente : le lot est annulé et repris ligne à ligne
+                log.warn("Import {}: lot annulé ({}), reprise ligne à ligne", execution.id, e.getMessage());
+                for (Candidat candidat : aInserer) {
+                    reinitialiser(candidat);
+                    try {
+                        inserer(List.of(candidat));
+                        compterImportes(execution, List.of(candidat));
+                        crees.add(candidat.utilisateur().getId());
+                    } catch (DataAccessException conflit) {
+                        rejeter(execution, rejets, candidat.ligne(),
+                                List.of("insertion refusée: " + NestedExceptionUtils.getMostSpecificCause(conflit).getMessage()));
+                    }
+                }
+            }
+            rejets.flush();
+        } finally {
+            // Lot commité : ses utilisateurs rejoignent leur shard avant la lecture du lot suivant
+            execution.nonDeplaces.addAll(reequilibrageShards.deplacerDepuisPrincipal(crees));
+        }
+    }
+
+    private Candidat preparer(LigneImport ligne, Map<String, AllergieConnue> allergies) {
+        ImportUtilisateurRequest requete = ligne.requete();
+        Utilisateur utilisateur = Utilisateur.builder()
+                .username(nettoyer(requete.getUsername()))
+                .email(nettoyer(requete.getEmail()))
+                .motDePasse(requete.getMotDePasse())
+                .prenom(nettoyer(requete.getPrenom()))
+                .nom(nettoyer(requete.getNom()))
+                .dateNaissance(requete.getDateNaissance())
+                .sexe(nettoyer(requete.getSexe()))
+                .poids(requete.getPoids())
+                .taille(requete.getTaille())
+                .niveauActivite(nettoyer(requete.getNiveauActivite()))
+                .objectifSante(nettoyer(requete.getObjectifSante()))
+                .numeroTelephone(nettoyer(requete.getNumeroTelephone()))
+                .adresse(nettoyer(requete.getAdresse()))
+                .medecinTraitant(nettoyer(requete.getMedecinTraitant()))
+                .contactUrgence(nettoyer(requete.getContactUrgence()))
+                .telephoneUrgence(nettoyer(requete.getTelephoneUrgence()))
+                .actif(true)
+                .build();
+        List<String> erreurs = new ArrayList<>();
+        validator.validate(utilisateur).forEach(v -> erreurs.add(v.getPropertyPath() + ": " + v.getMessage()));
+
+        List<AllergieUtilisateur> associations = new ArrayList<>();
+        Set<Long> declarees = new HashSet<>();
+        if (requete.getAllergies() != null) {
+            for (ImportUtilisateurRequest.AllergieImport declaree : requete.getAllergies()) {
+                AllergieConnue allergie = declaree == null ? null : allergies.get(Allergenes.normaliser(declaree.getNom()));
+                if (allergie == null) {
+                    erreurs.add("allergies: allergie inconnue du catalogue: " + (declaree == null ? null : declaree.getNom()));
+                    continue;
+                }
+                if (!declarees.add(allergie.id())) {
+                    continue; // même allergie déclarée deux fois
+                }
+                AllergieUtilisateur association = AllergieUtilisateur.builder()
+                        .id(new AllergieUtilisateur.AllergieUtilisateurId(null, allergie.id()))
+                        .utilisateur(utilisateur)
+                        .niveauSeverite(declaree.getNiveauSeverite() != null
+                                ? nettoyer(declaree.getNiveauSeverite()) : allergie.niveauSeverite())
+                        .dateDiagnostic(declaree.getDateDiagnostic() == null ? null : declaree.getDateDiagnostic().atStartOfDay())
+                        .diagnostiquePar(nettoyer(declaree.getDiagnostiquePar()))
+                        .notes(declaree.getNotes())
+                        .traitementActuel(declaree.getTraitementActuel())
+                        .actif(true)
+                        .build();
+                validator.validate(association).forEach(v ->
+                        erreurs.add("allergies[" + declaree.getNom() + "]." + v.getPropertyPath() + ": " + v.getMessage()));
+                associations.add(association);
+            }
+        }
+        return new Candidat(ligne, utilisateur, associations, erreurs);
+    }
+
+    private void inserer(List<Candidat> candidats) {
+        if (candidats.isEmpty()) return;
+        transactionTemplate.executeWithoutResult(status -> {
+            List<Utilisateur> utilisateurs = new ArrayList<>(candidats.size());
+            for (Candidat candidat : candidats) {
+                candidat.associations().forEach(a -> a.setAllergie(allergieRepository.getReferenceById(a.getId().getAllergieId())));
+                // Les allergies suivent par cascade, leur clé reprend l'identifiant généré (@MapsId)
+                candidat.utilisateur().setAllergies(candidat.associations());
+                utilisateurs.add(candidat.utilisateur());
+            }
+            utilisateurRepository.saveAll(utilisateurs);
+            utilisateurRepository.flush();
+        });
+    }
+
+    /**
+     * Après un lot annulé, les entités gardent les identifiants générés : elles doivent redevenir nouvelles
+     */
+    private static void reinitialiser(Candidat candidat) {
+        candidat.utilisateur().setId(null);
+        candidat.associations().forEach(a -> a.getId().setUtilisateurId(null));
+    }
+
+    private static void compterImportes(Execution execution, List<Candidat> importes) {
+        execution.utilisateursImportes.addAndGet(importes.size());
+        execution.allergiesImportees.addAndGet(importes.stream().mapToLong(c -> c.associations().size()).sum());
+    }
+
+    private Set<String> existants(Function<Collection<String>, List<String>> requete, Set<String> valeurs) {
+        if (valeurs.isEmpty()) return Set.of();
+        if (!routageShards.isActif()) {
+            return new HashSet<>(lecture.execute(status -> requete.apply(valeurs)));
+        }
+        Set<String> existants = new HashSet<>();
+        scatterGather.surTousLesShards(() -> requete.apply(valeurs)).values().forEach(existants::addAll);
+        return existants;
+    }
+
+    /**
+     * Allergies actives par nom normalisé, et par ce sur quoi elles portent ("arachides")
+     */
+    private Map<String, AllergieConnue> chargerAllergies() {
+        Map<String, AllergieConnue> allergies = new HashMap<>();
+        lecture.executeWithoutResult(status -> {
+            for (Allergie allergie : allergieRepository.findByActifTrue()) {
+                AllergieConnue connue = new AllergieConnue(allergie.getId(), allergie.getNiveauSeverite());
+                allergies.put(Allergenes.normaliser(allergie.getNom()), connue);
+                String objet = Allergenes.depuisNomAllergie(allergie.getNom());
+                if (!objet.isEmpty()) {
+                    allergies.putIfAbsent(objet, connue);
+                }
+            }
+        });
+        return allergies;
+    }
+
+    private void rejeter(Execution execution, BufferedWriter rejets, LigneImport ligne, List<String> erreurs) throws IOException {
+        Map<String, Object> rejet = new LinkedHashMap<>();
+        rejet.put("ligne", ligne.numero());
+        rejet.put("contenu", ligne.brut());
+        rejet.put("erreurs", erreurs);
+        rejets.write(objectMapper.writeValueAsString(rejet));
+        rejets.newLine();
+        execution.lignesRejetees.incrementAndGet();
+    }
+
+    /**
+     * CSV : colonnes nommées comme les champs d'ImportUtilisateurRequest ; la colonne allergies
+     * liste "nom[:sévérité]" séparés par '|'
+     */
+    private SourceLignes csv(BufferedReader lecteur) throws IOException {
+        LecteurCsv csv = new LecteurCsv(lecteur);
+        List<String> entete = csv.getEntete();
+        return () -> {
+            LecteurCsv.Enregistrement enregistrement = csv.suivant();
+            if (enregistrement == null) return null;
+            Map<String, Object> valeurs = new HashMap<>();
+            List<String> champs = enregistrement.champs();
+            for (int i = 0; i < Math.min(entete.size(), champs.size()); i++) {
+                String valeur = champs.get(i).trim();
+                if (valeur.isEmpty()) continue;
+                valeurs.put(entete.get(i), entete.get(i).equals(COLONNE_ALLERGIES) ? allergiesCsv(valeur) : valeur);
+            }
+            try {
+                return LigneImport.valide(enregistrement.ligne(), enregistrement.brut(),
+                        objectMapper.convertValue(valeurs, ImportUtilisateurRequest.class));
+            } catch (IllegalArgumentException e) {
+                return LigneImport.invalide(enregistrement.ligne(), enregistrement.brut(),
+                        "valeur illisible: " + NestedExceptionUtils.getMostSpecificCause(e).getMessage());
+            }
+        };
+    }
+
+    private static List<Map<String, String>> allergiesCsv(String valeur) {
+        List<Map<String, String>> allergies = new ArrayList<>();
+        for (String element : valeur.split("\\|")) {
+            if (element.isBlank()) continue;
+            int separateur = element.lastIndexOf(':');
+            Map<String, String> allergie = new HashMap<>();
+            allergie.put("nom", (separateur < 0 ? element : element.substring(0, separateur)).trim());
+            if (separateur >= 0) {
+                allergie.put("niveauSeverite", element.substring(separateur + 1).trim());
+            }
+            allergies.add(allergie);
+        }
+        return allergies;
+    }
+
+    private SourceLignes ndjson(BufferedReader lecteur) {
+        AtomicLong numero = new AtomicLong();
+        return () -> {
+            String texte;
+            do {
+                texte = lecteur.readLine();
+                if (texte == null) return null;
+                numero.incrementAndGet();
+            } while (texte.isBlank());
+            try {
+                return LigneImport.valide(numero.get(), texte, objectMapper.readValue(texte, ImportUtilisateurRequest.class));
+            } catch (JsonProcessingException e) {
+                return LigneImport.invalide(numero.get(), texte, "JSON illisible: " + e.getOriginalMessage());
+            }
+        };
+    }
+
+    private static String nettoyer(String valeur) {
+        if (valeur == null) return null;
+        String nettoyee = valeur.trim();
+        return nettoyee.isEmpty() ? null : nettoyee;
+    }
+
+    private ProgressionImportResponse progression(Execution execution) {
+        long lignes = execution.lignesLues.get();
+        long octetsLus = execution.octetsLus;
+        LocalDateTime fin = execution.dateFin;
+        double secondes = execution.debutNs == 0 ? 0
+                : (System.nanoTime() - execution.debutNs) / (double) TimeUnit.SECONDS.toNanos(1);
+        double debit = secondes > 0 ? lignes / secondes : 0;
+        Long eta = null;
+        if (fin == null && octetsLus > 0 && secondes > 0) {
+            eta = Math.round(secondes * (execution.octetsTotal - octetsLus) / octetsLus);
+        }
+        return ProgressionImportResponse.builder()
+                .importId(execution.id)
+                .format(execution.format.name())
+                .statut(execution.statut)
+                .octetsTotal(execution.octetsTotal)
+                .octetsLus(octetsLus)
+                .pourcentage(execution.octetsTotal == 0 ? 100.0
+                        : Math.round(1000.0 * octetsLus / execution.octetsTotal) / 10.0)
+                .lignesLues(lignes)
+                .utilisateursImportes(execution.utilisateursImportes.get())
+                .allergiesImportees(execution.allergiesImportees.get())
+                .lignesRejetees(execution.lignesRejetees.get())
+                .debitLignesParSeconde(Math.round(debit * 10) / 10.0)
+                .etaSecondes(eta)
+                .dateCreation(execution.dateCreation)
+                .dateFin(fin)
+                .messageErreur(execution.messageErreur)
+                .build();
+    }
+
+    @PreDestroy
+    void arreter() {
+        worker.shutdownNow();
+    }
+
+    @FunctionalInterface
+    private interface SourceLignes {
+        /**
+         * @return la ligne suivante, null en fin de fichier
+         */
+        LigneImport suivante() throws IOException;
+    }
+
+    /**
+     * Ligne lue du fichier ; erreurs non vide si elle n'a pas pu être interprétée
+     */
+    private record LigneImport(long numero, String brut, ImportUtilisateurRequest requete, List<String> erreurs) {
+
+        static LigneImport valide(long numero, String brut, ImportUtilisateurRequest requete) {
+            return new LigneImport(numero, brut, requete, new ArrayList<>());
+        }
+
+        static LigneImport invalide(long numero, String brut, String erreur) {
+            return new LigneImport(numero, brut, null, new ArrayList<>(List.of(erreur)));
+        }
+    }
+
+    private record Candidat(LigneImport ligne, Utilisateur utilisateur, List<AllergieUtilisateur> associations,
+                            List<String> erreurs) {
+    }
+
+    private record AllergieConnue(Long id, String niveauSeverite) {
+    }
+
+    /**
+     * Octets du fichier déjà lus (progression et ETA)
+     */
+    private static final class CompteurOctets extends FilterInputStream {
+
+        private long lus;
+
+        CompteurOctets(InputStream entree) {
+            super(entree);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int octet = super.read();
+            if (octet >= 0) lus++;
+            return octet;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            if (n > 0) lus += n;
+            return n;
+        }
+    }
+
+    private static final class Execution {
+
+        private final long id;
+        private final Format format;
+        private final Path source;
+        private final Path fichierRejets;
+        private final long octetsTotal;
+        private final LocalDateTime dateCreation = LocalDateTime.now();
+        private final AtomicLong lignesLues = new AtomicLong();
+        private final AtomicLong utilisateursImportes = new AtomicLong();
+        private final AtomicLong allergiesImportees = new AtomicLong();
+        private final AtomicLong lignesRejetees = new AtomicLong();
+        // Utilisateurs créés sur le principal dont le déplacement vers leur shard a échoué (worker seul)
+        private final List<Long> nonDeplaces = new ArrayList<>();
+        private volatile long octetsLus;
+        private volatile long debutNs;
+        private volatile String statut = "EN_COURS";
+        private volatile LocalDateTime dateFin;
+        private volatile String messageErreur;
+
+        Execution(long id, Format format, Path source, Path fichierRejets, long octetsTotal) {
+            this.id = id;
+            this.format = format;
+            this.source = source;
+            this.fichierRejets = fichierRejets;
+            this.octetsTotal = octetsTotal;
+        }
+    }
+}
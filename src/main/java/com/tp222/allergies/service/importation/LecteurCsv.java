@@ -0,0 +1,118 @@
+package com.tp222.allergies.service.importation;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Lecture en flux d'un fichier CSV (RFC 4180) : un enregistrement à la fois, mémoire bornée par la
+ * longueur d'un enregistrement.
+ *
+ * La première ligne est l'en-tête ; le séparateur (virgule ou point-virgule, export Excel français)
+ * est déduit de l'en-tête. Un champ entre guillemets peut contenir séparateurs, guillemets doublés
+ * et retours à la ligne. Les lignes vides sont ignorées.
+ */
+public final class LecteurCsv {
+
+    // Un guillemet jamais fermé ne doit pas faire lire tout le fichier en mémoire
+    static final int LONGUEUR_MAX = 64 * 1024;
+
+    /**
+     * @param ligne numéro de la première ligne physique de l'enregistrement
+     * @param brut texte de l'enregistrement tel que lu
+     */
+    public record Enregistrement(long ligne, String brut, List<String> champs) {
+    }
+
+    private final BufferedReader lecteur;
+    private final char separateur;
+    private final List<String> entete;
+    private long ligne;
+
+    public LecteurCsv(BufferedReader lecteur) throws IOException {
+        this.lecteur = lecteur;
+        String premiere = lecteur.readLine();
+        if (premiere == null || premiere.isBlank()) {
+            throw new IllegalArgumentException("Fichier CSV vide ou sans en-tête");
+        }
+        if (premiere.charAt(0) == '\uFEFF') {
+            premiere = premiere.substring(1);
+        }
+        this.separateur = compter(premiere, ';') > compter(premiere, ',') ? ';' : ',';
+        this.ligne = 1;
+        this.entete = decouper(premiere, 1).champs().stream().map(String::trim).toList();
+    }
+
+    public List<String> getEntete() {
+        return entete;
+    }
+
+    /**
+     * @return l'enregistrement suivant, null en fin de fichier
+     * @throws IllegalArgumentException si un enregistrement dépasse LONGUEUR_MAX (guillemet non fermé)
+     */
+    public Enregistrement suivant() throws IOException {
+        String texte;
+        do {
+            texte = lecteur.readLine();
+            if (texte == null) return null;
+            ligne++;
+        } while (texte.isBlank());
+        return decouper(texte, ligne);
+    }
+
+    private Enregistrement decouper(String texte, long debut) throws IOException {
+        StringBuilder brut = new StringBuilder(texte);
+        List<String> champs = new ArrayList<>();
+        StringBuilder champ = new StringBuilder();
+        boolean guillemets = false;
+        int i = 0;
+        while (true) {
+            if (i == texte.length()) {
+                String suite = guillemets ? lecteur.readLine() : null;
+                if (suite == null) {
+                    // Fin d'enregistrement (ou de fichier dans un champ entre guillemets : champ tronqué)
+                    champs.add(champ.toString());
+                    return new Enregistrement(debut, brut.toString(), champs);
+                }
+                ligne++;
+                if (brut.length() + suite.length() > LONGUEUR_MAX) {
+                    throw new IllegalArgumentException("Enregistrement CSV de plus de " + LONGUEUR_MAX +
+                            " caractères à partir de la ligne " + debut + " (guillemet non fermé ?)");
+                }
+                champ.append('\n');
+                brut.append('\n').append(suite);
+                texte = suite;
+                i = 0;
+                continue;
+            }
+            char c = texte.charAt(i++);
+            if (guillemets) {
+                if (c != '"') {
+                    champ.append(c);
+                } else if (i < texte.length() && texte.charAt(i) == '"') {
+                    champ.append('"');
+                    i++;
+                } else {
+                    guillemets = false;
+                }
+            } else if (c == '"' && champ.isEmpty()) {
+                guillemets = true;
+            } else if (c == separateur) {
+                champs.add(champ.toString());
+                champ.setLength(0);
+            } else {
+                champ.append(c);
+            }
+        }
+    }
+
+    private static int compter(String texte, char caractere) {
+        int n = 0;
+        for (int i = 0; i < texte.length(); i++) {
+            if (texte.charAt(i) == caractere) n++;
+        }
+        return n;
+    }
+}
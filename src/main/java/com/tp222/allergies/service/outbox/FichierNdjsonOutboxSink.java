@@ -0,0 +1,62 @@
+package com.tp222.allergies.service.outbox;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.tp222.allergies.model.entity.EvenementOutbox;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+/**
+ * Sink local : ajoute chaque événement sous forme d'une ligne JSON (NDJSON) dans un fichier,
+ * synchronisé sur disque avant que le lot ne soit marqué comme diffusé
+ */
+@Component
+@ConditionalOnProperty(name = "allergies.outbox.sink", havingValue = "fichier", matchIfMissing = true)
+@Slf4j
+public class FichierNdjsonOutboxSink implements OutboxSink {
+
+    private final ObjectMapper objectMapper;
+    private final Path fichier;
+
+    public FichierNdjsonOutboxSink(ObjectMapper objectMapper,
+                                   @Value("${allergies.outbox.fichier:outbox/evenements.ndjson}") String fichier) {
+        this.objectMapper = objectMapper;
+        this.fichier = Path.of(fichier);
+    }
+
+    @Override
+    public void publier(List<EvenementOutbox> lot) throws IOException {
+        StringBuilder lignes = new StringBuilder();
+        for (EvenementOutbox evenement : lot) {
+            ObjectNode ligne = objectMapper.createObjectNode();
+            ligne.put("id", evenement.getId());
+            ligne.put("type", evenement.getTypeEvenement());
+            ligne.put("utilisateurId", evenement.getUtilisateurId());
+            ligne.put("dateCreation", String.valueOf(evenement.getDateCreation()));
+            ligne.set("payload", objectMapper.readTree(evenement.getPayload()));
+            lignes.append(objectMapper.writeValueAsString(ligne)).append('\n');
+        }
+
+        if (fichier.toAbsolutePath().getParent() != null) {
+            Files.createDirectories(fichier.toAbsolutePath().getParent());
+        }
+        try (FileChannel canal = FileChannel.open(fichier,
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+            ByteBuffer contenu = ByteBuffer.wrap(lignes.toString().getBytes(StandardCharsets.UTF_8));
+            while (contenu.hasRemaining()) {
+                canal.write(contenu);
+            }
+            canal.force(false);
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package com.tp222.allergies.service.outbox;
+
+import com.tp222.allergies.model.entity.EvenementOutbox;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Broker embarqué (substitut de Kafka/RabbitMQ pour les tests et le développement).
+ *
+ * Les événements sont répartis en partitions par utilisateur, comme le ferait une clé de
+ * message : l'ordre est conservé au sein d'une partition et les consommateurs lisent par poll.
+ */
+@Component
+@ConditionalOnProperty(name = "allergies.outbox.sink", havingValue = "memoire")
+public class MemoireOutboxSink implements OutboxSink {
+
+    private final List<ConcurrentLinkedQueue<EvenementOutbox>> partitions = new ArrayList<>();
+    private final AtomicLong recus = new AtomicLong();
+
+    public MemoireOutboxSink(@Value("${allergies.outbox.partitions:8}") int nombrePartitions) {
+        for (int i = 0; i < nombrePartitions; i++) {
+            partitions.add(new ConcurrentLinkedQueue<>());
+        }
+    }
+
+    @Override
+    public void publier(List<EvenementOutbox> lot) {
+        for (EvenementOutbox evenement : lot) {
+            partitions.get(partition(evenement.getUtilisateurId())).add(evenement);
+        }
+        recus.addAndGet(lot.size());
+    }
+
+    /**
+     * Consomme jusqu'à {@code max} événements d'une partition, dans l'ordre
+     */
+    public List<EvenementOutbox> consommer(int partition, int max) {
+        List<EvenementOutbox> resultat = new ArrayList<>();
+        EvenementOutbox evenement;
+        while (resultat.size() < max && (evenement = partitions.get(partition).poll()) != null) {
+            resultat.add(evenement);
+        }
+        return resultat;
+    }
+
+    public int partition(Long utilisateurId) {
+        return (int) Math.floorMod(utilisateurId, (long) partitions.size());
+    }
+
+    public int getNombrePartitions() {
+        return partitions.size();
+    }
+
+    public long getNombreRecus() {
+        return recus.get();
+    }
+}
@@ -0,0 +1,297 @@
+package com.tp222.allergies.service.outbox;
+
+import com.tp222.allergies.model.entity.EvenementOutbox;
+import com.tp222.allergies.repository.EvenementOutboxRepository;
+import com.tp222.allergies.service.sharding.RoutageShards;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Relais de l'outbox : vide la table par lots vers le sink configuré.
+ *
+ * Livraison au moins une fois : un lot n'est marqué traité qu'après acceptation par le sink ;
+ * en cas d'échec (ou d'arrêt entre publication et marquage) il est rejoué en entier, toujours
+ * depuis l'événement le plus ancien, ce qui préserve l'ordre par utilisateur.
+ * La taille de lot s'adapte : elle double tant que les lots sont pleins et rapides, et
+ * diminue de moitié quand le sink dépasse la latence cible.
+ *
+ * Avec plusieurs instances, une seule relaie un shard à la fois : le cycle d'un shard se fait sous
+ * un verrou consultatif PostgreSQL de session (pg_try_advisory_lock), pris sur une connexion dédiée ;
+ * les autres instances passent leur tour. Deux relais ne lisent donc jamais le même lot et l'ordre
+ * par id est conservé jusqu'au sink. Le verrou tombe avec la connexion si l'instance s'arrête.
+ * Sur H2 (tests, profils locaux à une instance), pas d'élection.
+ *
+ * Après un lot refusé par le sink, le plus ancien événement est relayé seul : s'il passe, les
+ * lots reprennent ; s'il échoue encore, le shard attend de plus en plus longtemps avant l'essai
+ * suivant, et au-delà de tentatives-max l'événement est rejeté (date_rejet), compté et laissé en
+ * table pour analyse. Le relais passe alors aux suivants au lieu de bloquer le shard ; les autres
+ * événements du même utilisateur sont diffusés sans lui.
+ *
+ * Avec le sharding, chaque shard a sa table d'outbox, écrite dans la transaction de l'utilisateur :
+ * le relais les vide tour à tour, l'ordre par id n'est garanti qu'au sein d'un shard, ce qui
+ * suffit à l'ordre par utilisateur.
+ */
+@Component
+@Slf4j
+public class OutboxRelay {
+
+    // Clé du verrou consultatif du relais, la même sur toutes les instances
+    private static final long VERROU_RELAIS = 0x4F5554424F58L; // "OUTBOX"
+
+    private final EvenementOutboxRepository evenementOutboxRepository;
+    private final OutboxSink sink;
+    private final RoutageShards routageShards;
+    private final TransactionTemplate transactionTemplate;
+
+    private final int tailleLotMin;
+    private final int tailleLotMax;
+    private final long latenceCibleMs;
+    private final int lotsMaxParCycle;
+    private final int retentionJours;
+    private final int tentativesMax;
+    private final long intervalleMs;
+    private final long reportMaxMs;
+    private volatile int tailleLot;
+
+    // Prochain essai (System.nanoTime) des shards dont le dernier lot a échoué
+    private final Map<String, Long> reports = new ConcurrentHashMap<>();
+    // Shards dont le dernier lot a échoué : le plus ancien événement y est relayé seul
+    private final Set<String> isolements = ConcurrentHashMap.newKeySet();
+
+    private final AtomicLong enAttente = new AtomicLong();
+    private final AtomicLong retardSecondes = new AtomicLong();
+    private final AtomicLong rejetes = new AtomicLong();
+    private final Counter diffuses;
+    private final Counter echecs;
+    private final Counter rejets;
+    private final DistributionSummary tailleLots;
+    private final Timer dureeSink;
+
+    public OutboxRelay(EvenementOutboxRepository evenementOutboxRepository,
+                       OutboxSink sink,
+                       RoutageShards routageShards,
+                       PlatformTransactionManager transactionManager,
+                       MeterRegistry registry,
+                       @Value("${allergies.outbox.taille-lot-min:50}") int tailleLotMin,
+                       @Value("${allergies.outbox.taille-lot-max:2000}") int tailleLotMax,
+                       @Value("${allergies.outbox.latence-cible-ms:200}") long latenceCibleMs,
+                       @Value("${allergies.outbox.lots-max-par-cycle:20}") int lotsMaxParCycle,
+                       @Value("${allergies.outbox.retention-jours:7}") int retentionJours,
+                       @Value("${allergies.outbox.tentatives-max:10}") int tentativesMax,
+                       @Value("${allergies.outbox.intervalle-ms:1000}") long intervalleMs,
+                       @Value("${allergies.outbox.report-max-ms:300000}") long reportMaxMs) {
+        this.evenementOutboxRepository = evenementOutboxRepository;
+        this.sink = sink;
+        this.routageShards = routageShards;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.tailleLotMin = tailleLotMin;
+        this.tailleLotMax = tailleLotMax;
+        this.latenceCibleMs = latenceCibleMs;
+        this.lotsMaxParCycle = lotsMaxParCycle;
+        this.retentionJours = retentionJours;
+        this.tentativesMax = tentativesMax;
+        this.intervalleMs = intervalleMs;
+        this.reportMaxMs = reportMaxMs;
+        this.tailleLot = tailleLotMin;
+
+        this.diffuses = registry.counter("allergies.outbox.diffuses");
+        this.echecs = registry.counter("allergies.outbox.echecs");
+        this.rejets = registry.counter("allergies.outbox.rejets");
+        this.tailleLots = DistributionSummary.builder("allergies.outbox.taille_lot").register(registry);
+        this.dureeSink = Timer.builder("allergies.outbox.duree_sink").register(registry);
+        Gauge.builder("allergies.outbox.en_attente", enAttente, AtomicLong::get)
+                .description("Événements non encore diffusés").register(registry);
+        Gauge.builder("allergies.outbox.retard_secondes", retardSecondes, AtomicLong::get)
+                .description("Âge de l'événement en attente le plus ancien").register(registry);
+        Gauge.builder("allergies.outbox.rejetes", rejetes, AtomicLong::get)
+                .description("Événements rejetés après trop d'échecs, à rediffuser à la main").register(registry);
+        Gauge.builder("allergies.outbox.taille_lot_courante", this, r -> r.tailleLot).register(registry);
+    }
+
+    @Scheduled(fixedDelayString = "${allergies.outbox.intervalle-ms:1000}")
+    public void relayer() {
+        for (String shard : routageShards.getShards()) {
+            Long report = reports.get(shard);
+            if (report != null && System.nanoTime() - report < 0) {
+                continue;
+            }
+            try (Connection verrou = routageShards.getSource(shard).getConnection()) {
+                if (!verrouiller(verrou)) {
+                    log.debug("Outbox du shard {} relayée par une autre instance", shard);
+                    continue;
+                }
+                try {
+                    routageShards.executerSur(shard, () -> {
+                        for (int i = 0; i < lotsMaxParCycle; i++) {
+                            int taille = tailleLot;
+                            int diffusesLot = relayerLot(shard, taille);
+                            if (diffusesLot < taille) {
+                                break;
+                            }
+                        }
+                        return null;
+                    });
+                } finally {
+                    deverrouiller(verrou);
+                }
+            } catch (SQLException e) {
+                log.warn("Verrou du relais outbox indisponible sur {}: {}", shard, e.getMessage());
+            }
+        }
+        mesurerRetard();
+    }
+
+    /**
+     * @return false si une autre instance relaie déjà ce shard
+     */
+    private static boolean verrouiller(Connection connexion) throws SQLException {
+        if (!estPostgres(connexion)) {
+            return true;
+        }
+        try (PreparedStatement statement = connexion.prepareStatement("SELECT pg_try_advisory_lock(?)")) {
+            statement.setLong(1, VERROU_RELAIS);
+            try (ResultSet resultat = statement.executeQuery()) {
+                return resultat.next() && resultat.getBoolean(1);
+            }
+        }
+    }
+
+    private static void deverrouiller(Connection connexion) throws SQLException {
+        if (!estPostgres(connexion)) {
+            return;
+        }
+        try (PreparedStatement statement = connexion.prepareStatement("SELECT pg_advisory_unlock(?)")) {
+            statement.setLong(1, VERROU_RELAIS);
+            statement.execute();
+        }
+    }
+
+    private static boolean estPostgres(Connection connexion) throws SQLException {
+        return connexion.getMetaData().getDatabaseProductName().toLowerCase(Locale.ROOT).contains("postgresql");
+    }
+
+    /**
+     * Relaie un lot ; la lecture et le marquage se font dans deux transactions courtes
+     * pour ne pas garder de connexion pendant l'appel au sink
+     * @return le nombre d'événements diffusés
+     */
+    int relayerLot(String shard, int taille) {
+        List<EvenementOutbox> lot = transactionTemplate.execute(status ->
+                evenementOutboxRepository.findLotNonTraite(PageRequest.of(0, taille)));
+        if (lot == null || lot.isEmpty()) {
+            return 0;
+        }
+        if (isolements.contains(shard)) {
+            lot = lot.subList(0, 1);
+        }
+        List<Long> ids = lot.stream().map(EvenementOutbox::getId).toList();
+
+        long debut = System.nanoTime();
+        try {
+            sink.publier(lot);
+        } catch (Exception e) {
+            echecs.increment();
+            tailleLot = Math.max(tailleLotMin, taille / 2);
+            log.warn("Échec de diffusion d'un lot outbox de {} événements (premier id {}): {}",
+                    lot.size(), ids.get(0), e.getMessage());
+            transactionTemplate.executeWithoutResult(status -> evenementOutboxRepository.incrementerTentatives(ids));
+            int tentatives = lot.get(0).getTentatives() + 1;
+            if (lot.size() > 1) {
+                isolements.add(shard);
+            } else if (tentatives >= tentativesMax) {
+                rejeter(shard, lot.get(0), tentatives);
+            } else {
+                reporter(shard, tentatives);
+            }
+            return 0;
+        }
+        reports.remove(shard);
+        isolements.remove(shard);
+        long dureeMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - debut);
+        dureeSink.record(Duration.ofMillis(dureeMs));
+
+        transactionTemplate.executeWithoutResult(status ->
+                evenementOutboxRepository.marquerTraites(ids, LocalDateTime.now()));
+        diffuses.increment(lot.size());
+        tailleLots.record(lot.size());
+        ajusterTailleLot(taille, lot.size(), dureeMs);
+        return lot.size();
+    }
+
+    private void rejeter(String shard, EvenementOutbox evenement, int tentatives) {
+        Integer rejete = transactionTemplate.execute(status ->
+                evenementOutboxRepository.rejeter(evenement.getId(), LocalDateTime.now()));
+        if (rejete != null && rejete == 1) {
+            rejets.increment();
+            log.error("Événement outbox {} ({}, utilisateur {}) rejeté sur {} après {} échecs",
+                    evenement.getId(), evenement.getTypeEvenement(), evenement.getUtilisateurId(), shard, tentatives);
+        }
+        reports.remove(shard);
+    }
+
+    /**
+     * Attente exponentielle avant de rejouer le shard : une panne du sink ne consomme pas
+     * les tentatives de l'événement en tête au rythme du relais
+     */
+    private void reporter(String shard, int tentatives) {
+        long attenteMs = Math.min(reportMaxMs, intervalleMs << Math.min(tentatives, 20));
+        reports.put(shard, System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(attenteMs));
+    }
+
+    private void ajusterTailleLot(int taille, int diffusesLot, long dureeMs) {
+        if (dureeMs > latenceCibleMs) {
+            tailleLot = Math.max(tailleLotMin, taille / 2);
+        } else if (diffusesLot == taille) {
+            tailleLot = Math.min(tailleLotMax, taille * 2);
+        }
+    }
+
+    private void mesurerRetard() {
+        long attente = 0;
+        long rejetesShards = 0;
+        LocalDateTime plusAncien = null;
+        for (String shard : routageShards.getShards()) {
+            attente += routageShards.executerSur(shard, evenementOutboxRepository::countByDateTraitementIsNullAndDateRejetIsNull);
+            rejetesShards += routageShards.executerSur(shard, evenementOutboxRepository::countByDateRejetIsNotNull);
+            LocalDateTime plusAncienShard = routageShards.executerSur(shard, evenementOutboxRepository::findDateCreationPlusAncienNonTraite);
+            if (plusAncienShard != null && (plusAncien == null || plusAncienShard.isBefore(plusAncien))) {
+                plusAncien = plusAncienShard;
+            }
+        }
+        enAttente.set(attente);
+        rejetes.set(rejetesShards);
+        retardSecondes.set(plusAncien == null ? 0 : Duration.between(plusAncien, LocalDateTime.now()).toSeconds());
+    }
+
+    @Scheduled(cron = "${allergies.outbox.purge-cron:0 30 3 * * *}")
+    public void purger() {
+        for (String shard : routageShards.getShards()) {
+            Integer supprimes = routageShards.executerSur(shard, () -> transactionTemplate.execute(status ->
+                    evenementOutboxRepository.supprimerTraitesAvant(LocalDateTime.now().minusDays(retentionJours))));
+            log.info("Purge de l'outbox ({}): {} événements diffusés supprimés", shard, supprimes);
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package com.tp222.allergies.service.outbox;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.tp222.allergies.model.entity.EvenementOutbox;
+import com.tp222.allergies.repository.EvenementOutboxRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Écriture des événements dans l'outbox, obligatoirement dans la transaction métier appelante
+ */
+@Service
+@RequiredArgsConstructor
+public class OutboxService {
+
+    public static final String REACTION_ENREGISTREE = "REACTION_ENREGISTREE";
+    public static final String ALLERGIE_DETECTEE = "ALLERGIE_DETECTEE";
+    public static final String UTILISATEUR_EFFACE = "UTILISATEUR_EFFACE";
+
+    private final EvenementOutboxRepository evenementOutboxRepository;
+    private final ObjectMapper objectMapper;
+
+    /**
+     * Ajoute un événement à l'outbox ; échoue s'il n'y a pas de transaction en cours,
+     * pour garantir que l'événement et la donnée sont validés ou annulés ensemble
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void enregistrer(String typeEvenement, Long utilisateurId, Object payload) {
+        try {
+            evenementOutboxRepository.save(EvenementOutbox.builder()
+                    .typeEvenement(typeEvenement)
+                    .utilisateurId(utilisateurId)
+                    .payload(objectMapper.writeValueAsString(payload))
+                    .build());
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Payload d'événement non sérialisable: " + typeEvenement, e);
+        }
+    }
+}
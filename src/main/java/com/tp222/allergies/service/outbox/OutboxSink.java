@@ -0,0 +1,15 @@
+package com.tp222.allergies.service.outbox;
+
+import com.tp222.allergies.model.entity.EvenementOutbox;
+import java.util.List;
+
+/**
+ * Destination des événements relayés depuis l'outbox.
+ *
+ * Le lot est fourni dans l'ordre d'écriture ; une implémentation doit soit tout accepter,
+ * soit lever une exception (le lot entier sera alors rejoué : livraison au moins une fois).
+ */
+public interface OutboxSink {
+
+    void publier(List<EvenementOutbox> lot) throws Exception;
+}
@@ -0,0 +1,52 @@
+package com.tp222.allergies.service.scoring;
+
+import java.math.BigDecimal;
+
+/**
+ * Vecteur de caractéristiques commun à l'entraînement et à l'inférence du modèle logistique.
+ *
+ * Une seule définition évite tout décalage entre les colonnes apprises et celles calculées
+ * sur le chemin de requête.
+ */
+final class Caracteristiques {
+    
+    static final int DIMENSION = 10;
+    static final String[] NOMS = {
+        "severite_leger", "severite_modere", "severite_severe", "severite_critique",
+        "log_duree_minutes", "log_quantite_grammes", "hospitalisation", "medecin_consulte",
+        "historique", "aliment_allergenes"
+    };
+    
+    // Au-delà, une réaction antérieure de plus n'apporte plus d'information
+    private static final int HISTORIQUE_MAX = 10;
+    
+    private Caracteristiques() {
+    }
+    
+    /**
+     * Écrit les caractéristiques d'une réaction dans x[offset .. offset + DIMENSION[
+     */
+    static void remplir(double[] x, int offset, String niveauSeverite, Integer dureeReaction,
+                        double quantiteConsommee, Boolean hospitalisationRequise, Boolean medecinConsulte,
+                        long tailleHistorique, boolean alimentAvecAllergenes) {
+        int severite = TableRiskModel.indexSeverite(niveauSeverite);
+        for (int s = 1; s <= 4; s++) {
+            x[offset + s - 1] = severite == s ? 1.0 : 0.0;
+        }
+        x[offset + 4] = dureeReaction == null ? 0.0 : Math.log1p(Math.max(0, dureeReaction));
+        x[offset + 5] = Math.log1p(Math.max(0.0, quantiteConsommee));
+        x[offset + 6] = Boolean.TRUE.equals(hospitalisationRequise) ? 1.0 : 0.0;
+        x[offset + 7] = Boolean.TRUE.equals(medecinConsulte) ? 1.0 : 0.0;
+        x[offset + 8] = Math.min(tailleHistorique, HISTORIQUE_MAX);
+        x[offset + 9] = alimentAvecAllergenes ? 1.0 : 0.0;
+    }
+    
+    static void remplir(double[] x, int offset, FacteursProbabilite f) {
+        remplir(x, offset, f.niveauSeverite(), f.dureeReaction(), quantite(f.quantiteConsommee()),
+                f.hospitalisationRequise(), f.medecinConsulte(), f.tailleHistorique(), f.alimentAvecAllergenes());
+    }
+    
+    static double quantite(BigDecimal quantiteConsommee) {
+        return quantiteConsommee == null ? 0.0 : quantiteConsommee.doubleValue();
+    }
+}
@@ -0,0 +1,48 @@
+package com.tp222.allergies.service.scoring;
+
+import com.tp222.allergies.model.entity.AllergieUtilisateur;
+import com.tp222.allergies.model.entity.Aliment;
+import com.tp222.allergies.model.entity.ReactionAllergique;
+import java.math.BigDecimal;
+import java.util.List;
+
+/**
+ * Facteurs d'une vérification de risque, extraits des entités (copie immuable, sans chargement paresseux)
+ */
+public record EntreeScoreRisque(int allergiesCritiques,
+                                int allergiesNonCritiques,
+                                List<FacteursReaction> reactions,
+                                List<ReactionCroisee> reactionsCroisees,
+                                boolean alimentAvecAllergenes) {
+    
+    /**
+     * Facteurs d'une réaction passée
+     */
+    public record FacteursReaction(String niveauSeverite,
+                                   Boolean hospitalisationRequise,
+                                   Boolean medecinConsulte,
+                                   Integer dureeReaction,
+                                   BigDecimal probabiliteAllergie) {
+        
+        public static FacteursReaction de(ReactionAllergique reaction) {
+            return new FacteursReaction(reaction.getNiveauSeverite(), reaction.getHospitalisationRequise(),
+                    reaction.getMedecinConsulte(), reaction.getDureeReaction(), reaction.getProbabiliteAllergie());
+        }
+    }
+    
+    /**
+     * Réaction passée à un aliment à réactivité croisée avec l'aliment vérifié
+     * @param coefficient coefficient de la fermeture de réactivité (0-1) entre les deux aliments
+     */
+    public record ReactionCroisee(FacteursReaction facteurs, double coefficient) {
+    }
+    
+    public static EntreeScoreRisque de(List<AllergieUtilisateur> allergies, List<ReactionAllergique> reactions,
+                                       List<ReactionCroisee> reactionsCroisees, Aliment aliment) {
+        int critiques = (int) allergies.stream().filter(AllergieUtilisateur::isCritique).count();
+        return new EntreeScoreRisque(critiques, allergies.size() - critiques,
+                reactions.stream().map(FacteursReaction::de).toList(),
+                reactionsCroisees,
+                aliment.containsAllergenes());
+    }
+}
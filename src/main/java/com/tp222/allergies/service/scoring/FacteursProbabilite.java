@@ -0,0 +1,23 @@
+package com.tp222.allergies.service.scoring;
+
+import com.tp222.allergies.model.entity.ReactionAllergique;
+import java.math.BigDecimal;
+
+/**
+ * Facteurs d'une réaction utilisés pour calculer sa probabilité d'allergie
+ * @param tailleHistorique nombre de réactions antérieures du même utilisateur au même aliment
+ */
+public record FacteursProbabilite(String niveauSeverite,
+                                  Integer dureeReaction,
+                                  BigDecimal quantiteConsommee,
+                                  Boolean hospitalisationRequise,
+                                  Boolean medecinConsulte,
+                                  long tailleHistorique,
+                                  boolean alimentAvecAllergenes) {
+    
+    public static FacteursProbabilite de(ReactionAllergique reaction, long tailleHistorique) {
+        return new FacteursProbabilite(reaction.getNiveauSeverite(), reaction.getDureeReaction(),
+                reaction.getQuantiteConsommee(), reaction.getHospitalisationRequise(), reaction.getMedecinConsulte(),
+                tailleHistorique, reaction.getAliment().containsAllergenes());
+    }
+}
@@ -0,0 +1,69 @@
+package com.tp222.allergies.service.scoring;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * Modèle de régression logistique appris sur l'historique des réactions confirmées.
+ *
+ * La standardisation des caractéristiques est repliée dans les poids à l'entraînement :
+ * l'inférence se réduit à un produit scalaire de DIMENSION termes suivi d'une sigmoïde.
+ * Seule la probabilité d'allergie est apprise ; le score de risque utilisateur/aliment reste
+ * celui du modèle à règles fourni.
+ */
+public final class LogisticRiskModel implements RiskModel {
+    
+    private final String version;
+    private final double[] poids;
+    private final double biais;
+    private final RiskModel modeleScore;
+    
+    public LogisticRiskModel(String version, double[] poids, double biais, RiskModel modeleScore) {
+        if (poids.length != Caracteristiques.DIMENSION) {
+            throw new IllegalArgumentException("Le modèle " + version + " attend " + Caracteristiques.DIMENSION
+                    + " poids, " + poids.length + " fournis");
+        }
+        this.version = version;
+        this.poids = poids.clone();
+        this.biais = biais;
+        this.modeleScore = modeleScore;
+    }
+    
+    @Override
+    public String getVersion() {
+        return version;
+    }
+    
+    @Override
+    public BigDecimal probabiliteAllergie(FacteursProbabilite facteurs) {
+        double[] x = new double[Caracteristiques.DIMENSION];
+        Caracteristiques.remplir(x, 0, facteurs);
+        // Même échelle que la colonne probabilite_allergie
+        return BigDecimal.valueOf(probabilite(x, 0)).setScale(2, RoundingMode.HALF_UP);
+    }
+    
+    /**
+     * Probabilité brute pour le vecteur x[offset .. offset + DIMENSION[
+     */
+    double probabilite(double[] x, int offset) {
+        double z = biais;
+        for (int j = 0; j < poids.length; j++) {
+            z += poids[j] * x[offset + j];
+        }
+        return sigmoide(z);
+    }
+    
+    @Override
+    public int scoreRisque(EntreeScoreRisque entree) {
+        return modeleScore.scoreRisque(entree);
+    }
+    
+    @Override
+    public String niveauRisque(int score) {
+        return modeleScore.niveauRisque(score);
+    }
+    
+    static double sigmoide(double z) {
+        return z >= 0 ? 1.0 / (1.0 + Math.exp(-z)) : Math.exp(z) / (1.0 + Math.exp(z));
+    }
+}
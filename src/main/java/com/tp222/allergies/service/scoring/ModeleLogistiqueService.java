@@ -0,0 +1,449 @@
+package com.tp222.allergies.service.scoring;
+
+import com.tp222.allergies.model.entity.ModeleRisqueEntraine;
+import com.tp222.allergies.repository.ModeleRisqueEntraineRepository;
+import com.tp222.allergies.repository.ReactionAllergiqueRepository;
+import com.tp222.allergies.service.AllergieService;
+import com.tp222.allergies.service.sharding.RoutageShards;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Entraînement hors ligne et chargement du modèle logistique de probabilité d'allergie.
+ *
+ * Les exemples sont lus en flux depuis reactions_allergiques dans des tableaux primitifs
+ * (une ligne de DIMENSION doubles par réaction) ; le libellé vaut 1 quand l'allergie à
+ * l'aliment a été confirmée par un médecin. La descente de gradient par mini-lots répartit
+ * chaque lot entre plusieurs threads, chacun accumulant son gradient partiel dans son propre
+ * tableau avant la réduction. Une réaction sur dix sert à la validation et à l'arrêt anticipé.
+ * Avec le sharding, les exemples sont lus shard après shard.
+ */
+@Service
+@Slf4j
+public class ModeleLogistiqueService {
+
+    public static final String TYPE_LOGISTIQUE = "LOGISTIQUE";
+
+    private static final int MINIMUM_EXEMPLES = 100;
+    private static final int PATIENCE_EPOQUES = 5;
+    private static final DateTimeFormatter FORMAT_VERSION = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss");
+
+    private final ReactionAllergiqueRepository reactionAllergiqueRepository;
+    private final ModeleRisqueEntraineRepository modeleRisqueEntraineRepository;
+    private final RiskModelRegistry riskModelRegistry;
+    private final RoutageShards routageShards;
+    private final TransactionTemplate transactionLecture;
+
+    private final String modeleDeploiement;
+    private final String versionDeploiement;
+    private final int threads;
+    private final int epoquesMax;
+    private final int tailleLot;
+    private final double tauxApprentissage;
+    private final double regularisationL2;
+
+    private final ExecutorService orchestrateur = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "entrainement-modele");
+        t.setDaemon(true);
+        return t;
+    });
+    private final AtomicBoolean enCours = new AtomicBoolean();
+
+    public ModeleLogistiqueService(ReactionAllergiqueRepository reactionAllergiqueRepository,
+                                   ModeleRisqueEntraineRepository modeleRisqueEntraineRepository,
+                                   RiskModelRegistry riskModelRegistry,
+                                   RoutageShards routageShards,
+                                   PlatformTransactionManager transactionManager,
+                                   @Value("${allergies.scoring.modele:regles}") String modeleDeploiement,
+                                   @Value("${allergies.scoring.version-logistique:}") String versionDeploiement,
+                                   @Value("${allergies.scoring.entrainement.threads:4}") int threads,
+                                   @Value("${allergies.scoring.entrainement.epoques:50}") int epoquesMax,
+                                   @Value("${allergies.scoring.entrainement.taille-lot:1024}") int tailleLot,
+                                   @Value("${allergies.scoring.entrainement.taux-apprentissage:0.1}") double tauxApprentissage,
+                                   @Value("${allergies.scoring.entrainement.regularisation-l2:0.0001}") double regularisationL2) {
+        this.reactionAllergiqueRepository = reactionAllergiqueRepository;
+        this.modeleRisqueEntraineRepository = modeleRisqueEntraineRepository;
+        this.riskModelRegistry = riskModelRegistry;
+        this.routageShards = routageShards;
+        this.transactionLecture = new TransactionTemplate(transactionManager);
+        this.transactionLecture.setReadOnly(true);
+        this.modeleDeploiement = modeleDeploiement;
+        this.versionDeploiement = versionDeploiement;
+        this.threads = Math.max(1, threads);
+        this.epoquesMax = epoquesMax;
+        this.tailleLot = Math.max(1, tailleLot);
+        this.tauxApprentissage = tauxApprentissage;
+        this.regularisationL2 = regularisationL2;
+    }
+
+    /**
+     * Active au démarrage le modèle choisi pour ce déploiement (allergies.scoring.modele)
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void activerModeleDeploiement() {
+        if (!"logistique".equalsIgnoreCase(modeleDeploiement)) {
+            return;
+        }
+        try {
+            riskModelRegistry.activer(charger(versionDeploiement));
+        } catch (RuntimeException e) {
+            log.warn("Modèle logistique indisponible ({}), conservation du modèle à règles {}",
+                    e.getMessage(), riskModelRegistry.getActif().getVersion());
+        }
+    }
+
+    /**
+     * Charge un modèle entraîné ; le dernier entraîné avec succès si la version est vide
+     */
+    public RiskModel charger(String version) {
+        ModeleRisqueEntraine modele = (version == null || version.isBlank()
+                ? modeleRisqueEntraineRepository.findFirstByTypeModeleAndStatutOrderByIdDesc(TYPE_LOGISTIQUE, "TERMINE")
+                : modeleRisqueEntraineRepository.findByVersion(version).filter(ModeleRisqueEntraine::isTermine))
+                .orElseThrow(() -> new RuntimeException("Modèle de risque non trouvé"));
+
+        double[] poids = Arrays.stream(modele.getPoids().split(","))
+                .mapToDouble(Double::parseDouble)
+                .toArray();
+        return new LogisticRiskModel(modele.getVersion(), poids, modele.getBiais(), riskModelRegistry.getModeleRegles());
+    }
+
+    public List<ModeleRisqueEntraine> lister() {
+        return modeleRisqueEntraineRepository.findAllByOrderByIdDesc();
+    }
+
+    /**
+     * Lance un entraînement en arrière-plan ; un seul à la fois
+     */
+    public ModeleRisqueEntraine demarrerEntrainement() {
+        if (!enCours.compareAndSet(false, true)) {
+            throw new RuntimeException("Un entraînement est déjà en cours");
+        }
+        ModeleRisqueEntraine modele;
+        try {
+            modele = modeleRisqueEntraineRepository.save(ModeleRisqueEntraine.builder()
+                    .version("lr-" + LocalDateTime.now().format(FORMAT_VERSION))
+                    .typeModele(TYPE_LOGISTIQUE)
+                    .statut("EN_COURS")
+                    .build());
+        } catch (RuntimeException e) {
+            enCours.set(false);
+            throw e;
+        }
+
+        Long id = modele.getId();
+        orchestrateur.execute(() -> {
+            try {
+                entrainer(id);
+            } finally {
+                enCours.set(false);
+            }
+        });
+        return modele;
+    }
+
+    private void entrainer(Long id) {
+        ModeleRisqueEntraine modele = modeleRisqueEntraineRepository.findById(id).orElseThrow();
+        long debut = System.nanoTime();
+        try {
+            Exemples exemples = lireExemples();
+            if (exemples.taille < MINIMUM_EXEMPLES || exemples.positifs == 0 || exemples.positifs == exemples.taille) {
+                throw new IllegalStateException("Données d'entraînement insuffisantes: " + exemples.taille
+                        + " réactions dont " + exemples.positifs + " confirmées");
+            }
+
+            Resultat resultat = ajuster(exemples);
+
+            modele.setPoids(Arrays.stream(resultat.poids)
+                    .mapToObj(Double::toString)
+                    .collect(Collectors.joining(",")));
+            modele.setBiais(resultat.biais);
+            modele.setNombreExemples((long) exemples.taille);
+            modele.setNombrePositifs(exemples.positifs);
+            modele.setEpoques(resultat.epoques);
+            modele.setLogLossValidation(resultat.logLoss);
+            modele.setAucValidation(resultat.auc);
+            modele.setStatut("TERMINE");
+            log.info("Modèle {} entraîné en {} ms sur {} réactions: log-loss {} , AUC {}",
+                    modele.getVersion(), (System.nanoTime() - debut) / 1_000_000, exemples.taille,
+                    String.format("%.4f", resultat.logLoss), String.format("%.4f", resultat.auc));
+        } catch (RuntimeException | InterruptedException e) {
+            if (e instanceof InterruptedException) {
+                Thread.currentThread().interrupt();
+            }
+            log.error("Échec de l'entraînement du modèle {}: {}", modele.getVersion(), e.getMessage());
+            modele.setStatut("ECHEC");
+            modele.setMessageErreur(e.getMessage());
+        }
+        modele.setDateFin(LocalDateTime.now());
+        modeleRisqueEntraineRepository.save(modele);
+    }
+
+    private Exemples lireExemples() {
+        Exemples exemples = new Exemples();
+        for (String shard : routageShards.getShards()) {
+            routageShards.executerSur(shard, () -> {
+                transactionLecture.executeWithoutResult(status -> {
+                    try (Stream<Object[]> lignes = reactionAllergiqueRepository
+                            .streamExemplesEntrainement(AllergieService.DIAGNOSTIC_AUTOMATIQUE)) {
+                        lignes.forEach(exemples::ajouter);
+                    }
+                });
+                return null;
+            });
+        }
+        return exemples;
+    }
+
+    /**
+     * Descente de gradient par mini-lots sur les caractéristiques standardisées ; les poids
+     * retournés s'appliquent aux caractéristiques brutes
+     */
+    private Resultat ajuster(Exemples exemples) throws InterruptedException {
+        final int d = Caracteristiques.DIMENSION;
+        int n = exemples.taille;
+
+        // Une réaction sur dix en validation
+        int[] validation = new int[(n + 9) / 10];
+        int[] apprentissage = new int[n - validation.length];
+        for (int i = 0, v = 0, a = 0; i < n; i++) {
+            if (i % 10 == 0) validation[v++] = i;
+            else apprentissage[a++] = i;
+        }
+
+        // Standardisation sur les exemples d'apprentissage
+        double[] moyennes = new double[d];
+        double[] ecarts = new double[d];
+        for (int i : apprentissage) {
+            for (int j = 0; j < d; j++) moyennes[j] += exemples.x[i * d + j];
+        }
+        for (int j = 0; j < d; j++) moyennes[j] /= apprentissage.length;
+        for (int i : apprentissage) {
+            for (int j = 0; j < d; j++) {
+                double ecart = exemples.x[i * d + j] - moyennes[j];
+                ecarts[j] += ecart * ecart;
+            }
+        }
+        for (int j = 0; j < d; j++) {
+            ecarts[j] = Math.sqrt(ecarts[j] / apprentissage.length);
+            if (ecarts[j] < 1e-12) ecarts[j] = 1.0; // caractéristique constante
+        }
+        final double[] x = new double[n * d];
+        for (int i = 0; i < n; i++) {
+            for (int j = 0; j < d; j++) {
+                x[i * d + j] = (exemples.x[i * d + j] - moyennes[j]) / ecarts[j];
+            }
+        }
+        final double[] y = exemples.y;
+
+        final double[] w = new double[d];
+        double tauxPositifs = (double) exemples.positifs / n;
+        double[] b = {Math.log(tauxPositifs / (1 - tauxPositifs))};
+
+        double[] meilleursPoids = w.clone();
+        double meilleurBiais = b[0];
+        double meilleureLogLoss = logLoss(x, y, validation, w, b[0]);
+        int epoquesSansProgres = 0;
+        int epoques = 0;
+
+        double[][] gradients = new double[threads][d + 1];
+        SplittableRandom aleatoire = new SplittableRandom(42);
+        ExecutorService calcul = Executors.newFixedThreadPool(threads, r -> {
+            Thread t = new Thread(r, "entrainement-gradient");
+            t.setDaemon(true);
+            return t;
+        });
+        try {
+            List<Callable<Void>> taches = new ArrayList<>(threads);
+            while (epoques < epoquesMax && epoquesSansProgres < PATIENCE_EPOQUES) {
+                melanger(apprentissage, aleatoire);
+
+                for (int debutLot = 0; debutLot < apprentissage.length; debutLot += tailleLot) {
+                    int finLot = Math.min(debutLot + tailleLot, apprentissage.length);
+                    int tailleCourante = finLot - debutLot;
+                    double biaisCourant = b[0];
+
+                    taches.clear();
+                    for (int t = 0; t < threads; t++) {
+                        int debut = debutLot + (int) ((long) tailleCourante * t / threads);
+                        int fin = debutLot + (int) ((long) tailleCourante * (t + 1) / threads);
+                        double[] g = gradients[t];
+                        taches.add(() -> {
+                            Arrays.fill(g, 0.0);
+                            for (int k = debut; k < fin; k++) {
+                                int ligne = apprentissage[k] * d;
+                                double z = biaisCourant;
+                                for (int j = 0; j < d; j++) z += w[j] * x[ligne + j];
+                                double erreur = LogisticRiskModel.sigmoide(z) - y[apprentissage[k]];
+                                for (int j = 0; j < d; j++) g[j] += erreur * x[ligne + j];
+                                g[d] += erreur;
+                            }
+                            return null;
+                        });
+                    }
+                    for (Future<Void> resultat : calcul.invokeAll(taches)) {
+                        attendre(resultat);
+                    }
+
+                    for (int j = 0; j <= d; j++) {
+                        double somme = 0.0;
+                        for (double[] g : gradients) somme += g[j];
+                        if (j < d) {
+                            w[j] -= tauxApprentissage * (somme / tailleCourante + regularisationL2 * w[j]);
+                        } else {
+                            b[0] -= tauxApprentissage * somme / tailleCourante;
+                        }
+                    }
+                }
+                epoques++;
+
+                double perte = logLoss(x, y, validation, w, b[0]);
+                if (perte < meilleureLogLoss - 1e-6) {
+                    meilleureLogLoss = perte;
+                    meilleursPoids = w.clone();
+                    meilleurBiais = b[0];
+                    epoquesSansProgres = 0;
+                } else {
+                    epoquesSansProgres++;
+                }
+                log.debug("Époque {}: log-loss validation {}", epoques, perte);
+            }
+        } finally {
+            calcul.shutdownNow();
+        }
+
+        double auc = auc(x, y, validation, meilleursPoids, meilleurBiais);
+
+        // Repli de la standardisation : w' = w / σ, b' = b - Σ w·μ / σ
+        double[] poidsBruts = new double[d];
+        double biaisBrut = meilleurBiais;
+        for (int j = 0; j < d; j++) {
+            poidsBruts[j] = meilleursPoids[j] / ecarts[j];
+            biaisBrut -= poidsBruts[j] * moyennes[j];
+        }
+        return new Resultat(poidsBruts, biaisBrut, epoques, meilleureLogLoss, auc);
+    }
+
+    private static double logLoss(double[] x, double[] y, int[] indices, double[] w, double b) {
+        int d = w.length;
+        double perte = 0.0;
+        for (int i : indices) {
+            double p = predire(x, i * d, w, b);
+            p = Math.min(Math.max(p, 1e-15), 1 - 1e-15);
+            perte -= y[i] * Math.log(p) + (1 - y[i]) * Math.log(1 - p);
+        }
+        return perte / indices.length;
+    }
+
+    /**
+     * Aire sous la courbe ROC (statistique de Mann-Whitney, rangs moyens en cas d'égalité)
+     */
+    private static double auc(double[] x, double[] y, int[] indices, double[] w, double b) {
+        int m = indices.length;
+        double[][] scores = new double[m][];
+        for (int k = 0; k < m; k++) {
+            scores[k] = new double[] {predire(x, indices[k] * w.length, w, b), y[indices[k]]};
+        }
+        Arrays.sort(scores, (s1, s2) -> Double.compare(s1[0], s2[0]));
+
+        double sommeRangsPositifs = 0.0;
+        long positifs = 0;
+        for (int k = 0; k < m; ) {
+            int fin = k;
+            while (fin + 1 < m && scores[fin + 1][0] == scores[k][0]) fin++;
+            double rangMoyen = (k + fin) / 2.0 + 1;
+            for (int r = k; r <= fin; r++) {
+                if (scores[r][1] > 0.5) {
+                    sommeRangsPositifs += rangMoyen;
+                    positifs++;
+                }
+            }
+            k = fin + 1;
+        }
+        long negatifs = m - positifs;
+        if (positifs == 0 || negatifs == 0) {
+            return Double.NaN;
+        }
+        return (sommeRangsPositifs - positifs * (positifs + 1) / 2.0) / ((double) positifs * negatifs);
+    }
+
+    private static double predire(double[] x, int offset, double[] w, double b) {
+        double z = b;
+        for (int j = 0; j < w.length; j++) z += w[j] * x[offset + j];
+        return LogisticRiskModel.sigmoide(z);
+    }
+
+    private static void melanger(int[] indices, SplittableRandom aleatoire) {
+        for (int i = indices.length - 1; i > 0; i--) {
+            int j = aleatoire.nextInt(i + 1);
+            int tmp = indices[i];
+            indices[i] = indices[j];
+            indices[j] = tmp;
+        }
+    }
+
+    private static void attendre(Future<Void> resultat) throws InterruptedException {
+        try {
+            resultat.get();
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Échec du calcul de gradient", e.getCause());
+        }
+    }
+
+    @PreDestroy
+    void arreter() {
+        orchestrateur.shutdownNow();
+    }
+
+    /**
+     * Exemples en tableaux primitifs extensibles : x en lignes de DIMENSION valeurs, y en 0/1
+     */
+    private static final class Exemples {
+
+        private double[] x = new double[1024 * Caracteristiques.DIMENSION];
+        private double[] y = new double[1024];
+        private int taille;
+        private long positifs;
+
+        void ajouter(Object[] ligne) {
+            if (taille == y.length) {
+                y = Arrays.copyOf(y, taille * 2);
+                x = Arrays.copyOf(x, taille * 2 * Caracteristiques.DIMENSION);
+            }
+            String allergenes = (String) ligne[6];
+            Caracteristiques.remplir(x, taille * Caracteristiques.DIMENSION,
+                    (String) ligne[0],
+                    (Integer) ligne[1],
+                    ligne[2] == null ? 0.0 : ((Number) ligne[2]).doubleValue(),
+                    (Boolean) ligne[3],
+                    (Boolean) ligne[4],
+                    ((Number) ligne[5]).longValue(),
+                    allergenes != null && !allergenes.trim().isEmpty());
+            boolean confirme = ((Number) ligne[7]).intValue() == 1;
+            y[taille++] = confirme ? 1.0 : 0.0;
+            if (confirme) positifs++;
+        }
+    }
+
+    private record Resultat(double[] poids, double biais, int epoques, double logLoss, double auc) {
+    }
+}
@@ -0,0 +1,63 @@
+package com.tp222.allergies.service.scoring;
+
+/**
+ * Paramètres d'un modèle de risque à tables ; sérialisables en JSON pour être chargés à chaud.
+ * Les tableaux indexés par sévérité suivent l'ordre [inconnue, LEGER, MODERE, SEVERE, CRITIQUE].
+ */
+public record ParametresModele(
+        String version,
+        // Probabilité d'allergie d'une nouvelle réaction
+        double[] probabiliteSeverite,
+        double probabiliteHospitalisation,
+        double probabiliteMedecin,
+        double probabiliteParReactionHistorique,
+        int historiqueMax,
+        double probabiliteAllergenes,
+        // Score de risque d'une réaction passée
+        int[] pointsSeverite,
+        int pointsProbabilite,
+        int pointsHospitalisation,
+        int pointsMedecin,
+        int seuilDureeMoyenne,
+        int pointsDureeMoyenne,
+        int seuilDureeLongue,
+        int pointsDureeLongue,
+        // Score de risque utilisateur/aliment
+        int pointsAllergieCritique,
+        int pointsAllergie,
+        int diviseurReaction,
+        int pointsAlimentAllergenes,
+        int seuilModere,
+        int seuilEleve,
+        int seuilCritique) {
+    
+    /**
+     * Règles historiques de l'algorithme v2.1 (anciennement codées en dur dans AllergieService
+     * et ReactionAllergique)
+     */
+    public static ParametresModele v21() {
+        return new ParametresModele(
+                "v2.1",
+                new double[] {0.0, 0.1, 0.2, 0.3, 0.4},
+                0.3,
+                0.15,
+                0.1,
+                2,
+                0.1,
+                new int[] {0, 10, 20, 30, 40},
+                30,
+                20,
+                10,
+                60,
+                5,
+                240,
+                10,
+                30,
+                15,
+                4,
+                10,
+                30,
+                50,
+                70);
+    }
+}
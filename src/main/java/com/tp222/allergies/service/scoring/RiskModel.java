@@ -0,0 +1,34 @@
+package com.tp222.allergies.service.scoring;
+
+import java.math.BigDecimal;
+
+/**
+ * Modèle de risque allergique (SPI).
+ *
+ * Un modèle calcule la probabilité d'allergie d'une nouvelle réaction et le score de risque
+ * d'un couple utilisateur/aliment. Les implémentations doivent être immuables et sans accès
+ * base : elles reçoivent des facteurs déjà extraits, ce qui permet de les échanger à chaud
+ * et de les évaluer en mode shadow sur un autre thread.
+ */
+public interface RiskModel {
+    
+    /**
+     * Version du modèle, stockée avec chaque réaction (ex: "v2.1")
+     */
+    String getVersion();
+    
+    /**
+     * Probabilité d'allergie (0-1) d'une réaction au moment de son enregistrement
+     */
+    BigDecimal probabiliteAllergie(FacteursProbabilite facteurs);
+    
+    /**
+     * Score de risque (0-100) d'un utilisateur pour un aliment
+     */
+    int scoreRisque(EntreeScoreRisque entree);
+    
+    /**
+     * Niveau de risque (FAIBLE, MODERE, ELEVE, CRITIQUE) correspondant à un score
+     */
+    String niveauRisque(int score);
+}
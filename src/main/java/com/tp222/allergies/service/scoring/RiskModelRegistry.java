@@ -0,0 +1,170 @@
+package com.tp222.allergies.service.scoring;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Registre des modèles de risque : modèle actif échangeable à chaud et modèle candidat
+ * évalué en mode shadow.
+ *
+ * L'évaluation shadow tourne sur un exécuteur dédié à file bornée ; si la file est pleine
+ * l'évaluation est simplement ignorée, de sorte que le chemin de requête ne paie jamais
+ * que le coût d'un offer().
+ */
+@Component
+@Slf4j
+public class RiskModelRegistry {
+    
+    private final TableRiskModel modeleRegles;
+    private final AtomicReference<RiskModel> actif = new AtomicReference<>();
+    private final AtomicReference<RiskModel> candidat = new AtomicReference<>();
+    private final ThreadPoolExecutor executeurShadow;
+    
+    private final Counter evaluationsShadow;
+    private final Counter desaccordsNiveau;
+    private final Counter desaccordsDetection;
+    private final Counter shadowIgnorees;
+    private final DistributionSummary ecartScore;
+    
+    public RiskModelRegistry(MeterRegistry registry, ObjectMapper objectMapper,
+                             @Value("${allergies.scoring.modele-fichier:}") String fichierModele,
+                             @Value("${allergies.scoring.shadow-file:1000}") int capaciteShadow) {
+        this.modeleRegles = new TableRiskModel(chargerParametres(objectMapper, fichierModele));
+        this.actif.set(modeleRegles);
+        this.executeurShadow = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(capaciteShadow),
+                r -> {
+                    Thread t = new Thread(r, "risk-model-shadow");
+                    t.setDaemon(true);
+                    return t;
+                },
+                (tache, executeur) -> compterIgnoree());
+        
+        this.evaluationsShadow = registry.counter("allergies.scoring.shadow.evaluations");
+        this.desaccordsNiveau = registry.counter("allergies.scoring.shadow.desaccords", "type", "niveau");
+        this.desaccordsDetection = registry.counter("allergies.scoring.shadow.desaccords", "type", "detection");
+        this.shadowIgnorees = registry.counter("allergies.scoring.shadow.ignorees");
+        this.ecartScore = DistributionSummary.builder("allergies.scoring.shadow.ecart_score").register(registry);
+        Gauge.builder("allergies.scoring.shadow.taux_desaccord", this, RiskModelRegistry::getTauxDesaccord)
+                .register(registry);
+        
+        log.info("Modèle de risque actif: {}", actif.get().getVersion());
+    }
+    
+    public RiskModel getActif() {
+        return actif.get();
+    }
+    
+    public RiskModel getCandidat() {
+        return candidat.get();
+    }
+    
+    /**
+     * Modèle à règles chargé au démarrage ; fournit le score de risque des modèles appris
+     */
+    public TableRiskModel getModeleRegles() {
+        return modeleRegles;
+    }
+    
+    /**
+     * Remplace le modèle actif sans redémarrage ; les requêtes en cours terminent avec l'ancien
+     */
+    public void activer(RiskModel modele) {
+        RiskModel ancien = actif.getAndSet(modele);
+        log.warn("Modèle de risque actif remplacé: {} -> {}", ancien.getVersion(), modele.getVersion());
+    }
+    
+    /**
+     * Définit (ou retire si null) le modèle candidat évalué en shadow
+     */
+    public void definirCandidat(RiskModel modele) {
+        candidat.set(modele);
+        log.info("Modèle candidat shadow: {}", modele == null ? "aucun" : modele.getVersion());
+    }
+    
+    /**
+     * Compare de façon asynchrone le score du candidat au résultat du modèle actif
+     */
+    public void evaluerScoreEnShadow(EntreeScoreRisque entree, int scoreActif, String niveauActif) {
+        RiskModel modele = candidat.get();
+        if (modele == null) {
+            return;
+        }
+        executeurShadow.execute(() -> {
+            int score = modele.scoreRisque(entree);
+            evaluationsShadow.increment();
+            ecartScore.record(Math.abs(score - scoreActif));
+            if (!modele.niveauRisque(score).equals(niveauActif)) {
+                desaccordsNiveau.increment();
+            }
+        });
+    }
+    
+    /**
+     * Compare de façon asynchrone la décision de détection (>30%) du candidat à celle du modèle actif
+     */
+    public void evaluerProbabiliteEnShadow(FacteursProbabilite facteurs, BigDecimal probabiliteActive,
+                                           BigDecimal seuil) {
+        RiskModel modele = candidat.get();
+        if (modele == null) {
+            return;
+        }
+        executeurShadow.execute(() -> {
+            BigDecimal probabilite = modele.probabiliteAllergie(facteurs);
+            evaluationsShadow.increment();
+            if ((probabilite.compareTo(seuil) > 0) != (probabiliteActive.compareTo(seuil) > 0)) {
+                desaccordsDetection.increment();
+            }
+        });
+    }
+    
+    public double getTauxDesaccord() {
+        double evaluations = evaluationsShadow.count();
+        return evaluations == 0 ? 0.0 : (desaccordsNiveau.count() + desaccordsDetection.count()) / evaluations;
+    }
+    
+    public long getEvaluationsShadow() {
+        return (long) evaluationsShadow.count();
+    }
+    
+    public long getShadowIgnorees() {
+        return (long) shadowIgnorees.count();
+    }
+    
+    private void compterIgnoree() {
+        if (shadowIgnorees != null) {
+            shadowIgnorees.increment();
+        }
+    }
+    
+    private static ParametresModele chargerParametres(ObjectMapper objectMapper, String fichier) {
+        if (fichier == null || fichier.isBlank()) {
+            return ParametresModele.v21();
+        }
+        try {
+            return objectMapper.readValue(Files.readString(Path.of(fichier)), ParametresModele.class);
+        } catch (IOException e) {
+            throw new IllegalStateException("Impossible de charger le modèle de risque " + fichier, e);
+        }
+    }
+    
+    @PreDestroy
+    void arreter() {
+        executeurShadow.shutdownNow();
+    }
+}
@@ -0,0 +1,160 @@
+package com.tp222.allergies.service.scoring;
+
+import java.math.BigDecimal;
+
+/**
+ * Modèle de risque compilé en tables plates au chargement.
+ *
+ * Toutes les combinaisons de facteurs discrets (sévérité × intervention médicale × historique ×
+ * allergènes, sévérité × intervention × durée) sont précalculées ; l'évaluation n'est plus
+ * qu'une suite d'indexations de tableaux.
+ */
+public final class TableRiskModel implements RiskModel {
+    
+    private static final int NB_SEVERITES = 5;
+    private static final int NB_INTERVENTIONS = 3;
+    private static final int NB_DUREES = 3;
+    private static final String[] NIVEAUX = {"FAIBLE", "MODERE", "ELEVE", "CRITIQUE"};
+    
+    private final String version;
+    private final int historiqueMax;
+    private final BigDecimal[] tableProbabilite;
+    private final int[] tableScoreReaction;
+    private final BigDecimal pointsProbabilite;
+    private final int pointsAllergieCritique;
+    private final int pointsAllergie;
+    private final int diviseurReaction;
+    private final int pointsAlimentAllergenes;
+    private final int seuilDureeMoyenne;
+    private final int seuilDureeLongue;
+    private final String[] tableNiveaux = new String[101];
+    
+    public TableRiskModel(ParametresModele p) {
+        if (p.probabiliteSeverite().length != NB_SEVERITES || p.pointsSeverite().length != NB_SEVERITES) {
+            throw new IllegalArgumentException("Les tableaux de sévérité doivent contenir " + NB_SEVERITES + " valeurs");
+        }
+        if (p.diviseurReaction() <= 0 || p.historiqueMax() < 0) {
+            throw new IllegalArgumentException("Paramètres de modèle invalides pour la version " + p.version());
+        }
+        this.version = p.version();
+        this.historiqueMax = p.historiqueMax();
+        this.pointsProbabilite = BigDecimal.valueOf(p.pointsProbabilite());
+        this.pointsAllergieCritique = p.pointsAllergieCritique();
+        this.pointsAllergie = p.pointsAllergie();
+        this.diviseurReaction = p.diviseurReaction();
+        this.pointsAlimentAllergenes = p.pointsAlimentAllergenes();
+        this.seuilDureeMoyenne = p.seuilDureeMoyenne();
+        this.seuilDureeLongue = p.seuilDureeLongue();
+        
+        BigDecimal[] interventions = {
+            BigDecimal.ZERO, BigDecimal.valueOf(p.probabiliteMedecin()), BigDecimal.valueOf(p.probabiliteHospitalisation())
+        };
+        int nbHistoriques = historiqueMax + 1;
+        this.tableProbabilite = new BigDecimal[NB_SEVERITES * NB_INTERVENTIONS * nbHistoriques * 2];
+        for (int s = 0; s < NB_SEVERITES; s++) {
+            for (int i = 0; i < NB_INTERVENTIONS; i++) {
+                for (int h = 0; h < nbHistoriques; h++) {
+                    for (int a = 0; a < 2; a++) {
+                        BigDecimal probabilite = BigDecimal.valueOf(p.probabiliteSeverite()[s])
+                                .add(interventions[i])
+                                .add(h == 0 ? BigDecimal.ZERO : BigDecimal.valueOf(p.probabiliteParReactionHistorique() * h))
+                                .add(a == 1 ? BigDecimal.valueOf(p.probabiliteAllergenes()) : BigDecimal.ZERO);
+                        tableProbabilite[indexProbabilite(s, i, h, a == 1)] = probabilite.min(BigDecimal.ONE);
+                    }
+                }
+            }
+        }
+        
+        int[] pointsInterventions = {0, p.pointsMedecin(), p.pointsHospitalisation()};
+        int[] pointsDurees = {0, p.pointsDureeMoyenne(), p.pointsDureeLongue()};
+        this.tableScoreReaction = new int[NB_SEVERITES * NB_INTERVENTIONS * NB_DUREES];
+        for (int s = 0; s < NB_SEVERITES; s++) {
+            for (int i = 0; i < NB_INTERVENTIONS; i++) {
+                for (int d = 0; d < NB_DUREES; d++) {
+                    tableScoreReaction[(s * NB_INTERVENTIONS + i) * NB_DUREES + d] =
+                            p.pointsSeverite()[s] + pointsInterventions[i] + pointsDurees[d];
+                }
+            }
+        }
+        
+        for (int score = 0; score <= 100; score++) {
+            int niveau = score >= p.seuilCritique() ? 3 : score >= p.seuilEleve() ? 2 : score >= p.seuilModere() ? 1 : 0;
+            tableNiveaux[score] = NIVEAUX[niveau];
+        }
+    }
+    
+    @Override
+    public String getVersion() {
+        return version;
+    }
+    
+    @Override
+    public BigDecimal probabiliteAllergie(FacteursProbabilite f) {
+        int historique = (int) Math.min(f.tailleHistorique(), historiqueMax);
+        return tableProbabilite[indexProbabilite(indexSeverite(f.niveauSeverite()),
+                indexIntervention(f.hospitalisationRequise(), f.medecinConsulte()), historique, f.alimentAvecAllergenes())];
+    }
+    
+    @Override
+    public int scoreRisque(EntreeScoreRisque entree) {
+        int score = entree.allergiesCritiques() * pointsAllergieCritique
+                + entree.allergiesNonCritiques() * pointsAllergie;
+        for (EntreeScoreRisque.FacteursReaction reaction : entree.reactions()) {
+            score += scoreReaction(reaction) / diviseurReaction;
+        }
+        // Réactions à des aliments à réactivité croisée, atténuées par le coefficient de la fermeture
+        for (EntreeScoreRisque.ReactionCroisee croisee : entree.reactionsCroisees()) {
+            score += (int) (croisee.coefficient() * scoreReaction(croisee.facteurs())) / diviseurReaction;
+        }
+        if (entree.alimentAvecAllergenes()) {
+            score += pointsAlimentAllergenes;
+        }
+        return Math.min(score, 100);
+    }
+    
+    @Override
+    public String niveauRisque(int score) {
+        return tableNiveaux[Math.max(0, Math.min(score, 100))];
+    }
+    
+    /**
+     * Score (0-100) d'une réaction passée
+     */
+    int scoreReaction(EntreeScoreRisque.FacteursReaction r) {
+        int score = tableScoreReaction[(indexSeverite(r.niveauSeverite()) * NB_INTERVENTIONS
+                + indexIntervention(r.hospitalisationRequise(), r.medecinConsulte())) * NB_DUREES
+                + indexDuree(r.dureeReaction())];
+        if (r.probabiliteAllergie() != null) {
+            score += r.probabiliteAllergie().multiply(pointsProbabilite).intValue();
+        }
+        return Math.min(score, 100);
+    }
+    
+    private int indexProbabilite(int severite, int intervention, int historique, boolean allergenes) {
+        return ((severite * NB_INTERVENTIONS + intervention) * (historiqueMax + 1) + historique) * 2 + (allergenes ? 1 : 0);
+    }
+    
+    private int indexDuree(Integer duree) {
+        if (duree == null) return 0;
+        if (duree > seuilDureeLongue) return 2;
+        if (duree > seuilDureeMoyenne) return 1;
+        return 0;
+    }
+    
+    static int indexSeverite(String severite) {
+        if (severite == null) return 0;
+        return switch (severite) {
+            case "LEGER" -> 1;
+            case "MODERE" -> 2;
+            case "SEVERE" -> 3;
+            case "CRITIQUE" -> 4;
+            default -> 0;
+        };
+    }
+    
+    static int indexIntervention(Boolean hospitalisation, Boolean medecin) {
+        if (Boolean.TRUE.equals(hospitalisation)) return 2;
+        if (Boolean.TRUE.equals(medecin)) return 1;
+        return 0;
+    }
+}
@@ -0,0 +1,63 @@
+package com.tp222.allergies.service.sharding;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Anneau de hachage cohérent : chaque shard occupe plusieurs nœuds virtuels sur un anneau de
+ * 2^64 positions, une clé appartient au premier nœud rencontré en tournant dans le sens horaire.
+ *
+ * Ajouter ou retirer un shard ne déplace que les clés des arcs qu'il gagne ou perd (environ 1/N),
+ * et la position d'un nœud ne dépend que du nom du shard : l'ordre de déclaration est indifférent.
+ */
+public final class AnneauShards {
+
+    private final TreeMap<Long, String> anneau = new TreeMap<>();
+    private final List<String> shards;
+
+    public AnneauShards(List<String> shards, int noeudsVirtuels) {
+        if (shards.isEmpty()) throw new IllegalArgumentException("Aucun shard déclaré");
+        this.shards = List.copyOf(shards);
+        for (String shard : shards) {
+            for (int i = 0; i < noeudsVirtuels; i++) {
+                // Collision (improbable) : le plus petit nom l'emporte, quel que soit l'ordre
+                anneau.merge(hacher(shard + "#" + i), shard, (a, b) -> a.compareTo(b) <= 0 ? a : b);
+            }
+        }
+    }
+
+    public String shardDe(long cle) {
+        Map.Entry<Long, String> noeud = anneau.ceilingEntry(hacher(cle));
+        return (noeud != null ? noeud : anneau.firstEntry()).getValue();
+    }
+
+    public List<String> getShards() {
+        return shards;
+    }
+
+    /**
+     * Finaliseur de MurmurHash3 : répartit uniformément des identifiants consécutifs
+     */
+    static long hacher(long cle) {
+        cle ^= cle >>> 33;
+        cle *= 0xff51afd7ed558ccdL;
+        cle ^= cle >>> 33;
+        cle *= 0xc4ceb9fe1a85ec53L;
+        cle ^= cle >>> 33;
+        return cle;
+    }
+
+    /**
+     * FNV-1a 64 bits puis finaliseur : stable d'une JVM à l'autre, contrairement à hashCode
+     */
+    static long hacher(String cle) {
+        long h = 0xcbf29ce484222325L;
+        for (byte b : cle.getBytes(StandardCharsets.UTF_8)) {
+            h ^= b & 0xff;
+            h *= 0x100000001b3L;
+        }
+        return hacher(h);
+    }
+}
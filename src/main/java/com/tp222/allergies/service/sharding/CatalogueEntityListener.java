@@ -0,0 +1,60 @@
+package com.tp222.allergies.service.sharding;
+
+import com.tp222.allergies.model.entity.Aliment;
+import com.tp222.allergies.model.entity.Allergie;
+import com.tp222.allergies.model.entity.Categorie;
+import com.tp222.allergies.service.catalogue.CatalogueBinaireService;
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.PostRemove;
+import jakarta.persistence.PostUpdate;
+import jakarta.persistence.PrePersist;
+import jakarta.persistence.PreRemove;
+import jakarta.persistence.PreUpdate;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.stereotype.Component;
+
+/**
+ * Répercute les écritures du catalogue (Categorie, Allergie, Aliment) sur tous les shards et
+ * dans l'instantané binaire servi aux clients.
+ *
+ * Instancié par Hibernate via le conteneur de beans Spring, comme CohortesEntityListener.
+ */
+@Component
+public class CatalogueEntityListener {
+
+    private final ObjectProvider<ReplicationCatalogue> replicationCatalogue;
+    private final ObjectProvider<CatalogueBinaireService> catalogueBinaire;
+
+    public CatalogueEntityListener(ObjectProvider<ReplicationCatalogue> replicationCatalogue,
+                                   ObjectProvider<CatalogueBinaireService> catalogueBinaire) {
+        this.replicationCatalogue = replicationCatalogue;
+        this.catalogueBinaire = catalogueBinaire;
+    }
+
+    @PrePersist
+    @PreUpdate
+    @PreRemove
+    void avantEcriture(Object entite) {
+        replicationCatalogue.getObject().verifierEcriture(table(entite));
+    }
+
+    @PostPersist
+    @PostUpdate
+    @PostRemove
+    void apresEcriture(Object entite) {
+        replicationCatalogue.getObject().repliquerApresCommit(table(entite), id(entite));
+        catalogueBinaire.getObject().signalerModificationApresCommit();
+    }
+
+    private static String table(Object entite) {
+        if (entite instanceof Categorie) return "categories";
+        if (entite instanceof Allergie) return "allergies";
+        return "aliments";
+    }
+
+    private static Long id(Object entite) {
+        if (entite instanceof Categorie categorie) return categorie.getId();
+        if (entite instanceof Allergie allergie) return allergie.getId();
+        return ((Aliment) entite).getId();
+    }
+}
@@ -0,0 +1,43 @@
+package com.tp222.allergies.service.sharding;
+
+import java.util.function.Supplier;
+
+/**
+ * Shard cible du thread courant, lu par RoutageDataSource à l'ouverture d'une connexion.
+ *
+ * Le shard doit être fixé avant le début de la transaction : une transaction garde la connexion
+ * obtenue à son ouverture. Sans shard fixé, la connexion vient du shard principal.
+ */
+public final class ContexteShard {
+
+    private static final ThreadLocal<String> COURANT = new ThreadLocal<>();
+
+    private ContexteShard() {
+    }
+
+    public static String courant() {
+        return COURANT.get();
+    }
+
+    public static void definir(String shard) {
+        COURANT.set(shard);
+    }
+
+    public static void effacer() {
+        COURANT.remove();
+    }
+
+    /**
+     * Exécute une action sur un shard puis restaure le shard précédent
+     */
+    public static <T> T executerSur(String shard, Supplier<T> action) {
+        String precedent = COURANT.get();
+        COURANT.set(shard);
+        try {
+            return action.get();
+        } finally {
+            if (precedent == null) COURANT.remove();
+            else COURANT.set(precedent);
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package com.tp222.allergies.service.sharding;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Plages d'identifiants des tables écrites sur le shard de l'utilisateur.
+ *
+ * Chaque shard a sa propre colonne d'identité : sans précaution, deux shards numérotent leurs
+ * réactions et leurs événements d'outbox à partir de 1, et les identifiants publiés (outbox,
+ * synchronisation mobile, re-scoring) se recouvrent. Le shard numéro n génère ses identifiants
+ * dans [n * TAILLE_PLAGE + 1, (n + 1) * TAILLE_PLAGE] : au démarrage, une séquence encore sous
+ * sa plage y est avancée. Les identifiants déjà attribués ne sont pas renumérotés.
+ */
+@Slf4j
+public final class PlagesIdentifiants {
+
+    // 2^40 identifiants par shard ; les identifiants restent exacts en JSON (< 2^53) jusqu'à 8192 shards
+    public static final long TAILLE_PLAGE = 1L << 40;
+
+    public static final List<String> TABLES = List.of("reactions_allergiques", "outbox_evenements");
+
+    private PlagesIdentifiants() {
+    }
+
+    /**
+     * Avance les séquences de chaque shard au début de sa plage
+     * @param numeros numéro de chaque shard (voir ShardingProperties.Shard.numero)
+     */
+    public static void reserver(RoutageShards routageShards, Map<String, Integer> numeros) throws SQLException {
+        for (String shard : routageShards.getShards()) {
+            long debut = numeros.get(shard) * TAILLE_PLAGE;
+            JdbcTemplate jdbc = new JdbcTemplate(routageShards.getSource(shard));
+            boolean postgres = estPostgres(jdbc);
+            for (String table : TABLES) {
+                Long max = jdbc.queryForObject("SELECT MAX(id) FROM " + table, Long.class);
+                if (max != null && max > debut + TAILLE_PLAGE) {
+                    throw new IllegalStateException("Identifiants de " + table + " sur le shard " + shard
+                            + " au-delà de sa plage (numéro " + numeros.get(shard) + ") : numéro de shard modifié ?");
+                }
+                if (max != null && max > debut) continue;
+                if (debut == 0) continue; // premier shard : la séquence démarre déjà dans sa plage
+                if (postgres) {
+                    jdbc.queryForObject("SELECT setval(pg_get_serial_sequence('" + table + "', 'id'), ?, false)",
+                            Long.class, debut + 1);
+                } else {
+                    jdbc.execute("ALTER TABLE " + table + " ALTER COLUMN id RESTART WITH " + (debut + 1));
+                }
+                log.info("Identifiants de {} sur le shard {} à partir de {}", table, shard, debut + 1);
+            }
+        }
+    }
+
+    private static boolean estPostgres(JdbcTemplate jdbc) throws SQLException {
+        try (Connection connexion = jdbc.getDataSource().getConnection()) {
+            return connexion.getMetaData().getDatabaseProductName().toLowerCase(Locale.ROOT).contains("postgres");
+        }
+    }
+}
@@ -0,0 +1,154 @@
+package com.tp222.allergies.service.sharding;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Déplace chaque utilisateur vers le shard que lui attribue l'anneau, avec ses allergies et ses
+ * réactions : après l'ajout d'un shard, ou après un chargement fait sur le principal.
+ *
+ * Opération de maintenance, à lancer sans trafic d'écriture. Un utilisateur est d'abord copié
+ * sur la cible (qui efface les restes d'un déplacement interrompu) puis supprimé de la source,
+ * chaque étape dans sa transaction : un arrêt entre les deux laisse une copie que le passage
+ * suivant remplace. Les réactions reçoivent de nouveaux identifiants, dans la plage de la cible
+ * (voir PlagesIdentifiants).
+ *
+ * deplacerDepuisPrincipal() ne déplace que des utilisateurs tout juste créés sur le principal
+ * (import) : elle ne parcourt pas les autres et peut tourner avec le trafic.
+ */
+@Component
+@Slf4j
+public class ReequilibrageShards {
+
+    private final RoutageShards routageShards;
+    private final ReplicationCatalogue replicationCatalogue;
+
+    public ReequilibrageShards(RoutageShards routageShards, ReplicationCatalogue replicationCatalogue) {
+        this.routageShards = routageShards;
+        this.replicationCatalogue = replicationCatalogue;
+    }
+
+    public record Bilan(int utilisateursDeplaces, int reactionsDeplacees) {
+    }
+
+    public void reequilibrerApresCommit() {
+        if (!routageShards.isActif()) return;
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                reequilibrer();
+            }
+        });
+    }
+
+    public Bilan reequilibrer() {
+        if (!routageShards.isActif()) return new Bilan(0, 0);
+        // Les réactions déplacées référencent des aliments qui doivent exister sur la cible
+        replicationCatalogue.synchroniser();
+        int utilisateurs = 0;
+        int reactions = 0;
+        for (String source : routageShards.getShards()) {
+            List<Long> ids = new JdbcTemplate(routageShards.getSource(source))
+                    .queryForList("SELECT id FROM utilisateurs ORDER BY id", Long.class);
+            for (Long id : ids) {
+                String cible = routageShards.shardDe(id);
+                if (!cible.equals(source)) {
+                    reactions += deplacer(id, source, cible);
+                    utilisateurs++;
+                }
+            }
+        }
+        log.info("Rééquilibrage des shards: {} utilisateurs et {} réactions déplacés", utilisateurs, reactions);
+        return new Bilan(utilisateurs, reactions);
+    }
+
+    /**
+     * Déplace vers leur shard des utilisateurs créés sur le principal. Un échec (catalogue pas
+     * encore répliqué sur la cible) est retenté une fois après synchronisation du catalogue.
+     * @return les utilisateurs restés sur le principal
+     */
+    public List<Long> deplacerDepuisPrincipal(Collection<Long> utilisateurIds) {
+        List<Long> restes = new ArrayList<>();
+        if (!routageShards.isActif()) return restes;
+        String principal = routageShards.getPrincipal();
+        boolean catalogueSynchronise = false;
+        for (Long id : utilisateurIds) {
+            String cible = routageShards.shardDe(id);
+            if (cible.equals(principal)) continue;
+            try {
+                deplacer(id, principal, cible);
+            } catch (DataAccessException e) {
+                if (catalogueSynchronise) {
+                    log.error("Utilisateur {} non déplacé vers {}: {}", id, cible, e.getMessage());
+                    restes.add(id);
+                    continue;
+                }
+                catalogueSynchronise = true;
+                try {
+                    replicationCatalogue.synchroniser();
+                    deplacer(id, principal, cible);
+                } catch (DataAccessException nouvelEchec) {
+                    log.error("Utilisateur {} non déplacé vers {}: {}", id, cible, nouvelEchec.getMessage());
+                    restes.add(id);
+                }
+            }
+        }
+        return restes;
+    }
+
+    private int deplacer(Long utilisateurId, String source, String cible) {
+        JdbcTemplate lecture = new JdbcTemplate(routageShards.getSource(source));
+        Map<String, Object> utilisateur = lecture.queryForMap("SELECT * FROM utilisateurs WHERE id = ?", utilisateurId);
+        List<Map<String, Object>> allergies = lecture.queryForList(
+                "SELECT * FROM allergies_utilisateurs WHERE utilisateur_id = ?", utilisateurId);
+        List<Map<String, Object>> reactions = lecture.queryForList(
+                "SELECT * FROM reactions_allergiques WHERE utilisateur_id = ? ORDER BY id", utilisateurId);
+
+        enTransaction(cible, jdbc -> {
+            supprimer(jdbc, utilisateurId);
+            inserer(jdbc, "utilisateurs", utilisateur, true);
+            allergies.forEach(ligne -> inserer(jdbc, "allergies_utilisateurs", ligne, true));
+            reactions.forEach(ligne -> inserer(jdbc, "reactions_allergiques", ligne, false));
+        });
+        enTransaction(source, jdbc -> supprimer(jdbc, utilisateurId));
+        log.debug("Utilisateur {} déplacé de {} vers {} ({} réactions)", utilisateurId, source, cible, reactions.size());
+        return reactions.size();
+    }
+
+    private void enTransaction(String shard, Consumer<JdbcTemplate> travail) {
+        DataSourceTransactionManager transactionManager = new DataSourceTransactionManager(routageShards.getSource(shard));
+        new TransactionTemplate(transactionManager).executeWithoutResult(status ->
+                travail.accept(new JdbcTemplate(transactionManager.getDataSource())));
+    }
+
+    private static void supprimer(JdbcTemplate jdbc, Long utilisateurId) {
+        jdbc.update("DELETE FROM reactions_allergiques WHERE utilisateur_id = ?", utilisateurId);
+        jdbc.update("DELETE FROM allergies_utilisateurs WHERE utilisateur_id = ?", utilisateurId);
+        jdbc.update("DELETE FROM utilisateurs WHERE id = ?", utilisateurId);
+    }
+
+    private static void inserer(JdbcTemplate jdbc, String table, Map<String, Object> ligne, boolean conserverId) {
+        List<String> colonnes = new ArrayList<>();
+        List<Object> valeurs = new ArrayList<>();
+        ligne.forEach((colonne, valeur) -> {
+            if (conserverId || !colonne.equalsIgnoreCase("id")) {
+                colonnes.add(colonne);
+                valeurs.add(valeur);
+            }
+        });
+        jdbc.update("INSERT INTO " + table + " (" + String.join(", ", colonnes) + ") VALUES ("
+                + String.join(", ", Collections.nCopies(colonnes.size(), "?")) + ")", valeurs.toArray());
+    }
+}
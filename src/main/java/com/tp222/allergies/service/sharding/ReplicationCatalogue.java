@@ -0,0 +1,144 @@
+package com.tp222.allergies.service.sharding;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Réplication du catalogue (categories, allergies, aliments) du shard principal vers les autres.
+ *
+ * Le catalogue n'est écrit que sur le principal. Après le commit de chaque écriture, la ligne est
+ * relue sur le principal et recopiée telle quelle (même identifiant) sur chaque autre shard, en
+ * JDBC : les réactions d'un shard référencent ainsi les aliments par les mêmes clés partout.
+ * Une réplication en échec est journalisée et comptée ; synchroniser() recopie tout le catalogue
+ * (démarrage, ajout d'un shard, rattrapage).
+ */
+@Component
+@Slf4j
+public class ReplicationCatalogue {
+
+    // Ordre des clés étrangères : les catégories avant les aliments
+    public static final List<String> TABLES = List.of("categories", "allergies", "aliments");
+
+    private final RoutageShards routageShards;
+    private final Counter lignesRepliquees;
+    private final Counter echecs;
+
+    public ReplicationCatalogue(RoutageShards routageShards, MeterRegistry registry) {
+        this.routageShards = routageShards;
+        this.lignesRepliquees = registry.counter("allergies.sharding.catalogue.replications");
+        this.echecs = registry.counter("allergies.sharding.catalogue.echecs");
+    }
+
+    /**
+     * Refuse une écriture du catalogue hors du principal : elle ne serait jamais répliquée
+     */
+    public void verifierEcriture(String table) {
+        if (!routageShards.isActif()) return;
+        String courant = ContexteShard.courant();
+        if (courant != null && !courant.equals(routageShards.getPrincipal())) {
+            throw new IllegalStateException("Écriture de " + table + " sur le shard " + courant
+                    + " : le catalogue ne s'écrit que sur " + routageShards.getPrincipal());
+        }
+    }
+
+    public void repliquerApresCommit(String table, Long id) {
+        if (!routageShards.isActif() || id == null) return;
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            repliquer(table, id);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                repliquer(table, id);
+            }
+        });
+    }
+
+    /**
+     * Recopie tout le catalogue du principal vers les autres shards
+     * @return le nombre de lignes recopiées
+     */
+    public int synchroniser() {
+        if (!routageShards.isActif()) return 0;
+        JdbcTemplate source = new JdbcTemplate(routageShards.getSource(routageShards.getPrincipal()));
+        int total = 0;
+        for (String table : TABLES) {
+            List<Map<String, Object>> lignes = source.queryForList("SELECT * FROM " + table + " ORDER BY id");
+            for (String shard : replicas()) {
+                JdbcTemplate cible = new JdbcTemplate(routageShards.getSource(shard));
+                lignes.forEach(ligne -> ecrire(cible, table, ligne));
+            }
+            total += lignes.size();
+        }
+        log.info("Catalogue synchronisé depuis {} vers {} : {} lignes", routageShards.getPrincipal(), replicas(), total);
+        return total;
+    }
+
+    private void repliquer(String table, Long id) {
+        JdbcTemplate source = new JdbcTemplate(routageShards.getSource(routageShards.getPrincipal()));
+        List<Map<String, Object>> lignes = source.queryForList("SELECT * FROM " + table + " WHERE id = ?", id);
+        for (String shard : replicas()) {
+            try {
+                JdbcTemplate cible = new JdbcTemplate(routageShards.getSource(shard));
+                if (lignes.isEmpty()) {
+                    cible.update("DELETE FROM " + table + " WHERE id = ?", id);
+                } else {
+                    ecrire(cible, table, lignes.get(0));
+                }
+                lignesRepliquees.increment();
+            } catch (DataAccessException e) {
+                echecs.increment();
+                log.error("Réplication de {} #{} vers {} en échec: {}", table, id, shard, e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Mise à jour puis insertion si la ligne n'existe pas encore (SQL portable H2 / PostgreSQL)
+     */
+    static void ecrire(JdbcTemplate cible, String table, Map<String, Object> ligne) {
+        List<String> colonnes = new ArrayList<>();
+        List<Object> valeurs = new ArrayList<>();
+        Object id = null;
+        for (Map.Entry<String, Object> colonne : ligne.entrySet()) {
+            if (colonne.getKey().equalsIgnoreCase("id")) {
+                id = colonne.getValue();
+            } else {
+                colonnes.add(colonne.getKey());
+                valeurs.add(colonne.getValue());
+            }
+        }
+        List<Object> parametres = new ArrayList<>(valeurs);
+        parametres.add(id);
+        String miseAJour = "UPDATE " + table + " SET "
+                + colonnes.stream().map(c -> c + " = ?").collect(Collectors.joining(", ")) + " WHERE id = ?";
+        if (cible.update(miseAJour, parametres.toArray()) > 0) return;
+
+        List<Object> insertion = new ArrayList<>();
+        insertion.add(id);
+        insertion.addAll(valeurs);
+        try {
+            cible.update("INSERT INTO " + table + " (id, " + String.join(", ", colonnes) + ") VALUES ("
+                    + "?, ".repeat(colonnes.size()) + "?)", insertion.toArray());
+        } catch (DuplicateKeyException e) {
+            // Insérée entre-temps par une réplication concurrente
+            cible.update(miseAJour, parametres.toArray());
+        }
+    }
+
+    private List<String> replicas() {
+        return routageShards.getShards().stream().filter(s -> !s.equals(routageShards.getPrincipal())).toList();
+    }
+}
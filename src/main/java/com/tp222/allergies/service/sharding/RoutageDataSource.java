@@ -0,0 +1,41 @@
+package com.tp222.allergies.service.sharding;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import javax.sql.DataSource;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * DataSource unique vue par JPA, qui délègue au pool du shard fixé dans ContexteShard
+ * (le shard principal par défaut). Un nom de shard inconnu est une erreur, pas un repli.
+ */
+public class RoutageDataSource extends AbstractRoutingDataSource implements AutoCloseable {
+
+    public RoutageDataSource(Map<String, DataSource> shards, String principal) {
+        setTargetDataSources(new LinkedHashMap<Object, Object>(shards));
+        setDefaultTargetDataSource(shards.get(principal));
+        setLenientFallback(false);
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        return ContexteShard.courant();
+    }
+
+    /**
+     * Pools par shard, pour les accès JDBC directs (réplication du catalogue, rééquilibrage)
+     */
+    public Map<String, DataSource> getShards() {
+        Map<String, DataSource> shards = new LinkedHashMap<>();
+        getResolvedDataSources().forEach((nom, source) -> shards.put((String) nom, source));
+        return shards;
+    }
+
+    @Override
+    public void close() {
+        getResolvedDataSources().values().forEach(source -> {
+            if (source instanceof HikariDataSource pool) pool.close();
+        });
+    }
+}
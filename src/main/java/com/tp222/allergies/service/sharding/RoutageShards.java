@@ -0,0 +1,146 @@
+package com.tp222.allergies.service.sharding;
+
+import com.tp222.allergies.config.ShardingProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Routage des données par utilisateur entre les shards.
+ *
+ * Les tables d'un utilisateur (utilisateurs, allergies_utilisateurs, reactions_allergiques, et
+ * l'outbox écrite dans la même transaction) vivent sur le shard que l'anneau associe à son
+ * identifiant. Le catalogue (categories, allergies, aliments) est écrit sur le shard principal
+ * puis répliqué sur tous les autres ; les autres tables globales (recettes, réactivités croisées,
+ * modèles, jobs) ne vivent que sur le principal.
+ *
+ * Sharding désactivé, il n'existe qu'un shard « principal » et toutes les méthodes s'exécutent
+ * dans la transaction de l'appelant, sans changement de comportement.
+ */
+@Component
+@Slf4j
+public class RoutageShards {
+
+    public static final String SHARD_UNIQUE = "principal";
+
+    private final boolean actif;
+    private final String principal;
+    private final AnneauShards anneau;
+    private final Map<String, DataSource> sources;
+    private final TransactionTemplate transactionLecture;
+    private final TransactionTemplate transactionEcriture;
+
+    public RoutageShards(ShardingProperties properties, DataSource dataSource, PlatformTransactionManager transactionManager) {
+        this.actif = properties.isActif();
+        if (actif) {
+            List<String> noms = properties.getShards().stream().map(ShardingProperties.Shard::getNom).toList();
+            this.principal = properties.getPrincipal() != null ? properties.getPrincipal() : noms.get(0);
+            this.anneau = new AnneauShards(noms, properties.getNoeudsVirtuels());
+            this.sources = ((RoutageDataSource) dataSource).getShards();
+            log.info("Sharding actif sur {} shards {} (principal: {})", noms.size(), noms, principal);
+        } else {
+            this.principal = SHARD_UNIQUE;
+            this.anneau = new AnneauShards(List.of(SHARD_UNIQUE), 1);
+            this.sources = Map.of(SHARD_UNIQUE, dataSource);
+        }
+        // Toujours une nouvelle transaction : celle de l'appelant tient une connexion d'un autre shard
+        this.transactionLecture = new TransactionTemplate(transactionManager);
+        this.transactionLecture.setReadOnly(true);
+        this.transactionLecture.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.transactionEcriture = new TransactionTemplate(transactionManager);
+        this.transactionEcriture.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    public boolean isActif() {
+        return actif;
+    }
+
+    public String getPrincipal() {
+        return principal;
+    }
+
+    public List<String> getShards() {
+        return anneau.getShards();
+    }
+
+    public String shardDe(Long utilisateurId) {
+        return actif ? anneau.shardDe(utilisateurId) : principal;
+    }
+
+    /**
+     * Pool JDBC d'un shard, hors routage et hors transaction JPA
+     */
+    public DataSource getSource(String shard) {
+        DataSource source = sources.get(shard);
+        if (source == null) throw new IllegalArgumentException("Shard inconnu: " + shard);
+        return source;
+    }
+
+    /**
+     * Fixe le shard pour les connexions ouvertes par l'action ; à l'appelant d'y ouvrir sa transaction
+     */
+    public <T> T executerSur(String shard, Supplier<T> action) {
+        return ContexteShard.executerSur(shard, action);
+    }
+
+    /**
+     * Lecture des données d'un utilisateur depuis un service dont la transaction est sur le principal
+     */
+    public <T> T lirePourUtilisateur(Long utilisateurId, Supplier<T> lecture) {
+        if (!actif) return lecture.get();
+        return executerSur(shardDe(utilisateurId), () -> transactionLecture.execute(status -> lecture.get()));
+    }
+
+    /**
+     * Lecture d'un groupe d'utilisateurs : un appel par shard avec les identifiants qu'il porte
+     * (un seul appel, dans la transaction courante, sans sharding)
+     */
+    public <T> List<T> lireParShard(Collection<Long> utilisateurIds, Function<List<Long>, T> lecture) {
+        List<T> resultats = new ArrayList<>();
+        if (!actif) {
+            resultats.add(lecture.apply(new ArrayList<>(utilisateurIds)));
+            return resultats;
+        }
+        repartir(utilisateurIds).forEach((shard, ids) ->
+                resultats.add(executerSur(shard, () -> transactionLecture.execute(status -> lecture.apply(ids)))));
+        return resultats;
+    }
+
+    /**
+     * Variante de lireParShard qui traite les entités dans la transaction de chaque shard
+     */
+    public void parcourirParShard(Collection<Long> utilisateurIds, Consumer<List<Long>> traitement) {
+        lireParShard(utilisateurIds, ids -> {
+            traitement.accept(ids);
+            return null;
+        });
+    }
+
+    /**
+     * Écriture du catalogue sur le principal, dans sa propre transaction : la réplication vers
+     * les autres shards a lieu à son commit, avant le retour (voir ReplicationCatalogue)
+     */
+    public <T> T ecrireCatalogue(Supplier<T> ecriture) {
+        if (!actif) return ecriture.get();
+        return executerSur(principal, () -> transactionEcriture.execute(status -> ecriture.get()));
+    }
+
+    public Map<String, List<Long>> repartir(Collection<Long> utilisateurIds) {
+        Map<String, List<Long>> parShard = new LinkedHashMap<>();
+        for (Long id : utilisateurIds) {
+            parShard.computeIfAbsent(shardDe(id), k -> new ArrayList<>()).add(id);
+        }
+        return parShard;
+    }
+}
@@ -0,0 +1,19 @@
+package com.tp222.allergies.service.sharding;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Méthode de contrôleur dont toute la requête porte sur un seul utilisateur : sa transaction est
+ * ouverte sur le shard de cet utilisateur.
+ *
+ * L'identifiant est lu dans la variable de chemin ou le paramètre « utilisateurId », ou dans un
+ * corps de requête qui implémente RequeteUtilisateur. Sans cette annotation, la requête s'exécute
+ * sur le shard principal (catalogue, tables globales) et route elle-même ses lectures d'utilisateurs.
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface RoutageUtilisateur {
+}
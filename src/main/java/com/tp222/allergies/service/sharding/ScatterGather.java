@@ -0,0 +1,89 @@
+package com.tp222.allergies.service.sharding;
+
+import com.tp222.allergies.config.ShardingProperties;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+/**
+ * Requêtes analytiques sur tous les shards : la même requête est lancée en parallèle sur chaque
+ * shard (une transaction en lecture seule par shard), les résultats partiels sont rendus par shard
+ * et fusionnés par l'appelant.
+ *
+ * Tout ou rien : un shard en échec ou qui dépasse le délai fait échouer la requête entière,
+ * plutôt que de rendre un agrégat silencieusement incomplet.
+ */
+@Component
+@Slf4j
+public class ScatterGather {
+
+    private final RoutageShards routageShards;
+    private final TransactionTemplate transactionLecture;
+    private final ExecutorService executeur;
+    private final long timeoutMs;
+
+    public ScatterGather(RoutageShards routageShards, PlatformTransactionManager transactionManager,
+                         ShardingProperties properties) {
+        this.routageShards = routageShards;
+        this.transactionLecture = new TransactionTemplate(transactionManager);
+        this.transactionLecture.setReadOnly(true);
+        this.timeoutMs = properties.getTimeoutScatterMs();
+        this.executeur = Executors.newFixedThreadPool(Math.max(2, routageShards.getShards().size()), r -> {
+            Thread t = new Thread(r, "scatter-gather");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /**
+     * @return le résultat de chaque shard, dans l'ordre de déclaration des shards
+     */
+    public <T> Map<String, T> surTousLesShards(Supplier<T> requete) {
+        Map<String, Future<T>> enCours = new LinkedHashMap<>();
+        for (String shard : routageShards.getShards()) {
+            enCours.put(shard, executeur.submit(() ->
+                    ContexteShard.executerSur(shard, () -> transactionLecture.execute(status -> requete.get()))));
+        }
+
+        long limite = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMs);
+        Map<String, T> resultats = new LinkedHashMap<>();
+        String shard = null;
+        try {
+            for (Map.Entry<String, Future<T>> entree : enCours.entrySet()) {
+                shard = entree.getKey();
+                resultats.put(shard, entree.getValue().get(Math.max(0, limite - System.nanoTime()), TimeUnit.NANOSECONDS));
+            }
+            return resultats;
+        } catch (ExecutionException e) {
+            annuler(enCours);
+            throw new RuntimeException("Shard " + shard + " en échec: " + e.getCause().getMessage(), e.getCause());
+        } catch (TimeoutException e) {
+            annuler(enCours);
+            throw new RuntimeException("Shard " + shard + " sans réponse après " + timeoutMs + " ms");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            annuler(enCours);
+            throw new RuntimeException("Requête multi-shards interrompue");
+        }
+    }
+
+    private void annuler(Map<String, ? extends Future<?>> enCours) {
+        enCours.values().forEach(future -> future.cancel(true));
+    }
+
+    @PreDestroy
+    public void arreter() {
+        executeur.shutdownNow();
+    }
+}
@@ -0,0 +1,45 @@
+package com.tp222.allergies.service.sharding;
+
+import org.hibernate.boot.Metadata;
+import org.hibernate.boot.spi.BootstrapContext;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.integrator.spi.Integrator;
+import org.hibernate.service.spi.SessionFactoryServiceRegistry;
+import org.hibernate.tool.hbm2ddl.SchemaUpdate;
+import org.hibernate.tool.schema.TargetType;
+import java.util.EnumSet;
+
+/**
+ * Génération du schéma sur les shards autres que le principal.
+ *
+ * Hibernate n'applique ddl-auto qu'à la connexion obtenue au démarrage, donc au principal. Cet
+ * intégrateur retient le modèle JPA construit par Hibernate pour rejouer la mise à jour du schéma
+ * sur chacun des autres shards, le routage choisissant la base via ContexteShard.
+ */
+public class SchemaShards implements Integrator {
+
+    private volatile Metadata metadata;
+    private volatile SessionFactoryImplementor sessionFactory;
+
+    @Override
+    public void integrate(Metadata metadata, BootstrapContext bootstrapContext, SessionFactoryImplementor sessionFactory) {
+        this.metadata = metadata;
+        this.sessionFactory = sessionFactory;
+    }
+
+    @Override
+    public void disintegrate(SessionFactoryImplementor sessionFactory, SessionFactoryServiceRegistry serviceRegistry) {
+        this.metadata = null;
+        this.sessionFactory = null;
+    }
+
+    public void mettreAJour(String shard) {
+        if (metadata == null) throw new IllegalStateException("Modèle Hibernate non initialisé");
+        ContexteShard.executerSur(shard, () -> {
+            SchemaUpdate miseAJour = new SchemaUpdate();
+            miseAJour.setHaltOnError(true);
+            miseAJour.execute(EnumSet.of(TargetType.DATABASE), metadata, sessionFactory.getServiceRegistry());
+            return null;
+        });
+    }
+}
@@ -0,0 +1,36 @@
+-- Pendant H2 de postgresql/V1__index_actifs.sql (mêmes noms d'index, sauf celui des aliments sans
+-- allergènes, propre au prédicat partiel). H2 n'a pas d'index partiels : actif devient une colonne
+-- de l'index, placée là où l'égalité précède la plage ou le tri.
+
+CREATE INDEX IF NOT EXISTS idx_utilisateurs_actifs
+    ON utilisateurs (actif, id);
+
+CREATE INDEX IF NOT EXISTS idx_allergies_utilisateurs_actives
+    ON allergies_utilisateurs (utilisateur_id, actif, allergie_id, niveau_severite);
+
+CREATE INDEX IF NOT EXISTS idx_allergies_utilisateurs_actives_allergie
+    ON allergies_utilisateurs (allergie_id, actif);
+
+CREATE INDEX IF NOT EXISTS idx_allergies_utilisateurs_actives_severite
+    ON allergies_utilisateurs (niveau_severite, actif);
+
+CREATE INDEX IF NOT EXISTS idx_allergies_utilisateurs_critiques
+    ON allergies_utilisateurs (utilisateur_id, niveau_severite, actif);
+
+CREATE INDEX IF NOT EXISTS idx_aliments_actifs_categorie
+    ON aliments (categorie_id, actif);
+
+CREATE INDEX IF NOT EXISTS idx_aliments_actifs_score
+    ON aliments (actif, score_nutritionnel DESC);
+
+CREATE INDEX IF NOT EXISTS idx_aliments_actifs_calories
+    ON aliments (actif, calories);
+
+CREATE INDEX IF NOT EXISTS idx_aliments_actifs_proteines
+    ON aliments (actif, proteines);
+
+CREATE INDEX IF NOT EXISTS idx_allergies_actives
+    ON allergies (actif, type_allergie, niveau_severite);
+
+CREATE INDEX IF NOT EXISTS idx_reactivites_croisees_actives
+    ON reactivites_croisees (actif, id);
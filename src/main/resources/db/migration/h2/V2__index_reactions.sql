@@ -0,0 +1,9 @@
+-- Pendant H2 de postgresql/V2__index_reactions.sql
+CREATE INDEX IF NOT EXISTS idx_reactions_utilisateur_aliment
+    ON reactions_allergiques (utilisateur_id, aliment_id, id);
+
+CREATE INDEX IF NOT EXISTS idx_reactions_aliment
+    ON reactions_allergiques (aliment_id);
+
+CREATE INDEX IF NOT EXISTS idx_outbox_utilisateur
+    ON outbox_evenements (utilisateur_id);
@@ -0,0 +1,10 @@
+-- Pendant H2 de postgresql/V3__minute_reactions.sql
+UPDATE reactions_allergiques r
+SET minute_reaction = DATE_TRUNC('MINUTE', r.date_reaction)
+WHERE r.minute_reaction IS NULL
+  AND NOT EXISTS (
+      SELECT 1 FROM reactions_allergiques d
+      WHERE d.utilisateur_id = r.utilisateur_id
+        AND d.aliment_id = r.aliment_id
+        AND DATE_TRUNC('MINUTE', d.date_reaction) = DATE_TRUNC('MINUTE', r.date_reaction)
+        AND (d.id < r.id OR d.minute_reaction IS NOT NULL));
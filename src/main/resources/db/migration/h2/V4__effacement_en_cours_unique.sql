@@ -0,0 +1,19 @@
+-- Pendant H2 de postgresql/V4__effacement_en_cours_unique.sql. H2 n'a pas d'index partiels : la
+-- colonne calculée ne vaut l'utilisateur que pour un effacement EN_COURS, et l'index unique
+-- accepte plusieurs valeurs nulles.
+UPDATE effacements_utilisateurs e
+SET statut = 'ECHEC',
+    message_erreur = 'Doublon d''un effacement en cours pour le même utilisateur',
+    date_fin = CURRENT_TIMESTAMP
+WHERE e.statut = 'EN_COURS'
+  AND EXISTS (
+      SELECT 1 FROM effacements_utilisateurs d
+      WHERE d.utilisateur_id = e.utilisateur_id
+        AND d.statut = 'EN_COURS'
+        AND d.id < e.id);
+
+ALTER TABLE effacements_utilisateurs ADD COLUMN IF NOT EXISTS utilisateur_en_cours BIGINT
+    GENERATED ALWAYS AS (CASE WHEN statut = 'EN_COURS' THEN utilisateur_id END);
+
+CREATE UNIQUE INDEX IF NOT EXISTS uk_effacements_utilisateur_en_cours
+    ON effacements_utilisateurs (utilisateur_en_cours);
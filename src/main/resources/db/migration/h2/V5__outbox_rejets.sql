@@ -0,0 +1,6 @@
+-- Pendant H2 de postgresql/V5__outbox_rejets.sql, sans index partiels
+CREATE INDEX IF NOT EXISTS idx_outbox_a_diffuser
+    ON outbox_evenements (date_traitement, date_rejet, id);
+
+CREATE INDEX IF NOT EXISTS idx_outbox_rejetes
+    ON outbox_evenements (date_rejet);
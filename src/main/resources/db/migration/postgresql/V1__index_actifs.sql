@@ -0,0 +1,52 @@
+-- Index partiels sur le drapeau actif : seules les lignes actives y figurent, dans l'ordre
+-- des prédicats et des tris des requêtes des repositories. Les lignes désactivées (suppression
+-- logique, effacement RGPD en cours) ne coûtent plus rien aux lectures courantes.
+-- CONCURRENTLY : construction sans verrou d'écriture sur une base déjà peuplée (hors transaction).
+-- Les recherches LIKE '%...%' sur les noms restent des parcours : un B-tree n'y sert pas.
+
+-- UtilisateurRepository.findIdsActifs (ORDER BY id), countActiveUsers, findByActifTrue
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_utilisateurs_actifs
+    ON utilisateurs (id) WHERE actif = true;
+
+-- AllergieUtilisateurRepository : allergies actives d'un groupe d'utilisateurs (index couvrant),
+-- parcours ORDER BY utilisateur_id
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_allergies_utilisateurs_actives
+    ON allergies_utilisateurs (utilisateur_id, allergie_id) INCLUDE (niveau_severite) WHERE actif = true;
+
+-- Comptages et fréquences par allergie
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_allergies_utilisateurs_actives_allergie
+    ON allergies_utilisateurs (allergie_id) WHERE actif = true;
+
+-- Répartition par sévérité
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_allergies_utilisateurs_actives_severite
+    ON allergies_utilisateurs (niveau_severite) WHERE actif = true;
+
+-- findCriticalAllergiesByUtilisateur, findUsersWithCriticalAllergies
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_allergies_utilisateurs_critiques
+    ON allergies_utilisateurs (utilisateur_id) WHERE actif = true AND niveau_severite = 'CRITIQUE';
+
+-- AlimentRepository
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_aliments_actifs_categorie
+    ON aliments (categorie_id) WHERE actif = true;
+
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_aliments_actifs_score
+    ON aliments (score_nutritionnel DESC) WHERE actif = true;
+
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_aliments_actifs_calories
+    ON aliments (calories) WHERE actif = true;
+
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_aliments_actifs_proteines
+    ON aliments (proteines) WHERE actif = true;
+
+-- findAllergenFreeFoods, findRecommendedFoods (ORDER BY score_nutritionnel DESC)
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_aliments_actifs_sans_allergenes
+    ON aliments (score_nutritionnel DESC)
+    WHERE actif = true AND (allergenes_potentiels IS NULL OR allergenes_potentiels = '');
+
+-- AllergieRepository : critiques, alimentaires, regroupement par type
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_allergies_actives
+    ON allergies (type_allergie, niveau_severite) WHERE actif = true;
+
+-- ReactiviteCroiseeRepository.findActivesAvecAliments (ORDER BY id), findAretesActives
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_reactivites_croisees_actives
+    ON reactivites_croisees (id) INCLUDE (aliment_source_id, aliment_cible_id, coefficient) WHERE actif = true;
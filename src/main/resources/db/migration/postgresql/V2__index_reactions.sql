@@ -0,0 +1,12 @@
+-- Index composites des lectures de réactions par couple (utilisateur, aliment) : historique du
+-- calcul de probabilité à chaque enregistrement, historique antérieur du rescoring (r2.id < r.id).
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_reactions_utilisateur_aliment
+    ON reactions_allergiques (utilisateur_id, aliment_id, id);
+
+-- ReactionAllergiqueRepository.findByAliment ; la clé étrangère seule n'est pas indexée par PostgreSQL
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_reactions_aliment
+    ON reactions_allergiques (aliment_id);
+
+-- EvenementOutboxRepository.supprimerParUtilisateurId (effacement RGPD)
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_outbox_utilisateur
+    ON outbox_evenements (utilisateur_id);
@@ -0,0 +1,14 @@
+-- Renseigne minute_reaction des réactions antérieures à la contrainte d'unicité
+-- uk_reactions_utilisateur_aliment_minute (créée par Hibernate avec la colonne, vide).
+-- Seule la première réaction de chaque (utilisateur, aliment, minute) reçoit la valeur : les
+-- doublons existants sont conservés avec minute_reaction nulle, hors contrainte, et restent
+-- identifiables pour une revue manuelle.
+UPDATE reactions_allergiques r
+SET minute_reaction = date_trunc('minute', r.date_reaction)
+WHERE r.minute_reaction IS NULL
+  AND NOT EXISTS (
+      SELECT 1 FROM reactions_allergiques d
+      WHERE d.utilisateur_id = r.utilisateur_id
+        AND d.aliment_id = r.aliment_id
+        AND date_trunc('minute', d.date_reaction) = date_trunc('minute', r.date_reaction)
+        AND (d.id < r.id OR d.minute_reaction IS NOT NULL));
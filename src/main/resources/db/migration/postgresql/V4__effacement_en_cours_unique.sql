@@ -0,0 +1,17 @@
+-- Un seul effacement EN_COURS par utilisateur : deux demandes simultanées ne créent plus deux jobs.
+-- Les doublons déjà présents (le plus ancien est gardé) passent en ECHEC, relançables un par un.
+-- Sans CONCURRENTLY : la table d'audit des effacements est petite, et la mise à jour doit précéder
+-- l'index dans la même transaction.
+UPDATE effacements_utilisateurs e
+SET statut = 'ECHEC',
+    message_erreur = 'Doublon d''un effacement en cours pour le même utilisateur',
+    date_fin = CURRENT_TIMESTAMP
+WHERE e.statut = 'EN_COURS'
+  AND EXISTS (
+      SELECT 1 FROM effacements_utilisateurs d
+      WHERE d.utilisateur_id = e.utilisateur_id
+        AND d.statut = 'EN_COURS'
+        AND d.id < e.id);
+
+CREATE UNIQUE INDEX IF NOT EXISTS uk_effacements_utilisateur_en_cours
+    ON effacements_utilisateurs (utilisateur_id) WHERE statut = 'EN_COURS';
@@ -0,0 +1,8 @@
+-- Lot du relais, compte et âge des événements en attente : seuls les événements ni diffusés ni
+-- rejetés sont indexés, l'index reste de la taille de la file quelle que soit la rétention.
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_outbox_a_diffuser
+    ON outbox_evenements (id) WHERE date_traitement IS NULL AND date_rejet IS NULL;
+
+-- Jauge allergies.outbox.rejetes, relevée à chaque cycle du relais
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_outbox_rejetes
+    ON outbox_evenements (id) WHERE date_rejet IS NOT NULL;
@@ -0,0 +1,151 @@
+package com.tp222.allergies.service;
+
+import org.junit.jupiter.api.Test;
+import java.lang.reflect.Field;
+import java.util.SplittableRandom;
+import java.util.TreeSet;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BitmapCompresseTest {
+
+    private static final int SEUIL_TABLEAU = 4096;
+
+    @Test
+    void unConteneurPasseEnBitmapAuDelaDe4096ValeursEtRevientEnTableau() throws Exception {
+        BitmapCompresse bitmap = new BitmapCompresse();
+        for (int v = 0; v < SEUIL_TABLEAU; v++) {
+            bitmap.ajouter(v * 16);
+        }
+        assertEquals("Tableau", typeConteneur(bitmap, 0));
+
+        bitmap.ajouter(1);
+        assertEquals("Bits", typeConteneur(bitmap, 0));
+        assertEquals(SEUIL_TABLEAU + 1, bitmap.cardinalite());
+
+        bitmap.retirer(1);
+        assertEquals("Tableau", typeConteneur(bitmap, 0));
+        assertEquals(SEUIL_TABLEAU, bitmap.cardinalite());
+        for (int v = 0; v < SEUIL_TABLEAU; v++) {
+            assertTrue(bitmap.contient(v * 16));
+        }
+        assertFalse(bitmap.contient(1));
+    }
+
+    @Test
+    void uneOperationEnsemblisteChoisitLeConteneurDeSonResultat() throws Exception {
+        BitmapCompresse pairs = new BitmapCompresse();
+        BitmapCompresse multiplesDeTrois = new BitmapCompresse();
+        for (int v = 0; v < 65536; v++) {
+            if (v % 2 == 0) pairs.ajouter(v);
+            if (v % 3 == 0) multiplesDeTrois.ajouter(v);
+        }
+        assertEquals("Bits", typeConteneur(pairs, 0));
+
+        // 10923 multiples de 6 : reste un bitmap ; 2 sur 65536 valeurs : redevient un tableau
+        BitmapCompresse et = BitmapCompresse.et(pairs, multiplesDeTrois);
+        assertEquals(10923, et.cardinalite());
+        assertEquals("Bits", typeConteneur(et, 0));
+
+        BitmapCompresse presqueTout = new BitmapCompresse();
+        for (int v = 2; v < 65536; v++) presqueTout.ajouter(v);
+        BitmapCompresse reste = BitmapCompresse.sauf(pairs, presqueTout);
+        assertArrayEquals(new int[] {0}, reste.valeurs());
+        assertEquals("Tableau", typeConteneur(reste, 0));
+    }
+
+    @Test
+    void lesOperationsEnsemblistesCorrespondentAUnEnsembleTrie() {
+        SplittableRandom aleatoire = new SplittableRandom(2024);
+        TreeSet<Integer> a = new TreeSet<>();
+        TreeSet<Integer> b = new TreeSet<>();
+        // Conteneurs denses (bitmaps) et épars (tableaux) sur plusieurs clés de poids fort
+        for (int i = 0; i < 30_000; i++) a.add(aleatoire.nextInt(40_000));
+        for (int i = 0; i < 30_000; i++) b.add(20_000 + aleatoire.nextInt(40_000));
+        for (int i = 0; i < 500; i++) a.add(aleatoire.nextInt(1 << 24));
+        for (int i = 0; i < 500; i++) b.add(aleatoire.nextInt(1 << 24));
+
+        BitmapCompresse bitmapA = depuis(a);
+        BitmapCompresse bitmapB = depuis(b);
+
+        TreeSet<Integer> et = new TreeSet<>(a);
+        et.retainAll(b);
+        TreeSet<Integer> ou = new TreeSet<>(a);
+        ou.addAll(b);
+        TreeSet<Integer> sauf = new TreeSet<>(a);
+        sauf.removeAll(b);
+
+        assertArrayEquals(valeurs(et), BitmapCompresse.et(bitmapA, bitmapB).valeurs());
+        assertArrayEquals(valeurs(ou), BitmapCompresse.ou(bitmapA, bitmapB).valeurs());
+        assertArrayEquals(valeurs(sauf), BitmapCompresse.sauf(bitmapA, bitmapB).valeurs());
+        // Les opérandes ne sont pas modifiés
+        assertArrayEquals(valeurs(a), bitmapA.valeurs());
+        assertArrayEquals(valeurs(b), bitmapB.valeurs());
+    }
+
+    @Test
+    void ajoutRetraitEtPaginationSuiventLOrdreCroissant() {
+        BitmapCompresse bitmap = BitmapCompresse.de(70_000, 5, 3, 5, 1 << 20);
+        assertEquals(4, bitmap.cardinalite());
+        assertArrayEquals(new int[] {3, 5, 70_000, 1 << 20}, bitmap.valeurs());
+        assertArrayEquals(new int[] {5, 70_000}, bitmap.page(1, 2));
+        assertArrayEquals(new int[] {1 << 20}, bitmap.page(3, 10));
+        assertArrayEquals(new int[0], bitmap.page(4, 10));
+
+        assertFalse(bitmap.ajouter(5));
+        assertTrue(bitmap.retirer(70_000));
+        assertFalse(bitmap.retirer(70_000));
+        assertFalse(bitmap.contient(70_000));
+        assertArrayEquals(new int[] {3, 5, 1 << 20}, bitmap.valeurs());
+    }
+
+    @Test
+    void uneCopieEstIndependante() {
+        BitmapCompresse original = BitmapCompresse.de(1, 2, 3);
+        BitmapCompresse copie = original.copie();
+        copie.ajouter(4);
+        copie.retirer(1);
+        assertArrayEquals(new int[] {1, 2, 3}, original.valeurs());
+        assertArrayEquals(new int[] {2, 3, 4}, copie.valeurs());
+    }
+
+    @Test
+    void desIdentifiantsContigusOccupentEnvironUnBitParValeur() {
+        BitmapCompresse bitmap = new BitmapCompresse();
+        for (int v = 0; v < 1_000_000; v++) bitmap.ajouter(v);
+        assertTrue(bitmap.octets() < 140_000, "taille " + bitmap.octets());
+        assertTrue(BitmapCompresse.de(1, 1 << 20, 1 << 30).octets() < 200);
+    }
+
+    @Test
+    void uneValeurNegativeEstRefusee() {
+        BitmapCompresse bitmap = new BitmapCompresse();
+        assertThrows(IllegalArgumentException.class, () -> bitmap.ajouter(-1));
+        assertFalse(bitmap.contient(-1));
+        assertFalse(bitmap.retirer(-1));
+        assertTrue(bitmap.estVide());
+    }
+
+    private static BitmapCompresse depuis(TreeSet<Integer> valeurs) {
+        BitmapCompresse bitmap = new BitmapCompresse();
+        for (int valeur : valeurs) bitmap.ajouter(valeur);
+        return bitmap;
+    }
+
+    private static int[] valeurs(TreeSet<Integer> valeurs) {
+        return valeurs.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    /**
+     * Représentation du conteneur de rang i (Tableau ou Bits), privée à la classe
+     */
+    private static String typeConteneur(BitmapCompresse bitmap, int i) throws ReflectiveOperationException {
+        Field conteneurs = BitmapCompresse.class.getDeclaredField("conteneurs");
+        conteneurs.setAccessible(true);
+        return ((Object[]) conteneurs.get(bitmap))[i].getClass().getSimpleName();
+    }
+}
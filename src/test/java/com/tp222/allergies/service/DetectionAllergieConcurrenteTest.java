@@ -0,0 +1,157 @@
+package com.tp222.allergies.service;
+
+import com.tp222.allergies.model.dto.request.ReactionAllergiqueRequest;
+import com.tp222.allergies.model.entity.Aliment;
+import com.tp222.allergies.model.entity.Allergie;
+import com.tp222.allergies.model.entity.AllergieUtilisateur;
+import com.tp222.allergies.model.entity.ReactionAllergique;
+import com.tp222.allergies.model.entity.Utilisateur;
+import com.tp222.allergies.repository.AlimentRepository;
+import com.tp222.allergies.repository.AllergieRepository;
+import com.tp222.allergies.repository.AllergieUtilisateurRepository;
+import com.tp222.allergies.repository.ReactionAllergiqueRepository;
+import com.tp222.allergies.repository.UtilisateurRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Réactions allergiques simultanées au même aliment : la détection automatique ne doit créer
+ * qu'une allergie « Allergie à X », et une seule association par utilisateur.
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:detection-concurrente;DB_CLOSE_DELAY=-1;LOCK_TIMEOUT=60000",
+        "spring.datasource.hikari.maximum-pool-size=20",
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+        "logging.level.com.tp222.allergies=WARN",
+        "logging.level.org.hibernate.SQL=WARN"
+})
+@ActiveProfiles("test")
+class DetectionAllergieConcurrenteTest {
+
+    private static final int REACTIONS = 2000;
+    private static final int THREADS = 16;
+    private static final int UTILISATEURS = 50;
+
+    @Autowired
+    private AllergieService allergieService;
+    @Autowired
+    private UtilisateurRepository utilisateurRepository;
+    @Autowired
+    private AlimentRepository alimentRepository;
+    @Autowired
+    private AllergieRepository allergieRepository;
+    @Autowired
+    private AllergieUtilisateurRepository allergieUtilisateurRepository;
+    @Autowired
+    private ReactionAllergiqueRepository reactionAllergiqueRepository;
+
+    @Test
+    void desReactionsSimultaneesCreentUneSeuleAllergieEtUneSeuleAssociation() throws Exception {
+        Utilisateur utilisateur = utilisateurRepository.save(Utilisateur.builder()
+                .username("concurrence")
+                .email("concurrence@example.test")
+                .motDePasse("secret")
+                .prenom("Test")
+                .nom("Concurrence")
+                .build());
+        Aliment aliment = alimentRepository.save(Aliment.builder().nom("Sésame concurrent").build());
+        LocalDateTime debut = LocalDateTime.of(2024, 1, 1, 0, 0);
+
+        CountDownLatch depart = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        try {
+            List<Future<ReactionAllergique>> envois = new ArrayList<>();
+            for (int i = 0; i < REACTIONS; i++) {
+                ReactionAllergiqueRequest request = ReactionAllergiqueRequest.builder()
+                        .utilisateurId(utilisateur.getId())
+                        .alimentId(aliment.getId())
+                        // Une minute par réaction : aucune n'est un doublon d'une autre
+                        .dateReaction(debut.plusMinutes(i))
+                        .niveauSeverite("CRITIQUE")
+                        .hospitalisationRequise(true)
+                        .build();
+                envois.add(pool.submit(() -> {
+                    depart.await();
+                    return allergieService.enregistrerReaction(request);
+                }));
+            }
+            depart.countDown();
+            for (Future<ReactionAllergique> envoi : envois) {
+                assertTrue(envoi.get(2, TimeUnit.MINUTES).isAllergic());
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+
+        String nom = AllergiesAutomatiques.nom(aliment);
+        List<Allergie> allergies = allergieRepository.findAll().stream()
+                .filter(allergie -> allergie.getNom().equals(nom))
+                .toList();
+        assertEquals(1, allergies.size());
+        assertEquals(1, allergieUtilisateurRepository.findByAllergie(allergies.get(0)).size());
+        assertEquals(REACTIONS, reactionAllergiqueRepository.countByUtilisateurAndAliment(utilisateur, aliment));
+    }
+
+    @Test
+    void desUtilisateursSimultanesPartagentUneSeuleAllergie() throws Exception {
+        Aliment aliment = alimentRepository.save(Aliment.builder().nom("Arachide concurrente").build());
+        List<Utilisateur> utilisateurs = new ArrayList<>();
+        for (int i = 0; i < UTILISATEURS; i++) {
+            utilisateurs.add(utilisateurRepository.save(Utilisateur.builder()
+                    .username("concurrence-" + i)
+                    .email("concurrence-" + i + "@example.test")
+                    .motDePasse("secret")
+                    .prenom("Test")
+                    .nom("Concurrence")
+                    .build()));
+        }
+        LocalDateTime date = LocalDateTime.of(2024, 1, 1, 12, 0);
+
+        CountDownLatch depart = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        try {
+            List<Future<ReactionAllergique>> envois = new ArrayList<>();
+            for (Utilisateur utilisateur : utilisateurs) {
+                ReactionAllergiqueRequest request = ReactionAllergiqueRequest.builder()
+                        .utilisateurId(utilisateur.getId())
+                        .alimentId(aliment.getId())
+                        .dateReaction(date)
+                        .niveauSeverite("CRITIQUE")
+                        .hospitalisationRequise(true)
+                        .build();
+                envois.add(pool.submit(() -> {
+                    depart.await();
+                    return allergieService.enregistrerReaction(request);
+                }));
+            }
+            depart.countDown();
+            for (Future<ReactionAllergique> envoi : envois) {
+                assertTrue(envoi.get(2, TimeUnit.MINUTES).isAllergic());
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+
+        String nom = AllergiesAutomatiques.nom(aliment);
+        List<Allergie> allergies = allergieRepository.findAll().stream()
+                .filter(allergie -> allergie.getNom().equals(nom))
+                .toList();
+        assertEquals(1, allergies.size());
+        List<AllergieUtilisateur> associations = allergieUtilisateurRepository.findByAllergie(allergies.get(0));
+        assertEquals(UTILISATEURS, associations.size());
+        assertEquals(UTILISATEURS, associations.stream().map(association -> association.getUtilisateur().getId()).distinct().count());
+    }
+}
@@ -0,0 +1,96 @@
+package com.tp222.allergies.service;
+
+import com.tp222.allergies.config.ShardingProperties;
+import com.tp222.allergies.model.entity.Aliment;
+import com.tp222.allergies.model.entity.ReactionAllergique;
+import com.tp222.allergies.model.entity.Utilisateur;
+import com.tp222.allergies.repository.ReactionAllergiqueRepository;
+import com.tp222.allergies.service.sharding.RoutageShards;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import javax.sql.DataSource;
+import java.time.LocalDateTime;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class DoublonsReactionsTest {
+
+    private static final LocalDateTime DATE = LocalDateTime.of(2024, 3, 1, 12, 30, 15);
+    private static final LocalDateTime MINUTE = LocalDateTime.of(2024, 3, 1, 12, 30);
+
+    private final ReactionAllergiqueRepository repository = mock(ReactionAllergiqueRepository.class);
+
+    @Test
+    void avantLeChargementChaqueVerificationLitLaBase() {
+        when(repository.findFirstByUtilisateurIdAndAlimentIdAndMinuteReaction(anyLong(), anyLong(), any()))
+                .thenReturn(Optional.empty());
+        DoublonsReactions doublons = doublons();
+
+        assertTrue(doublons.existante(1L, 2L, DATE).isEmpty());
+        verify(repository).findFirstByUtilisateurIdAndAlimentIdAndMinuteReaction(1L, 2L, MINUTE);
+    }
+
+    @Test
+    void apresLeChargementUneCleInconnueNeLitPasLaBase() {
+        when(repository.streamClesDoublons()).thenReturn(Stream.<Object[]>of(new Object[] {1L, 2L, DATE}));
+        when(repository.findFirstByUtilisateurIdAndAlimentIdAndMinuteReaction(anyLong(), anyLong(), any()))
+                .thenReturn(Optional.empty());
+        DoublonsReactions doublons = doublons();
+        doublons.demarrer();
+        attendreChargement(doublons);
+
+        assertTrue(doublons.existante(3L, 4L, DATE).isEmpty());
+        verify(repository, never()).findFirstByUtilisateurIdAndAlimentIdAndMinuteReaction(eq(3L), eq(4L), any());
+
+        // Même couple à la même minute : « peut-être », confirmé par la base
+        doublons.existante(1L, 2L, DATE.plusSeconds(30));
+        verify(repository).findFirstByUtilisateurIdAndAlimentIdAndMinuteReaction(1L, 2L, MINUTE);
+    }
+
+    @Test
+    void uneReactionAjouteeApresLeChargementEstConfirmeeEnBase() {
+        when(repository.streamClesDoublons()).thenReturn(Stream.empty());
+        when(repository.findFirstByUtilisateurIdAndAlimentIdAndMinuteReaction(anyLong(), anyLong(), any()))
+                .thenReturn(Optional.empty());
+        DoublonsReactions doublons = doublons();
+        doublons.demarrer();
+        attendreChargement(doublons);
+
+        doublons.ajouter(ReactionAllergique.builder()
+                .utilisateur(Utilisateur.builder().id(5L).build())
+                .aliment(Aliment.builder().id(6L).build())
+                .dateReaction(DATE)
+                .build());
+
+        doublons.existante(5L, 6L, DATE);
+        verify(repository).findFirstByUtilisateurIdAndAlimentIdAndMinuteReaction(5L, 6L, MINUTE);
+    }
+
+    private DoublonsReactions doublons() {
+        RoutageShards routageShards = new RoutageShards(new ShardingProperties(), mock(DataSource.class),
+                mock(PlatformTransactionManager.class));
+        return new DoublonsReactions(repository, routageShards, mock(PlatformTransactionManager.class),
+                new SimpleMeterRegistry(), 1000, 0.01);
+    }
+
+    private static void attendreChargement(DoublonsReactions doublons) {
+        long limite = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!Boolean.TRUE.equals(ReflectionTestUtils.getField(doublons, "pret"))) {
+            if (System.nanoTime() > limite) fail("Filtre de doublons non chargé");
+            Thread.onSpinWait();
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package com.tp222.allergies.service;
+
+import com.tp222.allergies.service.FermetureReactivite.Arete;
+import com.tp222.allergies.service.FermetureReactivite.AlimentsRelies;
+import org.junit.jupiter.api.Test;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class FermetureReactiviteTest {
+
+    private static final float EPSILON = 1e-6f;
+
+    @Test
+    void leCoefficientEstLeMeilleurProduitLeLongDUnChemin() {
+        // 1 -0.8- 2 -0.5- 3 et 1 -0.3- 3 : le chemin par 2 (0.4) l'emporte sur l'arête directe
+        FermetureReactivite fermeture = FermetureReactivite.calculer(List.of(
+                new Arete(1, 2, 0.8f), new Arete(2, 3, 0.5f), new Arete(1, 3, 0.3f), new Arete(3, 4, 0.5f)), 0.1f);
+
+        assertEquals(0.8f, fermeture.coefficient(1, 2), EPSILON);
+        assertEquals(0.4f, fermeture.coefficient(1, 3), EPSILON);
+        assertEquals(0.4f, fermeture.coefficient(3, 1), EPSILON);
+        assertEquals(0.2f, fermeture.coefficient(1, 4), EPSILON);
+        assertEquals(1f, fermeture.coefficient(2, 2), EPSILON);
+        assertEquals(0f, fermeture.coefficient(1, 99), EPSILON);
+        assertEquals(4, fermeture.nombreAliments());
+    }
+
+    @Test
+    void lesAlimentsReliesSontFiltresParLeSeuilEtTriesParCoefficient() {
+        FermetureReactivite fermeture = FermetureReactivite.calculer(List.of(
+                new Arete(1, 2, 0.9f), new Arete(2, 3, 0.5f), new Arete(1, 4, 0.3f), new Arete(4, 5, 0.5f)), 0.25f);
+
+        AlimentsRelies relies = fermeture.relies(1);
+        assertArrayEquals(new long[] {2, 3, 4}, relies.alimentIds());
+        assertArrayEquals(new float[] {0.9f, 0.45f, 0.3f}, relies.coefficients(), EPSILON);
+        // 1 -> 5 vaut 0.15, sous le seuil ; un aliment absent du graphe n'a aucun relié
+        assertTrue(fermeture.relies(99).estVide());
+        assertEquals(0.15f, fermeture.coefficient(1, 5), EPSILON);
+    }
+
+    @Test
+    void unAjoutIncrementalDonneLaMemeFermetureQuUnCalculComplet() {
+        SplittableRandom aleatoire = new SplittableRandom(11);
+        List<Arete> aretes = new ArrayList<>();
+        FermetureReactivite incrementale = FermetureReactivite.vide(0.2f);
+        for (int i = 0; i < 60; i++) {
+            Arete arete = new Arete(aleatoire.nextInt(25), aleatoire.nextInt(25), 0.1f + 0.9f * (float) aleatoire.nextDouble());
+            if (arete.alimentA() == arete.alimentB()) continue;
+            aretes.add(arete);
+            incrementale = incrementale.avecArete(arete);
+
+            FermetureReactivite complete = FermetureReactivite.calculer(aretes, 0.2f);
+            assertEquals(complete.nombreAliments(), incrementale.nombreAliments());
+            for (long a = 0; a < 25; a++) {
+                for (long b = 0; b < 25; b++) {
+                    assertEquals(complete.coefficient(a, b), incrementale.coefficient(a, b), EPSILON);
+                }
+                assertArrayEquals(complete.relies(a).alimentIds(), incrementale.relies(a).alimentIds());
+            }
+        }
+    }
+
+    @Test
+    void unAjoutNeModifiePasLaFermetureDOrigine() {
+        FermetureReactivite avant = FermetureReactivite.calculer(List.of(new Arete(1, 2, 0.5f)), 0.1f);
+        FermetureReactivite apres = avant.avecArete(new Arete(2, 3, 0.5f)).avecArete(new Arete(1, 2, 0.9f));
+
+        assertEquals(0.5f, avant.coefficient(1, 2), EPSILON);
+        assertEquals(0f, avant.coefficient(1, 3), EPSILON);
+        assertEquals(2, avant.nombreAliments());
+        assertEquals(0.9f, apres.coefficient(1, 2), EPSILON);
+        assertEquals(0.45f, apres.coefficient(1, 3), EPSILON);
+        assertEquals(3, apres.nombreAliments());
+    }
+
+    @Test
+    void uneFermetureVideNeRelieRien() {
+        FermetureReactivite vide = FermetureReactivite.vide(0.1f);
+        assertEquals(0, vide.nombreAliments());
+        assertEquals(0f, vide.coefficient(1, 2), EPSILON);
+        assertTrue(vide.relies(1).estVide());
+    }
+}
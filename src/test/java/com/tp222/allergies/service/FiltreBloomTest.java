@@ -0,0 +1,90 @@
+package com.tp222.allergies.service;
+
+import org.junit.jupiter.api.Test;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class FiltreBloomTest {
+
+    private static final int CAPACITE = 100_000;
+    private static final double TAUX_VISE = 0.01;
+
+    @Test
+    void uneCleAjouteeEstToujoursTrouvee() {
+        FiltreBloom filtre = new FiltreBloom(CAPACITE, TAUX_VISE);
+        for (long cle = 0; cle < CAPACITE; cle++) {
+            filtre.ajouter(cle * 7919);
+        }
+        for (long cle = 0; cle < CAPACITE; cle++) {
+            assertTrue(filtre.peutContenir(cle * 7919), "faux négatif pour " + cle * 7919);
+        }
+        assertEquals(CAPACITE, filtre.getInsertions());
+    }
+
+    @Test
+    void unFiltreVideNeContientRien() {
+        FiltreBloom filtre = new FiltreBloom(CAPACITE, TAUX_VISE);
+        SplittableRandom aleatoire = new SplittableRandom(7);
+        for (int i = 0; i < 10_000; i++) {
+            assertFalse(filtre.peutContenir(aleatoire.nextLong()));
+        }
+        assertEquals(0.0, filtre.tauxFauxPositifsEstime());
+    }
+
+    @Test
+    void leTauxDeFauxPositifsResteProcheDuTauxVise() {
+        FiltreBloom filtre = new FiltreBloom(CAPACITE, TAUX_VISE);
+        SplittableRandom aleatoire = new SplittableRandom(42);
+        // Clés impaires ajoutées, clés paires jamais ajoutées : tout « peut-être » sur une paire est un faux positif
+        for (int i = 0; i < CAPACITE; i++) {
+            filtre.ajouter(aleatoire.nextLong() | 1);
+        }
+        int fauxPositifs = 0;
+        for (int i = 0; i < CAPACITE; i++) {
+            if (filtre.peutContenir(aleatoire.nextLong() & ~1L)) fauxPositifs++;
+        }
+        double taux = (double) fauxPositifs / CAPACITE;
+        assertTrue(taux < 2 * TAUX_VISE, "taux de faux positifs mesuré " + taux);
+        assertEquals(TAUX_VISE, filtre.tauxFauxPositifsEstime(), TAUX_VISE / 2);
+    }
+
+    @Test
+    void lesAjoutsConcurrentsSontTousVisibles() throws Exception {
+        FiltreBloom filtre = new FiltreBloom(CAPACITE, TAUX_VISE);
+        int threads = 8;
+        int parThread = CAPACITE / threads;
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> taches = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                long premier = (long) t * parThread;
+                taches.add(pool.submit(() -> {
+                    for (long cle = premier; cle < premier + parThread; cle++) filtre.ajouter(cle);
+                }));
+            }
+            for (Future<?> tache : taches) tache.get();
+        } finally {
+            pool.shutdownNow();
+        }
+        for (long cle = 0; cle < (long) threads * parThread; cle++) {
+            assertTrue(filtre.peutContenir(cle), "faux négatif pour " + cle);
+        }
+        assertEquals((long) threads * parThread, filtre.getInsertions());
+    }
+
+    @Test
+    void desParametresInvalidesSontRefuses() {
+        assertThrows(IllegalArgumentException.class, () -> new FiltreBloom(0, TAUX_VISE));
+        assertThrows(IllegalArgumentException.class, () -> new FiltreBloom(CAPACITE, 0));
+        assertThrows(IllegalArgumentException.class, () -> new FiltreBloom(CAPACITE, 1));
+    }
+}
@@ -0,0 +1,94 @@
+package com.tp222.allergies.service.catalogue;
+
+import org.junit.jupiter.api.Test;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DeltaBinaireTest {
+
+    @Test
+    void unDeltaReconstruitLaCibleExacte() {
+        SplittableRandom aleatoire = new SplittableRandom(1);
+        byte[] base = aleatoire(aleatoire, 64 * 1024);
+        byte[] cible = base.clone();
+        // Quelques modifications ponctuelles, une insertion et une suppression
+        for (int i = 0; i < 20; i++) {
+            cible[aleatoire.nextInt(cible.length)] ^= 0x5A;
+        }
+        cible = concatener(Arrays.copyOfRange(cible, 0, 10_000), aleatoire(aleatoire, 300),
+                Arrays.copyOfRange(cible, 10_000, 40_000), Arrays.copyOfRange(cible, 41_000, cible.length));
+
+        byte[] delta = DeltaBinaire.calculer(base, cible);
+
+        assertArrayEquals(cible, DeltaBinaire.appliquer(base, delta));
+        assertTrue(delta.length < cible.length / 10, "delta de " + delta.length + " octets");
+    }
+
+    @Test
+    void desBlocsDeplacesSontCopiesDepuisLaBase() {
+        SplittableRandom aleatoire = new SplittableRandom(2);
+        byte[] a = aleatoire(aleatoire, 8 * 1024);
+        byte[] b = aleatoire(aleatoire, 8 * 1024);
+        byte[] base = concatener(a, b);
+        byte[] cible = concatener(b, a);
+
+        byte[] delta = DeltaBinaire.calculer(base, cible);
+
+        assertArrayEquals(cible, DeltaBinaire.appliquer(base, delta));
+        assertTrue(delta.length < 64, "delta de " + delta.length + " octets");
+    }
+
+    @Test
+    void lesCasLimitesFontUnAllerRetour() {
+        SplittableRandom aleatoire = new SplittableRandom(3);
+        byte[] vide = new byte[0];
+        byte[] court = "Allergie à l'arachide".getBytes(StandardCharsets.UTF_8);
+        byte[] long1 = aleatoire(aleatoire, 5000);
+        byte[] long2 = aleatoire(aleatoire, 7000);
+        byte[][] cas = {vide, court, long1, long2};
+        for (byte[] base : cas) {
+            for (byte[] cible : cas) {
+                assertArrayEquals(cible, DeltaBinaire.appliquer(base, DeltaBinaire.calculer(base, cible)));
+            }
+        }
+    }
+
+    @Test
+    void unDeltaIllisibleOuIncoherentEstRefuse() {
+        byte[] base = aleatoire(new SplittableRandom(4), 4096);
+        byte[] cible = concatener(Arrays.copyOfRange(base, 1024, 4096), Arrays.copyOfRange(base, 0, 1024));
+        byte[] delta = DeltaBinaire.calculer(base, cible);
+
+        byte[] signatureFausse = delta.clone();
+        signatureFausse[0] = 'X';
+        assertThrows(IllegalArgumentException.class, () -> DeltaBinaire.appliquer(base, signatureFausse));
+        assertThrows(IllegalArgumentException.class,
+                () -> DeltaBinaire.appliquer(base, Arrays.copyOf(delta, delta.length - 1)));
+        // Copies depuis une base plus courte que celle du delta
+        assertThrows(IllegalArgumentException.class,
+                () -> DeltaBinaire.appliquer(Arrays.copyOf(base, 100), delta));
+    }
+
+    private static byte[] aleatoire(SplittableRandom aleatoire, int taille) {
+        byte[] octets = new byte[taille];
+        for (int i = 0; i < taille; i++) octets[i] = (byte) aleatoire.nextInt(256);
+        return octets;
+    }
+
+    private static byte[] concatener(byte[]... parties) {
+        int taille = 0;
+        for (byte[] partie : parties) taille += partie.length;
+        byte[] resultat = new byte[taille];
+        int position = 0;
+        for (byte[] partie : parties) {
+            System.arraycopy(partie, 0, resultat, position, partie.length);
+            position += partie.length;
+        }
+        return resultat;
+    }
+}